@@ -147,39 +147,34 @@ public class ClanExpGainScraper {
 		int attempt;
 		MediaWiki.EditToken editToken = null;
 
-		attempt = 0;
-		while (attempt < 3)
-			// retry loop for edit token
-			try {
-				attempt++;
-				editToken = wiki.startEdit(settings.getProperty("OutputPage"));
-				break;
-			} catch (Throwable e) {
-				log.println("While getting an edit token for " + settings.getProperty("OutputPage") + ", attempt " + attempt + ":");
-				e.printStackTrace(log);
-			}
-		if (editToken == null) {
-			log.println("Giving up after too many attempts.");
-			postLog(wiki, runTime, settings, logChars);
-			System.exit(1);
-			return;
-		}
-
-		// 1. Read the table from the bot's output page.
+		// 1. Read the table from the bot's output page, getting an edit token
+		// at the same time.
 		String text = null;
 		attempt = 0;
 		while (attempt < 3)
-			// retry loop for output page readout
+			// retry loop for edit token and output page readout
 			try {
 				attempt++;
-				Iterator<MediaWiki.Revision> i = wiki.getLastRevision(settings.getProperty("OutputPage"));
+				Iterator<MediaWiki.EditPreparation> i = wiki.prepareEdit(settings.getProperty("OutputPage"));
 				if (i.hasNext()) {
-					MediaWiki.Revision rev = i.next();
+					MediaWiki.EditPreparation p = i.next();
+					if (p == null) {
+						log.println("While getting the text of " + settings.getProperty("OutputPage") + ", attempt " + attempt + ": Invalid title");
+						continue;
+					}
+					if (!p.isSuccessful()) {
+						log.println("While getting the text of " + settings.getProperty("OutputPage") + ", attempt " + attempt + ":");
+						p.getFailure().printStackTrace(log);
+						continue;
+					}
+					MediaWiki.Revision rev = p.getLastRevision();
 					if (rev == null) {
+						editToken = p.getEditToken();
 						text = "";
 						break;
 					}
 					if (!rev.isContentHidden() && rev.getContent() != null) {
+						editToken = p.getEditToken();
 						text = rev.getContent();
 						break;
 					} else
@@ -187,7 +182,7 @@ public class ClanExpGainScraper {
 				} else
 					log.println("While getting the text of " + settings.getProperty("OutputPage") + ", attempt " + attempt + ": No revision information returned");
 			} catch (Throwable e) {
-				log.println("While getting the text of " + settings.getProperty("OutputPage") + ", attempt " + attempt + ":");
+				log.println("While getting an edit token and the text of " + settings.getProperty("OutputPage") + ", attempt " + attempt + ":");
 				e.printStackTrace(log);
 			}
 		if (text == null) {
@@ -325,7 +320,10 @@ public class ClanExpGainScraper {
 			// network retry loop for edit token
 			try {
 				attempt++;
+				long skipped = wiki.getSkippedEditCount();
 				wiki.createOrReplacePage(editToken, text, "Add new data", true /* bot */, false /* minor */);
+				if (wiki.getSkippedEditCount() != skipped)
+					successLog.println(settings.getProperty("OutputPage") + " already contains the new data; not edited");
 				break;
 			} catch (Throwable e) {
 				log.println("While editing " + settings.getProperty("OutputPage") + ", attempt " + attempt + ":");
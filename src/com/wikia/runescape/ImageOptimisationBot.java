@@ -63,6 +63,20 @@ public class ImageOptimisationBot {
 
 		// Which wiki are we working on?
 		final MediaWiki wiki = new MediaWiki(settings.getProperty("Wiki"), settings.getProperty("ScriptPath", "")).setUsingCompression(true);
+		// Transclusions of Template:Compression are mostly the same from one
+		// run to the next; let the wiki tell us when they are.
+		wiki.setResponseCache(new MediaWiki.ResponseCache(4L * 1024 * 1024));
+		if (settings.getProperty("WriteStandInLatency") != null) {
+			// Answer edits and uploads locally instead of changing the wiki.
+			final MediaWiki.WriteStandIn standIn = new MediaWiki.WriteStandIn(Long.parseLong(settings.getProperty("WriteStandInLatency")));
+			wiki.setWriteStandIn(standIn);
+			Runtime.getRuntime().addShutdownHook(new Thread() {
+				@Override
+				public void run() {
+					log.log(Level.INFO, "Writes answered locally: {0}", standIn);
+				}
+			});
+		}
 
 		loginLoop: while (true) { // LOGIN LOST LOOP
 			while (true) {
@@ -236,14 +250,39 @@ public class ImageOptimisationBot {
 
 				// Whether all revisions are done or the entire wiki was just
 				// optimised, wait for the next transclusion check.
+				log.log(Level.INFO, "Response cache: {0}", wiki.getResponseCache());
 				try {
+					long seconds;
 					try {
-						long seconds = Long.parseLong(settings.getProperty("RunInterval", "3600"));
-						log.log(Level.INFO, "Transclusions of Template:Compression will be reprocessed in {0} seconds", seconds);
-						Thread.sleep(seconds * 1000);
+						seconds = Long.parseLong(settings.getProperty("RunInterval", "3600"));
 					} catch (final NumberFormatException e) {
 						log.log(Level.WARNING, "Incorrect run interval; please check RunInterval in $HOME/.imgoptbot.conf (using 3600 seconds)");
-						Thread.sleep(3600 * 1000);
+						seconds = 3600;
+					}
+					log.log(Level.INFO, "Transclusions of Template:Compression will be reprocessed in {0} seconds", seconds);
+					final long nextRun = System.currentTimeMillis() + seconds * 1000;
+					if (settings.getProperty("UploadPollInterval") != null) {
+						// Meanwhile, optimise new uploads as they appear in
+						// the upload log.
+						long pollSeconds;
+						try {
+							pollSeconds = Long.parseLong(settings.getProperty("UploadPollInterval"));
+						} catch (final NumberFormatException e) {
+							log.log(Level.WARNING, "Incorrect upload poll interval; please check UploadPollInterval in $HOME/.imgoptbot.conf (using 60 seconds)");
+							pollSeconds = 60;
+						}
+						if (pollSeconds <= 0) {
+							log.log(Level.WARNING, "Upload poll interval must be positive; please check UploadPollInterval in $HOME/.imgoptbot.conf (using 60 seconds)");
+							pollSeconds = 60;
+						}
+						final long pollInterval = pollSeconds * 1000;
+						while (System.currentTimeMillis() < nextRun) {
+							if (!optimiseNewUploads(wiki, settings))
+								continue loginLoop;
+							Thread.sleep(Math.max(0, Math.min(pollInterval, nextRun - System.currentTimeMillis())));
+						}
+					} else {
+						Thread.sleep(seconds * 1000);
 					}
 				} catch (final InterruptedException e) {
 					// don't care
@@ -252,6 +291,78 @@ public class ImageOptimisationBot {
 		}
 	}
 
+	/**
+	 * Optimises the files uploaded by other users since the last upload log
+	 * event seen, then remembers the position after that event in the
+	 * settings as <code>LastUploadLogTimestamp</code> and
+	 * <code>LastUploadLogID</code>, the latter being the IDs of the events
+	 * seen on that second separated by <code>|</code>. The first call only
+	 * remembers the current time.
+	 * 
+	 * @return <code>false</code> if the bot has been logged out and must log
+	 *         in again; <code>true</code> otherwise
+	 */
+	private static boolean optimiseNewUploads(final MediaWiki wiki, final Settings settings) {
+		if (settings.getProperty("LastUploadLogTimestamp") == null) {
+			settings.setProperty("LastUploadLogTimestamp", Long.toString(new Date().getTime()));
+			settings.setProperty("LastUploadLogID", "0");
+		}
+		final String[] lastLogIDStrings = settings.getProperty("LastUploadLogID", "0").split("\\|");
+		final long[] lastLogIDs = new long[lastLogIDStrings.length];
+		for (int i = 0; i < lastLogIDs.length; i++) {
+			lastLogIDs[i] = Long.parseLong(lastLogIDStrings[i]);
+		}
+		final MediaWiki.StreamPosition since = new MediaWiki.StreamPosition(new Date(Long.parseLong(settings.getProperty("LastUploadLogTimestamp"))), lastLogIDs);
+
+		try {
+			final MediaWiki.ResumableIterator<MediaWiki.LogEvent> uploads = wiki.resumeLogEvents(MediaWiki.StandardLogEntryType.UPLOAD, null, null, null, since, null);
+			while (uploads.hasNext()) {
+				final MediaWiki.LogEvent upload = uploads.next();
+				// Our own uploads are already optimised, and an upload whose
+				// action is hidden names no file.
+				if (!upload.isActionHidden() && !settings.getProperty("LoginName").equals(upload.getUserName())) {
+					try {
+						optimize(wiki, settings, upload.getFullPageName(), "(Automated) %C%s");
+					} catch (final MediaWiki.PermissionException e) {
+						log.log(Level.INFO, "Permission error occurred while optimising " + upload.getFullPageName(), e);
+						if (wiki.getCurrentUser().isAnonymous()) {
+							log.log(Level.INFO, "Logged out; attempting to log back in shortly");
+							return false;
+						}
+					} catch (MediaWiki.BlockException be) {
+						log.log(Level.SEVERE, "User blocked", be);
+						System.exit(1);
+					} catch (MediaWiki.ContentException ce) {
+						log.log(Level.WARNING, "Content judged invalid for re-upload", ce);
+					} catch (final Throwable t) {
+						// Skip this file, so that it does not hold back the
+						// uploads after it.
+						log.log(Level.WARNING, "An error occurred while optimising " + upload.getFullPageName() + "; skipping it", t);
+					}
+				}
+				final MediaWiki.StreamPosition position = uploads.getPosition();
+				final StringBuilder logIDs = new StringBuilder();
+				for (final long logID : position.getIDs()) {
+					if (logIDs.length() > 0) {
+						logIDs.append('|');
+					}
+					logIDs.append(logID);
+				}
+				settings.setProperty("LastUploadLogTimestamp", Long.toString(position.getTimestamp().getTime()));
+				settings.setProperty("LastUploadLogID", logIDs.toString());
+			}
+		} catch (final Throwable t) {
+			log.log(Level.INFO, "An error occurred while reading the upload log; retrying from the last upload seen shortly", t);
+		}
+
+		try {
+			settings.store();
+		} catch (final IOException e) {
+			log.log(Level.WARNING, "Cannot write LastUploadLogTimestamp to settings; new uploads may be retried on the next bot run", e);
+		}
+		return true;
+	}
+
 	/**
 	 * Settings are Properties that automatically load and store themselves into
 	 * files. Reads and writes ignore <tt>IOException</tt>s; the errors are
@@ -602,11 +713,37 @@ public class ImageOptimisationBot {
 							// optimizationResult is non-null.
 							final long newLength = localFile.length();
 							final boolean sizeReducedEnough = newLength < oldLength && newLength >= mandatorySize && ((1.0 - (double) (newLength - mandatorySize) / (double) (oldLength - mandatorySize)) * 100.0 >= minimumCompressionRatio), forced = !sizeReducedEnough && optimizationResult[1] != null;
+							List<String> duplicates = Collections.emptyList();
 							if (sizeReducedEnough || forced) {
+								// Don't send bytes that the wiki already has.
+								final FileInputStream localIn = new FileInputStream(localFile);
+								try {
+									final String localSha1 = MediaWiki.sha1(localIn.getChannel());
+									duplicates = wiki.findFilesBySHA1(localSha1).get(localSha1);
+								} finally {
+									localIn.close();
+								}
+							}
+							if (!duplicates.isEmpty()) {
+								log.log(Level.INFO, "The optimised version of {0} is identical to {1}; not uploading", new Object[] { fileFullName, duplicates });
+							} else if (sizeReducedEnough || forced) {
 								try {
 									log.log(Level.INFO, forced ? "Uploading a new version of {0} (forced: " + optimizationResult[1] + ")" : "Uploading a new version of {0}", fileFullName);
 									final String editReason = forced ? optimizationResult[1] : optimizationResult[0];
-									wiki.endUpload(uploadToken, new FileInputStream(localFile), String.format(editReasonFormat, editReason.charAt(0), editReason.substring(1)), null);
+									final String uploadComment = String.format(editReasonFormat, editReason.charAt(0), editReason.substring(1));
+									final int uploadChunkSize = Integer.parseInt(settings.getProperty("UploadChunkSize", "1048576"));
+									if (uploadChunkSize > 0 && newLength > uploadChunkSize) {
+										// Large images are sent in parts, so
+										// that a network error only costs one
+										// part.
+										final FileInputStream localIn = new FileInputStream(localFile);
+										try {
+											wiki.endChunkedUpload(wiki.startChunkedUpload(uploadToken, localIn.getChannel(), uploadChunkSize), uploadComment, null, null);
+										} finally {
+											localIn.close();
+										}
+									} else
+										wiki.endUpload(uploadToken, new FileInputStream(localFile), uploadComment, null);
 									log.log(Level.INFO, "Uploaded a new version of {0} ({1} -> {2} bytes)", new Object[] { fileFullName, oldLength, newLength });
 								} catch (final MediaWiki.ProtectionException ce) {
 									log.log(Level.WARNING, "Cannot upload to protected page " + fileFullName, ce);
@@ -9,7 +9,6 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
-import java.lang.ref.WeakReference;
 import java.net.URLDecoder;
 import java.util.ArrayList;
 import java.util.Date;
@@ -21,12 +20,10 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
-import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -88,21 +85,84 @@ public class VisualEditorFailFixer {
 		// Which wiki are we working on?
 		final MediaWiki wiki = new MediaWiki(settings.getProperty("Wiki"), settings.getProperty("ScriptPath", "")).setUsingCompression(true);
 
-		Map<String, WeakReference<ScheduledFuture<?>>> pendingPageEdits = new WeakHashMap<String, WeakReference<ScheduledFuture<?>>>();
-
 		EditDelayCalculator editDelayer = new EditDelayCalculator();
 
-		ScheduledExecutorService editorService = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
-			private final AtomicLong sequenceNumber = new AtomicLong();
-
-			public Thread newThread(Runnable r) {
-				return new Thread(r, "Editor thread " + sequenceNumber.incrementAndGet());
+		// Edits to different pages are made on several editor threads; those
+		// to the same page, one after the other on the same thread.
+		int editorThreads;
+		try {
+			editorThreads = Integer.parseInt(settings.getProperty("EditorThreads", "4"));
+			if (editorThreads <= 0)
+				throw new NumberFormatException(settings.getProperty("EditorThreads"));
+		} catch (NumberFormatException e) {
+			log.log(Level.WARNING, "EditorThreads in $HOME/.rtefixer.conf is not a positive number; using 4", e);
+			editorThreads = 4;
+		}
+		EditorPool editorPool = new EditorPool(editorThreads);
+
+		// Edits wait here, one per page, for their delay to pass. The wheel
+		// turns once every 17 minutes, just over the longest edit delay.
+		final MediaWiki.TimerWheel<String> pendingPageEdits = new MediaWiki.TimerWheel<String>(1000, 1024, editorPool);
+		pendingPageEdits.start();
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				log.log(Level.INFO, "Edits left pending: {0}", pendingPageEdits);
 			}
 		});
 
-		Thread recentChangesMonitorThread = new Thread(new RecentChangesMonitor(wiki, settings, pendingPageEdits, editorService, editDelayer), "Recent changes monitor thread");
-		recentChangesMonitorThread.start();
-		log.log(Level.INFO, "Recent changes monitor thread started");
+		MediaWiki.RecentChangesFeed recentChangesFeed;
+		if (settings.getProperty("ReplayFile") != null) {
+			// Replay changes recorded with RecordFile, for example to measure
+			// the bot with WriteStandInLatency.
+			String speed = settings.getProperty("ReplaySpeed", "1");
+			recentChangesFeed = wiki.createRecentChangesReplay(new File(settings.getProperty("ReplayFile")), speed.equals("max") ? Double.POSITIVE_INFINITY : Double.parseDouble(speed));
+		} else {
+			recentChangesFeed = wiki.createRecentChangesFeed(null /*- show user: all */, settings.getProperty("LoginName") /*- hide user: self */, true /*- show edits modifying pages */, true /*- show edits creating pages */, false /*- don't show log entries */, null /*- minor: don't care */, false /*- bot: only non-bots */, null /*- anon: don't care */, false /*- redirects: only non-redirects */, null /*- patrolled: don't filter */, MediaWiki.StandardNamespace.MAIN,
+					MediaWiki.StandardNamespace.USER);
+			// Resume where the last run stopped, so that pages changed while
+			// the bot was down are also checked.
+			File cursorFile = new File(settings.getProperty("CursorFile", new File(System.getProperty("user.home"), ".rtefixer.cursor").getPath()));
+			try {
+				recentChangesFeed.setCursorFile(cursorFile);
+			} catch (IOException e) {
+				log.log(Level.WARNING, "Cannot read the recent changes cursor from " + cursorFile + "; starting from now", e);
+				cursorFile.delete();
+				try {
+					recentChangesFeed.setCursorFile(cursorFile);
+				} catch (IOException e2) {
+					// The file was just deleted; nothing is read.
+				}
+			}
+		}
+		if (settings.getProperty("RecordFile") != null) {
+			try {
+				recentChangesFeed.subscribe(new MediaWiki.RecentChangesRecorder(new File(settings.getProperty("RecordFile"))), null /*- all changes */);
+			} catch (IOException e) {
+				log.log(Level.WARNING, "Cannot record recent changes to " + settings.getProperty("RecordFile"), e);
+			}
+		}
+		if (settings.getProperty("WriteStandInLatency") != null) {
+			// Answer edits locally instead of changing the wiki.
+			final MediaWiki.WriteStandIn standIn = new MediaWiki.WriteStandIn(Long.parseLong(settings.getProperty("WriteStandInLatency")));
+			wiki.setWriteStandIn(standIn);
+			recentChangesFeed.subscribe(standIn, null /*- all changes */);
+			Runtime.getRuntime().addShutdownHook(new Thread() {
+				@Override
+				public void run() {
+					log.log(Level.INFO, "Writes answered locally: {0}", standIn);
+				}
+			});
+		}
+		// Reversions are tracked on their own thread, without holding back
+		// the scheduling of edits.
+		ReversionTracker reversionTracker = new ReversionTracker(editDelayer);
+		recentChangesFeed.addEnricher(reversionTracker);
+		recentChangesFeed.subscribe(reversionTracker, null /*- all changes */);
+		final RecentChangesMonitor monitor = new RecentChangesMonitor(wiki, settings, recentChangesFeed, pendingPageEdits, editDelayer);
+		recentChangesFeed.subscribe(monitor, null /*- all changes */);
+		recentChangesFeed.start(null /*- from the cursor, or from now on */);
+		log.log(Level.INFO, "Recent changes monitor started");
 
 		BufferedReader keyboard = new BufferedReader(new InputStreamReader(System.in));
 		String line;
@@ -118,7 +178,9 @@ public class VisualEditorFailFixer {
 							MediaWiki.Revision r = ri.next();
 							if (r != null) {
 								if (!r.isContentHidden()) {
-									editorService.execute(new Edit(wiki, settings, line, wiki.getNamespaces().removeNamespacePrefix(line), wiki.getNamespaces().getNamespaceForPage(line), r.getRevisionID()));
+									// The edit made now supersedes any queued.
+									pendingPageEdits.cancel(line);
+									editorPool.execute(monitor.createEdit(line, wiki.getNamespaces().removeNamespacePrefix(line), wiki.getNamespaces().getNamespaceForPage(line), r.getRevisionID()));
 								} else {
 									log.log(Level.WARNING, "{0} r{1}'s content is unexpectedly hidden", new Object[] { line, r.getRevisionID() });
 								}
@@ -314,19 +376,133 @@ public class VisualEditorFailFixer {
 		}
 	}
 
-	public static class RecentChangesMonitor implements Runnable {
-		private static final long RC_CHECK_MILLIS = 1L * 60 * 1000;
-
+	/**
+	 * Schedules a check of each page changed, delayed by the
+	 * <tt>EditDelayCalculator</tt>. This listener does not make requests to
+	 * the wiki, so it keeps up with the feed even while a
+	 * <tt>ReversionTracker</tt> waits for revision information.
+	 * <p>
+	 * Each change is retained in the feed until an edit covering it has run,
+	 * so that the cursor saved by the feed does not pass changes whose edits
+	 * are still pending, and those are scheduled again after a restart.
+	 */
+	public static class RecentChangesMonitor implements MediaWiki.RecentChangesListener {
 		private final MediaWiki wiki;
 
 		private final Settings settings;
 
-		private final Map<String, WeakReference<ScheduledFuture<?>>> pendingPageEdits;
+		private final MediaWiki.RecentChangesFeed recentChangesFeed;
 
-		private final ScheduledExecutorService editorService;
+		private final MediaWiki.TimerWheel<String> pendingPageEdits;
 
 		private final EditDelayCalculator editDelayer;
 
+		/**
+		 * The revisions for which an edit was already queued while this bot
+		 * runs, so that a change delivered twice does not queue a second edit.
+		 * It is kept in memory only; after a restart, the saved cursor of the
+		 * feed is what keeps changes from being delivered again.
+		 */
+		private final MediaWiki.SlidingIDSet queuedRevisions = new MediaWiki.SlidingIDSet(1 << 16);
+
+		/**
+		 * The changes retained in the feed for each page, until an edit to
+		 * the page for the same or a later revision has run. Guarded by
+		 * itself.
+		 */
+		private final Map<String, List<MediaWiki.RecentChange>> retainedChanges = new TreeMap<String, List<MediaWiki.RecentChange>>();
+
+		public RecentChangesMonitor(final MediaWiki wiki, final Settings settings, final MediaWiki.RecentChangesFeed recentChangesFeed, final MediaWiki.TimerWheel<String> pendingPageEdits, final EditDelayCalculator editDelayer) {
+			this.wiki = wiki;
+			this.settings = settings;
+			this.recentChangesFeed = recentChangesFeed;
+			this.pendingPageEdits = pendingPageEdits;
+			this.editDelayer = editDelayer;
+		}
+
+		public void recentChange(MediaWiki.RecentChange rc) {
+			processRecentChange(rc);
+		}
+
+		public void pollFailed(Throwable t) {
+			log.log(Level.WARNING, "Error while getting RecentChanges; retrying shortly", t);
+		}
+
+		protected void processRecentChange(MediaWiki.RecentChange rc) {
+			if (!queuedRevisions.add(rc.getNewRevisionID()))
+				return;
+
+			recentChangesFeed.retain(rc);
+			synchronized (retainedChanges) {
+				List<MediaWiki.RecentChange> pageChanges = retainedChanges.get(rc.getFullPageName());
+				if (pageChanges == null) {
+					pageChanges = new ArrayList<MediaWiki.RecentChange>();
+					retainedChanges.put(rc.getFullPageName(), pageChanges);
+				}
+				pageChanges.add(rc);
+			}
+
+			/*
+			 * Queue a check and/or edit for Visual Editor failures. This check
+			 * will run after a delay controlled by how swift vandalism
+			 * reversions were recently.
+			 */
+			// A check already queued for this very page is replaced, unless
+			// it is for a later revision, whose edit then releases this change.
+			if (pendingPageEdits.schedule(rc.getFullPageName(), rc.getNewRevisionID(), createEdit(rc.getFullPageName(), rc.getBasePageName(), rc.getNamespace(), rc.getNewRevisionID()), editDelayer.getEditDelayMillis())) {
+				log.log(Level.INFO, "Queued an edit for {0} r{1}; {2} pending", new Object[] { rc.getFullPageName(), rc.getNewRevisionID(), pendingPageEdits.size() });
+			}
+		}
+
+		/**
+		 * Creates an <tt>Edit</tt> of a page which, once it has run, releases
+		 * the changes to the page up to its revision from the feed.
+		 */
+		public Edit createEdit(final String fullPageName, final String basePageName, final MediaWiki.Namespace namespace, final long expectedRevisionID) {
+			return new Edit(wiki, settings, fullPageName, basePageName, namespace, expectedRevisionID) {
+				@Override
+				public void run() {
+					try {
+						super.run();
+					} finally {
+						release(fullPageName, expectedRevisionID);
+					}
+				}
+			};
+		}
+
+		/**
+		 * Releases the changes to a page up to a revision from the feed.
+		 */
+		private void release(final String fullPageName, final long revisionID) {
+			synchronized (retainedChanges) {
+				final List<MediaWiki.RecentChange> pageChanges = retainedChanges.get(fullPageName);
+				if (pageChanges == null)
+					return;
+				final Iterator<MediaWiki.RecentChange> rci = pageChanges.iterator();
+				while (rci.hasNext()) {
+					final MediaWiki.RecentChange rc = rci.next();
+					if (rc.getNewRevisionID() <= revisionID) {
+						recentChangesFeed.release(rc);
+						rci.remove();
+					}
+				}
+				if (pageChanges.isEmpty()) {
+					retainedChanges.remove(fullPageName);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finds rollbacks and undos of other users' edits in recent changes and
+	 * adds them to the <tt>EditDelayCalculator</tt>. It is also an enricher of
+	 * the feed, so that the revisions it checks are requested in batches with
+	 * each poll.
+	 */
+	public static class ReversionTracker implements MediaWiki.RecentChangesListener, MediaWiki.RecentChangeEnricher {
+		private final EditDelayCalculator editDelayer;
+
 		/**
 		 * Matches the edit summary used by the rollback tool. Edit to match the
 		 * rollback message on your wiki language, if needed.
@@ -352,58 +528,11 @@ public class VisualEditorFailFixer {
 		 */
 		private static final Pattern undoMatcher = Pattern.compile("\\bUndid revision ([0-9]+) by \\[\\[Special:Contributions/([^]|]+)\\|\\2\\]\\] \\(\\[\\[User[ _]talk:\\2\\|Talk\\]\\]\\)(?:$|\\b|\\s)");
 
-		public RecentChangesMonitor(final MediaWiki wiki, final Settings settings, final Map<String, WeakReference<ScheduledFuture<?>>> pendingPageEdits, final ScheduledExecutorService editorService, final EditDelayCalculator editDelayer) {
-			this.wiki = wiki;
-			this.settings = settings;
-			this.pendingPageEdits = pendingPageEdits;
-			this.editorService = editorService;
+		public ReversionTracker(final EditDelayCalculator editDelayer) {
 			this.editDelayer = editDelayer;
 		}
 
-		public void run() {
-			/*
-			 * Start getting RecentChanges from now.
-			 */
-			Date earliest = new Date();
-			long lastRcidSeen = -1L;
-			while (true) /*- re-get RecentChanges loop */{
-				Iterator<MediaWiki.RecentChange> rci = wiki.recentChanges(earliest, null /*- no latest */, true /*- always chronological */, 10 /*- changes to stream at once */, null /*- show user: all */, settings.getProperty("LoginName") /*- hide user: self */, true /*- show edits modifying pages */, true /*- show edits creating pages */, false /*- don't show log entries */, null /*- minor: don't care */, false /*- bot: only non-bots */, null /*- anon: don't care */,
-						false /*- redirects: only non-redirects */, null /*- patrolled: don't filter */, false /*- getPatrolInformation */, MediaWiki.StandardNamespace.MAIN, MediaWiki.StandardNamespace.USER);
-
-				MediaWiki.RecentChange rc;
-
-				while (true) /*- re-get current iteration of RecentChanges loop */{
-					try {
-						while (rci.hasNext()) {
-							rc = rci.next();
-
-							// Update the time, advancing in the RecentChanges
-							// stream.
-							if (rc.getRcid() > lastRcidSeen) {
-								processRecentChange(rc);
-								if (rc.getTimestamp().compareTo(earliest) > 0)
-									earliest = rc.getTimestamp();
-								lastRcidSeen = rc.getRcid();
-							}
-						}
-
-						break; // on success
-					} catch (MediaWiki.IterationException ie) {
-						log.log(Level.WARNING, "Error while iterating over RecentChanges; retrying shortly", ie.getCause());
-						shortDelay();
-					}
-				}
-
-				try {
-					Thread.sleep(RC_CHECK_MILLIS);
-				} catch (InterruptedException e) {
-					log.log(Level.WARNING, "Thread {0} interrupted", Thread.currentThread().getName());
-					return;
-				}
-			}
-		}
-
-		protected void processRecentChange(MediaWiki.RecentChange rc) {
+		public void recentChange(MediaWiki.RecentChange rc) {
 			if (rc.getChangeType().equals(MediaWiki.RecentChangeType.EDIT) && rc.getComment() != null) {
 				long parentRevID = 0L;
 				String undoneUser = null;
@@ -422,56 +551,96 @@ public class VisualEditorFailFixer {
 				}
 
 				if (parentRevID != 0L && undoneUser != null) {
-					Iterator<MediaWiki.Revision> ri = wiki.getRevisions(rc.getOldRevisionID());
-					while (true) /*- retry get previous revision loop */{
-						try {
-							if (ri.hasNext()) {
-								MediaWiki.Revision r = ri.next();
-
-								if (r != null && !r.isUserNameHidden() && r.getUserName().equals(undoneUser)) {
-									/*
-									 * The revision was probably indeed undone
-									 * from this user. Add a reversion, done as
-									 * of the recent change, delayed by the time
-									 * between the undone revision and the
-									 * recent change.
-									 */
-									long reversionMillis = rc.getTimestamp().getTime() - r.getTimestamp().getTime();
-									editDelayer.addReversion(rc.getTimestamp(), reversionMillis);
-									log.log(Level.INFO, "{0}: {1}''s r{2} reverts {3}''s r{4} after {5} seconds", new Object[] { rc.getFullPageName(), rc.getUserName(), rc.getNewRevisionID(), undoneUser, parentRevID, reversionMillis / 1000 });
-								}
-							}
-
-							break; // on success
-						} catch (MediaWiki.IterationException ie) {
-							log.log(Level.WARNING, "Error while getting information about revision " + parentRevID + ", reportedly created by " + undoneUser + "; retrying shortly", ie.getCause());
-							shortDelay();
-						}
+					// Requested by the feed along with the other changes.
+					MediaWiki.Revision r = rc.getRelatedRevision(rc.getOldRevisionID());
+
+					if (r != null && !r.isUserNameHidden() && r.getUserName().equals(undoneUser)) {
+						/*
+						 * The revision was probably indeed undone from this
+						 * user. Add a reversion, done as of the recent change,
+						 * delayed by the time between the undone revision and
+						 * the recent change.
+						 */
+						long reversionMillis = rc.getTimestamp().getTime() - r.getTimestamp().getTime();
+						editDelayer.addReversion(rc.getTimestamp(), reversionMillis);
+						log.log(Level.INFO, "{0}: {1}''s r{2} reverts {3}''s r{4} after {5} seconds", new Object[] { rc.getFullPageName(), rc.getUserName(), rc.getNewRevisionID(), undoneUser, parentRevID, reversionMillis / 1000 });
 					}
 				}
 			}
+		}
 
-			/*
-			 * Regardless of whether this was a reversion, queue a check and/or
-			 * edit for Visual Editor failures. This check will run after a
-			 * delay controlled by how swift vandalism reversions were recently.
-			 */
-			// 1. Is there already a check queued for this very page?
-			if (pendingPageEdits.containsKey(rc.getFullPageName())) {
-				WeakReference<ScheduledFuture<?>> pageEditTaskRef = pendingPageEdits.get(rc.getFullPageName());
-				if (pageEditTaskRef != null) {
-					ScheduledFuture<?> pageEditTask = pageEditTaskRef.get();
-					if (pageEditTask != null) {
-						// Yes. Remove it.
-						pageEditTask.cancel(false);
-						pendingPageEdits.remove(rc.getFullPageName());
+		public long[] getRevisionIDs(MediaWiki.RecentChange rc) {
+			// The revision replaced by a reversion tells whose edit was
+			// reverted.
+			if (rc.getChangeType().equals(MediaWiki.RecentChangeType.EDIT) && rc.getComment() != null && (rollbackMatcher.matcher(rc.getComment()).find() || undoMatcher.matcher(rc.getComment()).find()))
+				return new long[] { rc.getOldRevisionID() };
+			return null;
+		}
+
+		public String[] getPageNames(MediaWiki.RecentChange rc) {
+			return null;
+		}
+
+		public void pollFailed(Throwable t) {
+			// RecentChangesMonitor reports these.
+		}
+	}
+
+	/**
+	 * Runs <tt>Edit</tt>s on a fixed set of editor threads, each with its own
+	 * queue. An <tt>Edit</tt> goes to the thread chosen by the hash of its
+	 * full page name, so edits to the same page run one after the other, in
+	 * the order in which they were submitted, while edits to different pages
+	 * can run at the same time.
+	 * <p>
+	 * <tt>MediaWiki</tt> still sends one request at a time, but it releases its
+	 * network lock while the request governor makes a request wait, and an
+	 * <tt>Edit</tt> applies its rules without holding the lock. One editor's
+	 * rule matching and pacing thus overlap with another editor's requests.
+	 */
+	public static class EditorPool implements Executor {
+		private final ExecutorService[] workers;
+
+		/**
+		 * The worker to run the next task that is not an <tt>Edit</tt>.
+		 */
+		private final AtomicLong nextWorker = new AtomicLong();
+
+		/**
+		 * @param threads
+		 *            The number of editor threads.
+		 */
+		public EditorPool(final int threads) {
+			if (threads <= 0)
+				throw new IllegalArgumentException("threads " + threads + " <= 0");
+			workers = new ExecutorService[threads];
+			for (int i = 0; i < threads; i++) {
+				final String name = "Editor thread " + (i + 1);
+				workers[i] = Executors.newSingleThreadExecutor(new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						return new Thread(r, name);
 					}
-				}
+				});
+			}
+		}
+
+		/**
+		 * Runs a task on an editor thread. If it is an <tt>Edit</tt>, it runs
+		 * on the thread that runs the other <tt>Edit</tt>s of the same page.
+		 */
+		public void execute(final Runnable task) {
+			final int index;
+			if (task instanceof Edit) {
+				index = (((Edit) task).getFullPageName().hashCode() & 0x7FFFFFFF) % workers.length;
+			} else {
+				index = (int) (nextWorker.getAndIncrement() % workers.length);
 			}
+			workers[index].execute(task);
+		}
 
-			// 2. Queue a check for this page.
-			pendingPageEdits.put(rc.getFullPageName(), new WeakReference<ScheduledFuture<?>>(editorService.schedule(new Edit(wiki, settings, rc.getFullPageName(), rc.getBasePageName(), rc.getNamespace(), rc.getNewRevisionID()), editDelayer.getEditDelayMillis(), TimeUnit.MILLISECONDS)));
-			log.log(Level.INFO, "Queued an edit for {0} r{1}", new Object[] { rc.getFullPageName(), rc.getNewRevisionID() });
+		@Override
+		public String toString() {
+			return String.format("EditorPool[%d threads]", workers.length);
 		}
 	}
 
@@ -568,7 +737,8 @@ public class VisualEditorFailFixer {
 		/**
 		 * <tt>Edit</tt> instances synchronise on this object to preclude other
 		 * <tt>Edit</tt> instances from logging in between the anon check and
-		 * their login attempts.
+		 * their login attempts. Edits running on the threads of an
+		 * <tt>EditorPool</tt> thus share one login.
 		 */
 		private static final Object loginSync = new Object();
 
@@ -581,6 +751,10 @@ public class VisualEditorFailFixer {
 			this.expectedRevisionID = expectedRevisionID;
 		}
 
+		public String getFullPageName() {
+			return fullPageName;
+		}
+
 		public void run() {
 			log.log(Level.INFO, "Processing {0} r{1}", new Object[] { fullPageName, expectedRevisionID });
 			// Multiple Visual Editor failures can be checked for, then fixed.
@@ -648,53 +822,48 @@ public class VisualEditorFailFixer {
 				}
 			}
 
-			// Get an edit token and the page's content.
+			// Get an edit token and the page's content in one request.
 			MediaWiki.EditToken editToken;
-
-			while (true) /*- edit token retry loop */{
-				try {
-					editToken = wiki.startEdit(fullPageName);
-					break;
-				} catch (IOException e) {
-					log.log(Level.WARNING, "Network error occurred while gathering an edit token; retrying shortly", e);
-					shortDelay();
-				} catch (MediaWiki.BlockException e) {
-					log.log(Level.SEVERE, "User blocked; please check its block log", e);
-					System.exit(1);
-					return;
-				} catch (MediaWiki.MediaWikiException e) {
-					log.log(Level.WARNING, "Network error occurred while gathering an edit token; retrying shortly", e);
-					shortDelay();
-				}
-			}
-
 			String oldContent = null;
 
-			while (true) /*- content retry loop */{
+			while (true) /*- preparation retry loop */{
 				try {
-					Iterator<MediaWiki.Revision> ri = wiki.getLastRevision(true /*- get content immediately */, fullPageName);
-					if (ri.hasNext()) {
-						MediaWiki.Revision r = ri.next();
-						if (r != null) {
-							if (r.getRevisionID() == expectedRevisionID) {
-								if (!r.isContentHidden()) {
-									oldContent = r.getContent();
-								} else {
-									log.log(Level.WARNING, "{0} r{1}'s content is unexpectedly hidden", new Object[] { fullPageName, expectedRevisionID });
-									return;
-								}
+					Iterator<MediaWiki.EditPreparation> pi = wiki.prepareEdit(fullPageName);
+					MediaWiki.EditPreparation p = pi.next();
+					if (p == null) {
+						log.log(Level.WARNING, "{0} has become an invalid title after r{1}", new Object[] { fullPageName, expectedRevisionID });
+						return;
+					}
+					if (!p.isSuccessful()) {
+						log.log(Level.WARNING, "Cannot edit " + fullPageName, p.getFailure());
+						return;
+					}
+					editToken = p.getEditToken();
+					MediaWiki.Revision r = p.getLastRevision();
+					if (r != null) {
+						if (r.getRevisionID() == expectedRevisionID) {
+							if (!r.isContentHidden()) {
+								oldContent = r.getContent();
 							} else {
-								log.log(Level.INFO, "{0} was edited after r{1}", new Object[] { fullPageName, expectedRevisionID });
+								log.log(Level.WARNING, "{0} r{1}'s content is unexpectedly hidden", new Object[] { fullPageName, expectedRevisionID });
 								return;
 							}
 						} else {
-							log.log(Level.WARNING, "{0} has become missing after r{1}", new Object[] { fullPageName, expectedRevisionID });
+							log.log(Level.INFO, "{0} was edited after r{1}", new Object[] { fullPageName, expectedRevisionID });
 							return;
 						}
+					} else {
+						log.log(Level.WARNING, "{0} has become missing after r{1}", new Object[] { fullPageName, expectedRevisionID });
+						return;
 					}
 					break;
 				} catch (MediaWiki.IterationException ie) {
-					log.log(Level.WARNING, "Network error occurred while getting revision content; retrying shortly", ie.getCause());
+					if (ie.getCause() instanceof MediaWiki.BlockException) {
+						log.log(Level.SEVERE, "User blocked; please check its block log", ie.getCause());
+						System.exit(1);
+						return;
+					}
+					log.log(Level.WARNING, "Network error occurred while preparing the edit; retrying shortly", ie.getCause());
 					shortDelay();
 				} catch (IOException e) {
 					log.log(Level.WARNING, "Network error occurred while getting revision content; retrying shortly", e);
@@ -892,7 +1061,7 @@ public class VisualEditorFailFixer {
 
 				while (true) /*- edit retry loop */{
 					try {
-						wiki.replacePage(editToken, newContent, "Visual Editor glitches fixed: " + fixed, true /*- bot */, true /*- minor */);
+						wiki.replacePageChanges(editToken, oldContent, newContent, "Visual Editor glitches fixed: " + fixed, true /*- bot */, true /*- minor */);
 						log.log(Level.INFO, "{0} r{1} has been edited to fix {2}", new Object[] { fullPageName, expectedRevisionID, fixed });
 						break;
 					} catch (IOException e) {
@@ -1,27 +1,54 @@
 package org.mediawiki;
 
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.InvalidObjectException;
 import java.io.ObjectInputStream;
 import java.io.ObjectInputValidation;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.io.Serializable;
+import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
 import java.net.HttpURLConnection;
 import java.net.ProtocolException;
 import java.net.URL;
+import java.net.URLDecoder;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -31,22 +58,47 @@ import java.util.Set;
 import java.util.TimeZone;
 import java.util.TreeMap;
 import java.util.TreeSet;
-import java.util.concurrent.locks.Lock;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 /*-
@@ -67,7 +119,6 @@ public class MediaWiki implements Serializable, ObjectInputValidation {
 	// TODO Add parse-pagetext
 	// TODO Add block/unblock
 	// TODO Add undelete
-	// TODO Add watch-add/watch-del/watch-list/watch-newedits
 	// TODO Add Special:Contributions
 	// TODO Add patrol
 	// TODO Add setSecure
@@ -95,6 +146,12 @@ public class MediaWiki implements Serializable, ObjectInputValidation {
 	 */
 	private transient DocumentBuilder documentBuilder;
 
+	/**
+	 * Reads replies from the MediaWiki API in XML format as they arrive, for
+	 * replies that are too large to be parsed into a <tt>Document</tt>.
+	 */
+	private transient XMLInputFactory xmlInputFactory;
+
 	/**
 	 * Contains cookies set by the wiki. An implementation of <tt>Map</tt>
 	 * placed here must also be <tt>Serializable</tt>.
@@ -116,6 +173,80 @@ public class MediaWiki implements Serializable, ObjectInputValidation {
 	 */
 	private Integer maxLag;
 
+	/**
+	 * Whether revision content retrieved by this <tt>MediaWiki</tt> is kept
+	 * compressed outside of the Java heap.
+	 */
+	private boolean compressRevisionContent;
+
+	/**
+	 * The cache that stores replies to read-only API requests made by this
+	 * <tt>MediaWiki</tt>. This field is not serialized; a deserialized
+	 * <tt>MediaWiki</tt> starts without a response cache.
+	 * <p>
+	 * If this field is <code>null</code>, the feature is disabled.
+	 */
+	private transient MediaWiki.ResponseCache responseCache;
+
+	/**
+	 * The governor that paces requests made by this <tt>MediaWiki</tt>.
+	 */
+	private transient MediaWiki.RequestGovernor requestGovernor;
+
+	/**
+	 * The stand-in that answers edits and uploads made by this
+	 * <tt>MediaWiki</tt> instead of the wiki. This field is not serialized.
+	 * <p>
+	 * If this field is <code>null</code>, the feature is disabled.
+	 */
+	private transient volatile MediaWiki.WriteStandIn writeStandIn;
+
+	/**
+	 * The class of the request last sent by this <tt>MediaWiki</tt> on each
+	 * thread, and whether the governor was told that the wiki refused it. A
+	 * reply is checked for errors on the thread that requested it, so each
+	 * thread only sees its own request.
+	 */
+	private transient ThreadLocal<MediaWiki.RequestRecord> lastRequest;
+
+	/**
+	 * The session-wide token used for edits, moves, deletions, protections and
+	 * uploads, or <code>null</code> if it is not yet known. It is learned from
+	 * the replies to <code>startEdit</code> and similar methods, and forgotten
+	 * when the wiki reports it as invalid or the session changes.
+	 */
+	private transient String sharedToken;
+
+	/**
+	 * The difference between the clock of the wiki and the local clock, in
+	 * milliseconds, as of the last time <code>sharedToken</code> was learned.
+	 */
+	private transient long serverClockOffset;
+
+	/**
+	 * Canonical copies of the titles, namespace prefixes and user names found
+	 * in API replies, shared by all result objects created by this
+	 * <tt>MediaWiki</tt>. Strings are removed from the pool once no result
+	 * object refers to them anymore.
+	 * <p>
+	 * The pool is split into <code>STRING_POOL_STRIPES</code> maps selected
+	 * by hash code, each with its own lock, so that the threads reading
+	 * feeds, queues and bulk results concurrently rarely wait for each other.
+	 */
+	private transient Map<String, WeakReference<String>>[] stringPool;
+
+	/**
+	 * The number of separately locked maps in the string pool. This must be
+	 * a power of two.
+	 */
+	private static final int STRING_POOL_STRIPES = 16;
+
+	/**
+	 * The number of edits that were not sent to the wiki because they would
+	 * not have changed the page.
+	 */
+	private transient AtomicLong skippedEditCount;
+
 	/**
 	 * Lock used to ensure that only one thread can write to the preference
 	 * variables of this <tt>MediaWiki</tt>. To prevent deadlock in this class,
@@ -131,23 +262,47 @@ public class MediaWiki implements Serializable, ObjectInputValidation {
 	 * deadlock in this class, if an operation needs to lock both
 	 * <code>preferenceLock</code> and <code>networkLock</code>,
 	 * <code>networkLock</code> must be acquired first.
+	 * <p>
+	 * The lock is released while a thread waits for the request governor or
+	 * a write stand-in, so that a class of requests being paused does not
+	 * hold back the others, but only if the thread holds it once. A method
+	 * whose requests must not have other threads' requests in between, such
+	 * as <code>logIn</code> with its token round trip, holds it twice. Other
+	 * methods that make several requests may see other threads' requests
+	 * between theirs; this is harmless for tokens, which belong to the
+	 * session. The <code>start</code> and <code>end</code> methods of an
+	 * action are separate calls, so they never held the lock throughout.
 	 */
-	private transient Lock networkLock;
+	private transient ReentrantLock networkLock;
 
 	// - - - CONSTRUCTORS, INITIALIZATION AND SERIALIZATION CODE - - -
 
 	protected void init() {
-		final DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
-		documentBuilderFactory.setCoalescing(true);
-		documentBuilderFactory.setIgnoringComments(true);
 		try {
-			documentBuilder = documentBuilderFactory.newDocumentBuilder();
+			documentBuilder = createDocumentBuilder();
 		} catch (final ParserConfigurationException e) {
 			throw new ExceptionInInitializerError(e);
 		}
+		xmlInputFactory = XMLInputFactory.newInstance();
+		xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
 		preferenceLock = new ReentrantReadWriteLock();
 		networkLock = new ReentrantLock();
+		lastRequest = new ThreadLocal<MediaWiki.RequestRecord>();
 		random = new Random();
+		stringPool = createStringPool();
+		requestGovernor = new MediaWiki.RequestGovernor();
+		skippedEditCount = new AtomicLong();
+	}
+
+	/**
+	 * Creates a <tt>DocumentBuilder</tt> configured to parse replies from the
+	 * API.
+	 */
+	private static DocumentBuilder createDocumentBuilder() throws ParserConfigurationException {
+		final DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+		documentBuilderFactory.setCoalescing(true);
+		documentBuilderFactory.setIgnoringComments(true);
+		return documentBuilderFactory.newDocumentBuilder();
 	}
 
 	/**
@@ -273,11 +428,14 @@ public class MediaWiki implements Serializable, ObjectInputValidation {
 	 * seconds. The return value is <code>null</code> if this feature is not
 	 * enabled.
 	 * <p>
-	 * If this feature is enabled, all actions may throw
+	 * If this feature is enabled, requests refused due to replication lag are
+	 * paused and sent again by the request governor of this <tt>MediaWiki</tt>.
+	 * Once the governor gives up, actions throw
 	 * <tt>MediaWiki.ActionDelayException</tt>.
 	 * 
 	 * @return the maximum database replication lag allowed for all requests, in
 	 *         seconds
+	 * @see #getRequestGovernor()
 	 */
 	public Integer getMaxLag() {
 		preferenceLock.readLock().lock();
@@ -297,9 +455,12 @@ public class MediaWiki implements Serializable, ObjectInputValidation {
 	 *            requests, in seconds. This parameter is <code>null</code> to
 	 *            disable the feature.
 	 *            <p>
-	 *            If this feature is enabled, all actions may throw
-	 *            <tt>MediaWiki.ActionDelayException</tt>.
+	 *            If this feature is enabled, requests refused due to
+	 *            replication lag are paused and sent again by the request
+	 *            governor of this <tt>MediaWiki</tt>. Once the governor gives
+	 *            up, actions throw <tt>MediaWiki.ActionDelayException</tt>.
 	 * @return this <tt>MediaWiki</tt>
+	 * @see #getRequestGovernor()
 	 */
 	public MediaWiki setMaxLag(final Integer newValue) {
 		preferenceLock.writeLock().lock();
@@ -311,6 +472,159 @@ public class MediaWiki implements Serializable, ObjectInputValidation {
 		return this;
 	}
 
+	/**
+	 * Returns the governor that paces requests made by this
+	 * <tt>MediaWiki</tt>, which can be used to set the minimum interval
+	 * between requests of each class and the number of times refused requests
+	 * are sent again. The governor is shared by all threads using this
+	 * <tt>MediaWiki</tt>.
+	 * 
+	 * @return the governor that paces requests made by this <tt>MediaWiki</tt>
+	 */
+	public MediaWiki.RequestGovernor getRequestGovernor() {
+		return requestGovernor;
+	}
+
+	/**
+	 * Returns whether revision content retrieved by this <tt>MediaWiki</tt> is
+	 * kept compressed outside of the Java heap.
+	 * 
+	 * @return whether revision content retrieved by this <tt>MediaWiki</tt> is
+	 *         kept compressed outside of the Java heap
+	 */
+	public boolean isCompressingRevisionContent() {
+		preferenceLock.readLock().lock();
+		try {
+			return compressRevisionContent;
+		} finally {
+			preferenceLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Sets whether revision content retrieved by this <tt>MediaWiki</tt> is to
+	 * be kept compressed outside of the Java heap.
+	 * <p>
+	 * If this feature is enabled, the content stored in a <tt>Revision</tt> is
+	 * compressed with <tt>Deflater</tt> as UTF-8 into a direct
+	 * <tt>ByteBuffer</tt>. It is decompressed on each call to
+	 * <code>Revision.getContent</code>, or read incrementally through
+	 * <code>Revision.getContentReader</code>. This allows iterating over long
+	 * page histories with <code>getContentImmediately</code> while keeping
+	 * the revisions without exhausting the heap, at the cost of processor
+	 * time on each access. Direct buffers count against the limit set by
+	 * the <tt>-XX:MaxDirectMemorySize</tt> option of the virtual machine,
+	 * which may need raising to keep very many revisions.
+	 * <p>
+	 * Content requested along with its revision, as with
+	 * <code>getContentImmediately</code>, is compressed after the whole
+	 * reply has been parsed, so it is briefly held as a <tt>String</tt>.
+	 * Content requested later by a <tt>Revision</tt> is compressed as it is
+	 * read from the reply, and is never held whole on the heap.
+	 * 
+	 * @param newValue
+	 *            <code>true</code> if revision content is to be kept
+	 *            compressed; <code>false</code> if it is to be kept as a
+	 *            <tt>String</tt>. The new value applies to revisions whose
+	 *            content is stored afterwards.
+	 * @return this <tt>MediaWiki</tt>
+	 * @see MediaWiki.Revision#getContentReader()
+	 */
+	public MediaWiki setCompressingRevisionContent(final boolean newValue) {
+		preferenceLock.writeLock().lock();
+		try {
+			compressRevisionContent = newValue;
+		} finally {
+			preferenceLock.writeLock().unlock();
+		}
+		return this;
+	}
+
+	/**
+	 * Returns the cache that stores replies to read-only API requests made by
+	 * this <tt>MediaWiki</tt>. The return value is <code>null</code> if this
+	 * feature is not enabled.
+	 * 
+	 * @return the cache that stores replies to read-only API requests made by
+	 *         this <tt>MediaWiki</tt>
+	 */
+	public MediaWiki.ResponseCache getResponseCache() {
+		preferenceLock.readLock().lock();
+		try {
+			return responseCache;
+		} finally {
+			preferenceLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Sets the cache that is to store replies to read-only API requests made by
+	 * this <tt>MediaWiki</tt>.
+	 * <p>
+	 * When a response cache is set, replies that are still fresh according to
+	 * the cache's time-to-live policies are returned without contacting the
+	 * wiki, and stale replies carrying an <tt>ETag</tt> or
+	 * <tt>Last-Modified</tt> header are revalidated with a conditional GET
+	 * request. Requests for tokens, logins and logouts, as well as all POST
+	 * requests, are never cached, and neither are replies containing an API
+	 * error. The cache is cleared whenever this <tt>MediaWiki</tt> logs in or
+	 * out.
+	 * <p>
+	 * Only requests covered by a time-to-live policy of the cache are sent
+	 * with the <tt>maxage</tt> and <tt>smaxage</tt> parameters. While no
+	 * response cache is set, request URLs are left unchanged.
+	 * 
+	 * @param newValue
+	 *            The new response cache. This parameter is <code>null</code> to
+	 *            disable the feature. A response cache may be shared by
+	 *            multiple <tt>MediaWiki</tt> objects only if they represent the
+	 *            same wiki and are logged in as the same user.
+	 * @return this <tt>MediaWiki</tt>
+	 */
+	public MediaWiki setResponseCache(final MediaWiki.ResponseCache newValue) {
+		preferenceLock.writeLock().lock();
+		try {
+			responseCache = newValue;
+		} finally {
+			preferenceLock.writeLock().unlock();
+		}
+		return this;
+	}
+
+	/**
+	 * Returns the stand-in that answers edits and uploads made by this
+	 * <tt>MediaWiki</tt> instead of the wiki. The return value is
+	 * <code>null</code> if this feature is not enabled.
+	 * 
+	 * @return the stand-in that answers edits and uploads made by this
+	 *         <tt>MediaWiki</tt> instead of the wiki
+	 */
+	public MediaWiki.WriteStandIn getWriteStandIn() {
+		return writeStandIn;
+	}
+
+	/**
+	 * Sets the stand-in that is to answer edits and uploads made by this
+	 * <tt>MediaWiki</tt> instead of the wiki, so that bots can be measured
+	 * without changing the wiki. Edits and uploads are then paced by the
+	 * request governor as usual, but never sent. Reads, including those made
+	 * to prepare edits, are still sent to the wiki, as are logins, purges and
+	 * changes to the watchlist.
+	 * <p>
+	 * While a stand-in is set, the other write actions, namely rollbacks,
+	 * deletions, moves, protections and user rights changes, are refused
+	 * with <tt>IllegalStateException</tt> instead of being made on the wiki.
+	 * 
+	 * @param newValue
+	 *            The new stand-in. This parameter is <code>null</code> to send
+	 *            edits and uploads to the wiki again.
+	 * @return this <tt>MediaWiki</tt>
+	 */
+	public MediaWiki setWriteStandIn(final MediaWiki.WriteStandIn newValue) {
+		writeStandIn = newValue;
+		return this;
+	}
+
 	// - - - INFORMATION ON MEDIAWIKI OBJECT - - -
 
 	/**
@@ -338,6 +652,19 @@ public class MediaWiki implements Serializable, ObjectInputValidation {
 		return scriptPath;
 	}
 
+	/**
+	 * Returns the number of edits that this <tt>MediaWiki</tt> did not send to
+	 * the wiki because their text was the same as the page's current text.
+	 * 
+	 * @return the number of edits that this <tt>MediaWiki</tt> did not send to
+	 *         the wiki because their text was the same as the page's current
+	 *         text
+	 * @see #prepareEdit(String...)
+	 */
+	public long getSkippedEditCount() {
+		return skippedEditCount.get();
+	}
+
 	// - - - USER LOGIN AND LOGOUT - - -
 
 	/**
@@ -414,6 +741,9 @@ public class MediaWiki implements Serializable, ObjectInputValidation {
 		final String url = createApiGetUrl(getParams);
 
 		int retry = 0;
+		// Held twice, so that the lock is not released to other threads
+		// between the token request and the login request.
+		networkLock.lock();
 		networkLock.lock();
 		try {
 			do {
@@ -429,8 +759,11 @@ public class MediaWiki implements Serializable, ObjectInputValidation {
 					if (result.equals("NeedToken")) {
 						retry++;
 						postParams.put("lgtoken", loginTag.getAttribute("token"));
-					} else if (result.equals("Success"))
+					} else if (result.equals("Success")) {
+						clearResponseCache();
+						forgetSharedToken();
 						return this;
+					}
 					else if (result.equals("Illegal"))
 						throw new MediaWiki.LoginFailureException("Disallowed username: " + user);
 					else if (result.equals("NotExists"))
@@ -449,6 +782,7 @@ public class MediaWiki implements Serializable, ObjectInputValidation {
 			} while (retry <= 1);
 		} finally {
 			networkLock.unlock();
+			networkLock.unlock();
 		}
 		throw new MediaWiki.UnknownError("login");
 	}
@@ -468,6 +802,8 @@ public class MediaWiki implements Serializable, ObjectInputValidation {
 		networkLock.lock();
 		try {
 			get(url);
+			clearResponseCache();
+			forgetSharedToken();
 		} finally {
 			networkLock.unlock();
 		}
@@ -916,6 +1252,12 @@ public class MediaWiki implements Serializable, ObjectInputValidation {
 	}
 
 	private class PageIterator extends AbstractReadOnlyIterator<MediaWiki.Page> {
+		/**
+		 * The maximum number of titles to get information about in one
+		 * request.
+		 */
+		private static final int BATCH_SIZE = 50;
+
 		/**
 		 * The titles to get information about.
 		 */
@@ -923,6 +1265,14 @@ public class MediaWiki implements Serializable, ObjectInputValidation {
 
 		private int i;
 
+		/**
+		 * The information about the batch of titles starting at
+		 * <code>batchStart</code>.
+		 */
+		private final List<MediaWiki.Page> batch;
+
+		private int batchStart;
+
 		private final Map<String, String> getParams;
 
 		PageIterator(final String[] elements) {
@@ -930,6 +1280,7 @@ public class MediaWiki implements Serializable, ObjectInputValidation {
 
 			getParams = paramValuesToMap("action", "query", "format", "xml", "prop", "info", "inprop", "protection");
 
+			batch = new ArrayList<MediaWiki.Page>(Math.min(elements.length, BATCH_SIZE));
 			i = -1;
 		}
 
@@ -938,9 +1289,30 @@ public class MediaWiki implements Serializable, ObjectInputValidation {
 		}
 
 		public synchronized MediaWiki.Page next() throws MediaWiki.IterationException {
+			if (!hasNext())
+				throw new NoSuchElementException();
+
 			i++;
 
-			getParams.put("titles", titleToAPIForm(elements[i]));
+			if (i >= batchStart + batch.size()) {
+				getBatch(i);
+			}
+
+			return batch.get(i - batchStart);
+		}
+
+		private void getBatch(final int start) throws MediaWiki.IterationException {
+			final int end = Math.min(start + BATCH_SIZE, elements.length);
+
+			final StringBuilder titleString = new StringBuilder((end - start) * 16);
+			for (int j = start; j < end; j++) {
+				if (titleString.length() > 0) {
+					titleString.append('|');
+				}
+				titleString.append(titleToAPIForm(elements[j]));
+			}
+
+			getParams.put("titles", titleString.toString());
 
 			final String url = createApiGetUrl(getParams);
 
@@ -950,43 +1322,38 @@ public class MediaWiki implements Serializable, ObjectInputValidation {
 				final Document xml = parse(in);
 				checkError(xml);
 
-				final NodeList pageTags = xml.getElementsByTagName("page");
+				final Map<String, String> normalizations = new TreeMap<String, String>();
 
-				if (pageTags.getLength() > 0) {
-					final Element pageTag = (Element) pageTags.item(0);
+				final NodeList nTags = xml.getElementsByTagName("n");
 
-					final String title = pageTag.getAttribute("title");
-					final boolean missing = pageTag.hasAttribute("missing");
-					final long namespaceID = Long.parseLong(pageTag.getAttribute("ns"));
+				for (int j = 0; j < nTags.getLength(); j++) {
+					final Element nTag = (Element) nTags.item(j);
 
-					final long pageID = pageTag.hasAttribute("pageid") ? Long.parseLong(pageTag.getAttribute("pageid")) : -1;
-					final Date lastEdit = pageTag.hasAttribute("touched") ? iso8601TimestampParser.parse(pageTag.getAttribute("touched")) : null;
-					final long lastRevisionID = pageTag.hasAttribute("lastrevid") ? Long.parseLong(pageTag.getAttribute("lastrevid")) : -1;
-					final long views = pageTag.hasAttribute("counter") && (pageTag.getAttribute("counter").length() > 0) ? Long.parseLong(pageTag.getAttribute("counter")) : -1;
-					final long length = pageTag.hasAttribute("length") ? Long.parseLong(pageTag.getAttribute("length")) : 0;
-					final boolean isRedirect = pageTag.hasAttribute("redirect");
-					final boolean isNew = pageTag.hasAttribute("new");
+					normalizations.put(nTag.getAttribute("from"), nTag.getAttribute("to"));
+				}
 
-					final Map<String, MediaWiki.Protection> protections = new TreeMap<String, Protection>();
+				final Map<String, Element> pageTagsByTitle = new TreeMap<String, Element>();
 
-					final NodeList prTags = pageTag.getElementsByTagName("pr");
+				final NodeList pageTags = xml.getElementsByTagName("page");
 
-					for (int i = 0; i < prTags.getLength(); i++) {
-						final Element prTag = (Element) prTags.item(i);
+				for (int j = 0; j < pageTags.getLength(); j++) {
+					final Element pageTag = (Element) pageTags.item(j);
 
-						final String type = prTag.getAttribute("type");
-						final String level = prTag.getAttribute("level");
-						final Date expiry = prTag.getAttribute("expiry").equals("infinity") ? null : iso8601TimestampParser.parse(prTag.getAttribute("expiry"));
-						final boolean isCascading = prTag.hasAttribute("cascade");
-						final String cascadeSource = prTag.hasAttribute("source") ? prTag.getAttribute("source") : null;
+					pageTagsByTitle.put(pageTag.getAttribute("title"), pageTag);
+				}
 
-						protections.put(type, new MediaWiki.Protection(level, expiry, isCascading, cascadeSource));
-					}
+				batch.clear();
+				batchStart = start;
 
-					return new MediaWiki.Page(missing, pageID, title, lastEdit, namespaceID, lastRevisionID, views, length, isRedirect, isNew, protections);
-				}
+				for (int j = start; j < end; j++) {
+					final String apiTitle = titleToAPIForm(elements[j]);
+					final Element pageTag = pageTagsByTitle.get(normalizations.containsKey(apiTitle) ? normalizations.get(apiTitle) : apiTitle);
 
-				throw new MediaWiki.ResponseFormatException("expected <page> tag not found");
+					if (pageTag == null)
+						throw new MediaWiki.ResponseFormatException("expected <page> tag for \"" + apiTitle + "\" not found");
+
+					batch.add(parsePage(pageTag));
+				}
 			} catch (final IOException ioe) {
 				throw new MediaWiki.IterationException(ioe);
 			} catch (final ParseException pe) {
@@ -999,6 +1366,38 @@ public class MediaWiki implements Serializable, ObjectInputValidation {
 				networkLock.unlock();
 			}
 		}
+
+		private MediaWiki.Page parsePage(final Element pageTag) throws IOException, ParseException {
+			final String title = pageTag.getAttribute("title");
+			final boolean missing = pageTag.hasAttribute("missing");
+			final long namespaceID = Long.parseLong(pageTag.getAttribute("ns"));
+
+			final long pageID = pageTag.hasAttribute("pageid") ? Long.parseLong(pageTag.getAttribute("pageid")) : -1;
+			final Date lastEdit = pageTag.hasAttribute("touched") ? timestampToDate(pageTag.getAttribute("touched")) : null;
+			final long lastRevisionID = pageTag.hasAttribute("lastrevid") ? Long.parseLong(pageTag.getAttribute("lastrevid")) : -1;
+			final long views = pageTag.hasAttribute("counter") && (pageTag.getAttribute("counter").length() > 0) ? Long.parseLong(pageTag.getAttribute("counter")) : -1;
+			final long length = pageTag.hasAttribute("length") ? Long.parseLong(pageTag.getAttribute("length")) : 0;
+			final boolean isRedirect = pageTag.hasAttribute("redirect");
+			final boolean isNew = pageTag.hasAttribute("new");
+
+			final Map<String, MediaWiki.Protection> protections = new TreeMap<String, Protection>();
+
+			final NodeList prTags = pageTag.getElementsByTagName("pr");
+
+			for (int i = 0; i < prTags.getLength(); i++) {
+				final Element prTag = (Element) prTags.item(i);
+
+				final String type = prTag.getAttribute("type");
+				final String level = prTag.getAttribute("level");
+				final Date expiry = prTag.getAttribute("expiry").equals("infinity") ? null : timestampToDate(prTag.getAttribute("expiry"));
+				final boolean isCascading = prTag.hasAttribute("cascade");
+				final String cascadeSource = prTag.hasAttribute("source") ? prTag.getAttribute("source") : null;
+
+				protections.put(type, new MediaWiki.Protection(level, expiry, isCascading, cascadeSource));
+			}
+
+			return new MediaWiki.Page(missing, pageID, title, lastEdit, namespaceID, lastRevisionID, views, length, isRedirect, isNew, protections);
+		}
 	}
 
 	// - - - REVISION INFORMATION (PROP=REVISIONS) - - -
@@ -1104,6 +1503,13 @@ public class MediaWiki implements Serializable, ObjectInputValidation {
 	}
 
 	private class SingleRevisionIterator extends AbstractReadOnlyIterator<MediaWiki.Revision> {
+		/**
+		 * The maximum number of elements to get information about in one
+		 * request. This is the limit imposed by the API on revision content
+		 * for users without the <code>apihighlimits</code> right.
+		 */
+		private static final int BATCH_SIZE = 50;
+
 		/**
 		 * The type of the elements given. This may be "titles" or "revids",
 		 * corresponding to the parameter names acceptable for prop=revisions.
@@ -1120,6 +1526,14 @@ public class MediaWiki implements Serializable, ObjectInputValidation {
 
 		private int i;
 
+		/**
+		 * The revisions for the batch of elements starting at
+		 * <code>batchStart</code>.
+		 */
+		private final List<MediaWiki.Revision> batch;
+
+		private int batchStart;
+
 		private final Map<String, String> getParams;
 
 		SingleRevisionIterator(final String elementType, final Object elements, final boolean getContentImmediately) {
@@ -1138,75 +1552,141 @@ public class MediaWiki implements Serializable, ObjectInputValidation {
 
 			this.getContentImmediately = getContentImmediately;
 
+			batch = new ArrayList<MediaWiki.Revision>(Math.min(getElementCount(), BATCH_SIZE));
 			i = -1;
 		}
 
+		private int getElementCount() {
+			return elements instanceof String[] ? ((String[]) elements).length : ((long[]) elements).length;
+		}
+
 		public synchronized boolean hasNext() {
-			return (i + 1) < (elements instanceof String[] ? ((String[]) elements).length : ((long[]) elements).length);
+			return (i + 1) < getElementCount();
 		}
 
 		public synchronized MediaWiki.Revision next() throws MediaWiki.IterationException {
+			if (!hasNext())
+				throw new NoSuchElementException();
+
 			i++;
 
-			getParams.put(elementType, elements instanceof String[] ? titleToAPIForm(((String[]) elements)[i]) : Long.toString(((long[]) elements)[i]));
+			if (i >= batchStart + batch.size()) {
+				getBatch(i);
+			}
+
+			return batch.get(i - batchStart);
+		}
+
+		private void getBatch(final int start) throws MediaWiki.IterationException {
+			final int end = Math.min(start + BATCH_SIZE, getElementCount());
 
-			final String url = createApiGetUrl(getParams);
+			final StringBuilder elementString = new StringBuilder((end - start) * 16);
+			for (int j = start; j < end; j++) {
+				if (elementString.length() > 0) {
+					elementString.append('|');
+				}
+				elementString.append(elements instanceof String[] ? titleToAPIForm(((String[]) elements)[j]) : Long.toString(((long[]) elements)[j]));
+			}
+
+			getParams.put(elementType, elementString.toString());
 
 			networkLock.lock();
 			try {
-				final InputStream in = get(url);
-				final Document xml = parse(in);
-				checkError(xml);
-
-				final NodeList badrevidsTags = xml.getElementsByTagName("badrevids");
-				if (badrevidsTags.getLength() > 0)
-					return null;
+				final Map<Long, Element> revTagsByID = new HashMap<Long, Element>();
+				final Set<Long> badRevisionIDs = new HashSet<Long>();
+				final Map<String, String> normalizations = new TreeMap<String, String>();
+				final Map<String, Element> pageTagsByTitle = new TreeMap<String, Element>();
+				final Map<String, Element> revTagsByTitle = new TreeMap<String, Element>();
 
-				final NodeList pageTags = xml.getElementsByTagName("page");
+				/*
+				 * With content, the wiki may stop before the last element to
+				 * keep its reply under its size limit, and give the rest of
+				 * the revisions in replies to continuations.
+				 */
+				Map<String, String> continuation = Collections.emptyMap();
+				do {
+					final Map<String, String> pageGetParams = new TreeMap<String, String>(getParams);
+					pageGetParams.putAll(continuation);
 
-				if (pageTags.getLength() > 0) {
-					final Element pageTag = (Element) pageTags.item(0);
+					final InputStream in = get(createApiGetUrl(pageGetParams));
+					final Document xml = parse(in);
+					checkError(xml);
 
-					if (pageTag.hasAttribute("missing"))
-						return null;
+					if (elements instanceof long[]) {
+						final NodeList revTags = xml.getElementsByTagName("rev");
 
-					final NodeList revTags = pageTag.getElementsByTagName("rev");
+						for (int j = 0; j < revTags.getLength(); j++) {
+							final Element revTag = (Element) revTags.item(j);
 
-					if (revTags.getLength() > 0) {
-						final Element revTag = (Element) revTags.item(0);
+							// <badrevids> lists revisions that do not exist.
+							if (((Element) revTag.getParentNode()).getTagName().equals("badrevids")) {
+								badRevisionIDs.add(Long.valueOf(revTag.getAttribute("revid")));
+								continue;
+							}
 
-						final long revisionID = Long.parseLong(revTag.getAttribute("revid"));
-						final long parentID = revTag.hasAttribute("parentid") ? Long.parseLong(revTag.getAttribute("parentid")) : -1;
+							revTagsByID.put(Long.valueOf(revTag.getAttribute("revid")), revTag);
+						}
+					} else {
+						final NodeList nTags = xml.getElementsByTagName("n");
 
-						final Date timestamp = iso8601TimestampParser.parse(revTag.getAttribute("timestamp"));
+						for (int j = 0; j < nTags.getLength(); j++) {
+							final Element nTag = (Element) nTags.item(j);
 
-						final boolean userHidden = revTag.hasAttribute("userhidden");
-						final String userName = userHidden ? null : revTag.getAttribute("user");
+							normalizations.put(nTag.getAttribute("from"), nTag.getAttribute("to"));
+						}
 
-						final boolean commentHidden = revTag.hasAttribute("commenthidden");
-						final String comment = commentHidden ? null : revTag.getAttribute("comment");
+						final NodeList pageTags = xml.getElementsByTagName("page");
 
-						final boolean isMinor = revTag.hasAttribute("minor");
-						final boolean isAnonymous = revTag.hasAttribute("anon");
+						for (int j = 0; j < pageTags.getLength(); j++) {
+							final Element pageTag = (Element) pageTags.item(j);
+							final String title = pageTag.getAttribute("title");
 
-						final long length = revTag.hasAttribute("size") ? Long.parseLong(revTag.getAttribute("size")) : 0;
+							if (!pageTagsByTitle.containsKey(title)) {
+								pageTagsByTitle.put(title, pageTag);
+							}
 
-						final MediaWiki.Revision result = new MediaWiki.Revision(revisionID, parentID, timestamp, userName, userHidden, length, comment, commentHidden, isMinor, isAnonymous);
+							final NodeList revTags = pageTag.getElementsByTagName("rev");
 
-						if (getContentImmediately) {
-							if (revTag.hasAttribute("contenthidden")) {
-								result.contentHidden = true;
-							} else {
-								result.content = revTag.getTextContent();
+							if ((revTags.getLength() > 0) && !revTagsByTitle.containsKey(title)) {
+								revTagsByTitle.put(title, (Element) revTags.item(0));
 							}
-							result.contentStored = true;
 						}
+					}
+
+					continuation = getRevisionsContinuation(xml);
+				} while (!continuation.isEmpty());
 
-						return result;
+				batch.clear();
+				batchStart = start;
+
+				for (int j = start; j < end; j++) {
+					final Element revTag;
+
+					if (elements instanceof long[]) {
+						final long revisionID = ((long[]) elements)[j];
+						revTag = revTagsByID.get(revisionID);
+
+						if ((revTag == null) && !badRevisionIDs.contains(revisionID))
+							throw new MediaWiki.ResponseFormatException("expected <rev> tag for revision " + revisionID + " not found");
+					} else {
+						final String apiTitle = titleToAPIForm(((String[]) elements)[j]);
+						final Element pageTag = pageTagsByTitle.get(normalizations.containsKey(apiTitle) ? normalizations.get(apiTitle) : apiTitle);
+
+						if (pageTag == null)
+							throw new MediaWiki.ResponseFormatException("expected <page> tag for \"" + apiTitle + "\" not found");
+
+						if (pageTag.hasAttribute("missing") || pageTag.hasAttribute("invalid")) {
+							revTag = null;
+						} else {
+							revTag = revTagsByTitle.get(pageTag.getAttribute("title"));
+
+							if (revTag == null)
+								throw new MediaWiki.ResponseFormatException("expected <rev> tag for \"" + apiTitle + "\" not found");
+						}
 					}
-				}
 
-				throw new MediaWiki.ResponseFormatException("expected <page> tag not found");
+					batch.add(revTag != null ? parseRevision(revTag) : null);
+				}
 			} catch (final IOException ioe) {
 				throw new MediaWiki.IterationException(ioe);
 			} catch (final ParseException pe) {
@@ -1219,6 +1699,37 @@ public class MediaWiki implements Serializable, ObjectInputValidation {
 				networkLock.unlock();
 			}
 		}
+
+		private MediaWiki.Revision parseRevision(final Element revTag) throws ParseException {
+			final long revisionID = Long.parseLong(revTag.getAttribute("revid"));
+			final long parentID = revTag.hasAttribute("parentid") ? Long.parseLong(revTag.getAttribute("parentid")) : -1;
+
+			final Date timestamp = timestampToDate(revTag.getAttribute("timestamp"));
+
+			final boolean userHidden = revTag.hasAttribute("userhidden");
+			final String userName = userHidden ? null : revTag.getAttribute("user");
+
+			final boolean commentHidden = revTag.hasAttribute("commenthidden");
+			final String comment = commentHidden ? null : revTag.getAttribute("comment");
+
+			final boolean isMinor = revTag.hasAttribute("minor");
+			final boolean isAnonymous = revTag.hasAttribute("anon");
+
+			final long length = revTag.hasAttribute("size") ? Long.parseLong(revTag.getAttribute("size")) : 0;
+
+			final MediaWiki.Revision result = new MediaWiki.Revision(revisionID, parentID, timestamp, userName, userHidden, length, comment, commentHidden, isMinor, isAnonymous);
+
+			if (getContentImmediately) {
+				if (revTag.hasAttribute("contenthidden")) {
+					result.contentHidden = true;
+				} else {
+					result.setContent(revTag.getTextContent());
+				}
+				result.contentStored = true;
+			}
+
+			return result;
+		}
 	}
 
 	/**
@@ -1462,7 +1973,7 @@ public class MediaWiki implements Serializable, ObjectInputValidation {
 			final long revisionID = Long.parseLong(element.getAttribute("revid"));
 			final long parentID = element.hasAttribute("parentid") ? Long.parseLong(element.getAttribute("parentid")) : -1;
 
-			final Date timestamp = iso8601TimestampParser.parse(element.getAttribute("timestamp"));
+			final Date timestamp = timestampToDate(element.getAttribute("timestamp"));
 
 			final boolean userHidden = element.hasAttribute("userhidden");
 			final String userName = userHidden ? null : element.getAttribute("user");
@@ -1481,7 +1992,7 @@ public class MediaWiki implements Serializable, ObjectInputValidation {
 				if (element.hasAttribute("contenthidden")) {
 					result.contentHidden = true;
 				} else {
-					result.content = element.getTextContent();
+					result.setContent(element.getTextContent());
 				}
 				result.contentStored = true;
 			}
@@ -1710,13 +2221,7 @@ public class MediaWiki implements Serializable, ObjectInputValidation {
 
 		@Override
 		public MediaWiki.CategoryMember convert(final Element element) throws Exception {
-			final long namespaceID = Long.parseLong(element.getAttribute("ns"));
-			final String title = element.getAttribute("title");
-			final long pageID = Long.parseLong(element.getAttribute("pageid"));
-			final String sortKey = element.getAttribute("sortkeyprefix");
-			final Date addTime = timestampToDate(element.getAttribute("timestamp"));
-
-			return new MediaWiki.CategoryMember(namespaceID, pageID, addTime, title, sortKey);
+			return new MediaWiki.CategoryMember(element);
 		}
 
 		@Override
@@ -1837,17 +2342,7 @@ public class MediaWiki implements Serializable, ObjectInputValidation {
 
 		@Override
 		public MediaWiki.ImageRevision convert(final Element element) throws Exception {
-			final Date timestamp = iso8601TimestampParser.parse(element.getAttribute("timestamp"));
-			final String userName = element.getAttribute("user");
-			final long length = Long.parseLong(element.getAttribute("size"));
-			final long width = Long.parseLong(element.getAttribute("width"));
-			final long height = Long.parseLong(element.getAttribute("height"));
-			final String url = element.getAttribute("url");
-			final String comment = element.getAttribute("comment");
-			final String sha1hash = element.getAttribute("sha1");
-			final String mimeType = element.getAttribute("mime");
-
-			return new MediaWiki.ImageRevision(imageFullName, timestamp, userName, length, width, height, url, comment, sha1hash, mimeType);
+			return new MediaWiki.ImageRevision(imageFullName, element);
 		}
 
 		@Override
@@ -2739,17 +3234,8 @@ public class MediaWiki implements Serializable, ObjectInputValidation {
 		@Override
 		public MediaWiki.ImageRevision convert(final Element imgTag) throws Exception {
 			final String baseName = imgTag.getAttribute("name");
-			final Date timestamp = iso8601TimestampParser.parse(imgTag.getAttribute("timestamp"));
-			final String userName = imgTag.getAttribute("user");
-			final long length = Long.parseLong(imgTag.getAttribute("size"));
-			final long width = Long.parseLong(imgTag.getAttribute("width"));
-			final long height = Long.parseLong(imgTag.getAttribute("height"));
-			final String url = imgTag.getAttribute("url");
-			final String comment = imgTag.getAttribute("comment");
-			final String sha1hash = imgTag.getAttribute("sha1");
-			final String mimeType = imgTag.getAttribute("mime");
 
-			return new MediaWiki.ImageRevision(getNamespaces().getNamespace(MediaWiki.StandardNamespace.FILE).getFullPageName(baseName), timestamp, userName, length, width, height, url, comment, sha1hash, mimeType);
+			return new MediaWiki.ImageRevision(getNamespaces().getNamespace(MediaWiki.StandardNamespace.FILE).getFullPageName(baseName), imgTag);
 		}
 
 		@Override
@@ -2783,6 +3269,53 @@ public class MediaWiki implements Serializable, ObjectInputValidation {
 		}
 	}
 
+	/**
+	 * Finds the files on the wiki that this <tt>MediaWiki</tt> represents
+	 * whose current version has each of the given SHA-1 hashes. This is useful
+	 * before uploading files, to avoid sending content that already exists on
+	 * the wiki.
+	 * <p>
+	 * The API only accepts one hash per request, so this method makes one
+	 * request per distinct hash given.
+	 * 
+	 * @param sha1Hashes
+	 *            The SHA-1 hashes to look up, as hexadecimal strings. See
+	 *            <code>sha1</code>.
+	 * @return a map whose keys are the given hashes, in order, and whose
+	 *         values are the full names of the files that have them; the
+	 *         list is empty if no file has a hash
+	 * @throws IOException
+	 *             if <tt>IOException</tt> is thrown while connecting to the
+	 *             wiki or while reading the XML reply from the API
+	 * @throws MediaWiki.MediaWikiException
+	 *             if a MediaWiki API error is returned
+	 */
+	public Map<String, List<String>> findFilesBySHA1(final String... sha1Hashes) throws IOException, MediaWiki.MediaWikiException {
+		final Map<String, List<String>> result = new LinkedHashMap<String, List<String>>();
+		for (final String sha1Hash : sha1Hashes) {
+			final String key = sha1Hash.toLowerCase(Locale.ENGLISH);
+			if (result.containsKey(key)) {
+				continue;
+			}
+			final List<String> fullNames = new ArrayList<String>(1);
+			try {
+				final Iterator<MediaWiki.ImageRevision> i = getAllImages(null, null, true, null, null, key);
+				while (i.hasNext()) {
+					fullNames.add(i.next().getFullPageName());
+				}
+			} catch (final MediaWiki.IterationException ie) {
+				final Throwable t = ie.getCause();
+				if (t instanceof IOException)
+					throw (IOException) t;
+				else if (t instanceof MediaWiki.MediaWikiException)
+					throw (MediaWiki.MediaWikiException) t;
+				throw ie;
+			}
+			result.put(key, fullNames);
+		}
+		return result;
+	}
+
 	/**
 	 * Retrieves information about all pages matching all of the filters
 	 * specified. The return value is an iterator which will return information
@@ -3112,7 +3645,7 @@ public class MediaWiki implements Serializable, ObjectInputValidation {
 				// information unavailable; don't care
 			}
 
-			return new MediaWiki.User(false /*- (not) missing */, name, groups, rights, editCount, blockingUser, blockReason, registration);
+			return new MediaWiki.User(false /*- (not) missing */, pool(name), groups, rights, editCount, blockingUser, blockReason, registration);
 		}
 
 		@Override
@@ -3251,15 +3784,15 @@ public class MediaWiki implements Serializable, ObjectInputValidation {
 			if (chronologicalOrder) {
 				getParams.put("rcdir", "newer");
 				if (earliest != null)
-					getParams.put("rcstart", iso8601TimestampParser.format(earliest));
+					getParams.put("rcstart", dateToISO8601(earliest));
 				if (latest != null)
-					getParams.put("rcend", iso8601TimestampParser.format(latest));
+					getParams.put("rcend", dateToISO8601(latest));
 			} else {
 				getParams.put("rcdir", "older");
 				if (earliest != null)
-					getParams.put("rcend", iso8601TimestampParser.format(earliest));
+					getParams.put("rcend", dateToISO8601(earliest));
 				if (latest != null)
-					getParams.put("rcstart", iso8601TimestampParser.format(latest));
+					getParams.put("rcstart", dateToISO8601(latest));
 			}
 
 			StringBuilder rcType = new StringBuilder(12);
@@ -3323,49 +3856,204 @@ public class MediaWiki implements Serializable, ObjectInputValidation {
 			 *   <param/>
 			 * </rc>
 			 */
-			final String changeType = element.getAttribute("type");
+			return new MediaWiki.RecentChange(element);
+		}
 
-			final long namespaceID = Long.parseLong(element.getAttribute("ns"));
-			final String fullName = element.getAttribute("title");
+		@Override
+		protected synchronized void cacheUpcoming() throws Exception {
+			// Get the next page of recent changes from the API.
+			final Map<String, String> pageGetParams = new TreeMap<String, String>(getParams);
+			if (getContinuationName() != null) {
+				pageGetParams.put(getContinuationName(), getContinuation());
+			}
 
-			final long rcid = Long.parseLong(element.getAttribute("rcid"));
-			final long pageID = Long.parseLong(element.getAttribute("pageid"));
-			final long revid = Long.parseLong(element.getAttribute("revid"));
-			final long oldRevid = Long.parseLong(element.getAttribute("old_revid"));
+			final String url = createApiGetUrl(pageGetParams);
 
-			final String username = element.getAttribute("user");
-			final String comment = element.getAttribute("comment");
+			networkLock.lock();
+			try {
+				final InputStream in = get(url);
+				final Document xml = parse(in);
+				checkError(xml);
 
-			final long oldLen = element.hasAttribute("oldlen") ? Long.parseLong(element.getAttribute("oldlen")) : 0;
-			final long newLen = element.hasAttribute("newlen") ? Long.parseLong(element.getAttribute("newlen")) : 0;
+				final NodeList recentchangesTags = xml.getElementsByTagName("recentchanges");
 
-			final Date timestamp = timestampToDate(element.getAttribute("timestamp"));
+				if (recentchangesTags.getLength() > 0) {
+					final Element recentchangesTag = (Element) recentchangesTags.item(0);
 
-			final boolean isNew = element.hasAttribute("new"), bot = element.hasAttribute("bot"), minor = element.hasAttribute("minor"), anonymous = element.hasAttribute("anon");
+					setUpcoming(recentchangesTag.getElementsByTagName("rc"));
+				}
 
-			long logid = 0;
-			String logType = null, logAction = null;
-			List<String> logParams = null;
+				processContinuation(xml, "recentchanges");
+			} finally {
+				networkLock.unlock();
+			}
+		}
+	}
 
-			if (element.hasAttribute("logid")) {
-				logid = Long.parseLong(element.getAttribute("logid"));
-				logType = element.getAttribute("logtype");
-				logAction = element.getAttribute("logaction");
-				logParams = new ArrayList<String>();
+	// - - - LOG EVENTS (LIST=LOGEVENTS) - - -
+
+	/**
+	 * Retrieves log events from the wiki in chronological order, optionally
+	 * restricted to a log, an action within it, a user or a page. The
+	 * restrictions are applied by the wiki, not by the returned iterator.
+	 * <p>
+	 * To resume after an interruption, save the position returned by the
+	 * iterator's <code>getPosition</code> method after processing events, and
+	 * pass it to <code>resumeLogEvents</code> on the next call.
+	 * <p>
+	 * The return value is an iterator which will return information about each
+	 * of the matching log events on the wiki that this <tt>MediaWiki</tt>
+	 * represents when its <code>next</code> method is called. The iterator's
+	 * <code>next</code> method may:
+	 * <ul>
+	 * <li>throw <tt>MediaWiki.IterationException</tt>, an unchecked exception,
+	 * if it encounters an error.
+	 * </ul>
+	 * 
+	 * @param type
+	 *            The name of the log to retrieve events from, usually one of
+	 *            the constants in <tt>StandardLogEntryType</tt>. This parameter
+	 *            is <code>null</code> to retrieve events from all logs.
+	 * @param action
+	 *            The name of the log action to retrieve events for, such as
+	 *            <code>"overwrite"</code> in the upload log. This parameter is
+	 *            <code>null</code> to retrieve all actions. If it is not
+	 *            <code>null</code>, <code>type</code> must not be
+	 *            <code>null</code> either.
+	 * @param user
+	 *            The name of the user to retrieve the actions of. This
+	 *            parameter is <code>null</code> to avoid using this
+	 *            restriction.
+	 * @param fullPageName
+	 *            The full name of the page to retrieve the log events for. This
+	 *            parameter is <code>null</code> to avoid using this
+	 *            restriction.
+	 * @param earliest
+	 *            The timestamp of the earliest log event to retrieve. If an
+	 *            event was logged on this exact second, it is included. This
+	 *            parameter is <code>null</code> to avoid using this constraint.
+	 * @param latest
+	 *            The timestamp of the latest log event to retrieve. If an event
+	 *            was logged on this exact second, it is included. This
+	 *            parameter is <code>null</code> to avoid using this constraint.
+	 * @return an iterator which will return information about each of the
+	 *         matching log events on the wiki that this <tt>MediaWiki</tt>
+	 *         represents when its <code>next</code> method is called
+	 * @throws IllegalArgumentException
+	 *             if <code>action</code> is not <code>null</code> while
+	 *             <code>type</code> is <code>null</code>
+	 * @see StandardLogEntryType
+	 */
+	public MediaWiki.ResumableIterator<MediaWiki.LogEvent> getLogEvents(final String type, final String action, final String user, final String fullPageName, final Date earliest, final Date latest) {
+		return resumeLogEvents(type, action, user, fullPageName, earliest != null ? new MediaWiki.StreamPosition(earliest) : null, latest);
+	}
+
+	/**
+	 * Retrieves log events from the wiki after the given position, in
+	 * chronological order, optionally restricted to a log, an action within
+	 * it, a user or a page. The events logged on the same second as the
+	 * position that were already returned before it are skipped; the others
+	 * are returned.
+	 * <p>
+	 * The return value is an iterator which will return information about each
+	 * of the matching log events when its <code>next</code> method is called,
+	 * and whose <code>getPosition</code> method returns the position to resume
+	 * from after the events it has returned. The position is made of the
+	 * timestamp and the log IDs of the last events returned. The iterator's
+	 * <code>next</code> method may:
+	 * <ul>
+	 * <li>throw <tt>MediaWiki.IterationException</tt>, an unchecked exception,
+	 * if it encounters an error.
+	 * </ul>
+	 * 
+	 * @param type
+	 *            The name of the log to retrieve events from, usually one of
+	 *            the constants in <tt>StandardLogEntryType</tt>. This parameter
+	 *            is <code>null</code> to retrieve events from all logs.
+	 * @param action
+	 *            The name of the log action to retrieve events for. This
+	 *            parameter is <code>null</code> to retrieve all actions. If it
+	 *            is not <code>null</code>, <code>type</code> must not be
+	 *            <code>null</code> either.
+	 * @param user
+	 *            The name of the user to retrieve the actions of. This
+	 *            parameter is <code>null</code> to avoid using this
+	 *            restriction.
+	 * @param fullPageName
+	 *            The full name of the page to retrieve the log events for. This
+	 *            parameter is <code>null</code> to avoid using this
+	 *            restriction.
+	 * @param after
+	 *            The position returned by the <code>getPosition</code> method
+	 *            of an earlier log event iterator with the same restrictions,
+	 *            or <code>null</code> to start with the oldest log event.
+	 * @param latest
+	 *            The timestamp of the latest log event to retrieve. If an event
+	 *            was logged on this exact second, it is included. This
+	 *            parameter is <code>null</code> to avoid using this constraint.
+	 * @return an iterator which will return information about each of the
+	 *         matching log events on the wiki that this <tt>MediaWiki</tt>
+	 *         represents when its <code>next</code> method is called
+	 * @throws IllegalArgumentException
+	 *             if <code>action</code> is not <code>null</code> while
+	 *             <code>type</code> is <code>null</code>
+	 */
+	public MediaWiki.ResumableIterator<MediaWiki.LogEvent> resumeLogEvents(final String type, final String action, final String user, final String fullPageName, final MediaWiki.StreamPosition after, final Date latest) {
+		if ((action != null) && (type == null))
+			throw new IllegalArgumentException("a log action requires a log type");
+		return new MediaWiki.LogEventsIterator(type, action, user, fullPageName, after, latest);
+	}
 
-				NodeList paramTags = element.getElementsByTagName("param");
+	private class LogEventsIterator extends AbstractResumableQueryIterator<MediaWiki.LogEvent> {
+		private final Map<String, String> getParams;
 
-				for (int i = 0; i < paramTags.getLength(); i++) {
-					logParams.add(paramTags.item(i).getTextContent());
-				}
+		LogEventsIterator(final String type, final String action, final String user, final String fullPageName, final MediaWiki.StreamPosition after, final Date latest) {
+			super(after);
+			getParams = paramValuesToMap("action", "query", "format", "xml", "list", "logevents", "lelimit", "max", "ledir", "newer", "leprop", "ids|title|type|user|timestamp|comment|details", "leuser", user, "letitle", fullPageName);
+
+			if (action != null) {
+				// leaction names the log too, as in "upload/overwrite".
+				getParams.put("leaction", type + "/" + action);
+			} else if (type != null) {
+				getParams.put("letype", type);
 			}
 
-			return new MediaWiki.RecentChange(changeType, namespaceID, fullName, pageID, rcid, revid, oldRevid, username, oldLen, newLen, timestamp, comment, isNew, bot, minor, anonymous, logid, logType, logAction, logParams);
+			if (after != null)
+				getParams.put("lestart", dateToISO8601(after.getTimestamp()));
+			if (latest != null)
+				getParams.put("leend", dateToISO8601(latest));
 		}
 
 		@Override
-		protected synchronized void cacheUpcoming() throws Exception {
-			// Get the next page of recent changes from the API.
+		protected Date getTimestamp(final MediaWiki.LogEvent item) {
+			return item.getTimestamp();
+		}
+
+		@Override
+		protected long getItemID(final MediaWiki.LogEvent item) {
+			return item.getLogID();
+		}
+
+		@Override
+		protected long getItemID(final Element itemTag) {
+			return Long.parseLong(itemTag.getAttribute("logid"));
+		}
+
+		@Override
+		public MediaWiki.LogEvent convert(final Element element) throws Exception {
+			/*-
+			 * <item logid="4421" ns="6" title="File:Rune axe.png" pageid="10245" type="upload" action="overwrite" user="Nebuleon" timestamp="2012-10-11T18:00:36Z" comment="Lossless compression" />
+			 * 
+			 * <item logid="4422" ns="0" title="Rune axe" pageid="10246" type="move" action="move" user="Nebuleon" timestamp="2012-10-11T18:00:44Z" comment="Standard name">
+			 *   <move new_ns="0" new_title="Rune hatchet" />
+			 * </item>
+			 */
+			return new MediaWiki.LogEvent(element);
+		}
+
+		@Override
+		protected void cacheReply() throws Exception {
+			// Get the next page of log events from the API.
 			final Map<String, String> pageGetParams = new TreeMap<String, String>(getParams);
 			if (getContinuationName() != null) {
 				pageGetParams.put(getContinuationName(), getContinuation());
@@ -3379,21 +4067,114 @@ public class MediaWiki implements Serializable, ObjectInputValidation {
 				final Document xml = parse(in);
 				checkError(xml);
 
-				final NodeList recentchangesTags = xml.getElementsByTagName("recentchanges");
+				final NodeList logeventsTags = xml.getElementsByTagName("logevents");
 
-				if (recentchangesTags.getLength() > 0) {
-					final Element recentchangesTag = (Element) recentchangesTags.item(0);
+				if (logeventsTags.getLength() > 0) {
+					final Element logeventsTag = (Element) logeventsTags.item(0);
 
-					setUpcoming(recentchangesTag.getElementsByTagName("rc"));
+					setUpcomingAfterPosition(logeventsTag.getElementsByTagName("item"));
 				}
 
-				processContinuation(xml, "recentchanges");
+				processContinuation(xml, "logevents");
 			} finally {
 				networkLock.unlock();
 			}
 		}
 	}
 
+	// - - - RECENT CHANGES FEED - - -
+
+	/**
+	 * Creates a <tt>MediaWiki.RecentChangesFeed</tt> that polls the changes
+	 * made to the wiki represented by this <tt>MediaWiki</tt> and delivers
+	 * them to its subscribers. The restrictions given here are applied by the
+	 * wiki and have the same meaning as for <code>recentChanges</code>;
+	 * subscribers may filter the changes further.
+	 * <p>
+	 * The feed does not poll the wiki until its <code>start</code> method is
+	 * called.
+	 * 
+	 * @param showUser
+	 *            User to retrieve the actions of. If <code>null</code>, do
+	 *            not use this restriction.
+	 * @param hideUser
+	 *            User not to retrieve the actions of. If <code>null</code>, do
+	 *            not use this restriction.
+	 * @param showRegularEdits
+	 *            <code>true</code> to retrieve regular edits to pages.
+	 * @param showNewPages
+	 *            <code>true</code> to retrieve page creations.
+	 * @param showLogEntries
+	 *            <code>true</code> to retrieve log entries.
+	 * @param showMinorEdits
+	 *            Retrieve only edits that are minor (<code>true</code>) or not
+	 *            (<code>false</code>); if <code>null</code>, do not use this
+	 *            restriction.
+	 * @param showBotActions
+	 *            Retrieve only actions that are made by a bot (
+	 *            <code>true</code>) or not (<code>false</code>); if
+	 *            <code>null</code>, do not use this restriction.
+	 * @param showAnonymousActions
+	 *            Retrieve only actions that are made by an anonymous user (
+	 *            <code>true</code>) or not (<code>false</code>); if
+	 *            <code>null</code>, do not use this restriction.
+	 * @param showRedirects
+	 *            Retrieve only actions made on pages that are currently
+	 *            redirects (<code>true</code>) or not (<code>false</code>);
+	 *            if <code>null</code>, do not use this restriction.
+	 * @param showPatrolled
+	 *            Retrieve only edits that have been patrolled (
+	 *            <code>true</code>) or not (<code>false</code>); if
+	 *            <code>null</code>, do not use this restriction.
+	 * @param namespaceIDs
+	 *            List of the IDs of namespaces to retrieve changes for. If
+	 *            <code>null</code> or empty, do not use this restriction.
+	 * @return a <tt>MediaWiki.RecentChangesFeed</tt> that polls the changes
+	 *         made to the wiki represented by this <tt>MediaWiki</tt>
+	 * @see #recentChanges(Date, Date, boolean, int, String, String, boolean,
+	 *      boolean, boolean, Boolean, Boolean, Boolean, Boolean, Boolean,
+	 *      boolean, long...)
+	 */
+	public MediaWiki.RecentChangesFeed createRecentChangesFeed(final String showUser, final String hideUser, final boolean showRegularEdits, final boolean showNewPages, final boolean showLogEntries, final Boolean showMinorEdits, final Boolean showBotActions, final Boolean showAnonymousActions, final Boolean showRedirects, final Boolean showPatrolled, final long... namespaceIDs) {
+		return new MediaWiki.RecentChangesFeed(showUser, hideUser, showRegularEdits, showNewPages, showLogEntries, showMinorEdits, showBotActions, showAnonymousActions, showRedirects, showPatrolled, namespaceIDs);
+	}
+
+	/**
+	 * Creates a feed that replays the changes recorded in a file by a
+	 * <tt>MediaWiki.RecentChangesRecorder</tt> instead of polling the wiki.
+	 * The feed delivers the changes in the order they were recorded, waiting
+	 * between them for the time that separated them divided by
+	 * <code>speed</code>, and ends after the last one. Subscribers filter the
+	 * changes they want; all recorded changes are replayed.
+	 * <p>
+	 * The names of namespaces are still requested from the wiki represented
+	 * by this <tt>MediaWiki</tt>, once, to decode the page names of the
+	 * changes.
+	 * 
+	 * @param recording
+	 *            The file to replay.
+	 * @param speed
+	 *            The speed of the replay relative to the speed at which the
+	 *            changes were made: 1 to replay them at their original speed,
+	 *            2 to replay them twice as fast, and so on, or
+	 *            <code>Double.POSITIVE_INFINITY</code> to replay them as fast
+	 *            as subscribers receive them.
+	 * @return a <tt>MediaWiki.RecentChangesFeed</tt> that replays the changes
+	 *         recorded in a file
+	 * @throws IllegalArgumentException
+	 *             if <code>speed</code> is not positive
+	 */
+	public MediaWiki.RecentChangesFeed createRecentChangesReplay(final File recording, final double speed) {
+		if (recording == null)
+			throw new NullPointerException("recording");
+		if (!(speed > 0))
+			throw new IllegalArgumentException("speed " + speed + " is not positive");
+		final MediaWiki.RecentChangesFeed result = new MediaWiki.RecentChangesFeed(null, null, true, true, true, null, null, null, null, null, null);
+		result.recording = recording;
+		result.replaySpeed = speed;
+		return result;
+	}
+
 	// - - - PURGE - - -
 
 	/**
@@ -3401,4939 +4182,11530 @@ public class MediaWiki implements Serializable, ObjectInputValidation {
 	 * <tt>MediaWiki</tt>.
 	 * <p>
 	 * Silently ignores failures to purge individual pages, but not the lack of
-	 * a reply to the purge request.
+	 * a reply to the purge request. Pages are purged in batches of up to 50 per
+	 * request; use the variant returning an iterator to learn which pages were
+	 * purged.
 	 * 
 	 * @param pages
 	 *            The full name(s) of the page(s) to purge.
 	 * @return this <tt>MediaWiki</tt>
 	 * @throws IOException
 	 * @throws MediaWiki.MediaWikiException
+	 * @see #purge(Iterator)
 	 */
 	public MediaWiki purge(final String... fullPageNames) throws IOException, MediaWiki.MediaWikiException {
-		if (fullPageNames.length == 0)
-			return this;
-
-		final Map<String, String> getParams = paramValuesToMap("action", "purge", "format", "xml");
-
-		final StringBuilder titles = new StringBuilder();
-		for (final String title : fullPageNames) {
-			if (titles.length() > 0) {
-				titles.append('|');
-			}
-			titles.append(title);
-		}
-
-		final Map<String, String> postParams = paramValuesToMap("titles", titles.toString());
-
-		final String url = createApiGetUrl(getParams);
+		final Iterator<MediaWiki.PurgeResult> results = purge(Arrays.asList(fullPageNames).iterator());
 
-		networkLock.lock();
 		try {
-			final InputStream in = post(url, postParams);
-			final Document xml = parse(in);
-			checkError(xml);
-
-			final NodeList purgeTags = xml.getElementsByTagName("purge");
-
-			if (purgeTags.getLength() > 0)
-				return this;
-			else
-				throw new MediaWiki.ResponseFormatException("expected <purge> tag not present");
-		} finally {
-			networkLock.unlock();
+			while (results.hasNext()) {
+				results.next();
+			}
+		} catch (final MediaWiki.IterationException ie) {
+			final Throwable cause = ie.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			else if (cause instanceof MediaWiki.MediaWikiException)
+				throw (MediaWiki.MediaWikiException) cause;
+			throw ie;
 		}
+		return this;
 	}
 
-	// - - - EXPAND TEMPLATES IN WIKITEXT (ACTION=EXPANDTEMPLATES) - - -
-
 	/**
-	 * Expands templates in wikitext on the wiki represented by this
-	 * <tt>MediaWiki</tt>.
-	 * <p>
-	 * Template invocations are generally between <tt>{{</tt> and <tt>}}</tt>.
+	 * Purges the pages whose full names are returned by the given iterator on
+	 * the wiki represented by this <tt>MediaWiki</tt>. The return value is an
+	 * iterator which will return the result of the purge for each of the pages
+	 * in order when its <code>next</code> method is called. The iterator's
+	 * <code>next</code> method may throw
+	 * <tt>MediaWiki.IterationException</tt>, an unchecked exception, if it
+	 * encounters an error.
 	 * <p>
-	 * This version of the <code>expandTemplatesInWikitext</code> method may not
-	 * resolve <i>magic words</i> such as <tt>{{PAGENAME}}</tt> and
-	 * <tt>{{FULLPAGENAME}}</tt> correctly. According to the MediaWiki API
-	 * documentation, it acts as if the page were named <code>"API"</code>.
+	 * Pages are read from <code>fullPageNames</code> and purged in batches of
+	 * up to 50 per request, as results are requested, so the names may come
+	 * from another iterator that gets them from the wiki as it goes. Requests
+	 * are paced by the request governor as requests of the class
+	 * <code>MediaWiki.RequestClass.PURGE</code>.
 	 * 
-	 * @param wikitext
-	 *            Wikitext to be expanded, possibly containing template
-	 *            invocations.
-	 * @return the wikitext with templates expanded
-	 * @throws IOException
-	 * @throws MediaWiki.MediaWikiException
-	 * @see #expandTemplatesInWikitext(String, String)
+	 * @param fullPageNames
+	 *            An iterator returning the full names of the pages to purge.
+	 * @return an iterator which will return the result of the purge for each
+	 *         of the pages returned by <code>fullPageNames</code> in order when
+	 *         its <code>next</code> method is called
+	 * @see #purgePages(Iterator)
 	 */
-	public String expandTemplatesInWikitext(final String wikitext) throws IOException, MediaWiki.MediaWikiException {
-		return expandTemplatesInWikitext(wikitext, null);
+	public Iterator<MediaWiki.PurgeResult> purge(final Iterator<String> fullPageNames) {
+		return new MediaWiki.PurgeIterator(fullPageNames);
 	}
 
 	/**
-	 * Expands templates in wikitext on the wiki represented by this
-	 * <tt>MediaWiki</tt> as if the wikitext were on the given page.
-	 * <p>
-	 * Template invocations are generally between <tt>{{</tt> and <tt>}}</tt>.
-	 * <p>
-	 * This version of the <code>expandTemplatesInWikitext</code> method
-	 * resolves <i>magic words</i> such as <tt>{{PAGENAME}}</tt> and
-	 * <tt>{{FULLPAGENAME}}</tt> correctly.
+	 * Purges the pages returned by the given iterator on the wiki represented
+	 * by this <tt>MediaWiki</tt>. This method accepts the iterators returned
+	 * by methods such as <code>getPagesTranscluding</code>,
+	 * <code>getCategoryMembers</code> and <code>getAllPages</code>, so that,
+	 * for example, all pages using a template can be purged with:
 	 * 
-	 * @param wikitext
-	 *            Wikitext to be expanded, possibly containing template
-	 *            invocations.
-	 * @param fullPageName
-	 *            Act as if the wikitext were on a page with this full name. May
-	 *            be <code>null</code>.
-	 * @return the wikitext with templates expanded
-	 * @throws IOException
-	 * @throws MediaWiki.MediaWikiException
+	 * <pre>
+	 * wiki.purgePages(wiki.getPagesTranscluding(&quot;Template:Name&quot;, false))
+	 * </pre>
+	 * 
+	 * The return value is an iterator which will return the result of the
+	 * purge for each of the pages in order when its <code>next</code> method is
+	 * called. The iterator's <code>next</code> method may throw
+	 * <tt>MediaWiki.IterationException</tt>, an unchecked exception, if it
+	 * encounters an error.
+	 * 
+	 * @param pages
+	 *            An iterator returning the pages to purge.
+	 * @return an iterator which will return the result of the purge for each
+	 *         of the pages returned by <code>pages</code> in order when its
+	 *         <code>next</code> method is called
+	 * @see #purge(Iterator)
 	 */
-	public String expandTemplatesInWikitext(final String wikitext, final String fullPageName) throws IOException, MediaWiki.MediaWikiException {
-		if (wikitext.length() <= 4) // {{}}
-			return wikitext; // Cannot contain any templates
+	public Iterator<MediaWiki.PurgeResult> purgePages(final Iterator<? extends MediaWiki.PageNameComponents> pages) {
+		return purge(new AbstractReadOnlyIterator<String>() {
+			public boolean hasNext() {
+				return pages.hasNext();
+			}
 
-		final Map<String, String> getParams = paramValuesToMap("action", "expandtemplates", "format", "xml", "text", wikitext, "title", fullPageName);
+			public String next() {
+				final MediaWiki.PageNameComponents page = pages.next();
+				return page != null ? page.getFullPageName() : null;
+			}
+		});
+	}
 
-		final String url = createApiGetUrl(getParams);
+	private class PurgeIterator extends AbstractReadOnlyIterator<MediaWiki.PurgeResult> {
+		/**
+		 * The maximum number of titles to purge in one request. This is the
+		 * limit imposed by the API on titles for users without the
+		 * <code>apihighlimits</code> right.
+		 */
+		private static final int BATCH_SIZE = 50;
 
-		networkLock.lock();
-		try {
-			final InputStream in = get(url);
-			final Document xml = parse(in);
-			checkError(xml);
+		private final Iterator<String> fullPageNames;
 
-			final NodeList expandtemplatesTags = xml.getElementsByTagName("expandtemplates");
+		/**
+		 * The next non-<code>null</code> page name read from
+		 * <code>fullPageNames</code> but not yet purged, or <code>null</code>
+		 * if there is none.
+		 */
+		private String upcomingTitle;
 
-			if (expandtemplatesTags.getLength() > 0) {
-				final Element expandtemplatesTag = (Element) expandtemplatesTags.item(0);
+		/**
+		 * The results for the batch being returned. Its elements are removed
+		 * as they are returned.
+		 */
+		private final LinkedList<MediaWiki.PurgeResult> batch = new LinkedList<MediaWiki.PurgeResult>();
 
-				return expandtemplatesTag.getTextContent();
-			} else
-				throw new MediaWiki.ResponseFormatException("expected <expandtemplates> tag not present");
-		} finally {
-			networkLock.unlock();
+		PurgeIterator(final Iterator<String> fullPageNames) {
+			this.fullPageNames = fullPageNames;
 		}
-	}
 
-	// - - - PARSE WIKITEXT (ACTION=PARSE) - - -
-
-	/**
-	 * Parses wikitext to HTML on the wiki represented by this
-	 * <tt>MediaWiki</tt>.
-	 * <p>
-	 * This method resolves <i>magic words</i> such as <tt>{{PAGENAME}}</tt> and
-	 * <tt>{{FULLPAGENAME}}</tt> correctly.
-	 * 
-	 * @param wikitext
-	 *            Wikitext to be parsed.
-	 * @param fullPageName
-	 *            Act as if the wikitext were on a page with this full name. May
-	 *            be <code>null</code>, in which case, according to the
-	 *            MediaWiki API documentation, it acts as if the page were named
-	 *            <code>"API"</code>.
-	 * @param preSaveTransform
-	 *            If this parameter is <code>true</code>, requests a pre-save
-	 *            transform, which expands <tt>{{subst:}}</tt> template
-	 *            invocations, signatures and timestamps (<tt>~~~</tt>,
-	 *            <tt>~~~~</tt>, <tt>~~~~~</tt>).
-	 * @param languageCode
-	 *            Code of the language used to parse the page. Usually not
-	 *            needed, except on pages that use the value of
-	 *            <tt>{{int:Lang}}</tt>. May be <code>null</code>.
-	 * @return an object representing the result of parsing the given
-	 *         <code>wikitext</code>
-	 * @throws IOException
-	 * @throws MediaWiki.MediaWikiException
-	 */
-	public MediaWiki.ParseResult parseWikitext(final String wikitext, final String fullPageName, final boolean preSaveTransform, final String languageCode) throws IOException, MediaWiki.MediaWikiException {
-		final Map<String, String> getParams = paramValuesToMap("action", "parse", "format", "xml", "text", wikitext, "title", fullPageName, "uselang", languageCode);
-		if (preSaveTransform) {
-			getParams.put("pst", "true");
+		public synchronized boolean hasNext() {
+			return !batch.isEmpty() || hasUpcomingTitle();
 		}
 
-		final String url = createApiGetUrl(getParams);
-
-		networkLock.lock();
-		try {
-			final InputStream in = get(url);
-			final Document xml = parse(in);
-			checkError(xml);
-
-			final NodeList parseTags = xml.getElementsByTagName("parse");
-
-			if (parseTags.getLength() > 0) {
-				final Element parseTag = (Element) parseTags.item(0);
-
-				String text = null;
-				final List<MediaWiki.InterlanguageLink> langLinks = new ArrayList<MediaWiki.InterlanguageLink>();
-				final List<MediaWiki.CategoryMembership> categoryMemberships = new ArrayList<MediaWiki.CategoryMembership>();
-				final List<MediaWiki.Link> internalLinks = new ArrayList<MediaWiki.Link>();
-				final List<MediaWiki.Link> transclusionsInWikitext = new ArrayList<MediaWiki.Link>();
-				final List<MediaWiki.Link> images = new ArrayList<MediaWiki.Link>();
-				final List<String> externalLinks = new ArrayList<String>();
-
-				final NodeList textTags = parseTag.getElementsByTagName("text");
-				if (textTags.getLength() > 0) {
-					final Element textTag = (Element) textTags.item(0);
-
-					text = textTag.getTextContent();
-				} else
-					throw new MediaWiki.ResponseFormatException("expected <text> tag not present");
-
-				final NodeList langlinksTags = parseTag.getElementsByTagName("langlinks");
-				if (langlinksTags.getLength() > 0) {
-					final Element langlinksTag = (Element) langlinksTags.item(0);
-
-					final NodeList llTags = langlinksTag.getElementsByTagName("ll");
+		public synchronized MediaWiki.PurgeResult next() throws MediaWiki.IterationException {
+			if (batch.isEmpty()) {
+				purgeBatch();
+			}
 
-					for (int i = 0; i < llTags.getLength(); i++) {
-						final Element llTag = (Element) llTags.item(i);
+			if (batch.isEmpty())
+				throw new NoSuchElementException();
 
-						langLinks.add(new MediaWiki.InterlanguageLink(llTag.getAttribute("lang"), llTag.getTextContent()));
-					}
-				} else
-					throw new MediaWiki.ResponseFormatException("expected <langlinks> tag not present");
+			return batch.removeFirst();
+		}
 
-				final NodeList categoriesTags = parseTag.getElementsByTagName("categories");
-				if (categoriesTags.getLength() > 0) {
-					final Element categoriesTag = (Element) categoriesTags.item(0);
+		/**
+		 * Skips the <code>null</code> page names returned by
+		 * <code>fullPageNames</code>, then returns whether a page name is
+		 * upcoming.
+		 */
+		private boolean hasUpcomingTitle() {
+			while (upcomingTitle == null && fullPageNames.hasNext()) {
+				upcomingTitle = fullPageNames.next();
+			}
+			return upcomingTitle != null;
+		}
 
-					final NodeList clTags = categoriesTag.getElementsByTagName("cl");
+		private void purgeBatch() throws MediaWiki.IterationException {
+			final List<String> titles = new ArrayList<String>(BATCH_SIZE);
 
-					for (int i = 0; i < clTags.getLength(); i++) {
-						final Element clTag = (Element) clTags.item(i);
+			while (titles.size() < BATCH_SIZE && hasUpcomingTitle()) {
+				titles.add(upcomingTitle);
+				upcomingTitle = null;
+			}
 
-						categoryMemberships.add(new MediaWiki.CategoryMembership(clTag.getTextContent(), clTag.getAttribute("sortkey")));
-					}
-				} else
-					throw new MediaWiki.ResponseFormatException("expected <categories> tag not present");
+			if (titles.isEmpty())
+				return;
 
-				final NodeList linksTags = parseTag.getElementsByTagName("links");
-				if (linksTags.getLength() > 0) {
-					final Element linksTag = (Element) linksTags.item(0);
+			final StringBuilder titleString = new StringBuilder(titles.size() * 16);
+			for (final String title : titles) {
+				if (titleString.length() > 0) {
+					titleString.append('|');
+				}
+				titleString.append(titleToAPIForm(title));
+			}
 
-					final NodeList plTags = linksTag.getElementsByTagName("pl");
+			final Map<String, String> getParams = paramValuesToMap("action", "purge", "format", "xml");
 
-					for (int i = 0; i < plTags.getLength(); i++) {
-						final Element plTag = (Element) plTags.item(i);
+			final Map<String, String> postParams = paramValuesToMap("titles", titleString.toString());
 
-						internalLinks.add(new Link(Long.parseLong(plTag.getAttribute("ns")), plTag.getTextContent()));
-					}
-				} else
-					throw new MediaWiki.ResponseFormatException("expected <links> tag not present");
+			final String url = createApiGetUrl(getParams);
 
-				final NodeList templatesTags = parseTag.getElementsByTagName("templates");
-				if (templatesTags.getLength() > 0) {
-					final Element templatesTag = (Element) templatesTags.item(0);
+			networkLock.lock();
+			try {
+				final InputStream in = post(url, postParams);
+				final Document xml = parse(in);
+				checkError(xml);
 
-					final NodeList tlTags = templatesTag.getElementsByTagName("tl");
+				final NodeList purgeTags = xml.getElementsByTagName("purge");
 
-					for (int i = 0; i < tlTags.getLength(); i++) {
-						final Element tlTag = (Element) tlTags.item(i);
+				if (purgeTags.getLength() == 0)
+					throw new MediaWiki.ResponseFormatException("expected <purge> tag not present");
 
-						transclusionsInWikitext.add(new Link(Long.parseLong(tlTag.getAttribute("ns")), tlTag.getTextContent()));
-					}
-				} else
-					throw new MediaWiki.ResponseFormatException("expected <templates> tag not present");
+				final Map<String, String> normalizations = new TreeMap<String, String>();
 
-				final NodeList imagesTags = parseTag.getElementsByTagName("images");
-				if (imagesTags.getLength() > 0) {
-					final Element imagesTag = (Element) imagesTags.item(0);
+				final NodeList nTags = xml.getElementsByTagName("n");
 
-					final NodeList imgTags = imagesTag.getElementsByTagName("img");
+				for (int j = 0; j < nTags.getLength(); j++) {
+					final Element nTag = (Element) nTags.item(j);
 
-					for (int i = 0; i < imgTags.getLength(); i++) {
-						final Element imgTag = (Element) imgTags.item(i);
+					normalizations.put(nTag.getAttribute("from"), nTag.getAttribute("to"));
+				}
 
-						images.add(new MediaWiki.Link(MediaWiki.StandardNamespace.FILE, getNamespaces().getNamespace(MediaWiki.StandardNamespace.FILE).getFullPageName(imgTag.getTextContent())));
-					}
-				} else
-					throw new MediaWiki.ResponseFormatException("expected <images> tag not present");
+				final Map<String, Element> pageTagsByTitle = new TreeMap<String, Element>();
 
-				final NodeList externallinksTags = parseTag.getElementsByTagName("externallinks");
-				if (externallinksTags.getLength() > 0) {
-					final Element externallinksTag = (Element) externallinksTags.item(0);
+				final NodeList pageTags = ((Element) purgeTags.item(0)).getElementsByTagName("page");
 
-					final NodeList elTags = externallinksTag.getElementsByTagName("el");
+				for (int j = 0; j < pageTags.getLength(); j++) {
+					final Element pageTag = (Element) pageTags.item(j);
 
-					for (int i = 0; i < elTags.getLength(); i++) {
-						final Element elTag = (Element) elTags.item(i);
+					pageTagsByTitle.put(pageTag.getAttribute("title"), pageTag);
+				}
 
-						externalLinks.add(elTag.getTextContent());
+				for (final String title : titles) {
+					final String apiTitle = titleToAPIForm(title);
+					final Element pageTag = pageTagsByTitle.get(normalizations.containsKey(apiTitle) ? normalizations.get(apiTitle) : apiTitle);
+
+					if (pageTag == null) {
+						/*
+						 * Some versions of MediaWiki report invalid titles
+						 * only in a warning, without a <page> tag.
+						 */
+						batch.add(new MediaWiki.PurgeResult(title, false, false, true));
+						continue;
 					}
-				} else
-					throw new MediaWiki.ResponseFormatException("expected <externallinks> tag not present");
 
-				// TODO Sections in wikitext
-
-				return new MediaWiki.ParseResult(text, langLinks, categoryMemberships, internalLinks, transclusionsInWikitext, images, externalLinks);
-			} else
-				throw new MediaWiki.ResponseFormatException("expected <parse> tag not present");
-		} finally {
-			networkLock.unlock();
+					batch.add(new MediaWiki.PurgeResult(title, pageTag.hasAttribute("purged"), pageTag.hasAttribute("missing"), pageTag.hasAttribute("invalid")));
+				}
+			} catch (final IOException ioe) {
+				throw new MediaWiki.IterationException(ioe);
+			} catch (final MediaWiki.MediaWikiException mwe) {
+				throw new MediaWiki.IterationException(mwe);
+			} finally {
+				networkLock.unlock();
+			}
 		}
 	}
 
-	// - - - EDIT - - -
+	// - - - WATCHLIST - - -
 
 	/**
-	 * Starts an edit to the given page, specified by its full name. The
-	 * returned token contains informaton used to detect conflicts when the edit
-	 * is ended.
+	 * Adds one or more pages to the watchlist of the user currently logged in
+	 * on the wiki represented by this <tt>MediaWiki</tt>.
+	 * <p>
+	 * Silently ignores failures to watch individual pages, but not the lack of
+	 * a reply to the watch request. Pages are watched in batches of up to 50
+	 * per request; use the variant returning an iterator to learn which pages
+	 * were watched.
 	 * 
-	 * @param fullName
-	 *            The full name, including the namespace, of the page to start
-	 *            editing.
-	 * @return a <tt>MediaWiki.EditToken</tt> containing informaton used to
-	 *         detect conflicts when the edit is ended
+	 * @param fullPageNames
+	 *            The full name(s) of the page(s) to watch.
+	 * @return this <tt>MediaWiki</tt>
 	 * @throws IOException
-	 *             if <tt>IOException</tt> is thrown while connecting to the
-	 *             wiki or while reading the XML reply from the API
 	 * @throws MediaWiki.MediaWikiException
-	 *             if a MediaWiki API error is returned
+	 * @see #watch(Iterator)
 	 */
-	public MediaWiki.EditToken startEdit(final String fullName) throws IOException, MediaWiki.MediaWikiException {
-		final Map<String, String> getParams = paramValuesToMap("action", "query", "format", "xml", "prop", "info", "intoken", "edit", "titles", titleToAPIForm(fullName));
+	public MediaWiki watch(final String... fullPageNames) throws IOException, MediaWiki.MediaWikiException {
+		drainWatchResults(watch(Arrays.asList(fullPageNames).iterator()));
+		return this;
+	}
 
-		final String url = createApiGetUrl(getParams);
+	/**
+	 * Removes one or more pages from the watchlist of the user currently
+	 * logged in on the wiki represented by this <tt>MediaWiki</tt>.
+	 * <p>
+	 * Silently ignores failures to unwatch individual pages, but not the lack
+	 * of a reply to the unwatch request. Pages are unwatched in batches of up
+	 * to 50 per request; use the variant returning an iterator to learn which
+	 * pages were unwatched.
+	 * 
+	 * @param fullPageNames
+	 *            The full name(s) of the page(s) to unwatch.
+	 * @return this <tt>MediaWiki</tt>
+	 * @throws IOException
+	 * @throws MediaWiki.MediaWikiException
+	 * @see #unwatch(Iterator)
+	 */
+	public MediaWiki unwatch(final String... fullPageNames) throws IOException, MediaWiki.MediaWikiException {
+		drainWatchResults(unwatch(Arrays.asList(fullPageNames).iterator()));
+		return this;
+	}
 
-		networkLock.lock();
+	private void drainWatchResults(final Iterator<MediaWiki.WatchResult> results) throws IOException, MediaWiki.MediaWikiException {
 		try {
-			final InputStream in = get(url);
-			final Document xml = parse(in);
-			checkError(xml);
-
-			final NodeList pageTags = xml.getElementsByTagName("page");
-
-			if (pageTags.getLength() > 0) {
-				final Element pageTag = (Element) pageTags.item(0);
-
-				if (!pageTag.hasAttribute("edittoken"))
-					throw new MediaWiki.PermissionException("edit");
-
-				final Date lastRevision = pageTag.hasAttribute("touched") ? iso8601TimestampParser.parse(pageTag.getAttribute("touched")) : null;
-				final Date start = iso8601TimestampParser.parse(pageTag.getAttribute("starttimestamp"));
-				final String token = pageTag.getAttribute("edittoken");
-
-				return new MediaWiki.EditToken(fullName, lastRevision, start, token);
-			} else
-				throw new MediaWiki.ResponseFormatException("expected <page> tag not found");
-		} catch (final ParseException pe) {
-			throw new MediaWiki.MediaWikiException(pe);
-		} finally {
-			networkLock.unlock();
+			while (results.hasNext()) {
+				results.next();
+			}
+		} catch (final MediaWiki.IterationException ie) {
+			final Throwable cause = ie.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			else if (cause instanceof MediaWiki.MediaWikiException)
+				throw (MediaWiki.MediaWikiException) cause;
+			throw ie;
 		}
 	}
 
 	/**
-	 * Ends an edit embodied by the specified <code>editToken</code> by
-	 * replacing the entire page it specifies with the given text.
+	 * Adds the pages whose full names are returned by the given iterator to
+	 * the watchlist of the user currently logged in on the wiki represented by
+	 * this <tt>MediaWiki</tt>. The return value is an iterator which will
+	 * return the result for each of the pages in order when its
+	 * <code>next</code> method is called. The iterator's <code>next</code>
+	 * method may throw <tt>MediaWiki.IterationException</tt>, an unchecked
+	 * exception, if it encounters an error.
 	 * <p>
-	 * This method requires the page to exist on the wiki represented by this
-	 * <tt>MediaWiki</tt> prior to the call. If it doesn't,
-	 * <tt>MediaWiki.MissingPageException</tt> is thrown. If this behavior is
-	 * not desired, please use <code>createOrReplacePage</code>.
+	 * Pages are read from <code>fullPageNames</code> and watched in batches of
+	 * up to 50 per request, as results are requested. The watch token is
+	 * obtained once, with the first batch, from <code>meta=tokens</code> where
+	 * the wiki has it. Requests are paced by the request
+	 * governor as requests of the class <code>MediaWiki.RequestClass.EDIT</code>.
+	 * <p>
+	 * Wikis before MediaWiki 1.23, which do not accept the <code>titles</code>
+	 * parameter of <code>action=watch</code>, are detected on the first batch;
+	 * each page is then watched with a request of its own. <code>null</code>
+	 * page names are skipped.
 	 * 
-	 * @param editToken
-	 *            The <tt>EditToken</tt> describing the page to edit and
-	 *            containing information to detect conflicts.
-	 * @param newText
-	 *            The text to be contained by the page after the edit.
-	 * @param editSummary
-	 *            The summary to be used to describe the edit.
-	 * @param bot
-	 *            Whether to mark the edit as made by a bot ( <code>true</code>)
-	 *            or not (<code>false</code>).
-	 * @param minor
-	 *            Whether to mark the edit as minor (<code>true</code>) or not (
-	 *            <code>false</code>) or to use the value in
-	 *            <tt>Special:Preferences</tt> for the currently-logged in user
-	 *            of this <tt>MediaWiki</tt>.
-	 * @return this <tt>MediaWiki</tt>
-	 * @throws IOException
-	 *             if <tt>IOException</tt> is thrown while connecting to the
-	 *             wiki or while reading the XML reply from the API
-	 * @throws MediaWiki.MediaWikiException
-	 *             if a MediaWiki API error is returned
+	 * @param fullPageNames
+	 *            An iterator returning the full names of the pages to watch.
+	 * @return an iterator which will return the result for each of the pages
+	 *         returned by <code>fullPageNames</code> in order when its
+	 *         <code>next</code> method is called
 	 */
-	public MediaWiki replacePage(final MediaWiki.EditToken editToken, final String newText, final String editSummary, final boolean bot, final Boolean minor) throws IOException, MediaWiki.MediaWikiException {
-		return editPage(editToken, null, true, newText, editSummary, bot, minor);
+	public Iterator<MediaWiki.WatchResult> watch(final Iterator<String> fullPageNames) {
+		return new MediaWiki.WatchIterator(fullPageNames, false);
 	}
 
 	/**
-	 * Ends an edit embodied by the specified <code>editToken</code> by creating
-	 * the page it specifies and adding the given text to it.
+	 * Removes the pages whose full names are returned by the given iterator
+	 * from the watchlist of the user currently logged in on the wiki
+	 * represented by this <tt>MediaWiki</tt>. The return value is an iterator
+	 * which will return the result for each of the pages in order when its
+	 * <code>next</code> method is called. The iterator's <code>next</code>
+	 * method may throw <tt>MediaWiki.IterationException</tt>, an unchecked
+	 * exception, if it encounters an error.
 	 * <p>
-	 * This method requires the page not to exist on the wiki represented by
-	 * this <tt>MediaWiki</tt> prior to the call. If it does,
-	 * <tt>MediaWiki.ExistingPageException</tt> is thrown. If this behavior is
-	 * not desired, please use <code>createOrReplacePage</code>.
+	 * Pages are unwatched in batches in the same way as they are watched by
+	 * <code>watch(Iterator)</code>.
 	 * 
-	 * @param editToken
-	 *            The <tt>EditToken</tt> describing the page to edit and
-	 *            containing information to detect conflicts.
-	 * @param newText
-	 *            The text to be contained by the page after the edit.
-	 * @param editSummary
-	 *            The summary to be used to describe the edit.
-	 * @param bot
-	 *            Whether to mark the edit as made by a bot ( <code>true</code>)
-	 *            or not (<code>false</code>).
-	 * @param minor
-	 *            Whether to mark the edit as minor (<code>true</code>) or not (
-	 *            <code>false</code>) or to use the value in
-	 *            <tt>Special:Preferences</tt> for the currently-logged in user
-	 *            of this <tt>MediaWiki</tt>.
-	 * @return this <tt>MediaWiki</tt>
-	 * @throws IOException
-	 *             if <tt>IOException</tt> is thrown while connecting to the
-	 *             wiki or while reading the XML reply from the API
-	 * @throws MediaWiki.MediaWikiException
-	 *             if a MediaWiki API error is returned
+	 * @param fullPageNames
+	 *            An iterator returning the full names of the pages to unwatch.
+	 * @return an iterator which will return the result for each of the pages
+	 *         returned by <code>fullPageNames</code> in order when its
+	 *         <code>next</code> method is called
+	 * @see #watch(Iterator)
 	 */
-	public MediaWiki createPage(final MediaWiki.EditToken editToken, final String newText, final String editSummary, final boolean bot, final Boolean minor) throws IOException, MediaWiki.MediaWikiException {
-		return editPage(editToken, null, false, newText, editSummary, bot, minor);
+	public Iterator<MediaWiki.WatchResult> unwatch(final Iterator<String> fullPageNames) {
+		return new MediaWiki.WatchIterator(fullPageNames, true);
 	}
 
-	/**
-	 * Ends an edit embodied by the specified <code>editToken</code> by either
-	 * creating or replacing the page it specifies with the given text.
-	 * <p>
-	 * This method creates the page if it doesn't exist, or replaces its
-	 * contents if it does.
-	 * 
-	 * @param editToken
-	 *            The <tt>EditToken</tt> describing the page to edit and
-	 *            containing information to detect conflicts.
-	 * @param newText
-	 *            The text to be contained by the page after the edit.
-	 * @param editSummary
-	 *            The summary to be used to describe the edit.
-	 * @param bot
-	 *            Whether to mark the edit as made by a bot ( <code>true</code>)
-	 *            or not (<code>false</code>).
-	 * @param minor
-	 *            Whether to mark the edit as minor (<code>true</code>) or not (
-	 *            <code>false</code>) or to use the value in
-	 *            <tt>Special:Preferences</tt> for the currently-logged in user
-	 *            of this <tt>MediaWiki</tt>.
-	 * @return this <tt>MediaWiki</tt>
-	 * @throws IOException
-	 *             if <tt>IOException</tt> is thrown while connecting to the
-	 *             wiki or while reading the XML reply from the API
-	 * @throws MediaWiki.MediaWikiException
-	 *             if a MediaWiki API error is returned
-	 */
-	public MediaWiki createOrReplacePage(final MediaWiki.EditToken editToken, final String newText, final String editSummary, final boolean bot, final Boolean minor) throws IOException, MediaWiki.MediaWikiException {
-		return editPage(editToken, null, null, newText, editSummary, bot, minor);
-	}
+	private class WatchIterator extends AbstractReadOnlyIterator<MediaWiki.WatchResult> {
+		/**
+		 * The maximum number of titles to watch or unwatch in one request.
+		 * This is the limit imposed by the API on titles for users without
+		 * the <code>apihighlimits</code> right.
+		 */
+		private static final int BATCH_SIZE = 50;
 
-	/**
-	 * Ends an edit embodied by the specified <code>editToken</code> by
-	 * replacing one of the sections of the page it specifies with the given
-	 * text.
-	 * <p>
-	 * This method requires the page to exist on the wiki represented by this
-	 * <tt>MediaWiki</tt> prior to the call. If it doesn't,
-	 * <tt>MediaWiki.MissingPageException</tt> is thrown.
-	 * 
-	 * @param editToken
-	 *            The <tt>EditToken</tt> describing the page to edit and
-	 *            containing information to detect conflicts.
-	 * @param sectionIndex
-	 *            The index of the section to replace. <code>0</code> for the
-	 *            introduction.
-	 * @param newText
-	 *            The text to be contained by the section after the edit.
-	 * @param editSummary
-	 *            The summary to be used to describe the edit.
-	 * @param bot
-	 *            Whether to mark the edit as made by a bot ( <code>true</code>)
-	 *            or not (<code>false</code>).
-	 * @param minor
-	 *            Whether to mark the edit as minor (<code>true</code>) or not (
-	 *            <code>false</code>) or to use the value in
-	 *            <tt>Special:Preferences</tt> for the currently-logged in user
-	 *            of this <tt>MediaWiki</tt>.
-	 * @return this <tt>MediaWiki</tt>
-	 * @throws IOException
-	 *             if <tt>IOException</tt> is thrown while connecting to the
-	 *             wiki or while reading the XML reply from the API
-	 * @throws MediaWiki.MediaWikiException
-	 *             if a MediaWiki API error is returned
-	 */
-	public MediaWiki replacePageSection(final MediaWiki.EditToken editToken, final int sectionIndex, final String newText, final String editSummary, final boolean bot, final Boolean minor) throws IOException, MediaWiki.MediaWikiException {
-		return editPage(editToken, Integer.toString(sectionIndex), true, newText, editSummary, bot, minor);
-	}
+		private final Iterator<String> fullPageNames;
 
-	/**
-	 * Ends an edit embodied by the specified <code>editToken</code> by creating
-	 * a section at the bottom of the page it specifies.
-	 * <p>
-	 * This method creates the page if it doesn't exist, or adds to its contents
-	 * if it does.
-	 * 
-	 * @param editToken
-	 *            The <tt>EditToken</tt> describing the page to edit and
-	 *            containing information to detect conflicts.
-	 * @param heading
-	 *            The heading of the section to be added. This is also used to
-	 *            create an automatic edit summary to describe the creation of
-	 *            the section.
-	 * @param text
-	 *            The text to be contained by the section.
-	 * @param bot
-	 *            Whether to mark the edit as made by a bot ( <code>true</code>)
-	 *            or not (<code>false</code>).
-	 * @param minor
-	 *            Whether to mark the edit as minor (<code>true</code>) or not (
-	 *            <code>false</code>) or to use the value in
-	 *            <tt>Special:Preferences</tt> for the currently-logged in user
-	 *            of this <tt>MediaWiki</tt>.
-	 * @return this <tt>MediaWiki</tt>
-	 * @throws IOException
-	 *             if <tt>IOException</tt> is thrown while connecting to the
-	 *             wiki or while reading the XML reply from the API
-	 * @throws MediaWiki.MediaWikiException
-	 *             if a MediaWiki API error is returned
-	 */
-	public MediaWiki createPageSection(final MediaWiki.EditToken editToken, final String heading, final String text, final boolean bot, final Boolean minor) throws IOException, MediaWiki.MediaWikiException {
-		return editPage(editToken, "new", null, text, heading, bot, minor);
-	}
+		private final boolean unwatch;
 
-	/**
-	 * Ends an edit embodied by the specified <code>editToken</code>.
-	 * 
-	 * @param editToken
-	 *            The <tt>EditToken</tt> describing the page to edit and
-	 *            containing information to detect conflicts.
-	 * @param section
-	 *            <code>"new"</code> to create a new section; the string
-	 *            corresponding to a number to edit that section index;
-	 *            <code>null</code> to replace the entire page.
-	 * @param requireExist
-	 *            <code>true</code> to require that the page already exist;
-	 *            <code>false</code> to require that the page not exist;
-	 *            <code>null</code> to require nothing.
-	 * @param editSummary
-	 *            The summary to be used to describe the edit, or, if
-	 *            <code>section</code> is <code>"new"</code>, the heading of the
-	 *            section to be added.
-	 * @param text
-	 *            The text to be contained by the section.
-	 * @param bot
-	 *            Whether to mark the edit as made by a bot ( <code>true</code>)
-	 *            or not (<code>false</code>).
-	 * @param minor
-	 *            Whether to mark the edit as minor (<code>true</code>) or not (
-	 *            <code>false</code>) or to use the value in
-	 *            <tt>Special:Preferences</tt> for the currently-logged in user
-	 *            of this <tt>MediaWiki</tt>.
-	 * @return this <tt>MediaWiki</tt>
-	 * @throws IOException
-	 * @throws MediaWiki.MediaWikiException
-	 */
-	protected MediaWiki editPage(final MediaWiki.EditToken editToken, final String section, final Boolean requireExist, final String text, final String editSummary, final boolean bot, final Boolean minor) throws IOException, MediaWiki.MediaWikiException {
-		final Map<String, String> getParams = paramValuesToMap("action", "edit", "format", "xml");
-		final Map<String, String> postParams = paramValuesToMap("title", editToken.getFullPageName(), "text", text, "token", editToken.getTokenText(), "starttimestamp", iso8601TimestampParser.format(editToken.getStartTime()), "summary", editSummary, "section", section);
-		if (bot) {
-			postParams.put("bot", "true");
+		/**
+		 * The next non-<code>null</code> page name read from
+		 * <code>fullPageNames</code> but not yet watched, or <code>null</code>
+		 * if there is none.
+		 */
+		private String upcomingTitle;
+
+		/**
+		 * The watch token, or <code>null</code> if it has not been obtained
+		 * yet.
+		 */
+		private String token;
+
+		/**
+		 * Whether the wiki predates the <code>titles</code> parameter of
+		 * <code>action=watch</code>, added in MediaWiki 1.23, so that each
+		 * page is watched with a request of its own.
+		 */
+		private boolean singleTitles;
+
+		/**
+		 * The results for the batch being returned. Its elements are removed
+		 * as they are returned.
+		 */
+		private final LinkedList<MediaWiki.WatchResult> batch = new LinkedList<MediaWiki.WatchResult>();
+
+		WatchIterator(final Iterator<String> fullPageNames, final boolean unwatch) {
+			this.fullPageNames = fullPageNames;
+			this.unwatch = unwatch;
 		}
-		if (minor != null) {
-			postParams.put(minor ? "minor" : "notminor", "true");
+
+		public synchronized boolean hasNext() {
+			return !batch.isEmpty() || hasUpcomingTitle();
 		}
-		if (requireExist != null) {
-			postParams.put(requireExist ? "nocreate" : "createonly", "true");
+
+		public synchronized MediaWiki.WatchResult next() throws MediaWiki.IterationException {
+			if (batch.isEmpty()) {
+				watchBatch();
+			}
+
+			if (batch.isEmpty())
+				throw new NoSuchElementException();
+
+			return batch.removeFirst();
 		}
-		if (editToken.getLastRevisionTime() != null) {
-			postParams.put("basetimestamp", iso8601TimestampParser.format(editToken.getLastRevisionTime()));
+
+		/**
+		 * Skips the <code>null</code> page names returned by
+		 * <code>fullPageNames</code>, then returns whether a page name is
+		 * upcoming.
+		 */
+		private boolean hasUpcomingTitle() {
+			while (upcomingTitle == null && fullPageNames.hasNext()) {
+				upcomingTitle = fullPageNames.next();
+			}
+			return upcomingTitle != null;
 		}
 
-		final String url = createApiGetUrl(getParams);
+		private void watchBatch() throws MediaWiki.IterationException {
+			final List<String> titles = new ArrayList<String>(BATCH_SIZE);
+
+			while (titles.size() < BATCH_SIZE && hasUpcomingTitle()) {
+				titles.add(upcomingTitle);
+				upcomingTitle = null;
+			}
+
+			if (titles.isEmpty())
+				return;
+
+			final StringBuilder titleString = new StringBuilder(titles.size() * 16);
+			for (final String title : titles) {
+				if (titleString.length() > 0) {
+					titleString.append('|');
+				}
+				titleString.append(titleToAPIForm(title));
+			}
+
+			networkLock.lock();
+			try {
+				if (token == null) {
+					token = getWatchToken(titleString.toString());
+				}
+
+				if (!singleTitles && watchTitles(titles, titleString.toString()))
+					return;
+
+				// The wiki takes one page per request.
+				singleTitles = true;
+				for (final String title : titles) {
+					watchTitle(title);
+				}
+			} catch (final IOException ioe) {
+				throw new MediaWiki.IterationException(ioe);
+			} catch (final MediaWiki.MediaWikiException mwe) {
+				throw new MediaWiki.IterationException(mwe);
+			} finally {
+				networkLock.unlock();
+			}
+		}
+
+		/**
+		 * Watches or unwatches the pages of a batch with one request. The
+		 * network lock must be held by the caller.
+		 * 
+		 * @return <code>true</code> if the results were added to
+		 *         <code>batch</code>; <code>false</code> if the wiki does not
+		 *         accept the <code>titles</code> parameter
+		 */
+		private boolean watchTitles(final List<String> titles, final String titleString) throws IOException, MediaWiki.MediaWikiException {
+			final Map<String, String> getParams = paramValuesToMap("action", "watch", "format", "xml", "unwatch", unwatch ? "" : null);
+
+			final Map<String, String> postParams = paramValuesToMap("titles", titleString, "token", token);
+
+			final String url = createApiGetUrl(getParams);
 
-		networkLock.lock();
-		try {
 			final InputStream in = post(url, postParams);
 			final Document xml = parse(in);
+			// Wikis before 1.23 require their single title parameter.
+			if (getErrorCode(xml).equals("notitle"))
+				return false;
 			checkError(xml);
 
-			final NodeList editTags = xml.getElementsByTagName("edit");
+			final NodeList watchTags = xml.getElementsByTagName("watch");
+
+			if (watchTags.getLength() == 0)
+				throw new MediaWiki.ResponseFormatException("expected <watch> tag not present");
+
+			final Map<String, String> normalizations = new TreeMap<String, String>();
+
+			final NodeList nTags = xml.getElementsByTagName("n");
+
+			for (int j = 0; j < nTags.getLength(); j++) {
+				final Element nTag = (Element) nTags.item(j);
+
+				normalizations.put(nTag.getAttribute("from"), nTag.getAttribute("to"));
+			}
+
+			final Map<String, Element> wTagsByTitle = new TreeMap<String, Element>();
+
+			final NodeList wTags = ((Element) watchTags.item(0)).getElementsByTagName("w");
+
+			for (int j = 0; j < wTags.getLength(); j++) {
+				final Element wTag = (Element) wTags.item(j);
+
+				wTagsByTitle.put(wTag.getAttribute("title"), wTag);
+			}
+
+			for (final String title : titles) {
+				final String apiTitle = titleToAPIForm(title);
+				final Element wTag = wTagsByTitle.get(normalizations.containsKey(apiTitle) ? normalizations.get(apiTitle) : apiTitle);
+
+				if (wTag == null) {
+					// Invalid titles get no <w> tag on some versions.
+					batch.add(new MediaWiki.WatchResult(title, unwatch, false, false, true));
+					continue;
+				}
+
+				batch.add(new MediaWiki.WatchResult(title, unwatch, wTag.hasAttribute(unwatch ? "unwatched" : "watched"), wTag.hasAttribute("missing"), wTag.hasAttribute("invalid")));
+			}
+			return true;
+		}
+
+		/**
+		 * Watches or unwatches one page with the <code>title</code> parameter
+		 * of wikis before MediaWiki 1.23. The network lock must be held by the
+		 * caller.
+		 */
+		private void watchTitle(final String title) throws IOException, MediaWiki.MediaWikiException {
+			final Map<String, String> getParams = paramValuesToMap("action", "watch", "format", "xml", "unwatch", unwatch ? "" : null);
+
+			final Map<String, String> postParams = paramValuesToMap("title", titleToAPIForm(title), "token", token);
+
+			final String url = createApiGetUrl(getParams);
+
+			final InputStream in = post(url, postParams);
+			final Document xml = parse(in);
+			if (getErrorCode(xml).equals("invalidtitle")) {
+				batch.add(new MediaWiki.WatchResult(title, unwatch, false, false, true));
+				return;
+			}
+			checkError(xml);
+
+			final NodeList watchTags = xml.getElementsByTagName("watch");
+
+			if (watchTags.getLength() == 0)
+				throw new MediaWiki.ResponseFormatException("expected <watch> tag not present");
+
+			final Element watchTag = (Element) watchTags.item(0);
+
+			batch.add(new MediaWiki.WatchResult(title, unwatch, watchTag.hasAttribute(unwatch ? "unwatched" : "watched"), watchTag.hasAttribute("missing"), watchTag.hasAttribute("invalid")));
+		}
+
+		/**
+		 * Obtains the watch token of the user currently logged in, from
+		 * <code>meta=tokens</code> on wikis that have it (MediaWiki 1.24 and
+		 * later), or else from <code>intoken=watch</code>. The network lock
+		 * must be held by the caller.
+		 * 
+		 * @param titleString
+		 *            The titles of the current batch, in API form, separated
+		 *            by <code>'|'</code>.
+		 */
+		private String getWatchToken(final String titleString) throws IOException, MediaWiki.MediaWikiException {
+			{
+				final Map<String, String> getParams = paramValuesToMap("action", "query", "format", "xml", "meta", "tokens", "type", "watch");
+
+				final String url = createApiGetUrl(getParams);
+
+				final InputStream in = get(url);
+				final Document xml = parse(in);
+				checkError(xml);
+
+				// Older wikis warn about the unrecognised module instead.
+				final NodeList tokensTags = xml.getElementsByTagName("tokens");
+
+				for (int j = 0; j < tokensTags.getLength(); j++) {
+					final Element tokensTag = (Element) tokensTags.item(j);
+
+					if (tokensTag.hasAttribute("watchtoken"))
+						return tokensTag.getAttribute("watchtoken");
+				}
+			}
+
+			final Map<String, String> getParams = paramValuesToMap("action", "query", "format", "xml", "prop", "info", "intoken", "watch", "titles", titleString);
+
+			final String url = createApiGetUrl(getParams);
+
+			final InputStream in = get(url);
+			final Document xml = parse(in);
+			checkError(xml);
+
+			final NodeList pageTags = xml.getElementsByTagName("page");
+
+			for (int j = 0; j < pageTags.getLength(); j++) {
+				final Element pageTag = (Element) pageTags.item(j);
+
+				if (pageTag.hasAttribute("watchtoken"))
+					return pageTag.getAttribute("watchtoken");
+			}
+
+			throw new MediaWiki.PermissionException("watch");
+		}
+
+		/**
+		 * Returns the code of the error in an API reply, or an empty string if
+		 * it has none.
+		 */
+		private String getErrorCode(final Document xml) {
+			final NodeList errorTags = xml.getElementsByTagName("error");
+			return errorTags.getLength() > 0 ? ((Element) errorTags.item(0)).getAttribute("code") : "";
+		}
+	}
+
+	/**
+	 * Retrieves changes made to the pages on the watchlist of the user
+	 * currently logged in on the wiki represented by this <tt>MediaWiki</tt>,
+	 * in chronological order. Checking whether any of a large set of pages
+	 * has changed thus costs one query per reply's worth of changes, however
+	 * many pages are watched.
+	 * <p>
+	 * To stream changes, save the position returned by the iterator's
+	 * <code>getPosition</code> method after processing changes, and pass it
+	 * to <code>resumeWatchlist</code> on the next call.
+	 * <p>
+	 * The changes are returned as <tt>RecentChange</tt>s whose recent change
+	 * ID is <code>0</code>. The return value is an iterator which will return
+	 * information about each of the changes when its <code>next</code> method
+	 * is called. The iterator's <code>next</code> method may:
+	 * <ul>
+	 * <li>throw <tt>MediaWiki.IterationException</tt>, an unchecked exception,
+	 * if it encounters an error.
+	 * </ul>
+	 * 
+	 * @param earliest
+	 *            The timestamp of the earliest change to retrieve. If a change
+	 *            was made on this exact second, it is included. This parameter
+	 *            is <code>null</code> to avoid using this constraint; the wiki
+	 *            then returns changes made within the span of its recent
+	 *            changes.
+	 * @param allRevisions
+	 *            <code>true</code> to retrieve all changes made to each page;
+	 *            <code>false</code> to retrieve only the latest change made to
+	 *            each page since <code>earliest</code>.
+	 * @param namespaceIDs
+	 *            List of the IDs of namespaces to retrieve changes for. If
+	 *            <code>null</code> or empty, do not use this restriction.
+	 * @return an iterator which will return information about each of the
+	 *         changes made to watched pages when its <code>next</code> method
+	 *         is called
+	 */
+	public MediaWiki.ResumableIterator<MediaWiki.RecentChange> getWatchlist(final Date earliest, final boolean allRevisions, final long... namespaceIDs) {
+		return new MediaWiki.WatchlistIterator(earliest != null ? new MediaWiki.StreamPosition(earliest) : null, allRevisions, namespaceIDs);
+	}
+
+	/**
+	 * Retrieves changes made to the pages on the watchlist of the user
+	 * currently logged in on the wiki represented by this <tt>MediaWiki</tt>
+	 * after the given position, in chronological order. The changes made on
+	 * the same second as the position that were already returned before it
+	 * are skipped; the others are returned.
+	 * <p>
+	 * The return value is an iterator which will return information about
+	 * each of the changes when its <code>next</code> method is called, and
+	 * whose <code>getPosition</code> method returns the position to resume
+	 * from after the changes it has returned. The iterator's
+	 * <code>next</code> method may:
+	 * <ul>
+	 * <li>throw <tt>MediaWiki.IterationException</tt>, an unchecked exception,
+	 * if it encounters an error.
+	 * </ul>
+	 * 
+	 * @param after
+	 *            The position returned by the <code>getPosition</code> method
+	 *            of an earlier watchlist iterator, or <code>null</code> to
+	 *            retrieve changes made within the span of the wiki's recent
+	 *            changes.
+	 * @param allRevisions
+	 *            <code>true</code> to retrieve all changes made to each page;
+	 *            <code>false</code> to retrieve only the latest change made to
+	 *            each page after <code>after</code>.
+	 * @param namespaceIDs
+	 *            List of the IDs of namespaces to retrieve changes for. If
+	 *            <code>null</code> or empty, do not use this restriction.
+	 * @return an iterator which will return information about each of the
+	 *         changes made to watched pages when its <code>next</code> method
+	 *         is called
+	 */
+	public MediaWiki.ResumableIterator<MediaWiki.RecentChange> resumeWatchlist(final MediaWiki.StreamPosition after, final boolean allRevisions, final long... namespaceIDs) {
+		return new MediaWiki.WatchlistIterator(after, allRevisions, namespaceIDs);
+	}
+
+	private class WatchlistIterator extends AbstractResumableQueryIterator<MediaWiki.RecentChange> {
+		private final Map<String, String> getParams;
+
+		WatchlistIterator(final MediaWiki.StreamPosition after, final boolean allRevisions, final long[] namespaceIDs) {
+			super(after);
+			getParams = paramValuesToMap("action", "query", "format", "xml", "list", "watchlist", "wllimit", "max", "wldir", "newer", "wlnamespace", namespacesParameter(namespaceIDs), "wlallrev", allRevisions ? "" : null, "wlprop", "ids|title|flags|user|comment|timestamp|sizes|loginfo");
+
+			if (after != null)
+				getParams.put("wlstart", dateToISO8601(after.getTimestamp()));
+		}
+
+		@Override
+		protected Date getTimestamp(final MediaWiki.RecentChange item) {
+			return item.getTimestamp();
+		}
+
+		/**
+		 * Returns the ID identifying a watchlist item in a position: its
+		 * revision ID, or the opposite of its log ID if it is a log entry.
+		 */
+		@Override
+		protected long getItemID(final MediaWiki.RecentChange item) {
+			return item.getNewRevisionID() != 0 ? item.getNewRevisionID() : -item.getLogID();
+		}
+
+		@Override
+		protected long getItemID(final Element itemTag) {
+			final long revisionID = itemTag.hasAttribute("revid") ? Long.parseLong(itemTag.getAttribute("revid")) : 0;
+			return revisionID != 0 ? revisionID : -(itemTag.hasAttribute("logid") ? Long.parseLong(itemTag.getAttribute("logid")) : 0);
+		}
+
+		@Override
+		public MediaWiki.RecentChange convert(final Element element) throws Exception {
+			/*-
+			 * <item pageid="10245" revid="52110" old_revid="52003" ns="6" title="File:Rune axe.png" user="Nebuleon" minor="" oldlen="378" newlen="402" timestamp="2012-10-11T18:00:36Z" comment="Lossless compression" />
+			 */
+			final String changeType;
+			if (element.hasAttribute("type")) {
+				changeType = element.getAttribute("type");
+			} else if (element.hasAttribute("logid") && !element.getAttribute("logid").equals("0")) {
+				changeType = MediaWiki.RecentChangeType.LOG_ENTRY;
+			} else if (element.hasAttribute("new")) {
+				changeType = MediaWiki.RecentChangeType.NEW_PAGE;
+			} else {
+				changeType = MediaWiki.RecentChangeType.EDIT;
+			}
+
+			List<String> logParams = null;
+			if (changeType.equals(MediaWiki.RecentChangeType.LOG_ENTRY)) {
+				logParams = new ArrayList<String>();
+
+				final NodeList paramTags = element.getElementsByTagName("param");
+
+				for (int i = 0; i < paramTags.getLength(); i++) {
+					logParams.add(paramTags.item(i).getTextContent());
+				}
+			}
+
+			return new MediaWiki.RecentChange(changeType, Long.parseLong(element.getAttribute("ns")), element.getAttribute("title"), element.hasAttribute("pageid") ? Long.parseLong(element.getAttribute("pageid")) : 0, 0, element.hasAttribute("revid") ? Long.parseLong(element.getAttribute("revid")) : 0, element.hasAttribute("old_revid") ? Long.parseLong(element.getAttribute("old_revid")) : 0, element.getAttribute("user"), element.hasAttribute("oldlen") ? Long.parseLong(element.getAttribute("oldlen")) : 0, element.hasAttribute("newlen") ? Long.parseLong(element.getAttribute("newlen")) : 0, timestampToDate(element.getAttribute("timestamp")), element.getAttribute("comment"), element.hasAttribute("new"), element.hasAttribute("bot"), element.hasAttribute("minor"), element.hasAttribute("anon"), element.hasAttribute("logid") ? Long.parseLong(element.getAttribute("logid")) : 0, element.hasAttribute("logtype") ? element.getAttribute("logtype") : null, element.hasAttribute("logaction") ? element.getAttribute("logaction") : null, logParams);
+		}
+
+		@Override
+		protected void cacheReply() throws Exception {
+			// Get the next page of watchlist changes from the API.
+			final Map<String, String> pageGetParams = new TreeMap<String, String>(getParams);
+			if (getContinuationName() != null) {
+				pageGetParams.put(getContinuationName(), getContinuation());
+			}
+
+			final String url = createApiGetUrl(pageGetParams);
+
+			networkLock.lock();
+			try {
+				final InputStream in = get(url);
+				final Document xml = parse(in);
+				checkError(xml);
+
+				final NodeList watchlistTags = xml.getElementsByTagName("watchlist");
+
+				if (watchlistTags.getLength() > 0) {
+					final Element watchlistTag = (Element) watchlistTags.item(0);
+
+					setUpcomingAfterPosition(watchlistTag.getElementsByTagName("item"));
+				}
+
+				processContinuation(xml, "watchlist");
+			} finally {
+				networkLock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Retrieves the pages on the watchlist of the user currently logged in on
+	 * the wiki represented by this <tt>MediaWiki</tt>.
+	 * <p>
+	 * The return value is an iterator which will return information about each
+	 * of the watched pages when its <code>next</code> method is called. The
+	 * iterator's <code>next</code> method may:
+	 * <ul>
+	 * <li>throw <tt>MediaWiki.IterationException</tt>, an unchecked exception,
+	 * if it encounters an error.
+	 * </ul>
+	 * 
+	 * @param namespaceIDs
+	 *            List of the IDs of namespaces to retrieve watched pages in. If
+	 *            <code>null</code> or empty, do not use this restriction.
+	 * @return an iterator which will return information about each of the
+	 *         watched pages when its <code>next</code> method is called
+	 */
+	public Iterator<MediaWiki.PageDesignation> getWatchedPages(final long... namespaceIDs) {
+		return new MediaWiki.WatchedPagesIterator(namespaceIDs);
+	}
+
+	private class WatchedPagesIterator extends AbstractContinuableQueryIterator<MediaWiki.PageDesignation> {
+		private final Map<String, String> getParams;
+
+		WatchedPagesIterator(final long[] namespaceIDs) {
+			getParams = paramValuesToMap("action", "query", "format", "xml", "list", "watchlistraw", "wrlimit", "max", "wrnamespace", namespacesParameter(namespaceIDs));
+		}
+
+		@Override
+		public MediaWiki.PageDesignation convert(final Element element) throws Exception {
+			// <wr ns="6" title="File:Rune axe.png" />
+			return new MediaWiki.PageDesignation(element.getAttribute("title"), Long.parseLong(element.getAttribute("ns")));
+		}
+
+		@Override
+		protected synchronized void cacheUpcoming() throws Exception {
+			// Get the next page of watched pages from the API.
+			final Map<String, String> pageGetParams = new TreeMap<String, String>(getParams);
+			if (getContinuationName() != null) {
+				pageGetParams.put(getContinuationName(), getContinuation());
+			}
+
+			final String url = createApiGetUrl(pageGetParams);
+
+			networkLock.lock();
+			try {
+				final InputStream in = get(url);
+				final Document xml = parse(in);
+				checkError(xml);
+
+				final NodeList watchlistrawTags = xml.getElementsByTagName("watchlistraw");
+
+				if (watchlistrawTags.getLength() > 0) {
+					// The continuation is also a <watchlistraw> tag; the
+					// first one holds the pages.
+					final Element watchlistrawTag = (Element) watchlistrawTags.item(0);
+
+					setUpcoming(watchlistrawTag.getElementsByTagName("wr"));
+				}
+
+				processContinuation(xml, "watchlistraw");
+			} finally {
+				networkLock.unlock();
+			}
+		}
+	}
+
+	// - - - EXPAND TEMPLATES IN WIKITEXT (ACTION=EXPANDTEMPLATES) - - -
+
+	/**
+	 * Expands templates in wikitext on the wiki represented by this
+	 * <tt>MediaWiki</tt>.
+	 * <p>
+	 * Template invocations are generally between <tt>{{</tt> and <tt>}}</tt>.
+	 * <p>
+	 * This version of the <code>expandTemplatesInWikitext</code> method may not
+	 * resolve <i>magic words</i> such as <tt>{{PAGENAME}}</tt> and
+	 * <tt>{{FULLPAGENAME}}</tt> correctly. According to the MediaWiki API
+	 * documentation, it acts as if the page were named <code>"API"</code>.
+	 * 
+	 * @param wikitext
+	 *            Wikitext to be expanded, possibly containing template
+	 *            invocations.
+	 * @return the wikitext with templates expanded
+	 * @throws IOException
+	 * @throws MediaWiki.MediaWikiException
+	 * @see #expandTemplatesInWikitext(String, String)
+	 */
+	public String expandTemplatesInWikitext(final String wikitext) throws IOException, MediaWiki.MediaWikiException {
+		return expandTemplatesInWikitext(wikitext, null);
+	}
+
+	/**
+	 * Expands templates in wikitext on the wiki represented by this
+	 * <tt>MediaWiki</tt> as if the wikitext were on the given page.
+	 * <p>
+	 * Template invocations are generally between <tt>{{</tt> and <tt>}}</tt>.
+	 * <p>
+	 * This version of the <code>expandTemplatesInWikitext</code> method
+	 * resolves <i>magic words</i> such as <tt>{{PAGENAME}}</tt> and
+	 * <tt>{{FULLPAGENAME}}</tt> correctly.
+	 * 
+	 * @param wikitext
+	 *            Wikitext to be expanded, possibly containing template
+	 *            invocations.
+	 * @param fullPageName
+	 *            Act as if the wikitext were on a page with this full name. May
+	 *            be <code>null</code>.
+	 * @return the wikitext with templates expanded
+	 * @throws IOException
+	 * @throws MediaWiki.MediaWikiException
+	 */
+	public String expandTemplatesInWikitext(final String wikitext, final String fullPageName) throws IOException, MediaWiki.MediaWikiException {
+		if (wikitext.length() <= 4) // {{}}
+			return wikitext; // Cannot contain any templates
+
+		final Map<String, String> getParams = paramValuesToMap("action", "expandtemplates", "format", "xml", "text", wikitext, "title", fullPageName);
+
+		final String url = createApiGetUrl(getParams);
+
+		networkLock.lock();
+		try {
+			final InputStream in = get(url);
+			final Document xml = parse(in);
+			checkError(xml);
+
+			final NodeList expandtemplatesTags = xml.getElementsByTagName("expandtemplates");
+
+			if (expandtemplatesTags.getLength() > 0) {
+				final Element expandtemplatesTag = (Element) expandtemplatesTags.item(0);
+
+				return expandtemplatesTag.getTextContent();
+			} else
+				throw new MediaWiki.ResponseFormatException("expected <expandtemplates> tag not present");
+		} finally {
+			networkLock.unlock();
+		}
+	}
+
+	// - - - PARSE WIKITEXT (ACTION=PARSE) - - -
+
+	/**
+	 * Parses wikitext to HTML on the wiki represented by this
+	 * <tt>MediaWiki</tt>.
+	 * <p>
+	 * This method resolves <i>magic words</i> such as <tt>{{PAGENAME}}</tt> and
+	 * <tt>{{FULLPAGENAME}}</tt> correctly.
+	 * 
+	 * @param wikitext
+	 *            Wikitext to be parsed.
+	 * @param fullPageName
+	 *            Act as if the wikitext were on a page with this full name. May
+	 *            be <code>null</code>, in which case, according to the
+	 *            MediaWiki API documentation, it acts as if the page were named
+	 *            <code>"API"</code>.
+	 * @param preSaveTransform
+	 *            If this parameter is <code>true</code>, requests a pre-save
+	 *            transform, which expands <tt>{{subst:}}</tt> template
+	 *            invocations, signatures and timestamps (<tt>~~~</tt>,
+	 *            <tt>~~~~</tt>, <tt>~~~~~</tt>).
+	 * @param languageCode
+	 *            Code of the language used to parse the page. Usually not
+	 *            needed, except on pages that use the value of
+	 *            <tt>{{int:Lang}}</tt>. May be <code>null</code>.
+	 * @return an object representing the result of parsing the given
+	 *         <code>wikitext</code>
+	 * @throws IOException
+	 * @throws MediaWiki.MediaWikiException
+	 */
+	public MediaWiki.ParseResult parseWikitext(final String wikitext, final String fullPageName, final boolean preSaveTransform, final String languageCode) throws IOException, MediaWiki.MediaWikiException {
+		final Map<String, String> getParams = paramValuesToMap("action", "parse", "format", "xml", "text", wikitext, "title", fullPageName, "uselang", languageCode);
+		if (preSaveTransform) {
+			getParams.put("pst", "true");
+		}
+
+		final String url = createApiGetUrl(getParams);
+
+		networkLock.lock();
+		try {
+			final InputStream in = get(url);
+			final Document xml = parse(in);
+			checkError(xml);
+
+			final NodeList parseTags = xml.getElementsByTagName("parse");
+
+			if (parseTags.getLength() > 0) {
+				final Element parseTag = (Element) parseTags.item(0);
+
+				String text = null;
+				final List<MediaWiki.InterlanguageLink> langLinks = new ArrayList<MediaWiki.InterlanguageLink>();
+				final List<MediaWiki.CategoryMembership> categoryMemberships = new ArrayList<MediaWiki.CategoryMembership>();
+				final List<MediaWiki.Link> internalLinks = new ArrayList<MediaWiki.Link>();
+				final List<MediaWiki.Link> transclusionsInWikitext = new ArrayList<MediaWiki.Link>();
+				final List<MediaWiki.Link> images = new ArrayList<MediaWiki.Link>();
+				final List<String> externalLinks = new ArrayList<String>();
+
+				final NodeList textTags = parseTag.getElementsByTagName("text");
+				if (textTags.getLength() > 0) {
+					final Element textTag = (Element) textTags.item(0);
+
+					text = textTag.getTextContent();
+				} else
+					throw new MediaWiki.ResponseFormatException("expected <text> tag not present");
+
+				final NodeList langlinksTags = parseTag.getElementsByTagName("langlinks");
+				if (langlinksTags.getLength() > 0) {
+					final Element langlinksTag = (Element) langlinksTags.item(0);
+
+					final NodeList llTags = langlinksTag.getElementsByTagName("ll");
+
+					for (int i = 0; i < llTags.getLength(); i++) {
+						final Element llTag = (Element) llTags.item(i);
+
+						langLinks.add(new MediaWiki.InterlanguageLink(llTag.getAttribute("lang"), llTag.getTextContent()));
+					}
+				} else
+					throw new MediaWiki.ResponseFormatException("expected <langlinks> tag not present");
+
+				final NodeList categoriesTags = parseTag.getElementsByTagName("categories");
+				if (categoriesTags.getLength() > 0) {
+					final Element categoriesTag = (Element) categoriesTags.item(0);
+
+					final NodeList clTags = categoriesTag.getElementsByTagName("cl");
+
+					for (int i = 0; i < clTags.getLength(); i++) {
+						final Element clTag = (Element) clTags.item(i);
+
+						categoryMemberships.add(new MediaWiki.CategoryMembership(clTag.getTextContent(), clTag.getAttribute("sortkey")));
+					}
+				} else
+					throw new MediaWiki.ResponseFormatException("expected <categories> tag not present");
+
+				final NodeList linksTags = parseTag.getElementsByTagName("links");
+				if (linksTags.getLength() > 0) {
+					final Element linksTag = (Element) linksTags.item(0);
+
+					final NodeList plTags = linksTag.getElementsByTagName("pl");
+
+					for (int i = 0; i < plTags.getLength(); i++) {
+						final Element plTag = (Element) plTags.item(i);
+
+						internalLinks.add(new Link(Long.parseLong(plTag.getAttribute("ns")), plTag.getTextContent()));
+					}
+				} else
+					throw new MediaWiki.ResponseFormatException("expected <links> tag not present");
+
+				final NodeList templatesTags = parseTag.getElementsByTagName("templates");
+				if (templatesTags.getLength() > 0) {
+					final Element templatesTag = (Element) templatesTags.item(0);
+
+					final NodeList tlTags = templatesTag.getElementsByTagName("tl");
+
+					for (int i = 0; i < tlTags.getLength(); i++) {
+						final Element tlTag = (Element) tlTags.item(i);
+
+						transclusionsInWikitext.add(new Link(Long.parseLong(tlTag.getAttribute("ns")), tlTag.getTextContent()));
+					}
+				} else
+					throw new MediaWiki.ResponseFormatException("expected <templates> tag not present");
+
+				final NodeList imagesTags = parseTag.getElementsByTagName("images");
+				if (imagesTags.getLength() > 0) {
+					final Element imagesTag = (Element) imagesTags.item(0);
+
+					final NodeList imgTags = imagesTag.getElementsByTagName("img");
+
+					for (int i = 0; i < imgTags.getLength(); i++) {
+						final Element imgTag = (Element) imgTags.item(i);
+
+						images.add(new MediaWiki.Link(MediaWiki.StandardNamespace.FILE, getNamespaces().getNamespace(MediaWiki.StandardNamespace.FILE).getFullPageName(imgTag.getTextContent())));
+					}
+				} else
+					throw new MediaWiki.ResponseFormatException("expected <images> tag not present");
+
+				final NodeList externallinksTags = parseTag.getElementsByTagName("externallinks");
+				if (externallinksTags.getLength() > 0) {
+					final Element externallinksTag = (Element) externallinksTags.item(0);
+
+					final NodeList elTags = externallinksTag.getElementsByTagName("el");
+
+					for (int i = 0; i < elTags.getLength(); i++) {
+						final Element elTag = (Element) elTags.item(i);
+
+						externalLinks.add(elTag.getTextContent());
+					}
+				} else
+					throw new MediaWiki.ResponseFormatException("expected <externallinks> tag not present");
+
+				// TODO Sections in wikitext
+
+				return new MediaWiki.ParseResult(text, langLinks, categoryMemberships, internalLinks, transclusionsInWikitext, images, externalLinks);
+			} else
+				throw new MediaWiki.ResponseFormatException("expected <parse> tag not present");
+		} finally {
+			networkLock.unlock();
+		}
+	}
+
+	// - - - SESSION-WIDE TOKEN - - -
+
+	/**
+	 * Returns an <tt>EditToken</tt> for the given page that carries the
+	 * session-wide token, without contacting the wiki, or <code>null</code> if
+	 * the session-wide token is not yet known. Its start time is the wiki's
+	 * estimated current time, and its last revision time is unknown.
+	 * <p>
+	 * This is suitable for actions whose conflict detection does not depend on
+	 * the last revision time, such as moves, deletions, protections and
+	 * uploads.
+	 * 
+	 * @param fullName
+	 *            The full name of the page to be acted upon.
+	 * @return an <tt>EditToken</tt> for the given page that carries the
+	 *         session-wide token, or <code>null</code> if it is not yet known
+	 */
+	private MediaWiki.EditToken createSharedToken(final String fullName) {
+		final String token;
+		final long offset;
+		preferenceLock.readLock().lock();
+		try {
+			token = sharedToken;
+			offset = serverClockOffset;
+		} finally {
+			preferenceLock.readLock().unlock();
+		}
+		return token != null ? new MediaWiki.EditToken(fullName, null, new Date(System.currentTimeMillis() + offset), token) : null;
+	}
+
+	private void learnSharedToken(final String token, final Date serverTime) {
+		preferenceLock.writeLock().lock();
+		try {
+			sharedToken = token;
+			serverClockOffset = serverTime.getTime() - System.currentTimeMillis();
+		} finally {
+			preferenceLock.writeLock().unlock();
+		}
+	}
+
+	private void forgetSharedToken() {
+		preferenceLock.writeLock().lock();
+		try {
+			sharedToken = null;
+		} finally {
+			preferenceLock.writeLock().unlock();
+		}
+	}
+
+	// - - - EDIT - - -
+
+	/**
+	 * Starts an edit to the given page, specified by its full name. The
+	 * returned token contains informaton used to detect conflicts when the edit
+	 * is ended.
+	 * 
+	 * @param fullName
+	 *            The full name, including the namespace, of the page to start
+	 *            editing.
+	 * @return a <tt>MediaWiki.EditToken</tt> containing informaton used to
+	 *         detect conflicts when the edit is ended
+	 * @throws IOException
+	 *             if <tt>IOException</tt> is thrown while connecting to the
+	 *             wiki or while reading the XML reply from the API
+	 * @throws MediaWiki.MediaWikiException
+	 *             if a MediaWiki API error is returned
+	 */
+	public MediaWiki.EditToken startEdit(final String fullName) throws IOException, MediaWiki.MediaWikiException {
+		final Map<String, String> getParams = paramValuesToMap("action", "query", "format", "xml", "prop", "info", "intoken", "edit", "titles", titleToAPIForm(fullName));
+
+		final String url = createApiGetUrl(getParams);
+
+		networkLock.lock();
+		try {
+			final InputStream in = get(url);
+			final Document xml = parse(in);
+			checkError(xml);
+
+			final NodeList pageTags = xml.getElementsByTagName("page");
+
+			if (pageTags.getLength() > 0) {
+				final Element pageTag = (Element) pageTags.item(0);
+
+				if (!pageTag.hasAttribute("edittoken"))
+					throw new MediaWiki.PermissionException("edit");
+
+				final Date lastRevision = pageTag.hasAttribute("touched") ? timestampToDate(pageTag.getAttribute("touched")) : null;
+				final Date start = timestampToDate(pageTag.getAttribute("starttimestamp"));
+				final String token = pageTag.getAttribute("edittoken");
+				learnSharedToken(token, start);
+
+				return new MediaWiki.EditToken(fullName, lastRevision, start, token);
+			} else
+				throw new MediaWiki.ResponseFormatException("expected <page> tag not found");
+		} catch (final ParseException pe) {
+			throw new MediaWiki.MediaWikiException(pe);
+		} finally {
+			networkLock.unlock();
+		}
+	}
+
+	/**
+	 * Starts edits to the given pages, specified by their full names, and
+	 * retrieves information about their last revision, including its content,
+	 * at the same time. The return value is an iterator which will return the
+	 * preparation for each of the pages listed in the <code>titles</code>
+	 * parameter in order when its <code>next</code> method is called. The
+	 * iterator's <code>next</code> method may:
+	 * <ul>
+	 * <li>return <code>null</code>, if it encounters an invalid title;
+	 * <li>return a preparation whose <code>getFailure</code> method returns a
+	 * <tt>MediaWiki.PermissionException</tt>, if the page cannot be edited by
+	 * the current user; the other pages in its batch are still prepared;
+	 * <li>throw <tt>MediaWiki.IterationException</tt>, an unchecked exception,
+	 * if it encounters an error. The iterator does not advance in that case,
+	 * so calling <code>next</code> again retries the same title.
+	 * </ul>
+	 * <p>
+	 * Pages are prepared in batches of up to 50 per request, so this method
+	 * replaces separate calls to <code>startEdit</code> and
+	 * <code>getLastRevision</code> for each page.
+	 * <p>
+	 * The edit tokens returned by this method remember the current text of
+	 * their page. Replacing the entire page with the same text using such a
+	 * token does not send a request to the wiki.
+	 * 
+	 * @param titles
+	 *            The full name(s), including the namespace, of the page(s) to
+	 *            start editing.
+	 * @return an iterator which will return the preparation for each of the
+	 *         pages listed in the <code>titles</code> parameter in order when
+	 *         its <code>next</code> method is called
+	 */
+	public Iterator<MediaWiki.EditPreparation> prepareEdit(final String... titles) {
+		return new MediaWiki.EditPreparationIterator(titles);
+	}
+
+	private class EditPreparationIterator extends AbstractReadOnlyIterator<MediaWiki.EditPreparation> {
+		/**
+		 * The maximum number of titles to prepare in one request. This is the
+		 * limit imposed by the API on revision content for users without the
+		 * <code>apihighlimits</code> right.
+		 */
+		private static final int BATCH_SIZE = 50;
+
+		private final String[] titles;
+
+		private int i;
+
+		/**
+		 * The preparations for the batch of titles starting at
+		 * <code>batchStart</code>.
+		 */
+		private final List<MediaWiki.EditPreparation> batch;
+
+		private int batchStart;
+
+		EditPreparationIterator(final String[] titles) {
+			this.titles = titles;
+			batch = new ArrayList<MediaWiki.EditPreparation>(Math.min(titles.length, BATCH_SIZE));
+			i = -1;
+		}
+
+		public synchronized boolean hasNext() {
+			return (i + 1) < titles.length;
+		}
+
+		public synchronized MediaWiki.EditPreparation next() throws MediaWiki.IterationException {
+			if (!hasNext())
+				throw new NoSuchElementException();
+
+			final int next = i + 1;
+
+			/*
+			 * Advance only once the batch is prepared, so that a caller
+			 * retrying after an IterationException gets the same title again.
+			 */
+			if (next >= batchStart + batch.size()) {
+				prepareBatch(next);
+			}
+
+			i = next;
+
+			return batch.get(i - batchStart);
+		}
+
+		private void prepareBatch(final int start) throws MediaWiki.IterationException {
+			final int end = Math.min(start + BATCH_SIZE, titles.length);
+
+			final StringBuilder titleString = new StringBuilder((end - start) * 16);
+			for (int j = start; j < end; j++) {
+				if (titleString.length() > 0) {
+					titleString.append('|');
+				}
+				titleString.append(titleToAPIForm(titles[j]));
+			}
+
+			final Map<String, String> getParams = paramValuesToMap("action", "query", "format", "xml", "prop", "info|revisions", "intoken", "edit", "rvprop", "ids|flags|timestamp|user|comment|size|content", "titles", titleString.toString());
+
+			networkLock.lock();
+			try {
+				final Map<String, String> normalizations = new TreeMap<String, String>();
+
+				final Map<String, Element> pageTagsByTitle = new TreeMap<String, Element>();
+
+				final Map<String, Element> revTagsByTitle = new TreeMap<String, Element>();
+
+				/*
+				 * The wiki may stop adding content to its reply before the
+				 * last page, to keep the reply under its size limit, and give
+				 * the rest of the revisions in replies to continuations.
+				 */
+				Map<String, String> continuation = Collections.emptyMap();
+				do {
+					final Map<String, String> pageGetParams = new TreeMap<String, String>(getParams);
+					pageGetParams.putAll(continuation);
+
+					final InputStream in = get(createApiGetUrl(pageGetParams));
+					final Document xml = parse(in);
+					checkError(xml);
+
+					final NodeList nTags = xml.getElementsByTagName("n");
+
+					for (int j = 0; j < nTags.getLength(); j++) {
+						final Element nTag = (Element) nTags.item(j);
+
+						normalizations.put(nTag.getAttribute("from"), nTag.getAttribute("to"));
+					}
+
+					final NodeList pageTags = xml.getElementsByTagName("page");
+
+					for (int j = 0; j < pageTags.getLength(); j++) {
+						final Element pageTag = (Element) pageTags.item(j);
+						final String title = pageTag.getAttribute("title");
+
+						if (!pageTagsByTitle.containsKey(title)) {
+							pageTagsByTitle.put(title, pageTag);
+						}
+
+						final NodeList revTags = pageTag.getElementsByTagName("rev");
+
+						if ((revTags.getLength() > 0) && !revTagsByTitle.containsKey(title)) {
+							revTagsByTitle.put(title, (Element) revTags.item(0));
+						}
+					}
+
+					continuation = getRevisionsContinuation(xml);
+				} while (!continuation.isEmpty());
+
+				final List<MediaWiki.EditPreparation> prepared = new ArrayList<MediaWiki.EditPreparation>(end - start);
+
+				for (int j = start; j < end; j++) {
+					final String apiTitle = titleToAPIForm(titles[j]);
+					final Element pageTag = pageTagsByTitle.get(normalizations.containsKey(apiTitle) ? normalizations.get(apiTitle) : apiTitle);
+
+					if (pageTag == null)
+						throw new MediaWiki.ResponseFormatException("expected <page> tag for \"" + apiTitle + "\" not found");
+
+					if (pageTag.hasAttribute("invalid")) {
+						prepared.add(null);
+						continue;
+					}
+
+					if (!pageTag.hasAttribute("edittoken")) {
+						prepared.add(new MediaWiki.EditPreparation(titles[j], new MediaWiki.PermissionException("edit")));
+						continue;
+					}
+
+					MediaWiki.Revision lastRevision = null;
+					String contentHash = null;
+
+					final Element revTag = revTagsByTitle.get(pageTag.getAttribute("title"));
+
+					if (revTag == null && !pageTag.hasAttribute("missing"))
+						/*
+						 * Basing an edit on no revision would let it replace
+						 * the page without detecting conflicts.
+						 */
+						throw new MediaWiki.ResponseFormatException("expected <rev> tag for existing page \"" + apiTitle + "\" not found");
+
+					if (revTag != null) {
+
+						final long revisionID = Long.parseLong(revTag.getAttribute("revid"));
+						final long parentID = revTag.hasAttribute("parentid") ? Long.parseLong(revTag.getAttribute("parentid")) : -1;
+
+						final Date timestamp = timestampToDate(revTag.getAttribute("timestamp"));
+
+						final boolean userHidden = revTag.hasAttribute("userhidden");
+						final String userName = userHidden ? null : revTag.getAttribute("user");
+
+						final boolean commentHidden = revTag.hasAttribute("commenthidden");
+						final String comment = commentHidden ? null : revTag.getAttribute("comment");
+
+						final boolean isMinor = revTag.hasAttribute("minor");
+						final boolean isAnonymous = revTag.hasAttribute("anon");
+
+						final long length = revTag.hasAttribute("size") ? Long.parseLong(revTag.getAttribute("size")) : 0;
+
+						lastRevision = new MediaWiki.Revision(revisionID, parentID, timestamp, userName, userHidden, length, comment, commentHidden, isMinor, isAnonymous);
+
+						if (revTag.hasAttribute("contenthidden")) {
+							lastRevision.contentHidden = true;
+						} else {
+							final String content = revTag.getTextContent();
+							lastRevision.setContent(content);
+							contentHash = md5(content);
+						}
+						lastRevision.contentStored = true;
+					}
+
+					/*
+					 * The timestamp of the revision whose content is returned
+					 * is the most accurate base for conflict detection. Fall
+					 * back to the page's touched time, as startEdit does, if
+					 * the page has no revision to base the edit on.
+					 */
+					final Date lastRevisionTime = lastRevision != null ? lastRevision.getTimestamp() : (pageTag.hasAttribute("touched") ? timestampToDate(pageTag.getAttribute("touched")) : null);
+					final Date startTime = timestampToDate(pageTag.getAttribute("starttimestamp"));
+					final String token = pageTag.getAttribute("edittoken");
+					learnSharedToken(token, startTime);
+
+					prepared.add(new MediaWiki.EditPreparation(new MediaWiki.EditToken(titles[j], lastRevisionTime, startTime, token, contentHash), lastRevision));
+				}
+
+				batch.clear();
+				batch.addAll(prepared);
+				batchStart = start;
+			} catch (final IOException ioe) {
+				throw new MediaWiki.IterationException(ioe);
+			} catch (final ParseException pe) {
+				throw new MediaWiki.IterationException(pe);
+			} catch (final MediaWiki.IterationException ie) {
+				throw ie;
+			} catch (final MediaWiki.MediaWikiException mwe) {
+				throw new MediaWiki.IterationException(mwe);
+			} finally {
+				networkLock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Returns the parameters that continue a <tt>prop=revisions</tt> query,
+	 * as given in either form of continuation in a reply, or an empty map if
+	 * the query is complete.
+	 * 
+	 * @param reply
+	 *            The reply from the API in XML document form.
+	 * @return the parameters that continue a <tt>prop=revisions</tt> query
+	 */
+	private static Map<String, String> getRevisionsContinuation(final Document reply) {
+		final Map<String, String> result = new TreeMap<String, String>();
+
+		final NodeList queryContinueTags = reply.getElementsByTagName("query-continue");
+
+		if (queryContinueTags.getLength() > 0) {
+			final NodeList revisionsTags = ((Element) queryContinueTags.item(0)).getElementsByTagName("revisions");
+
+			if (revisionsTags.getLength() > 0) {
+				final NamedNodeMap attributes = revisionsTags.item(0).getAttributes();
+				for (int i = 0; i < attributes.getLength(); i++) {
+					result.put(attributes.item(i).getNodeName(), attributes.item(i).getNodeValue());
+				}
+			}
+		} else {
+			final NodeList continueTags = reply.getElementsByTagName("continue");
+
+			if ((continueTags.getLength() > 0) && ((Element) continueTags.item(0)).hasAttribute("rvcontinue")) {
+				// All of these must be sent back, including "continue".
+				final NamedNodeMap attributes = continueTags.item(0).getAttributes();
+				for (int i = 0; i < attributes.getLength(); i++) {
+					result.put(attributes.item(i).getNodeName(), attributes.item(i).getNodeValue());
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Ends an edit embodied by the specified <code>editToken</code> by
+	 * replacing the entire page it specifies with the given text.
+	 * <p>
+	 * This method requires the page to exist on the wiki represented by this
+	 * <tt>MediaWiki</tt> prior to the call. If it doesn't,
+	 * <tt>MediaWiki.MissingPageException</tt> is thrown. If this behavior is
+	 * not desired, please use <code>createOrReplacePage</code>.
+	 * <p>
+	 * If <code>editToken</code> was returned by <code>prepareEdit</code> and
+	 * the page's text is already <code>newText</code>, no request is sent.
+	 * 
+	 * @param editToken
+	 *            The <tt>EditToken</tt> describing the page to edit and
+	 *            containing information to detect conflicts.
+	 * @param newText
+	 *            The text to be contained by the page after the edit.
+	 * @param editSummary
+	 *            The summary to be used to describe the edit.
+	 * @param bot
+	 *            Whether to mark the edit as made by a bot ( <code>true</code>)
+	 *            or not (<code>false</code>).
+	 * @param minor
+	 *            Whether to mark the edit as minor (<code>true</code>) or not (
+	 *            <code>false</code>) or to use the value in
+	 *            <tt>Special:Preferences</tt> for the currently-logged in user
+	 *            of this <tt>MediaWiki</tt>.
+	 * @return this <tt>MediaWiki</tt>
+	 * @throws IOException
+	 *             if <tt>IOException</tt> is thrown while connecting to the
+	 *             wiki or while reading the XML reply from the API
+	 * @throws MediaWiki.MediaWikiException
+	 *             if a MediaWiki API error is returned
+	 */
+	public MediaWiki replacePage(final MediaWiki.EditToken editToken, final String newText, final String editSummary, final boolean bot, final Boolean minor) throws IOException, MediaWiki.MediaWikiException {
+		return editPage(editToken, null, true, newText, editSummary, bot, minor);
+	}
+
+	/**
+	 * Ends an edit embodied by the specified <code>editToken</code> by creating
+	 * the page it specifies and adding the given text to it.
+	 * <p>
+	 * This method requires the page not to exist on the wiki represented by
+	 * this <tt>MediaWiki</tt> prior to the call. If it does,
+	 * <tt>MediaWiki.ExistingPageException</tt> is thrown. If this behavior is
+	 * not desired, please use <code>createOrReplacePage</code>.
+	 * 
+	 * @param editToken
+	 *            The <tt>EditToken</tt> describing the page to edit and
+	 *            containing information to detect conflicts.
+	 * @param newText
+	 *            The text to be contained by the page after the edit.
+	 * @param editSummary
+	 *            The summary to be used to describe the edit.
+	 * @param bot
+	 *            Whether to mark the edit as made by a bot ( <code>true</code>)
+	 *            or not (<code>false</code>).
+	 * @param minor
+	 *            Whether to mark the edit as minor (<code>true</code>) or not (
+	 *            <code>false</code>) or to use the value in
+	 *            <tt>Special:Preferences</tt> for the currently-logged in user
+	 *            of this <tt>MediaWiki</tt>.
+	 * @return this <tt>MediaWiki</tt>
+	 * @throws IOException
+	 *             if <tt>IOException</tt> is thrown while connecting to the
+	 *             wiki or while reading the XML reply from the API
+	 * @throws MediaWiki.MediaWikiException
+	 *             if a MediaWiki API error is returned
+	 */
+	public MediaWiki createPage(final MediaWiki.EditToken editToken, final String newText, final String editSummary, final boolean bot, final Boolean minor) throws IOException, MediaWiki.MediaWikiException {
+		return editPage(editToken, null, false, newText, editSummary, bot, minor);
+	}
+
+	/**
+	 * Ends an edit embodied by the specified <code>editToken</code> by either
+	 * creating or replacing the page it specifies with the given text.
+	 * <p>
+	 * This method creates the page if it doesn't exist, or replaces its
+	 * contents if it does.
+	 * <p>
+	 * If <code>editToken</code> was returned by <code>prepareEdit</code> and
+	 * the page's text is already <code>newText</code>, no request is sent.
+	 * 
+	 * @param editToken
+	 *            The <tt>EditToken</tt> describing the page to edit and
+	 *            containing information to detect conflicts.
+	 * @param newText
+	 *            The text to be contained by the page after the edit.
+	 * @param editSummary
+	 *            The summary to be used to describe the edit.
+	 * @param bot
+	 *            Whether to mark the edit as made by a bot ( <code>true</code>)
+	 *            or not (<code>false</code>).
+	 * @param minor
+	 *            Whether to mark the edit as minor (<code>true</code>) or not (
+	 *            <code>false</code>) or to use the value in
+	 *            <tt>Special:Preferences</tt> for the currently-logged in user
+	 *            of this <tt>MediaWiki</tt>.
+	 * @return this <tt>MediaWiki</tt>
+	 * @throws IOException
+	 *             if <tt>IOException</tt> is thrown while connecting to the
+	 *             wiki or while reading the XML reply from the API
+	 * @throws MediaWiki.MediaWikiException
+	 *             if a MediaWiki API error is returned
+	 */
+	public MediaWiki createOrReplacePage(final MediaWiki.EditToken editToken, final String newText, final String editSummary, final boolean bot, final Boolean minor) throws IOException, MediaWiki.MediaWikiException {
+		return editPage(editToken, null, null, newText, editSummary, bot, minor);
+	}
+
+	/**
+	 * Ends an edit embodied by the specified <code>editToken</code> by
+	 * replacing one of the sections of the page it specifies with the given
+	 * text.
+	 * <p>
+	 * This method requires the page to exist on the wiki represented by this
+	 * <tt>MediaWiki</tt> prior to the call. If it doesn't,
+	 * <tt>MediaWiki.MissingPageException</tt> is thrown.
+	 * 
+	 * @param editToken
+	 *            The <tt>EditToken</tt> describing the page to edit and
+	 *            containing information to detect conflicts.
+	 * @param sectionIndex
+	 *            The index of the section to replace. <code>0</code> for the
+	 *            introduction.
+	 * @param newText
+	 *            The text to be contained by the section after the edit.
+	 * @param editSummary
+	 *            The summary to be used to describe the edit.
+	 * @param bot
+	 *            Whether to mark the edit as made by a bot ( <code>true</code>)
+	 *            or not (<code>false</code>).
+	 * @param minor
+	 *            Whether to mark the edit as minor (<code>true</code>) or not (
+	 *            <code>false</code>) or to use the value in
+	 *            <tt>Special:Preferences</tt> for the currently-logged in user
+	 *            of this <tt>MediaWiki</tt>.
+	 * @return this <tt>MediaWiki</tt>
+	 * @throws IOException
+	 *             if <tt>IOException</tt> is thrown while connecting to the
+	 *             wiki or while reading the XML reply from the API
+	 * @throws MediaWiki.MediaWikiException
+	 *             if a MediaWiki API error is returned
+	 */
+	public MediaWiki replacePageSection(final MediaWiki.EditToken editToken, final int sectionIndex, final String newText, final String editSummary, final boolean bot, final Boolean minor) throws IOException, MediaWiki.MediaWikiException {
+		return editPage(editToken, Integer.toString(sectionIndex), true, newText, editSummary, bot, minor);
+	}
+
+	/**
+	 * Ends an edit embodied by the specified <code>editToken</code> by
+	 * changing the text of the page it specifies from <code>oldText</code> to
+	 * <code>newText</code>, sending as little text as possible.
+	 * <p>
+	 * If the texts differ only in one section, and their headings are at the
+	 * same levels, only that section is sent, as with
+	 * <code>replacePageSection</code>. Otherwise, the entire page is replaced,
+	 * as with <code>replacePage</code>. Either way, the text of the page after
+	 * the edit is <code>newText</code>.
+	 * <p>
+	 * This method requires the page to exist on the wiki represented by this
+	 * <tt>MediaWiki</tt> prior to the call. If it doesn't,
+	 * <tt>MediaWiki.MissingPageException</tt> is thrown.
+	 * 
+	 * @param editToken
+	 *            The <tt>EditToken</tt> describing the page to edit and
+	 *            containing information to detect conflicts.
+	 * @param oldText
+	 *            The current text of the page, as of the last revision time of
+	 *            <code>editToken</code>.
+	 * @param newText
+	 *            The text to be contained by the page after the edit.
+	 * @param editSummary
+	 *            The summary to be used to describe the edit.
+	 * @param bot
+	 *            Whether to mark the edit as made by a bot ( <code>true</code>)
+	 *            or not (<code>false</code>).
+	 * @param minor
+	 *            Whether to mark the edit as minor (<code>true</code>) or not (
+	 *            <code>false</code>) or to use the value in
+	 *            <tt>Special:Preferences</tt> for the currently-logged in user
+	 *            of this <tt>MediaWiki</tt>.
+	 * @return this <tt>MediaWiki</tt>
+	 * @throws IOException
+	 *             if <tt>IOException</tt> is thrown while connecting to the
+	 *             wiki or while reading the XML reply from the API
+	 * @throws MediaWiki.MediaWikiException
+	 *             if a MediaWiki API error is returned
+	 */
+	public MediaWiki replacePageChanges(final MediaWiki.EditToken editToken, final String oldText, final String newText, final String editSummary, final boolean bot, final Boolean minor) throws IOException, MediaWiki.MediaWikiException {
+		if (oldText.equals(newText)) {
+			skippedEditCount.incrementAndGet();
+			return this;
+		}
+
+		/*
+		 * Headings in these constructs are not counted as sections by the
+		 * wiki, so section numbers computed here would be wrong.
+		 */
+		if (sectionUnsafeRegex.matcher(oldText).find() || sectionUnsafeRegex.matcher(newText).find())
+			return editPage(editToken, null, true, newText, editSummary, bot, minor);
+
+		final List<String> oldSections = splitSections(oldText), newSections = splitSections(newText);
+
+		if ((oldSections.size() != newSections.size()) || (oldSections.size() < 2))
+			return editPage(editToken, null, true, newText, editSummary, bot, minor);
+
+		int changed = -1;
+		for (int i = 0; i < oldSections.size(); i++) {
+			if (getHeadingLevel(oldSections.get(i)) != getHeadingLevel(newSections.get(i)))
+				return editPage(editToken, null, true, newText, editSummary, bot, minor);
+			if (!oldSections.get(i).equals(newSections.get(i))) {
+				if (changed != -1)
+					return editPage(editToken, null, true, newText, editSummary, bot, minor);
+				changed = i;
+			}
+		}
+
+		// A section extends up to the next heading of the same or a higher
+		// level, so it includes the sections nested in it.
+		int end = changed + 1;
+		if (changed > 0) {
+			final int level = getHeadingLevel(newSections.get(changed));
+			while ((end < newSections.size()) && (getHeadingLevel(newSections.get(end)) > level)) {
+				end++;
+			}
+		}
+
+		final StringBuilder oldSection = new StringBuilder(), newSection = new StringBuilder();
+		for (int i = changed; i < end; i++) {
+			oldSection.append(oldSections.get(i));
+			newSection.append(newSections.get(i));
+		}
+
+		/*
+		 * The wiki trims whitespace at the end of the section it receives,
+		 * then separates it from the next section with a blank line. Only send
+		 * the section if that reproduces newText exactly.
+		 */
+		if (end < newSections.size()) {
+			if (!isBlankLineTerminated(oldSection) || !isBlankLineTerminated(newSection))
+				return editPage(editToken, null, true, newText, editSummary, bot, minor);
+		} else if (newSection.length() != rtrim(newSection).length())
+			return editPage(editToken, null, true, newText, editSummary, bot, minor);
+
+		return editPage(editToken, Integer.toString(changed), true, newSection.toString(), editSummary, bot, minor);
+	}
+
+	/**
+	 * Ends an edit embodied by the specified <code>editToken</code> by creating
+	 * a section at the bottom of the page it specifies.
+	 * <p>
+	 * This method creates the page if it doesn't exist, or adds to its contents
+	 * if it does.
+	 * 
+	 * @param editToken
+	 *            The <tt>EditToken</tt> describing the page to edit and
+	 *            containing information to detect conflicts.
+	 * @param heading
+	 *            The heading of the section to be added. This is also used to
+	 *            create an automatic edit summary to describe the creation of
+	 *            the section.
+	 * @param text
+	 *            The text to be contained by the section.
+	 * @param bot
+	 *            Whether to mark the edit as made by a bot ( <code>true</code>)
+	 *            or not (<code>false</code>).
+	 * @param minor
+	 *            Whether to mark the edit as minor (<code>true</code>) or not (
+	 *            <code>false</code>) or to use the value in
+	 *            <tt>Special:Preferences</tt> for the currently-logged in user
+	 *            of this <tt>MediaWiki</tt>.
+	 * @return this <tt>MediaWiki</tt>
+	 * @throws IOException
+	 *             if <tt>IOException</tt> is thrown while connecting to the
+	 *             wiki or while reading the XML reply from the API
+	 * @throws MediaWiki.MediaWikiException
+	 *             if a MediaWiki API error is returned
+	 */
+	public MediaWiki createPageSection(final MediaWiki.EditToken editToken, final String heading, final String text, final boolean bot, final Boolean minor) throws IOException, MediaWiki.MediaWikiException {
+		return editPage(editToken, "new", null, text, heading, bot, minor);
+	}
+
+	/**
+	 * Ends an edit embodied by the specified <code>editToken</code>.
+	 * 
+	 * @param editToken
+	 *            The <tt>EditToken</tt> describing the page to edit and
+	 *            containing information to detect conflicts.
+	 * @param section
+	 *            <code>"new"</code> to create a new section; the string
+	 *            corresponding to a number to edit that section index;
+	 *            <code>null</code> to replace the entire page.
+	 * @param requireExist
+	 *            <code>true</code> to require that the page already exist;
+	 *            <code>false</code> to require that the page not exist;
+	 *            <code>null</code> to require nothing.
+	 * @param editSummary
+	 *            The summary to be used to describe the edit, or, if
+	 *            <code>section</code> is <code>"new"</code>, the heading of the
+	 *            section to be added.
+	 * @param text
+	 *            The text to be contained by the section.
+	 * @param bot
+	 *            Whether to mark the edit as made by a bot ( <code>true</code>)
+	 *            or not (<code>false</code>).
+	 * @param minor
+	 *            Whether to mark the edit as minor (<code>true</code>) or not (
+	 *            <code>false</code>) or to use the value in
+	 *            <tt>Special:Preferences</tt> for the currently-logged in user
+	 *            of this <tt>MediaWiki</tt>.
+	 * @return this <tt>MediaWiki</tt>
+	 * @throws IOException
+	 * @throws MediaWiki.MediaWikiException
+	 */
+	protected MediaWiki editPage(final MediaWiki.EditToken editToken, final String section, final Boolean requireExist, final String text, final String editSummary, final boolean bot, final Boolean minor) throws IOException, MediaWiki.MediaWikiException {
+		final String textHash = text != null ? md5(text) : null;
+		if ((section == null) && (textHash != null) && textHash.equals(editToken.contentHash) && !Boolean.FALSE.equals(requireExist)) {
+			/*
+			 * The page already has this text, so the edit would be a null
+			 * edit. Don't send it.
+			 */
+			skippedEditCount.incrementAndGet();
+			return this;
+		}
+
+		final Map<String, String> getParams = paramValuesToMap("action", "edit", "format", "xml");
+		final Map<String, String> postParams = paramValuesToMap("title", editToken.getFullPageName(), "text", text, "md5", textHash, "token", editToken.getTokenText(), "starttimestamp", dateToISO8601(editToken.getStartTime()), "summary", editSummary, "section", section);
+		if (bot) {
+			postParams.put("bot", "true");
+		}
+		if (minor != null) {
+			postParams.put(minor ? "minor" : "notminor", "true");
+		}
+		if (requireExist != null) {
+			postParams.put(requireExist ? "nocreate" : "createonly", "true");
+		}
+		if (editToken.getLastRevisionTime() != null) {
+			postParams.put("basetimestamp", dateToISO8601(editToken.getLastRevisionTime()));
+		}
+
+		final String url = createApiGetUrl(getParams);
+
+		networkLock.lock();
+		try {
+			final InputStream in = post(url, postParams);
+			final Document xml = parse(in);
+			checkError(xml);
+
+			final NodeList editTags = xml.getElementsByTagName("edit");
+
+			if (editTags.getLength() > 0) {
+				final Element editTag = (Element) editTags.item(0);
+
+				if (editTag.hasAttribute("result")) {
+					if (editTag.getAttribute("result").equals("Success"))
+						return this;
+					else
+						throw new MediaWiki.ActionFailureException(editTag.getAttribute("result"));
+				} else
+					throw new MediaWiki.ResponseFormatException("expected <edit result=\"\"> attribute not present");
+			} else
+				throw new MediaWiki.ResponseFormatException("expected <edit> tag not present");
+		} finally {
+			networkLock.unlock();
+		}
+	}
+
+	// - - - UNDO - - -
+
+	/**
+	 * Undoes a revision on the page embodied by the specified
+	 * <code>editToken</code>.
+	 * 
+	 * @param editToken
+	 *            The <tt>EditToken</tt> describing the page to undo a revision
+	 *            of and containing information to detect conflicts. This is
+	 *            gotten using <code>startEdit</code>.
+	 * @param revisionID
+	 *            The ID of the revision to undo.
+	 * @param editSummary
+	 *            The summary to be used to describe the edit that undoes the
+	 *            revision.
+	 * @param bot
+	 *            Whether to mark the edit that undoes the revision as made by a
+	 *            bot ( <code>true</code>) or not (<code>false</code>).
+	 * @param minor
+	 *            Whether to mark the edit that undoes the revision as minor (
+	 *            <code>true</code>) or not ( <code>false</code>) or to use the
+	 *            value in <tt>Special:Preferences</tt> for the currently-logged
+	 *            in user of this <tt>MediaWiki</tt>.
+	 * @return this <tt>MediaWiki</tt>
+	 * @throws IOException
+	 * @throws MediaWiki.MediaWikiException
+	 */
+	public MediaWiki undoRevision(final MediaWiki.EditToken editToken, final long revisionID, final String editSummary, final boolean bot, final Boolean minor) throws IOException, MediaWiki.MediaWikiException {
+		final Map<String, String> getParams = paramValuesToMap("action", "edit", "format", "xml");
+		final Map<String, String> postParams = paramValuesToMap("title", editToken.getFullPageName(), "token", editToken.getTokenText(), "starttimestamp", dateToISO8601(editToken.getStartTime()), "undo", Long.toString(revisionID), "summary", editSummary);
+		if (bot) {
+			postParams.put("bot", "true");
+		}
+		if (minor != null) {
+			postParams.put(minor ? "minor" : "notminor", "true");
+		}
+		if (editToken.getLastRevisionTime() != null) {
+			postParams.put("basetimestamp", dateToISO8601(editToken.getLastRevisionTime()));
+		}
+
+		final String url = createApiGetUrl(getParams);
+
+		networkLock.lock();
+		try {
+			final InputStream in = post(url, postParams);
+			final Document xml = parse(in);
+			checkError(xml);
+
+			final NodeList editTags = xml.getElementsByTagName("edit");
+
+			if (editTags.getLength() > 0) {
+				final Element editTag = (Element) editTags.item(0);
+
+				if (editTag.hasAttribute("result")) {
+					if (editTag.getAttribute("result").equals("Success"))
+						return this;
+					else
+						throw new MediaWiki.ActionFailureException(editTag.getAttribute("result"));
+				} else
+					throw new MediaWiki.ResponseFormatException("expected <edit result=\"\"> attribute not present");
+			} else
+				throw new MediaWiki.ResponseFormatException("expected <edit> tag not present");
+		} finally {
+			networkLock.unlock();
+		}
+	}
+
+	// - - - PREPEND AND APPEND - - -
+
+	/**
+	 * Prepends (i.e. writes text before the start) or appends (i.e. writes text
+	 * after the end) some text to the page embodied by the specified
+	 * <code>editToken</code>.
+	 * 
+	 * @param editToken
+	 *            The <tt>EditToken</tt> describing the page to add the text to
+	 *            and containing information to detect conflicts. This is gotten
+	 *            using <code>startEdit</code>.
+	 * @param text
+	 *            The text to add.
+	 * @param atEnd
+	 *            If <code>true</code>, text will be added after the end of the
+	 *            page. If <code>false</code>, text will be added before the
+	 *            start of the page.
+	 * @param editSummary
+	 *            The summary to be used to describe the edit that adds the
+	 *            text..
+	 * @param bot
+	 *            Whether to mark the edit that adds the text as made by a bot (
+	 *            <code>true</code>) or not (<code>false</code>).
+	 * @param minor
+	 *            Whether to mark the edit that adds the text as minor (
+	 *            <code>true</code>) or not ( <code>false</code>) or to use the
+	 *            value in <tt>Special:Preferences</tt> for the currently-logged
+	 *            in user of this <tt>MediaWiki</tt>.
+	 * @return this <tt>MediaWiki</tt>
+	 * @throws IOException
+	 * @throws MediaWiki.MediaWikiException
+	 */
+	public MediaWiki addText(final MediaWiki.EditToken editToken, final String text, final boolean atEnd, final String editSummary, final boolean bot, final Boolean minor) throws IOException, MediaWiki.MediaWikiException {
+		final Map<String, String> getParams = paramValuesToMap("action", "edit", "format", "xml");
+		final Map<String, String> postParams = paramValuesToMap("title", editToken.getFullPageName(), "token", editToken.getTokenText(), "starttimestamp", dateToISO8601(editToken.getStartTime()), atEnd ? "appendtext" : "prependtext", text, "md5", text != null ? md5(text) : null, "summary", editSummary);
+		if (bot) {
+			postParams.put("bot", "true");
+		}
+		if (minor != null) {
+			postParams.put(minor ? "minor" : "notminor", "true");
+		}
+		if (editToken.getLastRevisionTime() != null) {
+			postParams.put("basetimestamp", dateToISO8601(editToken.getLastRevisionTime()));
+		}
+
+		final String url = createApiGetUrl(getParams);
+
+		networkLock.lock();
+		try {
+			final InputStream in = post(url, postParams);
+			final Document xml = parse(in);
+			checkError(xml);
+
+			final NodeList editTags = xml.getElementsByTagName("edit");
+
+			if (editTags.getLength() > 0) {
+				final Element editTag = (Element) editTags.item(0);
+
+				if (editTag.hasAttribute("result")) {
+					if (editTag.getAttribute("result").equals("Success"))
+						return this;
+					else
+						throw new MediaWiki.ActionFailureException(editTag.getAttribute("result"));
+				} else
+					throw new MediaWiki.ResponseFormatException("expected <edit result=\"\"> attribute not present");
+			} else
+				throw new MediaWiki.ResponseFormatException("expected <edit> tag not present");
+		} finally {
+			networkLock.unlock();
+		}
+	}
+
+	// - - - MOVE - - -
+
+	/**
+	 * Starts a move of the given page, specified by its full name. The returned
+	 * token contains informaton used to detect conflicts when the move is
+	 * ended.
+	 * <p>
+	 * Once a token is known for the current session, this method returns it
+	 * without contacting the wiki. In that case, a lack of permission to
+	 * move the page is only reported when the move is ended.
+	 * 
+	 * @param fullName
+	 *            The full name, including the namespace, of the page to start
+	 *            moving. This is the name of the page as it exists before the
+	 *            move.
+	 * @return a <tt>MediaWiki.EditToken</tt> containing informaton used to
+	 *         detect conflicts when the move is ended
+	 * @throws IOException
+	 *             if <tt>IOException</tt> is thrown while connecting to the
+	 *             wiki or while reading the XML reply from the API
+	 * @throws MediaWiki.MediaWikiException
+	 *             if a MediaWiki API error is returned
+	 */
+	public MediaWiki.EditToken startMove(final String fullName) throws IOException, MediaWiki.MediaWikiException {
+		final MediaWiki.EditToken sharedToken = createSharedToken(fullName);
+		if (sharedToken != null)
+			return sharedToken;
+
+		final Map<String, String> getParams = paramValuesToMap("action", "query", "format", "xml", "prop", "info", "intoken", "move", "titles", titleToAPIForm(fullName));
+
+		final String url = createApiGetUrl(getParams);
+
+		networkLock.lock();
+		try {
+			final InputStream in = get(url);
+			final Document xml = parse(in);
+			checkError(xml);
+
+			final NodeList pageTags = xml.getElementsByTagName("page");
+
+			if (pageTags.getLength() > 0) {
+				final Element pageTag = (Element) pageTags.item(0);
+
+				if (!pageTag.hasAttribute("movetoken"))
+					throw new MediaWiki.PermissionException("move");
+
+				final Date lastRevision = pageTag.hasAttribute("touched") ? timestampToDate(pageTag.getAttribute("touched")) : null;
+				final Date start = timestampToDate(pageTag.getAttribute("starttimestamp"));
+				final String token = pageTag.getAttribute("movetoken");
+				learnSharedToken(token, start);
+
+				return new MediaWiki.EditToken(fullName, lastRevision, start, token);
+			} else
+				throw new MediaWiki.ResponseFormatException("expected <page> tag not found");
+		} catch (final ParseException pe) {
+			throw new MediaWiki.MediaWikiException(pe);
+		} finally {
+			networkLock.unlock();
+		}
+	}
+
+	/**
+	 * Ends a move embodied by the specified <code>moveToken</code>.
+	 * 
+	 * @param moveToken
+	 *            The <tt>EditToken</tt> describing the page to move and
+	 *            containing information to detect conflicts.
+	 * @param editSummary
+	 *            The reason to be used to describe the move.
+	 * @param suppressRedirect
+	 *            <code>true</code> to move the page without leaving a redirect
+	 *            to the new page's name under its old name. This requires the
+	 *            <tt>suppressredirect</tt> right.
+	 * @param moveTalk
+	 *            <code>true</code> to move the page's talk page as well;
+	 *            <code>false</code> to avoid doing so.
+	 * @param moveSubpages
+	 *            <code>true</code> to move the page's subpages as well;
+	 *            <code>false</code> to avoid doing so.
+	 * @return this <tt>MediaWiki</tt>
+	 * @throws IOException
+	 * @throws MediaWiki.MediaWikiException
+	 */
+	public MediaWiki endMove(final MediaWiki.EditToken moveToken, final String newFullName, final String reason, final boolean suppressRedirect, final boolean moveTalk, final boolean moveSubpages) throws IOException, MediaWiki.MediaWikiException {
+		final Map<String, String> getParams = paramValuesToMap("action", "move", "format", "xml");
+		final Map<String, String> postParams = paramValuesToMap("from", moveToken.getFullPageName(), "to", newFullName, "token", moveToken.getTokenText(), "starttimestamp", dateToISO8601(moveToken.getStartTime()), "reason", reason);
+		if (suppressRedirect) {
+			postParams.put("noredirect", "true");
+		}
+		if (moveTalk) {
+			postParams.put("movetalk", "true");
+		}
+		if (moveSubpages) {
+			postParams.put("movesubpages", "true");
+		}
+		if (moveToken.getLastRevisionTime() != null) {
+			postParams.put("basetimestamp", dateToISO8601(moveToken.getLastRevisionTime()));
+		}
+
+		final String url = createApiGetUrl(getParams);
+
+		networkLock.lock();
+		try {
+			final InputStream in = post(url, postParams);
+			final Document xml = parse(in);
+			checkError(xml);
+			checkError(xml, "talkmove-error-code", "talkmove-error-info");
+
+			final NodeList moveTags = xml.getElementsByTagName("move");
+
+			if (moveTags.getLength() > 0)
+				return this;
+			else
+				throw new MediaWiki.ResponseFormatException("expected <move> tag not present");
+		} finally {
+			networkLock.unlock();
+		}
+	}
+
+	// - - - ROLLBACK - - -
+
+	/**
+	 * Starts a rollback of the given page, specified by its full name. The
+	 * returned token contains informaton used to abort the rollback if another
+	 * user edits the page. The name of the last user who made an edit to the
+	 * page is also available.
+	 * 
+	 * @param fullName
+	 *            The full name, including the namespace, of the page to start
+	 *            rolling back.
+	 * @return a <tt>MediaWiki.RollbackToken</tt> containing informaton used to
+	 *         detect conflicts when the move is ended
+	 * @throws IOException
+	 *             if <tt>IOException</tt> is thrown while connecting to the
+	 *             wiki or while reading the XML reply from the API
+	 * @throws MediaWiki.MediaWikiException
+	 *             if a MediaWiki API error is returned
+	 */
+	public MediaWiki.RollbackToken startRollback(final String fullName) throws IOException, MediaWiki.MediaWikiException {
+		final Map<String, String> getParams = paramValuesToMap("action", "query", "format", "xml", "prop", "revisions", "rvtoken", "rollback", "titles", titleToAPIForm(fullName), "rvlimit", "1");
+
+		final String url = createApiGetUrl(getParams);
+
+		networkLock.lock();
+		try {
+			final InputStream in = get(url);
+			final Document xml = parse(in);
+			checkError(xml);
+
+			final NodeList pageTags = xml.getElementsByTagName("page");
+
+			if (pageTags.getLength() > 0) {
+				final Element pageTag = (Element) pageTags.item(0);
+
+				if (pageTag.hasAttribute("missing"))
+					throw new MediaWiki.MissingPageException();
+
+				final NodeList revTags = xml.getElementsByTagName("rev");
+
+				String userName, token;
+				if (revTags.getLength() > 0) {
+					final Element revTag = (Element) revTags.item(0);
+
+					if (!revTag.hasAttribute("rollbacktoken"))
+						throw new MediaWiki.PermissionException("rollback");
+
+					userName = revTag.getAttribute("user");
+					token = revTag.getAttribute("rollbacktoken");
+				} else
+					throw new MediaWiki.ResponseFormatException("expected <rev> tag not found");
+
+				return new MediaWiki.RollbackToken(fullName, userName, token);
+			} else
+				throw new MediaWiki.ResponseFormatException("expected <page> tag not found");
+		} finally {
+			networkLock.unlock();
+		}
+	}
+
+	/**
+	 * Ends a rollback embodied by the specified <code>rollbackToken</code>.
+	 * 
+	 * @param rollbackToken
+	 *            The <tt>RollbackToken</tt> describing the page to roll back
+	 *            and containing information to abort the rollback if another
+	 *            user edited the page.
+	 * @param comment
+	 *            The reason to be used to describe the rollback. This parameter
+	 *            may be <code>null</code> to use a default rollback comment.
+	 * @param bot
+	 *            <code>true</code> to mark the rolled-back edits and the edit
+	 *            rolling back the edits as made by a bot; <code>false</code> to
+	 *            avoid doing so. Marking the edits as made by a bot hides them
+	 *            from <tt>Special:RecentChanges</tt> by default, which helps in
+	 *            case of severe vandalism.
+	 * @return this <tt>MediaWiki</tt>
+	 * @throws IOException
+	 * @throws MediaWiki.MediaWikiException
+	 */
+	public MediaWiki endRollback(final MediaWiki.RollbackToken rollbackToken, final String comment, final boolean bot) throws IOException, MediaWiki.MediaWikiException {
+		final Map<String, String> getParams = paramValuesToMap("action", "rollback", "format", "xml");
+		final Map<String, String> postParams = paramValuesToMap("title", rollbackToken.getFullPageName(), "user", rollbackToken.getUserName(), "token", rollbackToken.getTokenText(), "summary", comment);
+		if (bot) {
+			postParams.put("markbot", "true");
+		}
+
+		final String url = createApiGetUrl(getParams);
+
+		networkLock.lock();
+		try {
+			final InputStream in = post(url, postParams);
+			final Document xml = parse(in);
+			checkError(xml);
+
+			final NodeList rollbackTags = xml.getElementsByTagName("rollback");
+
+			if (rollbackTags.getLength() > 0)
+				return this;
+			else
+				throw new MediaWiki.ResponseFormatException("expected <rollback> tag not present");
+		} finally {
+			networkLock.unlock();
+		}
+	}
+
+	// - - - UPLOAD - - -
+
+	/**
+	 * Starts an upload to the given image page, specified by its base name. The
+	 * returned token contains informaton used to detect conflicts when the
+	 * upload is ended.
+	 * <p>
+	 * Once a token is known for the current session, this method returns it
+	 * without contacting the wiki. In that case, a lack of permission to
+	 * upload the page is only reported when the upload is ended.
+	 * 
+	 * @param baseName
+	 *            The base name (excluding the namespace) of the page to start
+	 *            uploading to.
+	 * @return a <tt>MediaWiki.EditToken</tt> containing informaton used to
+	 *         detect conflicts when the upload is ended
+	 * @throws IOException
+	 *             if <tt>IOException</tt> is thrown while connecting to the
+	 *             wiki or while reading the XML reply from the API
+	 * @throws MediaWiki.MediaWikiException
+	 *             if a MediaWiki API error is returned
+	 */
+	public MediaWiki.EditToken startUpload(final String baseName) throws IOException, MediaWiki.MediaWikiException {
+		/*
+		 * Implementation note: On MediaWiki 1.18 and earlier, the upload token
+		 * is the edit token.
+		 */
+		final String fullName = getNamespaces().getNamespace(MediaWiki.StandardNamespace.FILE).getFullPageName(baseName);
+		final MediaWiki.EditToken sharedToken = createSharedToken(fullName);
+		return sharedToken != null ? sharedToken : startEdit(fullName);
+	}
+
+	/**
+	 * Ends an upload embodied by the specified <code>editToken</code> by making
+	 * the content of the specified <tt>InputStream</tt> the latest revision of
+	 * the image.
+	 * 
+	 * @param uploadToken
+	 *            The <tt>EditToken</tt> describing the image page to upload to
+	 *            and containing information to detect conflicts.
+	 * @param content
+	 *            The bytes to be contained by the image after the edit.
+	 * @param comment
+	 *            The summary to be used to describe the upload. If the file is
+	 *            created by this upload, this comment is also used as the text
+	 *            of the page associated with the image, unless
+	 *            <code>pageText</code> is not <code>null</code>.
+	 * @param pageText
+	 *            The text to be contained by the page associated with the
+	 *            image, if the file is created by this upload.
+	 * @return this <tt>MediaWiki</tt>
+	 * @throws IOException
+	 *             if <tt>IOException</tt> is thrown while connecting to the
+	 *             wiki or while reading the XML reply from the API
+	 * @throws MediaWiki.MediaWikiException
+	 *             if a MediaWiki API error is returned (if the page is
+	 *             protected from uploading,
+	 *             <tt>MediaWiki.PermissionException</tt>)
+	 */
+	public MediaWiki endUpload(final MediaWiki.EditToken uploadToken, final InputStream content, final String comment, final String pageText) throws IOException, MediaWiki.MediaWikiException {
+		final Map<String, String> getParams = paramValuesToMap("action", "upload", "format", "xml");
+		final String url = createApiGetUrl(getParams);
+
+		networkLock.lock();
+		try {
+			final MediaWiki.WriteStandIn standIn = writeStandIn;
+			if (standIn != null) {
+				awaitRequestGovernor(MediaWiki.RequestClass.UPLOAD);
+				final byte[] buf = new byte[4096];
+				long total = 0;
+				int read;
+				while ((read = content.read(buf)) > 0) {
+					total += read;
+				}
+				awaitWriteStandIn(standIn);
+				standIn.write(uploadToken.getFullPageName(), total);
+				requestGovernor.succeeded(MediaWiki.RequestClass.UPLOAD);
+				return this;
+			}
+
+			// Repeating post() here because we are sending in
+			// multipart/form-data.
+			final HttpURLConnection http = (HttpURLConnection) new URL(url).openConnection();
+			initConnection(http);
+			initPost(http);
+			final String boundary = createMultipartBoundary();
+			http.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + boundary);
+
+			initCookies(http);
+			awaitRequestGovernor(MediaWiki.RequestClass.UPLOAD);
+			final BufferedWriter out = new BufferedWriter(new OutputStreamWriter(http.getOutputStream(), "UTF-8"));
+
+			out.write("\r\n--" + boundary + "\r\nContent-Disposition: form-data; name=\"filename\"\r\nContent-Type: text/plain; charset=UTF-8\r\nContent-Transfer-Encoding: 8bit\r\n\r\n");
+			out.write(getNamespaces().removeNamespacePrefix(uploadToken.getFullPageName()));
+
+			out.write("\r\n--" + boundary + "\r\nContent-Disposition: form-data; name=\"token\"\r\nContent-Type: text/plain; charset=UTF-8\r\nContent-Transfer-Encoding: 8bit\r\n\r\n");
+			out.write(uploadToken.getTokenText());
+
+			out.write("\r\n--" + boundary + "\r\nContent-Disposition: form-data; name=\"ignorewarnings\"\r\nContent-Type: text/plain; charset=UTF-8\r\nContent-Transfer-Encoding: 8bit\r\n\r\n");
+			out.write("true");
+
+			if (comment != null) {
+				out.write("\r\n--" + boundary + "\r\nContent-Disposition: form-data; name=\"comment\"\r\nContent-Type: text/plain; charset=UTF-8\r\nContent-Transfer-Encoding: 8bit\r\n\r\n");
+				out.write(comment);
+			}
+
+			if (pageText != null) {
+				out.write("\r\n--" + boundary + "\r\nContent-Disposition: form-data; name=\"text\"\r\nContent-Type: text/plain; charset=UTF-8\r\nContent-Transfer-Encoding: 8bit\r\n\r\n");
+				out.write(pageText);
+			}
+
+			out.write("\r\n--" + boundary + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"x\"\r\nContent-Type: application/octet-stream\r\nContent-Transfer-Encoding: binary\r\n\r\n");
+			// Switch from buffered characters to unbuffered bytes.
+			out.flush();
+
+			final byte[] buf = new byte[4096];
+			int read;
+
+			while ((read = content.read(buf)) > 0) {
+				http.getOutputStream().write(buf, 0, read);
+			}
+
+			out.write("\r\n--" + boundary + "--\r\n"); // End
+
+			out.flush();
+			out.close();
+			http.connect();
+			// The content has been consumed, so the upload cannot be retried.
+			retryIfDelayed(http, MediaWiki.RequestClass.UPLOAD, -1);
+
+			if (http.getResponseCode() != 200)
+				throw new MediaWiki.HttpStatusException(http.getResponseCode());
+
+			updateCookies(http);
+
+			final String encoding = http.getHeaderField("Content-Encoding");
+			final InputStream in = (encoding != null) && encoding.equals("gzip") ? new GZIPInputStream(http.getInputStream()) : http.getInputStream();
+			// End of post() repeat.
+
+			final Document xml = parse(in);
+			checkError(xml);
+
+			final NodeList uploadTags = xml.getElementsByTagName("upload");
+
+			if (uploadTags.getLength() > 0) {
+				final Element uploadTag = (Element) uploadTags.item(0);
+
+				if (uploadTag.hasAttribute("result")) {
+					if (uploadTag.getAttribute("result").equals("Success"))
+						return this;
+					else
+						throw new MediaWiki.ActionFailureException(uploadTag.getAttribute("result"));
+				} else
+					throw new MediaWiki.ResponseFormatException("expected <upload result=\"\"> attribute not present");
+			} else
+				throw new MediaWiki.ResponseFormatException("expected <upload> tag not present");
+		} finally {
+			networkLock.unlock();
+		}
+	}
+
+	/**
+	 * Starts a chunked upload of the content of the given channel to the file
+	 * page specified by <code>uploadToken</code>. No request is made; chunks
+	 * are sent by <code>sendUploadChunk</code> or
+	 * <code>endChunkedUpload</code>.
+	 * <p>
+	 * Chunked uploads send the file in parts to the wiki's upload stash, then
+	 * publish it. Each part is read from the channel while it is being sent,
+	 * so that only one buffer's worth of the file is held in memory. If
+	 * sending a part fails, the upload can be resumed from the last part
+	 * accepted by the wiki by calling <code>sendUploadChunk</code> or
+	 * <code>endChunkedUpload</code> again.
+	 * 
+	 * @param uploadToken
+	 *            The token returned by <code>startUpload</code>.
+	 * @param content
+	 *            The channel to read the content of the file from. Its size is
+	 *            read when this method is called and must not change afterwards.
+	 * @param chunkSize
+	 *            The number of bytes to send in each part.
+	 * @return a <tt>MediaWiki.ChunkedUpload</tt> that holds the progress of the
+	 *         upload
+	 * @throws IOException
+	 *             if <tt>IOException</tt> is thrown while reading the size of
+	 *             the channel
+	 */
+	public MediaWiki.ChunkedUpload startChunkedUpload(final MediaWiki.EditToken uploadToken, final FileChannel content, final int chunkSize) throws IOException {
+		return new MediaWiki.ChunkedUpload(uploadToken, content, chunkSize);
+	}
+
+	/**
+	 * Sends the next part of a chunked upload to the wiki's upload stash.
+	 * <p>
+	 * If the wiki accepted a part but its reply was lost, sending the part
+	 * again makes the wiki report the offset it expects; the upload then
+	 * continues from that offset.
+	 * 
+	 * @param upload
+	 *            The upload to send the next part of.
+	 * @return whether parts remain to be sent
+	 * @throws IOException
+	 *             if <tt>IOException</tt> is thrown while reading from the
+	 *             channel, connecting to the wiki or reading the XML reply from
+	 *             the API; the part can be sent again afterwards
+	 * @throws MediaWiki.MediaWikiException
+	 *             if a MediaWiki API error is returned
+	 */
+	public boolean sendUploadChunk(final MediaWiki.ChunkedUpload upload) throws IOException, MediaWiki.MediaWikiException {
+		if (upload.isStashed())
+			return false;
+
+		final long count = Math.min(upload.chunkSize, upload.size - upload.offset);
+		final Map<String, String> fields = paramValuesToMap("filename", getNamespaces().removeNamespacePrefix(upload.uploadToken.getFullPageName()), "filesize", Long.toString(upload.size), "offset", Long.toString(upload.offset), "stash", "true", "ignorewarnings", "true", "filekey", upload.fileKey, "token", upload.uploadToken.getTokenText());
+
+		final Map<String, String> getParams = paramValuesToMap("action", "upload", "format", "xml");
+		final String url = createApiGetUrl(getParams);
+
+		networkLock.lock();
+		try {
+			final MediaWiki.WriteStandIn standIn = writeStandIn;
+			if (standIn != null) {
+				awaitRequestGovernor(MediaWiki.RequestClass.UPLOAD);
+				awaitWriteStandIn(standIn);
+				standIn.receive(count);
+				requestGovernor.succeeded(MediaWiki.RequestClass.UPLOAD);
+				if (upload.fileKey == null) {
+					upload.fileKey = "stand-in";
+				}
+				upload.offset += count;
+				return upload.offset < upload.size;
+			}
+
+			HttpURLConnection http;
+			int attempt = 0;
+			do {
+				http = (HttpURLConnection) new URL(url).openConnection();
+				initConnection(http);
+				initPost(http);
+				final String boundary = createMultipartBoundary();
+				http.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + boundary);
+				initCookies(http);
+
+				final StringBuilder head = new StringBuilder();
+				for (final Map.Entry<String, String> field : fields.entrySet()) {
+					if (field.getValue() != null) {
+						head.append("\r\n--" + boundary + "\r\nContent-Disposition: form-data; name=\"" + field.getKey() + "\"\r\nContent-Type: text/plain; charset=UTF-8\r\nContent-Transfer-Encoding: 8bit\r\n\r\n");
+						head.append(field.getValue());
+					}
+				}
+				head.append("\r\n--" + boundary + "\r\nContent-Disposition: form-data; name=\"chunk\"; filename=\"x\"\r\nContent-Type: application/octet-stream\r\nContent-Transfer-Encoding: binary\r\n\r\n");
+				final byte[] headBytes = head.toString().getBytes("UTF-8"), tailBytes = ("\r\n--" + boundary + "--\r\n").getBytes("UTF-8");
+
+				// Stream the part instead of letting HttpURLConnection buffer
+				// the whole request.
+				http.setFixedLengthStreamingMode((int) (headBytes.length + count + tailBytes.length));
+				awaitRequestGovernor(MediaWiki.RequestClass.UPLOAD);
+				final OutputStream out = http.getOutputStream();
+				try {
+					out.write(headBytes);
+					final WritableByteChannel channel = Channels.newChannel(out);
+					long position = upload.offset;
+					final long end = upload.offset + count;
+					while (position < end) {
+						final long transferred = upload.content.transferTo(position, end - position, channel);
+						if (transferred <= 0)
+							throw new IOException("file ended at byte " + position + " of " + upload.size);
+						position += transferred;
+					}
+					out.write(tailBytes);
+				} finally {
+					out.close();
+				}
+				http.connect();
+			} while (retryIfDelayed(http, MediaWiki.RequestClass.UPLOAD, attempt++));
+
+			if (http.getResponseCode() != 200)
+				throw new MediaWiki.HttpStatusException(http.getResponseCode());
+
+			updateCookies(http);
+
+			final String encoding = http.getHeaderField("Content-Encoding");
+			final InputStream in = (encoding != null) && encoding.equals("gzip") ? new GZIPInputStream(http.getInputStream()) : http.getInputStream();
+
+			final Document xml = parse(in);
+
+			if (upload.fileKey != null) {
+				/*
+				 * A part sent at the wrong offset is refused with the offset
+				 * the stash has reached. That happens when the reply to an
+				 * accepted part was lost, so the part need not be sent again.
+				 */
+				final NodeList errorTags = xml.getElementsByTagName("error");
+				if ((errorTags.getLength() > 0) && ((Element) errorTags.item(0)).hasAttribute("offset")) {
+					final long stashOffset = Long.parseLong(((Element) errorTags.item(0)).getAttribute("offset"));
+					if ((stashOffset > upload.offset) && (stashOffset <= upload.size)) {
+						upload.offset = stashOffset;
+						return upload.offset < upload.size;
+					}
+				}
+			}
+			checkError(xml);
+
+			final NodeList uploadTags = xml.getElementsByTagName("upload");
+
+			if (uploadTags.getLength() > 0) {
+				final Element uploadTag = (Element) uploadTags.item(0);
+
+				if (uploadTag.hasAttribute("filekey")) {
+					upload.fileKey = uploadTag.getAttribute("filekey");
+				}
+
+				final String result = uploadTag.getAttribute("result");
+				if (result.equals("Continue")) {
+					upload.offset = uploadTag.hasAttribute("offset") ? Long.parseLong(uploadTag.getAttribute("offset")) : upload.offset + count;
+					return true;
+				} else if (result.equals("Success")) {
+					if (upload.fileKey == null)
+						throw new MediaWiki.ResponseFormatException("expected <upload filekey=\"\"> attribute not present");
+					upload.offset = upload.size;
+					return false;
+				} else if (result.length() > 0)
+					throw new MediaWiki.ActionFailureException(result);
+				else
+					throw new MediaWiki.ResponseFormatException("expected <upload result=\"\"> attribute not present");
+			} else
+				throw new MediaWiki.ResponseFormatException("expected <upload> tag not present");
+		} catch (final NumberFormatException nfe) {
+			throw new MediaWiki.ResponseFormatException("cannot parse the offset of the upload");
+		} finally {
+			networkLock.unlock();
+		}
+	}
+
+	/**
+	 * Ends a chunked upload by sending the parts that remain to be sent, then
+	 * publishing the file from the wiki's upload stash. A part whose sending
+	 * fails with <tt>IOException</tt> is sent again, up to 3 times in a row.
+	 * 
+	 * @param upload
+	 *            The upload to end.
+	 * @param comment
+	 *            The comment to be used to describe the upload.
+	 * @param pageText
+	 *            The text to be contained by the file's description page if the
+	 *            file is new, or <code>null</code> to use the comment.
+	 * @param listener
+	 *            The listener to report the number of bytes sent to after each
+	 *            part, or <code>null</code>.
+	 * @return this <tt>MediaWiki</tt>
+	 * @throws IOException
+	 *             if <tt>IOException</tt> is thrown while reading from the
+	 *             channel, connecting to the wiki or reading the XML reply from
+	 *             the API; the upload can be resumed by calling this method
+	 *             again
+	 * @throws MediaWiki.MediaWikiException
+	 *             if a MediaWiki API error is returned (if the page is
+	 *             protected from uploading,
+	 *             <tt>MediaWiki.PermissionException</tt>)
+	 */
+	public MediaWiki endChunkedUpload(final MediaWiki.ChunkedUpload upload, final String comment, final String pageText, final MediaWiki.ProgressListener listener) throws IOException, MediaWiki.MediaWikiException {
+		int failures = 0;
+		while (!upload.isStashed()) {
+			try {
+				sendUploadChunk(upload);
+				failures = 0;
+			} catch (final IOException ioe) {
+				if (++failures >= 3)
+					throw ioe;
+			}
+			if (listener != null) {
+				listener.progress(upload.getOffset(), upload.getSize());
+			}
+		}
+
+		final Map<String, String> getParams = paramValuesToMap("action", "upload", "format", "xml");
+		final Map<String, String> postParams = paramValuesToMap("filename", getNamespaces().removeNamespacePrefix(upload.uploadToken.getFullPageName()), "filekey", upload.fileKey, "comment", comment, "text", pageText, "ignorewarnings", "true", "token", upload.uploadToken.getTokenText());
+
+		final String url = createApiGetUrl(getParams);
+
+		networkLock.lock();
+		try {
+			final InputStream in = post(url, postParams);
+			final Document xml = parse(in);
+			checkError(xml);
+
+			final NodeList uploadTags = xml.getElementsByTagName("upload");
+
+			if (uploadTags.getLength() > 0) {
+				final Element uploadTag = (Element) uploadTags.item(0);
+
+				if (uploadTag.hasAttribute("result")) {
+					if (uploadTag.getAttribute("result").equals("Success"))
+						return this;
+					else
+						throw new MediaWiki.ActionFailureException(uploadTag.getAttribute("result"));
+				} else
+					throw new MediaWiki.ResponseFormatException("expected <upload result=\"\"> attribute not present");
+			} else
+				throw new MediaWiki.ResponseFormatException("expected <upload> tag not present");
+		} finally {
+			networkLock.unlock();
+		}
+	}
+
+	/**
+	 * Returns a random multipart boundary. It has between 14 and 17
+	 * alphanumeric characters, chosen to minimize the probability that the
+	 * content being sent contains it.
+	 * 
+	 * @return a random multipart boundary
+	 */
+	private static String createMultipartBoundary() {
+		final int count = 14 + (int) (Math.random() * 4);
+		final char[] cc = new char[count];
+		for (int i = 0; i < count; i++) {
+			final int random = (int) (Math.random() * 62);
+			if (random < 26) {
+				cc[i] = (char) ('A' + random);
+			} else if (random < 52) {
+				cc[i] = (char) ('a' + (random - 26));
+			} else {
+				cc[i] = (char) ('0' + (random - 52));
+			}
+		}
+		return new String(cc);
+	}
+
+	// - - - DELETE - - -
+
+	/**
+	 * Starts a deletion of the given page, specified by its full name. The
+	 * returned token contains informaton used to detect conflicts when the
+	 * deletion is ended.
+	 * <p>
+	 * Once a token is known for the current session, this method returns it
+	 * without contacting the wiki. In that case, a lack of permission to
+	 * delete the page is only reported when the deletion is ended.
+	 * 
+	 * @param fullName
+	 *            The full name, including the namespace, of the page to start
+	 *            deleting. This is the name of the page as it exists before the
+	 *            move.
+	 * @return a <tt>MediaWiki.EditToken</tt> containing informaton used to
+	 *         detect conflicts when the deletion is ended
+	 * @throws IOException
+	 *             if <tt>IOException</tt> is thrown while connecting to the
+	 *             wiki or while reading the XML reply from the API
+	 * @throws MediaWiki.MediaWikiException
+	 *             if a MediaWiki API error is returned
+	 */
+	public MediaWiki.EditToken startDelete(final String fullName) throws IOException, MediaWiki.MediaWikiException {
+		final MediaWiki.EditToken sharedToken = createSharedToken(fullName);
+		if (sharedToken != null)
+			return sharedToken;
+
+		final Map<String, String> getParams = paramValuesToMap("action", "query", "format", "xml", "prop", "info", "intoken", "delete", "titles", titleToAPIForm(fullName));
+
+		final String url = createApiGetUrl(getParams);
+
+		networkLock.lock();
+		try {
+			final InputStream in = get(url);
+			final Document xml = parse(in);
+			checkError(xml);
+
+			final NodeList pageTags = xml.getElementsByTagName("page");
+
+			if (pageTags.getLength() > 0) {
+				final Element pageTag = (Element) pageTags.item(0);
+
+				if (!pageTag.hasAttribute("deletetoken"))
+					throw new MediaWiki.PermissionException("delete");
+
+				final Date lastRevision = pageTag.hasAttribute("touched") ? timestampToDate(pageTag.getAttribute("touched")) : null;
+				final Date start = timestampToDate(pageTag.getAttribute("starttimestamp"));
+				final String token = pageTag.getAttribute("deletetoken");
+				learnSharedToken(token, start);
+
+				return new MediaWiki.EditToken(fullName, lastRevision, start, token);
+			} else
+				throw new MediaWiki.ResponseFormatException("expected <page> tag not found");
+		} catch (final ParseException pe) {
+			throw new MediaWiki.MediaWikiException(pe);
+		} finally {
+			networkLock.unlock();
+		}
+	}
+
+	/**
+	 * Ends a deletion embodied by the specified <code>deletionToken</code>.
+	 * This deletes the page itself and all of its revisions, making them
+	 * accessible only to those who have the rights required to view
+	 * <tt>Special:Undelete</tt> on the wiki that this <tt>MediaWiki</tt>
+	 * represents.
+	 * 
+	 * @param deletionToken
+	 *            The <tt>EditToken</tt> describing the page to delete and
+	 *            containing information to detect conflicts.
+	 * @param reason
+	 *            The reason to be used to describe the deletion.
+	 * @return this <tt>MediaWiki</tt>
+	 * @throws IOException
+	 * @throws MediaWiki.MediaWikiException
+	 */
+	public MediaWiki endDelete(final MediaWiki.EditToken deletionToken, final String reason) throws IOException, MediaWiki.MediaWikiException {
+		final Map<String, String> getParams = paramValuesToMap("action", "delete", "format", "xml");
+		final Map<String, String> postParams = paramValuesToMap("title", deletionToken.getFullPageName(), "starttimestamp", dateToISO8601(deletionToken.getStartTime()), "token", deletionToken.getTokenText(), "reason", reason);
+		if (deletionToken.getLastRevisionTime() != null) {
+			postParams.put("basetimestamp", dateToISO8601(deletionToken.getLastRevisionTime()));
+		}
+
+		final String url = createApiGetUrl(getParams);
+
+		networkLock.lock();
+		try {
+			final InputStream in = post(url, postParams);
+			final Document xml = parse(in);
+			checkError(xml);
+
+			final NodeList deleteTags = xml.getElementsByTagName("delete");
+
+			if (deleteTags.getLength() > 0)
+				return this;
+			else
+				throw new MediaWiki.ResponseFormatException("expected <delete> tag not present");
+		} finally {
+			networkLock.unlock();
+		}
+	}
+
+	// - - - PROTECT - - -
+
+	/**
+	 * Starts a modification to the protection of the given page, specified by
+	 * its full name. The returned token contains informaton used to detect
+	 * conflicts when the (un)protection is ended.
+	 * <p>
+	 * Once a token is known for the current session, this method returns it
+	 * without contacting the wiki. In that case, a lack of permission to
+	 * protect the page is only reported when the protection is ended.
+	 * 
+	 * @param fullName
+	 *            The full name, including the namespace, of the page to start
+	 *            (un)protecting.
+	 * @return a <tt>MediaWiki.EditToken</tt> containing informaton used to
+	 *         detect conflicts when the (un)protection is ended
+	 * @throws IOException
+	 *             if <tt>IOException</tt> is thrown while connecting to the
+	 *             wiki or while reading the XML reply from the API
+	 * @throws MediaWiki.MediaWikiException
+	 *             if a MediaWiki API error is returned
+	 */
+	public MediaWiki.EditToken startProtect(final String fullName) throws IOException, MediaWiki.MediaWikiException {
+		final MediaWiki.EditToken sharedToken = createSharedToken(fullName);
+		if (sharedToken != null)
+			return sharedToken;
+
+		final Map<String, String> getParams = paramValuesToMap("action", "query", "format", "xml", "prop", "info", "intoken", "protect", "titles", titleToAPIForm(fullName));
+
+		final String url = createApiGetUrl(getParams);
+
+		networkLock.lock();
+		try {
+			final InputStream in = get(url);
+			final Document xml = parse(in);
+			checkError(xml);
+
+			final NodeList pageTags = xml.getElementsByTagName("page");
+
+			if (pageTags.getLength() > 0) {
+				final Element pageTag = (Element) pageTags.item(0);
+
+				if (!pageTag.hasAttribute("protecttoken"))
+					throw new MediaWiki.PermissionException("protect");
+
+				final Date lastRevision = pageTag.hasAttribute("touched") ? timestampToDate(pageTag.getAttribute("touched")) : null;
+				final Date start = timestampToDate(pageTag.getAttribute("starttimestamp"));
+				final String token = pageTag.getAttribute("protecttoken");
+				learnSharedToken(token, start);
+
+				return new MediaWiki.EditToken(fullName, lastRevision, start, token);
+			} else
+				throw new MediaWiki.ResponseFormatException("expected <page> tag not found");
+		} catch (final ParseException pe) {
+			throw new MediaWiki.MediaWikiException(pe);
+		} finally {
+			networkLock.unlock();
+		}
+	}
+
+	/**
+	 * Ends a protection embodied by the specified <code>protectionToken</code>.
+	 * This protects the page itself and, if cascading protection is enabled,
+	 * any page that it transcludes.
+	 * 
+	 * @param protectionToken
+	 *            The <tt>EditToken</tt> describing the page to protect and
+	 *            containing information to detect conflicts.
+	 * @param protections
+	 *            A map associating names of actions to (un)protect to the data
+	 *            associated with the (un)protection. If an action to be
+	 *            protected, it is associated with a
+	 *            <tt>MediaWiki.Protection</tt> object describing the protection
+	 *            type and expiry (the expiry being <code>null</code> to signify
+	 *            never). If an action is to be unprotected, it is
+	 *            <em>explicitly</em> associated with a
+	 *            <tt>MediaWiki.Protection</tt> of <code>null</code>. Actions
+	 *            that are to be left alone are not in this map altogether.
+	 * @param reason
+	 *            The reason to be used to describe the protection.
+	 * @param cascade
+	 *            <code>true</code> if pages that are or become transcluded in
+	 *            the page given in the <code>protectionToken</code> are to be
+	 *            protected as well; <code>false</code> if only the page given
+	 *            in the <code>protectionToken</code> is to be protected.
+	 * @return this <tt>MediaWiki</tt>
+	 * @throws IOException
+	 * @throws MediaWiki.MediaWikiException
+	 */
+	public MediaWiki endProtect(final MediaWiki.EditToken protectionToken, final Map<String, MediaWiki.Protection> protections, final String reason, final boolean cascade) throws IOException, MediaWiki.MediaWikiException {
+		final Map<String, String> getParams = paramValuesToMap("action", "protect", "format", "xml");
+		final Map<String, String> postParams = paramValuesToMap("title", protectionToken.getFullPageName(), "starttimestamp", dateToISO8601(protectionToken.getStartTime()), "token", protectionToken.getTokenText(), "reason", reason);
+		if (cascade) {
+			postParams.put("cascade", "true");
+		}
+		if (protectionToken.getLastRevisionTime() != null) {
+			postParams.put("basetimestamp", dateToISO8601(protectionToken.getLastRevisionTime()));
+		}
+		{
+			final StringBuilder paramProtections = new StringBuilder();
+			final StringBuilder paramExpiry = new StringBuilder();
+			for (final Map.Entry<String, MediaWiki.Protection> protection : protections.entrySet()) {
+				if (protection.getValue() != null) {
+					// Protecting
+					if (paramProtections.length() > 0) {
+						paramProtections.append('|');
+					}
+					paramProtections.append(protection.getKey() + "=" + protection.getValue().getLevel());
+					if (paramExpiry.length() > 0) {
+						paramExpiry.append('|');
+					}
+					paramExpiry.append(protection.getValue().getExpiry() != null ? protection.getValue().getExpiry() : "never");
+				} else {
+					// Unprotecting
+					if (paramProtections.length() > 0) {
+						paramProtections.append('|');
+					}
+					paramProtections.append(protection.getKey() + "=");
+					if (paramExpiry.length() > 0) {
+						paramExpiry.append('|');
+					}
+					paramExpiry.append("never");
+				}
+			}
+			postParams.put("protections", paramProtections.toString());
+			postParams.put("expiry", paramExpiry.toString());
+		}
+
+		final String url = createApiGetUrl(getParams);
+
+		networkLock.lock();
+		try {
+			final InputStream in = post(url, postParams);
+			final Document xml = parse(in);
+			checkError(xml);
+
+			final NodeList protectTags = xml.getElementsByTagName("protect");
+
+			if (protectTags.getLength() > 0)
+				return this;
+			else
+				throw new MediaWiki.ResponseFormatException("expected <protect> tag not present");
+		} finally {
+			networkLock.unlock();
+		}
+	}
+
+	// - - - USER RIGHTS MODIFICATION - - -
+
+	/**
+	 * Starts a modification of the group memberships of the given user,
+	 * specified by its name.
+	 * 
+	 * @param userName
+	 *            The name of the user to modify the group membership of.
+	 * @return a <tt>MediaWiki.UserGroupsToken</tt>
+	 * @throws IOException
+	 *             if <tt>IOException</tt> is thrown while connecting to the
+	 *             wiki or while reading the XML reply from the API
+	 * @throws MediaWiki.MediaWikiException
+	 *             if a MediaWiki API error is returned
+	 */
+	public MediaWiki.UserGroupsToken startUserGroupModification(final String userName) throws IOException, MediaWiki.MediaWikiException {
+		final Map<String, String> getParams = paramValuesToMap("action", "query", "format", "xml", "list", "users", "ustoken", "userrights", "ususers", titleToAPIForm(userName));
+
+		final String url = createApiGetUrl(getParams);
+
+		networkLock.lock();
+		try {
+			final InputStream in = get(url);
+			final Document xml = parse(in);
+			checkError(xml);
+
+			final NodeList userTags = xml.getElementsByTagName("user");
+
+			if (userTags.getLength() > 0) {
+				final Element userTag = (Element) userTags.item(0);
+
+				if (!userTag.hasAttribute("userrightstoken"))
+					throw new MediaWiki.PermissionException("userrights");
+
+				final String token = userTag.getAttribute("userrightstoken");
+
+				return new MediaWiki.UserGroupsToken(userName, token);
+			} else
+				throw new MediaWiki.ResponseFormatException("expected <user> tag not found");
+		} finally {
+			networkLock.unlock();
+		}
+	}
+
+	/**
+	 * Ends a modification to user group memberships embodied by the specified
+	 * <code>userGroupsToken</code>.
+	 * 
+	 * @param userGroupsToken
+	 *            The <tt>UserGroupsToken</tt> describing the user to modify the
+	 *            group membership of.
+	 * @param add
+	 *            The group(s) to make the user a member of.
+	 * @param remove
+	 *            The group(s) to remove the user from.
+	 * @param reason
+	 *            The reason to be used to describe the change.
+	 * @return this <tt>MediaWiki</tt>
+	 * @throws IOException
+	 * @throws MediaWiki.MediaWikiException
+	 */
+	public MediaWiki endUserGroupModification(final MediaWiki.UserGroupsToken userRightsToken, final Collection<String> add, final Collection<String> remove, final String reason) throws IOException, MediaWiki.MediaWikiException {
+		final Map<String, String> getParams = paramValuesToMap("action", "userrights", "format", "xml");
+		final Map<String, String> postParams = paramValuesToMap("user", userRightsToken.getUserName(), "token", userRightsToken.getTokenText(), "reason", reason);
+		{
+			final StringBuilder value = new StringBuilder();
+			for (final String group : add) {
+				if (value.length() > 0) {
+					value.append('|');
+				}
+				value.append(group);
+			}
+			if (value.length() > 0) {
+				postParams.put("add", value.toString());
+			}
+			value.setLength(0);
+			for (final String group : remove) {
+				if (value.length() > 0) {
+					value.append('|');
+				}
+				value.append(group);
+			}
+			if (value.length() > 0) {
+				postParams.put("remove", value.toString());
+			}
+		}
+
+		final String url = createApiGetUrl(getParams);
+
+		networkLock.lock();
+		try {
+			final InputStream in = post(url, postParams);
+			final Document xml = parse(in);
+			checkError(xml);
+
+			final NodeList userrightsTags = xml.getElementsByTagName("userrights");
+
+			if (userrightsTags.getLength() > 0)
+				return this;
+			else
+				throw new MediaWiki.ResponseFormatException("expected <userrights> tag not present");
+		} finally {
+			networkLock.unlock();
+		}
+	}
+
+	// - - - WRITE QUEUE - - -
+
+	/**
+	 * Creates a <tt>MediaWiki.WriteQueue</tt> that performs jobs against the
+	 * wiki represented by this <tt>MediaWiki</tt>. Jobs are prepared by the
+	 * given number of threads and written by one more.
+	 * 
+	 * @param preparationThreads
+	 *            The number of threads that may prepare jobs concurrently.
+	 * @return a <tt>MediaWiki.WriteQueue</tt> that performs jobs against the
+	 *         wiki represented by this <tt>MediaWiki</tt>
+	 * @throws IllegalArgumentException
+	 *             if <code>preparationThreads</code> is less than 1
+	 */
+	public MediaWiki.WriteQueue createWriteQueue(final int preparationThreads) {
+		return new MediaWiki.WriteQueue(preparationThreads);
+	}
+
+	/**
+	 * Waits for the job whose <tt>Future</tt> is given to be written, then
+	 * returns its outcome. If the job failed, the exception it threw is
+	 * rethrown with its own type instead of being wrapped in an
+	 * <tt>ExecutionException</tt>.
+	 * 
+	 * @param future
+	 *            The <tt>Future</tt> returned by
+	 *            <tt>MediaWiki.WriteQueue.submit</tt>.
+	 * @return the outcome of the job whose <tt>Future</tt> is given
+	 * @throws IOException
+	 *             if the job threw <tt>IOException</tt>
+	 * @throws MediaWiki.MediaWikiException
+	 *             if the job threw <tt>MediaWiki.MediaWikiException</tt>
+	 * @throws InterruptedException
+	 *             if the current thread is interrupted while waiting
+	 * @throws CancellationException
+	 *             if the job was cancelled
+	 */
+	public static <T> T getWriteOutcome(final Future<T> future) throws IOException, MediaWiki.MediaWikiException, InterruptedException {
+		try {
+			return future.get();
+		} catch (final ExecutionException ee) {
+			final Throwable t = ee.getCause();
+			if (t instanceof MediaWiki.MediaWikiException)
+				throw (MediaWiki.MediaWikiException) t;
+			else if (t instanceof IOException)
+				throw (IOException) t;
+			else if (t instanceof RuntimeException)
+				throw (RuntimeException) t;
+			else if (t instanceof Error)
+				throw (Error) t;
+			else
+				throw new MediaWiki.MediaWikiException(t);
+		}
+	}
+
+	// - - - BULK ADMINISTRATIVE ACTIONS - - -
+
+	/**
+	 * Performs an administrative action, such as a deletion, a protection or
+	 * a move, on each of the pages whose full names are returned by the given
+	 * iterator on the wiki represented by this <tt>MediaWiki</tt>. The return
+	 * value is an iterator which will return the outcome of the action for
+	 * each of the pages in order when its <code>next</code> method is called.
+	 * The iterator's <code>next</code> method may throw
+	 * <tt>MediaWiki.IterationException</tt>, an unchecked exception, if it
+	 * cannot prepare the action on a batch of pages; failures to act on
+	 * individual pages are reported in their outcome instead.
+	 * <p>
+	 * Tokens and the base timestamps used to detect conflicts are obtained
+	 * for up to 50 pages per request. The actions themselves are performed
+	 * by a <tt>MediaWiki.WriteQueue</tt>, which starts working on the first
+	 * pages when the first outcome is requested and keeps up to
+	 * <code>maxInFlight</code> pages submitted ahead of the outcome being
+	 * returned, so that writes proceed while the caller handles earlier
+	 * outcomes. Writes are paced by the request governor.
+	 * <p>
+	 * If the wiki rejects the session token during the action, a new one is
+	 * obtained and the action is attempted once more for that page.
+	 * 
+	 * @param action
+	 *            The action to perform on each page.
+	 * @param fullPageNames
+	 *            An iterator returning the full names of the pages to act on.
+	 * @param maxInFlight
+	 *            The maximum number of pages whose action has been submitted
+	 *            but whose outcome has not yet been returned.
+	 * @return an iterator which will return the outcome of the action for
+	 *         each of the pages returned by <code>fullPageNames</code> in
+	 *         order when its <code>next</code> method is called
+	 * @throws IllegalArgumentException
+	 *             if <code>maxInFlight</code> is less than 1
+	 */
+	public Iterator<MediaWiki.BulkActionOutcome> performBulkAction(final MediaWiki.BulkAction action, final Iterator<String> fullPageNames, final int maxInFlight) {
+		if (action == null)
+			throw new NullPointerException("action");
+		if (maxInFlight < 1)
+			throw new IllegalArgumentException("maxInFlight < 1");
+		return new MediaWiki.BulkActionIterator(action, fullPageNames, maxInFlight);
+	}
+
+	private class BulkActionIterator extends AbstractReadOnlyIterator<MediaWiki.BulkActionOutcome> {
+		/**
+		 * The maximum number of titles to get tokens for in one request.
+		 */
+		private static final int BATCH_SIZE = 50;
+
+		private final MediaWiki.BulkAction action;
+
+		private final Iterator<String> fullPageNames;
+
+		private final int maxInFlight;
+
+		/**
+		 * Jobs whose tokens have been obtained, but which have not been
+		 * submitted yet.
+		 */
+		private final LinkedList<MediaWiki.BulkActionIterator.Job> prepared = new LinkedList<MediaWiki.BulkActionIterator.Job>();
+
+		/**
+		 * Jobs submitted to <code>queue</code> whose outcome has not been
+		 * returned yet, in the order in which they are to be returned.
+		 */
+		private final LinkedList<Future<MediaWiki.BulkActionOutcome>> inFlight = new LinkedList<Future<MediaWiki.BulkActionOutcome>>();
+
+		private MediaWiki.WriteQueue queue;
+
+		BulkActionIterator(final MediaWiki.BulkAction action, final Iterator<String> fullPageNames, final int maxInFlight) {
+			this.action = action;
+			this.fullPageNames = fullPageNames;
+			this.maxInFlight = maxInFlight;
+		}
+
+		public synchronized boolean hasNext() {
+			return !inFlight.isEmpty() || !prepared.isEmpty() || fullPageNames.hasNext();
+		}
+
+		public synchronized MediaWiki.BulkActionOutcome next() throws MediaWiki.IterationException {
+			try {
+				fill();
+
+				if (inFlight.isEmpty())
+					throw new NoSuchElementException();
+
+				final MediaWiki.BulkActionOutcome result = getWriteOutcome(inFlight.removeFirst());
+				// Keep the queue busy while the caller handles this outcome.
+				fill();
+				return result;
+			} catch (final IOException ioe) {
+				throw new MediaWiki.IterationException(ioe);
+			} catch (final MediaWiki.MediaWikiException mwe) {
+				throw new MediaWiki.IterationException(mwe);
+			} catch (final InterruptedException ie) {
+				throw new MediaWiki.IterationException(ie);
+			} finally {
+				// Whether the pages are done or an error stopped the
+				// iteration, release the queue's threads while no job is
+				// in flight. A later call creates a new queue.
+				if (inFlight.isEmpty() && queue != null) {
+					queue.close();
+					queue = null;
+				}
+			}
+		}
+
+		private void fill() throws MediaWiki.IterationException {
+			while (inFlight.size() < maxInFlight) {
+				if (prepared.isEmpty()) {
+					if (!fullPageNames.hasNext())
+						break;
+					prepareBatch();
+					continue;
+				}
+				if (queue == null) {
+					queue = createWriteQueue(1);
+				}
+				inFlight.add(queue.submit(prepared.removeFirst()));
+			}
+		}
+
+		private void prepareBatch() throws MediaWiki.IterationException {
+			final List<String> titles = new ArrayList<String>(BATCH_SIZE);
+
+			while (titles.size() < BATCH_SIZE && fullPageNames.hasNext()) {
+				final String title = fullPageNames.next();
+				if (title != null) {
+					titles.add(title);
+				}
+			}
+
+			if (titles.isEmpty())
+				return;
+
+			final StringBuilder titleString = new StringBuilder(titles.size() * 16);
+			for (final String title : titles) {
+				if (titleString.length() > 0) {
+					titleString.append('|');
+				}
+				titleString.append(titleToAPIForm(title));
+			}
+
+			final String tokenType = action.getTokenType();
+
+			final Map<String, String> getParams = paramValuesToMap("action", "query", "format", "xml", "prop", "info", "intoken", tokenType, "titles", titleString.toString());
+
+			final String url = createApiGetUrl(getParams);
+
+			networkLock.lock();
+			try {
+				final InputStream in = get(url);
+				final Document xml = parse(in);
+				checkError(xml);
+
+				final Map<String, String> normalizations = new TreeMap<String, String>();
+
+				final NodeList nTags = xml.getElementsByTagName("n");
+
+				for (int j = 0; j < nTags.getLength(); j++) {
+					final Element nTag = (Element) nTags.item(j);
+
+					normalizations.put(nTag.getAttribute("from"), nTag.getAttribute("to"));
+				}
+
+				final Map<String, Element> pageTagsByTitle = new TreeMap<String, Element>();
+
+				final NodeList pageTags = xml.getElementsByTagName("page");
+
+				for (int j = 0; j < pageTags.getLength(); j++) {
+					final Element pageTag = (Element) pageTags.item(j);
+
+					pageTagsByTitle.put(pageTag.getAttribute("title"), pageTag);
+				}
+
+				for (final String title : titles) {
+					final String apiTitle = titleToAPIForm(title);
+					final Element pageTag = pageTagsByTitle.get(normalizations.containsKey(apiTitle) ? normalizations.get(apiTitle) : apiTitle);
+
+					if (pageTag == null)
+						throw new MediaWiki.ResponseFormatException("expected <page> tag for \"" + apiTitle + "\" not found");
+
+					if (pageTag.hasAttribute("invalid")) {
+						prepared.add(new MediaWiki.BulkActionIterator.Job(title, new MediaWiki.MediaWikiException("invalidtitle: " + title)));
+						continue;
+					}
+
+					if (pageTag.hasAttribute("missing") && action.requiresExistingPage()) {
+						prepared.add(new MediaWiki.BulkActionIterator.Job(title, new MediaWiki.MissingPageException(title)));
+						continue;
+					}
+
+					if (!pageTag.hasAttribute(tokenType + "token")) {
+						prepared.add(new MediaWiki.BulkActionIterator.Job(title, new MediaWiki.PermissionException(tokenType)));
+						continue;
+					}
+
+					final Date lastRevision = pageTag.hasAttribute("touched") ? timestampToDate(pageTag.getAttribute("touched")) : null;
+					final Date start = timestampToDate(pageTag.getAttribute("starttimestamp"));
+					final String token = pageTag.getAttribute(tokenType + "token");
+					learnSharedToken(token, start);
+
+					prepared.add(new MediaWiki.BulkActionIterator.Job(title, new MediaWiki.EditToken(title, lastRevision, start, token)));
+				}
+			} catch (final IOException ioe) {
+				throw new MediaWiki.IterationException(ioe);
+			} catch (final ParseException pe) {
+				throw new MediaWiki.IterationException(pe);
+			} catch (final MediaWiki.MediaWikiException mwe) {
+				throw new MediaWiki.IterationException(mwe);
+			} finally {
+				networkLock.unlock();
+			}
+		}
+
+		private class Job extends MediaWiki.WriteJob<MediaWiki.BulkActionOutcome> {
+			private final String fullPageName;
+
+			private final MediaWiki.EditToken token;
+
+			/**
+			 * The reason why the action cannot be performed on the page, found
+			 * while preparing it, or <code>null</code>.
+			 */
+			private final Exception failure;
+
+			Job(final String fullPageName, final MediaWiki.EditToken token) {
+				this.fullPageName = fullPageName;
+				this.token = token;
+				failure = null;
+			}
+
+			Job(final String fullPageName, final Exception failure) {
+				this.fullPageName = fullPageName;
+				token = null;
+				this.failure = failure;
+			}
+
+			@Override
+			protected MediaWiki.BulkActionOutcome write(final MediaWiki wiki) {
+				if (failure != null)
+					return new MediaWiki.BulkActionOutcome(fullPageName, failure);
+
+				try {
+					try {
+						action.perform(wiki, token);
+					} catch (final MediaWiki.BadTokenException bte) {
+						action.perform(wiki, startBulkActionToken(action.getTokenType(), fullPageName));
+					}
+					return new MediaWiki.BulkActionOutcome(fullPageName, null);
+				} catch (final IOException ioe) {
+					return new MediaWiki.BulkActionOutcome(fullPageName, ioe);
+				} catch (final MediaWiki.MediaWikiException mwe) {
+					return new MediaWiki.BulkActionOutcome(fullPageName, mwe);
+				}
+			}
+		}
+	}
+
+	private MediaWiki.EditToken startBulkActionToken(final String tokenType, final String fullName) throws IOException, MediaWiki.MediaWikiException {
+		if (tokenType.equals("delete"))
+			return startDelete(fullName);
+		else if (tokenType.equals("protect"))
+			return startProtect(fullName);
+		else if (tokenType.equals("move"))
+			return startMove(fullName);
+		else
+			throw new IllegalArgumentException(tokenType);
+	}
+
+	// - - - DATA CLASSES - - -
+
+	public static class CurrentUser {
+		private final boolean isAnonymous;
+
+		private final long userID;
+
+		private final String userName;
+
+		private final boolean hasNewMessages;
+
+		private final Set<String> groups;
+
+		private final Set<String> rights;
+
+		private final long editCount;
+
+		private final String blockingUser;
+
+		private final String blockReason;
+
+		CurrentUser(final boolean isAnonymous, final String userName, final long userID, final boolean hasNewMessages, final Collection<String> groups, final Collection<String> rights, final long editCount, final String blockingUser, final String blockReason) {
+			this.userID = userID;
+			this.userName = userName;
+			this.isAnonymous = isAnonymous;
+			this.hasNewMessages = hasNewMessages;
+			this.groups = Collections.unmodifiableSet(groups instanceof TreeSet<?> ? (TreeSet<String>) groups : new TreeSet<String>(groups));
+			this.rights = Collections.unmodifiableSet(rights instanceof TreeSet<?> ? (TreeSet<String>) rights : new TreeSet<String>(rights));
+			this.editCount = editCount;
+			this.blockingUser = blockingUser;
+			this.blockReason = blockReason;
+		}
+
+		/**
+		 * Return whether the currently logged-in user is an anonymous user,
+		 * i.e. an IP address.
+		 * 
+		 * @return whether the currently logged-in user is an anonymous user
+		 */
+		public boolean isAnonymous() {
+			return isAnonymous;
+		}
+
+		/**
+		 * Returns the ID of the currently logged-in user. The return value is
+		 * undefined if <code>isAnonymous()</code> returns <code>true</code>.
+		 * 
+		 * @return the ID of the currently logged-in user
+		 */
+		public long getUserID() {
+			return userID;
+		}
+
+		/**
+		 * Returns the username (not real name) of the currently logged-in user.
+		 * The return value is an IP address if <code>isAnonymous()</code>
+		 * returns <code>true</code>.
+		 * 
+		 * @return the username of the currently logged-in user
+		 */
+		public String getUserName() {
+			return userName;
+		}
+
+		/**
+		 * Returns whether the currently logged-in user has new messages.
+		 * 
+		 * @return whether the currently logged-in user has new messages
+		 */
+		public boolean hasNewMessages() {
+			return hasNewMessages;
+		}
+
+		/**
+		 * Returns an immutable view of the list of groups that the currently
+		 * logged-in user is a part of.
+		 * 
+		 * @return an immutable view of the list of groups that the currently
+		 *         logged-in user is a part of
+		 */
+		public Collection<String> getGroups() {
+			return groups;
+		}
+
+		/**
+		 * Returns an immutable view of the list of rights that the currently
+		 * logged-in user has.
+		 * 
+		 * @return an immutable view of the list of rights that the currently
+		 *         logged-in user has
+		 */
+		public Collection<String> getRights() {
+			return rights;
+		}
+
+		/**
+		 * Returns whether the currently logged-in user is in all of the
+		 * specified groups. The return value is <code>true</code> if no groups
+		 * are specified.
+		 * 
+		 * @param groups
+		 *            The groups to check membership in.
+		 * @return whether the currently logged-in user is in all of the
+		 *         specified groups
+		 */
+		public boolean isInGroups(final String... groups) {
+			for (final String group : groups) {
+				if (!this.groups.contains(group))
+					return false;
+			}
+			return true;
+		}
+
+		/**
+		 * Returns whether the currently logged-in user has all of the specified
+		 * rights. The return value is <code>true</code> if no rights are
+		 * specified.
+		 * 
+		 * @param rights
+		 *            The rights to check possession of.
+		 * @return whether the currently logged-in user has all of the specified
+		 *         rights
+		 */
+		public boolean hasRights(final String... rights) {
+			for (final String right : rights) {
+				if (!this.rights.contains(right))
+					return false;
+			}
+			return true;
+		}
+
+		/**
+		 * Returns the number of edits made by the currently logged-in user on
+		 * the wiki represented by the enclosing <tt>MediaWiki</tt>.
+		 * 
+		 * @return the number of edits made by the currently logged-in user on
+		 *         the wiki represented by the enclosing <tt>MediaWiki</tt>
+		 */
+		public long getEditCount() {
+			return editCount;
+		}
+
+		/**
+		 * Returns the name of the user who blocked the currently logged-in
+		 * user. The return value is <code>null</code> if the currently
+		 * logged-in user is not blocked.
+		 * 
+		 * @return the name of the user who blocked the currently logged-in user
+		 */
+		public String getBlockingUser() {
+			return blockingUser;
+		}
+
+		/**
+		 * Returns the reason why the currently logged-in user is blocked. The
+		 * return value is <code>null</code> if the currently logged-in user is
+		 * not blocked.
+		 * 
+		 * @return the reason why the currently logged-in user is blocked
+		 */
+		public String getBlockReason() {
+			return blockReason;
+		}
+
+		@Override
+		public String toString() {
+			// CurrentUser["Name" *new messages* (user ID X) (anonymous),
+			// groups, rights, Y edits, blocked by Sysop (Reason)]
+			return String.format("CurrentUser[\"%s\"%s (user ID %d)%s, groups: %s, %rights: %s, %d edits%s]", userName, hasNewMessages ? " *new messages*" : "", userID, isAnonymous ? " (anonymous)" : "", groups, rights, editCount, blockingUser != null ? ", blocked by " + blockingUser + " (" + blockReason + ")" : "");
+		}
+	}
+
+	public static class Namespaces {
+		private final Collection<MediaWiki.Namespace> list;
+
+		Namespaces(final Collection<MediaWiki.Namespace> list) {
+			this.list = Collections.unmodifiableCollection(list);
+		}
+
+		/**
+		 * Returns a <tt>Namespace</tt> object matching the given
+		 * <code>prefix</code> drawn from this <tt>Namespaces</tt>'s list. The
+		 * return value is <code>null</code> if there is no such namespace.
+		 * 
+		 * @param prefix
+		 *            The prefix to retrieve a <tt>Namespace</tt> for. This
+		 *            value may not end with a colon <code>':'</code>, nor may
+		 *            it contain a page name. For example,
+		 *            <code>"User talk"</code>.
+		 * @return a <tt>Namespace</tt> object matching the given
+		 *         <code>prefix</code>
+		 */
+		public MediaWiki.Namespace getNamespace(final String prefix) {
+			for (final MediaWiki.Namespace namespace : list)
+				if (namespace.matches(prefix))
+					return namespace;
+			return null;
+		}
+
+		/**
+		 * Returns a <tt>Namespace</tt> object having the given <code>id</code>
+		 * drawn from this <tt>Namespaces</tt>'s list. The return value is
+		 * <code>null</code> if there is no such namespace.
+		 * 
+		 * @param id
+		 *            The id of the <tt>Namespace</tt> to retrieve.
+		 * @return a <tt>Namespace</tt> object matching the given
+		 *         <code>prefix</code>
+		 */
+		public MediaWiki.Namespace getNamespace(final long id) {
+			for (final MediaWiki.Namespace namespace : list)
+				if (namespace.getID() == id)
+					return namespace;
+			return null;
+		}
+
+		/**
+		 * Returns a read-only <tt>Collection</tt> enumerating the entries in
+		 * this <tt>MediaWiki.Namespaces</tt>.
+		 * 
+		 * @return a read-only <tt>Collection</tt> enumerating the entries in
+		 *         this <tt>MediaWiki.Namespaces</tt>
+		 */
+		public Collection<MediaWiki.Namespace> getList() {
+			return list;
+		}
+
+		/**
+		 * Returns the <tt>Namespace</tt> object designating the namespage
+		 * containing the page of the given name drawn from this
+		 * <tt>Namespaces</tt>'s list. The return value is the
+		 * <tt>Namespace</tt> object having the ID of 0, i.e. the main
+		 * namespace, if there is no such namespace.
+		 * 
+		 * @param fullPageName
+		 *            The page to retrieve the <tt>Namespace</tt> of. For
+		 *            example, "Paperclip" (in the main namespace),
+		 *            "Project:Administrator requests" (in the Project
+		 *            namespace), "Inexistent namespace:Example" (in the main
+		 *            namespace, despite there being a colon in the full page
+		 *            name).
+		 * @return the <tt>Namespace</tt> object designating the namespage
+		 *         containing the page of the given name
+		 */
+		public MediaWiki.Namespace getNamespaceForPage(final String fullPageName) {
+			final int colonIndex = fullPageName.indexOf(':');
+			if (colonIndex == -1)
+				return getNamespace(0L);
+			MediaWiki.Namespace result;
+			return (result = getNamespace(fullPageName.substring(0, colonIndex))) != null ? result : getNamespace(0L);
+		}
+
+		/**
+		 * Returns the name of the given page after stripping it of its
+		 * namespace prefix. The return value is the page name itself if what is
+		 * before the colon is not a valid namespace for the wiki that the
+		 * enclosing <tt>MediaWiki</tt> represents.
+		 * 
+		 * @param fullPageName
+		 *            The page name to strip of its namespace prefix. For
+		 *            example, "Paperclip" (in the main namespace) becomes
+		 *            "Paperclip", "Project:Administrator requests" (in the
+		 *            Project namespace) becomes "Administrator requests",
+		 *            "Inexistent namespace:Example" (in the main namespace,
+		 *            despite there being a colon in the full page name) becomes
+		 *            "Inexistent namespace:Example".
+		 * @return the name of the given page after stripping it of its
+		 *         namespace prefix
+		 */
+		public String removeNamespacePrefix(final String fullPageName) {
+			final int colonIndex = fullPageName.indexOf(':');
+			if (colonIndex == -1)
+				return fullPageName;
+			return getNamespace(fullPageName.substring(0, colonIndex)) != null ? fullPageName.substring(colonIndex + 1) : fullPageName;
+		}
+
+		/**
+		 * Returns the name of the given page's talk page.
+		 * 
+		 * @param fullPageName
+		 *            The page name to get the talk page of.
+		 * @return the name of the given page's talk page
+		 * @throws IllegalArgumentException
+		 *             if the given page's namespace does not support having, or
+		 *             does not have, a talk namespace; if the given page's
+		 *             namespace is already a talk namespace
+		 */
+		public String getTalkPage(final String fullPageName) throws IllegalArgumentException {
+			final MediaWiki.Namespace namespace = getNamespaceForPage(fullPageName);
+			final String basePageName = removeNamespacePrefix(fullPageName);
+			if (namespace.getID() < 0 /*- Special:, Media: */)
+				throw new IllegalArgumentException("Namespace '" + namespace.getCanonicalName() + "' does not support having an associated talk namespace");
+			else if ((namespace.getID() % 2) == 1 /*- Talk namespace */)
+				throw new IllegalArgumentException("Namespace '" + namespace.getCanonicalName() + "' is a talk namespace");
+			else {
+				// Talk namespaces have the same ID as the ones they are talking
+				// about, plus 1.
+				final MediaWiki.Namespace talkNamespace = getNamespace(namespace.getID() + 1L);
+				if (talkNamespace == null)
+					throw new IllegalArgumentException("Namespace '" + namespace.getCanonicalName() + "' does not have an associated talk namespace");
+				return talkNamespace.getFullPageName(basePageName);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return list.toString();
+		}
+	}
+
+	public static class Namespace {
+		private final long id;
+
+		private final String canonicalName;
+
+		private final Set<String> aliases;
+
+		private final boolean caseSensitive;
+
+		private final boolean isContent;
+
+		private final boolean allowsSubpages;
+
+		Namespace(final long id, final String canonicalName, final Collection<String> aliases, final boolean caseSensitive, final boolean isContent, final boolean allowsSubpages) {
+			this.id = id;
+			this.canonicalName = canonicalName;
+			this.aliases = Collections.unmodifiableSet(aliases instanceof TreeSet<?> ? (TreeSet<String>) aliases : (aliases != null ? new TreeSet<String>(aliases) : new TreeSet<String>()));
+			this.caseSensitive = caseSensitive;
+			this.isContent = isContent;
+			this.allowsSubpages = allowsSubpages;
+		}
+
+		/**
+		 * Returns the ID of this <tt>Namespace</tt>.
+		 * 
+		 * @return the ID of this <tt>Namespace</tt>
+		 */
+		public long getID() {
+			return id;
+		}
+
+		/**
+		 * Returns the canonical name of this <tt>Namespace</tt>.
+		 * 
+		 * @return the canonical name of this <tt>Namespace</tt>
+		 */
+		public String getCanonicalName() {
+			return canonicalName;
+		}
+
+		/**
+		 * Returns an unmodifiable view of the aliases that can be used to refer
+		 * to this <tt>Namespace</tt>.
+		 * 
+		 * @return an unmodifiable view of the aliases that can be used to refer
+		 *         to this <tt>Namespace</tt>
+		 */
+		public Collection<String> getAliases() {
+			return aliases;
+		}
+
+		/**
+		 * Returns whether the first letter of the name of this
+		 * <tt>Namespace</tt> must be written with the correct case, as
+		 * specified in its canonical name. If <code>false</code>, this
+		 * <tt>Namespace</tt> allows using any case for its first letter.
+		 * 
+		 * @return whether the first letter of the name of this
+		 *         <tt>Namespace</tt> must be written with the correct case, as
+		 *         specified in its canonical name
+		 */
+		public boolean isCaseSensitive() {
+			return caseSensitive;
+		}
+
+		/**
+		 * Returns whether this <tt>Namespace</tt> is a content namespace, i.e.
+		 * whether it gets added to page count statistics etc.
+		 * 
+		 * @return whether this <tt>Namespace</tt> is a content namespace
+		 */
+		public boolean isContent() {
+			return isContent;
+		}
+
+		/**
+		 * Returns whether this <tt>Namespace</tt> allows pages to be under
+		 * other pages, separated by slashes.
+		 * 
+		 * @return whether this <tt>Namespace</tt> allows pages to be under
+		 *         other pages
+		 */
+		public boolean allowsSubpages() {
+			return allowsSubpages;
+		}
+
+		/**
+		 * Returns whether the given <code>prefix</code> matches this
+		 * <tt>Namespace</tt>'s prefix.
+		 * 
+		 * @param prefix
+		 *            The prefix to check. This value may not end with a colon
+		 *            <code>':'</code>, nor may it contain a page name.
+		 * @return whether the given <code>prefix</code> matches this
+		 *         <tt>Namespace</tt>'s prefix
+		 */
+		public boolean matches(final String prefix) {
+			if (matches(canonicalName, prefix, caseSensitive))
+				return true;
+			for (final String alias : aliases)
+				if (matches(alias, prefix, caseSensitive))
+					return true;
+			return false;
+		}
+
+		/**
+		 * Returns the full name of a page having the given base name in this
+		 * <tt>Namespace</tt>.
+		 * 
+		 * @param basePageName
+		 *            Base name of the page, without a namespace prefix or
+		 *            colon.
+		 * @return the full name of a page having the given base name in this
+		 *         <tt>Namespace</tt>
+		 */
+		public String getFullPageName(final String basePageName) {
+			return canonicalName.length() != 0 ? canonicalName + ":" + basePageName : basePageName;
+		}
+
+		private static boolean matches(final String namespace, final String prefix, final boolean caseSensitive) {
+			if (caseSensitive)
+				// May throw NullPointerException
+				return prefix.equals(namespace);
+			else {
+				// May throw NullPointerException
+				if (namespace.length() == 0)
+					return prefix.length() == 0;
+				else if (namespace.length() == 1)
+					return (prefix.length() == 1) && (Character.toLowerCase(namespace.charAt(0)) == Character.toLowerCase(prefix.charAt(0)));
+				else
+					return (prefix.length() == namespace.length()) && (Character.toLowerCase(namespace.charAt(0)) == Character.toLowerCase(prefix.charAt(0))) && namespace.substring(1).replace(' ', '_').equals(prefix.substring(1).replace(' ', '_'));
+			}
+		}
+
+		@Override
+		public String toString() {
+			return String.format("Namespace[\"%s\" or %s (ID %d), case sensitive: %s, content: %s, subpages allowed: %s]", canonicalName, aliases, id, caseSensitive, isContent, allowsSubpages);
+		}
+	}
+
+	public static class Statistics {
+		private final long pages, articles, edits, images, users, activeUsers, admins, jobs, views;
+
+		Statistics(final long pages, final long articles, final long edits, final long images, final long users, final long activeUsers, final long admins, final long jobs, final long views) {
+			this.pages = pages;
+			this.articles = articles;
+			this.edits = edits;
+			this.images = images;
+			this.users = users;
+			this.activeUsers = activeUsers;
+			this.admins = admins;
+			this.jobs = jobs;
+			this.views = views;
+		}
+
+		/**
+		 * Returns the number of pages on all namespaces of the wiki for which
+		 * this <tt>Statistics</tt> was created.
+		 * 
+		 * @return the number of pages on all namespaces of the wiki
+		 */
+		public long getPageCount() {
+			return pages;
+		}
+
+		/**
+		 * Returns the number of pages on all content namespaces of the wiki for
+		 * which this <tt>Statistics</tt> was created.
+		 * 
+		 * @return the number of pages on all content namespaces of the wiki
+		 * @see Namespace#isContent()
+		 */
+		public long getContentPageCount() {
+			return articles;
+		}
+
+		/**
+		 * Returns the number of edits that have been made in total on the wiki
+		 * for which this <tt>Statistics</tt> was created.
+		 * 
+		 * @return the number of edits that have been made in total on the wiki
+		 */
+		public long getEditCount() {
+			return edits;
+		}
+
+		/**
+		 * Returns the number of user accounts that have been made in total on
+		 * the wiki for which this <tt>Statistics</tt> was created.
+		 * 
+		 * @return the number of user accounts that have been made in total on
+		 *         the wiki
+		 */
+		public long getUserCount() {
+			return users;
+		}
+
+		/**
+		 * Returns the number of user accounts that have been active in the last
+		 * 30 days on the wiki for which this <tt>Statistics</tt> was created.
+		 * 
+		 * @return the number of user accounts that have been active in the last
+		 *         30 days on the wiki
+		 */
+		public long getActiveUserCount() {
+			return activeUsers;
+		}
+
+		/**
+		 * Returns the number of images that have been uploaded on the wiki for
+		 * which this <tt>Statistics</tt> was created.
+		 * 
+		 * @return the number of images that have been uploaded on the wiki
+		 */
+		public long getImageCount() {
+			return images;
+		}
+
+		/**
+		 * Returns the number of user accounts that are administrators on the
+		 * wiki for which this <tt>Statistics</tt> was created.
+		 * 
+		 * @return the number of user accounts that are administrators on the
+		 *         wiki
+		 */
+		public long getAdministratorCount() {
+			return admins;
+		}
+
+		/**
+		 * Returns the number of jobs that are pending on the wiki for which
+		 * this <tt>Statistics</tt> was created.
+		 * 
+		 * @return the number of jobs that are pending on the wiki
+		 */
+		public long getJobQueueLength() {
+			return jobs;
+		}
+
+		/**
+		 * Returns the number of views for all pages on the wiki for which this
+		 * <tt>Statistics</tt> was created.
+		 * <p>
+		 * Not all wikis show this information. The return value is -1 if the
+		 * number of views is unknown.
+		 * 
+		 * @return the number of views for all pages on the wiki
+		 */
+		public long getViewCount() {
+			return views;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("Statistics[pages: %d, articles: %d, edits: %d, images: %d, users: %d (%d active, %d administrators), job queue: %d%s]", pages, articles, edits, images, users, activeUsers, admins, jobs, views != -1 ? ", " + views + " total views" : ", unknown total views");
+		}
+	}
+
+	public static class InterwikiPrefixes {
+		private final Map<String, MediaWiki.InterwikiPrefix> map;
+
+		InterwikiPrefixes(final Map<String, MediaWiki.InterwikiPrefix> map) {
+			this.map = Collections.unmodifiableMap(map);
+		}
+
+		/**
+		 * Returns an <tt>InterwikiPrefix</tt> object matching the given
+		 * <code>prefix</code> drawn from this <tt>InterwikiPrefixes</tt>'s
+		 * list. The return value is <code>null</code> if there is no such
+		 * object.
+		 * 
+		 * @param prefix
+		 *            The prefix to retrieve an <tt>InterwikiPrefix</tt> for.
+		 *            This value may not end with a colon <code>':'</code>, nor
+		 *            may it contain a page name. For example,
+		 *            <code>"wikipedia"</code>.
+		 * @return a <tt>Namespace</tt> object matching the given
+		 *         <code>prefix</code>
+		 */
+		public MediaWiki.InterwikiPrefix getInterwikiPrefix(final String prefix) {
+			return map.get(prefix);
+		}
+
+		/**
+		 * Returns the <tt>InterwikiPrefix</tt> object designating the other
+		 * wiki containing the page of the given name drawn from this
+		 * <tt>InterwikiPrefixes</tt>'s list. The return value is
+		 * <code>null</code> if there is no such other wiki, i.e. if the link
+		 * points inside the wiki that the enclosing <tt>MediaWiki</tt>
+		 * represents.
+		 * 
+		 * @param fullPageName
+		 *            The page to retrieve the <tt>InterwikiPrefix</tt> of. For
+		 *            example, "Paperclip" (<code>null</code>: on the active
+		 *            wiki), "Project:Administrator requests" (<code>null</code>
+		 *            : on the active wiki, in a namespace),
+		 *            "wikipedia:Internet" (an <tt>InterwikiPrefix</tt>
+		 *            describing Wikipedia: on an external wiki),
+		 *            "mw:Manual:Contents" (an <tt>InterwikiPrefix</tt>
+		 *            describing Mediawiki.org: on an external wiki in a
+		 *            namespace).
+		 * @return the <tt>InterwikiPrefix</tt> object designating the other
+		 *         wiki containing the page of the given name
+		 */
+		public MediaWiki.InterwikiPrefix getInterwikiPrefixForPage(final String fullPageName) {
+			final int colonIndex = fullPageName.indexOf(':');
+			if (colonIndex == -1)
+				return null;
+			return getInterwikiPrefix(fullPageName.substring(0, colonIndex));
+		}
+
+		/**
+		 * Returns the name of the given page after stripping it of its
+		 * interwiki prefix. The return value is the page name itself if what is
+		 * before the colon is not a valid interwiki prefix for the wiki that
+		 * the enclosing <tt>MediaWiki</tt> represents.
+		 * 
+		 * @param fullPageName
+		 *            The page name to strip of its interwiki prefix. For
+		 *            example, "Paperclip" (in the main namespace) becomes
+		 *            "Paperclip", "Project:Administrator requests" (in the
+		 *            Project namespace) becomes
+		 *            "Project:Administrator requests", "wikipedia:Internet" (on
+		 *            another wiki) becomes "Internet".
+		 * @return the name of the given page after stripping it of its
+		 *         namespace prefix
+		 */
+		public String removeInterwikiPrefix(final String fullPageName) {
+			final int colonIndex = fullPageName.indexOf(':');
+			if (colonIndex == -1)
+				return fullPageName;
+			return getInterwikiPrefix(fullPageName.substring(0, colonIndex)) != null ? fullPageName.substring(colonIndex + 1) : fullPageName;
+		}
+
+		@Override
+		public String toString() {
+			return map.toString();
+		}
+	}
+
+	public static class InterwikiPrefix {
+		private final String name;
+
+		private final String language;
+
+		private final String urlPattern;
+
+		private final boolean isLocal;
+
+		InterwikiPrefix(final String name, final String language, final String urlPattern, final boolean isLocal) {
+			this.name = name;
+			this.language = language;
+			this.urlPattern = urlPattern;
+			this.isLocal = isLocal;
+		}
+
+		/**
+		 * Returns the name of this <tt>InterwikiPrefix</tt>. This is the prefix
+		 * itself, not the name of the target wiki.
+		 * 
+		 * @return the name of this <tt>InterwikiPrefix</tt>
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Returns the language of the wiki targetted by this
+		 * <tt>InterwikiPrefix</tt>.
+		 * 
+		 * @return the language of the wiki targetted by this
+		 *         <tt>InterwikiPrefix</tt>
+		 */
+		public String getLanguage() {
+			return language;
+		}
+
+		/**
+		 * Returns the URL pattern of this <tt>InterwikiPrefix</tt>, containing
+		 * a <code>"$1"</code> placeholder where the article name goes.
+		 */
+		public String getURLPattern() {
+			return urlPattern;
+		}
+
+		/**
+		 * Returns whether this <tt>InterwikiPrefix</tt> refers to a wiki on the
+		 * same project (loosely defined as being controlled by the same
+		 * organisation) as the wiki that the enclosing <tt>MediaWiki</tt>
+		 * represents.
+		 * 
+		 * @return whether this <tt>InterwikiPrefix</tt> refers to a wiki on the
+		 *         same project as the wiki that the enclosing
+		 *         <tt>MediaWiki</tt> represents
+		 */
+		public boolean isLocal() {
+			return isLocal;
+		}
+
+		/**
+		 * Returns the full name of a page having the given base name in a wiki
+		 * and starting with this <tt>InterwikiPrefix</tt>.
+		 * 
+		 * @param basePageName
+		 *            Base name of the page, which may contain a namespace
+		 *            prefix.
+		 * @return the full name of a page having the given base name in a wiki
+		 *         and starting with this <tt>InterwikiPrefix</tt>
+		 */
+		public String getFullPageName(final String basePageName) {
+			return name + ":" + basePageName;
+		}
+
+		/**
+		 * Returns the full URL to the interwiki resource having this
+		 * <tt>InterwikiPrefix</tt> as its prefix and the given page name. In
+		 * the case that the page name contains an interwiki prefix of its own,
+		 * it is not resolved. To resolve it, a
+		 * <code>new MediaWiki(new URL(return value).getHost(),
+		 * <i>the new wiki's script path</i>)</code> is needed.
+		 * 
+		 * @param pageName
+		 *            Name of the page, which may contain a namespace prefix or
+		 *            another interwiki prefix.
+		 * @return the full URL to the interwiki resource having this
+		 *         <tt>InterwikiPrefix</tt> as its prefix and the given page
+		 *         name
+		 */
+		public String resolveURL(final String pageName) {
+			try {
+				// If $1 is at the end...
+				if (urlPattern.endsWith("$1"))
+					// Put the entire page name at the end.
+					return urlPattern.substring(0, urlPattern.length() - 2) + URLEncoder.encode(titleToDisplayForm(pageName), "UTF-8");
+				else {
+					/*
+					 * Not at the end. Put the first colon-separated token where
+					 * $1 is, and put the rest of the page at the end. (For
+					 * Wikia's c:wikiname:Page thing.)
+					 */
+					final int colonIndex = pageName.indexOf(':');
+					if (colonIndex == -1)
+						return urlPattern.replaceAll("\\$1", Matcher.quoteReplacement(URLEncoder.encode(pageName, "UTF-8")));
+					else
+						return urlPattern.replaceAll("\\$1", Matcher.quoteReplacement(pageName.substring(0, colonIndex))) + URLEncoder.encode(titleToDisplayForm(pageName.substring(colonIndex + 1)), "UTF-8");
+				}
+			} catch (final UnsupportedEncodingException shouldNeverHappen) {
+				throw new InternalError("UTF-8 is not supported by this Java VM");
+			}
+		}
+
+		@Override
+		public String toString() {
+			// InterwikiPrefix["Name" -> <URL>, local: true, language: English
+			return String.format("InterwikiPrefix[\"%s\" -> <%s>, local: %s%s]", name, urlPattern, isLocal, language != null ? ", language prefix: " + language : "");
+		}
+	}
+
+	public abstract class PageNameComponents {
+		/**
+		 * Page ID. If unknown, this field contains <code>null</code>.
+		 */
+		private final Long pageID;
+
+		/**
+		 * Namespace ID.
+		 */
+		private final long namespaceID;
+
+		/**
+		 * Namespace.
+		 */
+		private final MediaWiki.Namespace namespace;
+
+		/**
+		 * Namespace prefix of the page, as it appeared in its full name, or an
+		 * empty string if the full name had no namespace prefix. If the full
+		 * name is not made of this prefix, a colon and the base name, this
+		 * field contains <code>null</code>.
+		 */
+		private final String namespacePrefix;
+
+		/**
+		 * Base name of the page.
+		 */
+		private final String baseName;
+
+		/**
+		 * Full name of the page. If <code>namespacePrefix</code> is not
+		 * <code>null</code>, this is built from the prefix and the base name
+		 * the first time it is requested and contains <code>null</code>
+		 * until then. Concurrent first calls may each build it, which is
+		 * harmless because strings are immutable.
+		 */
+		private String fullName;
+
+		/**
+		 * Initialises an instance of <tt>PageNameComponents</tt> from a full
+		 * page name. The base page name, namespace and namespace ID are filled
+		 * in after getting the list of namespaces from the wiki represented by
+		 * the enclosing <tt>MediaWiki</tt>. The page ID is considered to be
+		 * unknown.
+		 * 
+		 * @param fullPageName
+		 *            Full page name, including namespace prefix.
+		 * @throws IOException
+		 *             if gathering the list of namespaces from the wiki
+		 *             represented by the enclosing <tt>MediaWiki</tt> raises
+		 *             <tt>IOException</tt>
+		 */
+		public PageNameComponents(final String fullPageName) throws IOException {
+			this(fullPageName, (Long) null);
+		}
+
+		/**
+		 * Initialises an instance of <tt>PageNameComponents</tt> from a full
+		 * page name and a base page name. The namespace and namespace ID are
+		 * filled in after getting the list of namespaces from the wiki
+		 * represented by the enclosing <tt>MediaWiki</tt>. The page ID is
+		 * considered to be unknown.
+		 * 
+		 * @param fullPageName
+		 *            Full page name, including namespace prefix.
+		 * @param basePageName
+		 *            Base page name, excluding namespace prefix.
+		 * @throws IOException
+		 *             if gathering the list of namespaces from the wiki
+		 *             represented by the enclosing <tt>MediaWiki</tt> raises
+		 *             <tt>IOException</tt>
+		 */
+		public PageNameComponents(final String fullPageName, final String basePageName) throws IOException {
+			this(fullPageName, basePageName, (Long) null);
+		}
+
+		/**
+		 * Initialises an instance of <tt>PageNameComponents</tt> from a full
+		 * page name and namespace ID. The base page name and namespace are
+		 * filled in after getting the list of namespaces from the wiki
+		 * represented by the enclosing <tt>MediaWiki</tt>. The page ID is
+		 * considered to be unknown.
+		 * 
+		 * @param fullPageName
+		 *            Full page name, including namespace prefix.
+		 * @param namespaceID
+		 *            ID of the namespace containing the page.
+		 * @throws IOException
+		 *             if gathering the list of namespaces from the wiki
+		 *             represented by the enclosing <tt>MediaWiki</tt> raises
+		 *             <tt>IOException</tt>
+		 */
+		public PageNameComponents(final String fullPageName, final long namespaceID) throws IOException {
+			this(fullPageName, namespaceID, (Long) null);
+		}
+
+		/**
+		 * Initialises an instance of <tt>PageNameComponents</tt> from a full
+		 * page name and a base page name. The namespace is filled in after
+		 * getting the list of namespaces from the wiki represented by the
+		 * enclosing <tt>MediaWiki</tt>. The page ID is considered to be
+		 * unknown.
+		 * 
+		 * @param fullPageName
+		 *            Full page name, including namespace prefix.
+		 * @param basePageName
+		 *            Base page name, excluding namespace prefix.
+		 * @param namespaceID
+		 *            ID of the namespace containing the page.
+		 * @throws IOException
+		 *             if gathering the list of namespaces from the wiki
+		 *             represented by the enclosing <tt>MediaWiki</tt> raises
+		 *             <tt>IOException</tt>
+		 */
+		public PageNameComponents(final String fullPageName, final String basePageName, final long namespaceID) throws IOException {
+			this(fullPageName, basePageName, namespaceID, (Long) null);
+		}
+
+		/**
+		 * Initialises an instance of <tt>PageNameComponents</tt> from a full
+		 * page name. The base page name, namespace and namespace ID are filled
+		 * in after getting the list of namespaces from the wiki represented by
+		 * the enclosing <tt>MediaWiki</tt>.
+		 * 
+		 * @param fullPageName
+		 *            Full page name, including namespace prefix.
+		 * @param pageID
+		 *            Page ID, or <code>null</code> if not known.
+		 * @throws IOException
+		 *             if gathering the list of namespaces from the wiki
+		 *             represented by the enclosing <tt>MediaWiki</tt> raises
+		 *             <tt>IOException</tt>
+		 */
+		public PageNameComponents(final String fullPageName, final Long pageID) throws IOException {
+			final MediaWiki.Namespaces namespaces = getNamespaces();
+			baseName = pool(namespaces.removeNamespacePrefix(fullPageName));
+			namespacePrefix = getNamespacePrefix(fullPageName, baseName);
+			fullName = namespacePrefix == null ? fullPageName : null;
+			namespace = namespaces.getNamespaceForPage(fullPageName);
+			namespaceID = namespace.getID();
+			this.pageID = pageID;
+		}
+
+		/**
+		 * Initialises an instance of <tt>PageNameComponents</tt> from a full
+		 * page name and a base page name. The namespace and namespace ID are
+		 * filled in after getting the list of namespaces from the wiki
+		 * represented by the enclosing <tt>MediaWiki</tt>.
+		 * 
+		 * @param fullPageName
+		 *            Full page name, including namespace prefix.
+		 * @param basePageName
+		 *            Base page name, excluding namespace prefix.
+		 * @param pageID
+		 *            Page ID, or <code>null</code> if not known.
+		 * @throws IOException
+		 *             if gathering the list of namespaces from the wiki
+		 *             represented by the enclosing <tt>MediaWiki</tt> raises
+		 *             <tt>IOException</tt>
+		 */
+		public PageNameComponents(final String fullPageName, final String basePageName, final Long pageID) throws IOException {
+			final MediaWiki.Namespaces namespaces = getNamespaces();
+			baseName = pool(basePageName);
+			namespacePrefix = getNamespacePrefix(fullPageName, baseName);
+			fullName = namespacePrefix == null ? fullPageName : null;
+			namespace = namespaces.getNamespaceForPage(fullPageName);
+			namespaceID = namespace.getID();
+			this.pageID = pageID;
+		}
+
+		/**
+		 * Initialises an instance of <tt>PageNameComponents</tt> from a full
+		 * page name and namespace ID. The base page name and namespace are
+		 * filled in after getting the list of namespaces from the wiki
+		 * represented by the enclosing <tt>MediaWiki</tt>.
+		 * 
+		 * @param fullPageName
+		 *            Full page name, including namespace prefix.
+		 * @param namespaceID
+		 *            ID of the namespace containing the page.
+		 * @param pageID
+		 *            Page ID, or <code>null</code> if not known.
+		 * @throws IOException
+		 *             if gathering the list of namespaces from the wiki
+		 *             represented by the enclosing <tt>MediaWiki</tt> raises
+		 *             <tt>IOException</tt>
+		 */
+		public PageNameComponents(final String fullPageName, final long namespaceID, final Long pageID) throws IOException {
+			final MediaWiki.Namespaces namespaces = getNamespaces();
+			baseName = pool(namespaces.removeNamespacePrefix(fullPageName));
+			namespacePrefix = getNamespacePrefix(fullPageName, baseName);
+			fullName = namespacePrefix == null ? fullPageName : null;
+			namespace = namespaces.getNamespace(namespaceID);
+			this.namespaceID = namespaceID;
+			this.pageID = pageID;
+		}
+
+		/**
+		 * Initialises an instance of <tt>PageNameComponents</tt> from a full
+		 * page name and a base page name. The namespace is filled in after
+		 * getting the list of namespaces from the wiki represented by the
+		 * enclosing <tt>MediaWiki</tt>.
+		 * 
+		 * @param fullPageName
+		 *            Full page name, including namespace prefix.
+		 * @param basePageName
+		 *            Base page name, excluding namespace prefix.
+		 * @param namespaceID
+		 *            ID of the namespace containing the page.
+		 * @param pageID
+		 *            Page ID, or <code>null</code> if not known.
+		 * @throws IOException
+		 *             if gathering the list of namespaces from the wiki
+		 *             represented by the enclosing <tt>MediaWiki</tt> raises
+		 *             <tt>IOException</tt>
+		 */
+		public PageNameComponents(final String fullPageName, final String basePageName, final long namespaceID, final Long pageID) throws IOException {
+			final MediaWiki.Namespaces namespaces = getNamespaces();
+			baseName = pool(basePageName);
+			namespacePrefix = getNamespacePrefix(fullPageName, baseName);
+			fullName = namespacePrefix == null ? fullPageName : null;
+			namespace = namespaces.getNamespace(namespaceID);
+			this.namespaceID = namespaceID;
+			this.pageID = pageID;
+		}
+
+		/**
+		 * Returns the full page name for which this <tt>PageNameComponents</tt>
+		 * was created. The full page name consists of the namespace's prefix
+		 * followed by a colon, if it is not the <i>main namespace</i>, followed
+		 * by the base page name.
+		 * 
+		 * @return the full page name for which this <tt>PageNameComponents</tt>
+		 *         was created
+		 * @see #getBasePageName()
+		 * @see MediaWiki.StandardNamespace#MAIN
+		 */
+		public String getFullPageName() {
+			String result = fullName;
+			if (result == null) {
+				result = namespacePrefix.length() != 0 ? namespacePrefix + ":" + baseName : baseName;
+				fullName = result;
+			}
+			return result;
+		}
+
+		/**
+		 * Returns the pooled namespace prefix of the given full page name, if
+		 * the full page name consists of a namespace prefix, a colon and the
+		 * given base page name; an empty string if both names are the same; or
+		 * <code>null</code> otherwise.
+		 */
+		private String getNamespacePrefix(final String fullPageName, final String basePageName) {
+			final int prefixLength = fullPageName.length() - basePageName.length() - 1;
+			if (prefixLength == -1)
+				return fullPageName.equals(basePageName) ? "" : null;
+			if ((prefixLength > 0) && (fullPageName.charAt(prefixLength) == ':') && fullPageName.endsWith(basePageName))
+				return pool(fullPageName.substring(0, prefixLength));
+			return null;
+		}
+
+		/**
+		 * Returns the base page name for which this <tt>PageNameComponents</tt>
+		 * was created.
+		 * 
+		 * @return the base page name for which this <tt>PageNameComponents</tt>
+		 *         was created
+		 */
+		public String getBasePageName() {
+			return baseName;
+		}
+
+		/**
+		 * Returns the namespace containing the page for which this
+		 * <tt>PageNameComponents</tt> was created.
+		 * 
+		 * @return the namespace containing the page for which this
+		 *         <tt>PageNameComponents</tt> was created
+		 */
+		public MediaWiki.Namespace getNamespace() {
+			return namespace;
+		}
+
+		/**
+		 * Returns the ID of the namespace containing the page for which this
+		 * <tt>PageNameComponents</tt> was created.
+		 * <p>
+		 * This is a convenience method for <code>getNamespace().getID()</code>.
+		 * 
+		 * @return the ID of the namespace containing the page for which this
+		 *         <tt>PageNameComponents</tt> was created
+		 */
+		public long getNamespaceID() {
+			return namespaceID;
+		}
+
+		/**
+		 * Returns the ID of the page for which this <tt>PageNameComponents</tt>
+		 * was created.
+		 * <p>
+		 * The ID may be unknown because it was not provided by the API reply
+		 * that created this <tt>PageNameComponents</tt>. In that case, the
+		 * return value is <code>null</code>, and one may get the page ID using
+		 * <code>getPageInformation</code> on the enclosing <tt>MediaWiki</tt>
+		 * instance.
+		 * 
+		 * @return the ID of the page for which this <tt>PageNameComponents</tt>
+		 *         was created, or <code>null</code> if it is unknown
+		 */
+		public Long getPageID() {
+			return pageID;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("PageNameComponents[\"%s\"%s]", getFullPageName(), pageID != null ? " (ID " + pageID + ")" : "");
+		}
+	}
+
+	public class Page extends PageNameComponents {
+		private final boolean missing;
+
+		private final Date lastEdit;
+
+		private final long lastRevisionID;
+
+		private final long views;
+
+		private final long length;
+
+		private final boolean isRedirect;
+
+		private final boolean isNew;
+
+		private final Map<String, MediaWiki.Protection> protections;
+
+		Page(final boolean missing, final long pageID, final String fullName, final Date lastEdit, final long namespaceID, final long lastRevisionID, final long views, final long length, final boolean isRedirect, final boolean isNew, final Map<String, MediaWiki.Protection> protections) throws IOException {
+			super(fullName, namespaceID, missing ? null : pageID);
+			this.missing = missing;
+			this.lastEdit = lastEdit;
+			this.lastRevisionID = lastRevisionID;
+			this.views = views;
+			this.length = length;
+			this.isRedirect = isRedirect;
+			this.isNew = isNew;
+			this.protections = Collections.unmodifiableMap(protections);
+		}
+
+		/**
+		 * Returns <code>true</code> if the page designated by this
+		 * <tt>Page</tt> is missing, or <code>false</code> if it exists. Most
+		 * other attributes will also be missing if this is the case; however,
+		 * information about page creation protection (if applicable), and the
+		 * namespace and title of the page will still be available.
+		 * 
+		 * @return <code>true</code> if the page designated by this
+		 *         <tt>Page</tt> is missing; <code>false</code> if it exists
+		 */
+		public boolean isMissing() {
+			return missing;
+		}
+
+		/**
+		 * Returns the date and time at which the page designated by this
+		 * <tt>Page</tt> was last edited. The return value is <code>null</code>
+		 * if the page is missing.
+		 * 
+		 * @return the date and time at which the page designated by this
+		 *         <tt>Page</tt> was last edited
+		 * @see #isMissing()
+		 */
+		public Date getLastEdit() {
+			return lastEdit;
+		}
+
+		/**
+		 * Returns the ID of the last revision made to the page designated by
+		 * this <tt>Page</tt>. The return value is -1 if the page is missing.
+		 * 
+		 * @return the ID of the last revision made to the page designated by
+		 *         this <tt>Page</tt>
+		 * @see #isMissing()
+		 */
+		public long getLastRevisionID() {
+			return lastRevisionID;
+		}
+
+		/**
+		 * Returns the number of times the page designated by this <tt>Page</tt>
+		 * has been viewed. The return value is -1 if the page is missing, or if
+		 * the wiki represented by the enclosing <tt>MediaWiki</tt> does not
+		 * give this information.
+		 * 
+		 * @return the number of times the page designated by this <tt>Page</tt>
+		 *         has been viewed
+		 */
+		public long getViewCount() {
+			return views;
+		}
+
+		/**
+		 * Returns the length the page designated by this <tt>Page</tt> as of
+		 * its last revision. The return value is 0 if the page is missing.
+		 * 
+		 * @return the length the page designated by this <tt>Page</tt> as of
+		 *         its last revision
+		 * @see #isMissing()
+		 */
+		public long getLength() {
+			return length;
+		}
+
+		/**
+		 * Returns <code>true</code> if the page designated by this
+		 * <tt>Page</tt> exists and is a redirect to another page, and
+		 * <code>false</code> otherwise.
+		 * <p>
+		 * Redirect pages start with <code>"#REDIRECT"</code> followed by a
+		 * wikilink to the targetted page.
+		 * 
+		 * @return <code>true</code> if the page designated by this
+		 *         <tt>Page</tt> exists and is a redirect to another page, and
+		 *         <code>false</code> otherwise
+		 */
+		public boolean isRedirect() {
+			return isRedirect;
+		}
+
+		/**
+		 * Returns <code>true</code> if the page designated by this
+		 * <tt>Page</tt> exists and has one revision, and <code>false</code>
+		 * otherwise.
+		 * 
+		 * @return <code>true</code> if the page designated by this
+		 *         <tt>Page</tt> exists and has one revision, and
+		 *         <code>false</code> otherwise
+		 */
+		public boolean isNew() {
+			return isNew;
+		}
+
+		/**
+		 * Returns a map associating action names (such as those in
+		 * <tt>MediaWiki.ProtectionAction</tt>) to <tt>MediaWiki.Protection</tt>
+		 * objects describing the terms of their protection. The return value is
+		 * never <code>null</code>, but the map may be empty.
+		 * 
+		 * @return a map associating action names (such as those in
+		 *         <tt>MediaWiki.ProtectionAction</tt>) to
+		 *         <tt>MediaWiki.Protection</tt> objects describing the terms of
+		 *         their protection
+		 */
+		public Map<String, MediaWiki.Protection> getProtection() {
+			return protections;
+		}
+
+		@Override
+		public String toString() {
+			// Page["Main Page" (missing) (ID 1), redirect, new, 410 bytes
+			// long, last revision: 5207, edited on DATE, views: 61358,
+			// protections: {edit=...}]
+			return String.format("Page[\"%s\"%s%s%s%s%s%s%s%s, protections: %s]", getFullPageName(), missing ? " (missing)" : "", getPageID() != null ? " (ID " + getPageID() + ")" : "", isRedirect ? ", redirect" : "", isNew ? ", new" : "", ", " + length + " bytes long", lastRevisionID != -1 ? ", last revision: " + lastRevisionID : "", lastEdit != null ? ", edited on " + lastEdit.toString() : "", views != -1 ? ", views: " + views : "", protections);
+		}
+	}
+
+	public class PageDesignation extends PageNameComponents {
+		PageDesignation(final long pageID, final String fullName, final long namespaceID) throws IOException {
+			super(fullName, namespaceID, pageID);
+		}
+
+		/**
+		 * Creates a <tt>PageDesignation</tt> whose page ID is unknown.
+		 */
+		PageDesignation(final String fullName, final long namespaceID) throws IOException {
+			super(fullName, namespaceID);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("PageDesignation[\"%s\" (ID %d)]", getFullPageName(), getPageID());
+		}
+	}
+
+	public static class Protection implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		private final String level;
+
+		private final Date expiry;
+
+		private final boolean isCascading;
+
+		private final String cascadeSource;
+
+		public Protection(final String level, final Date expiry, final boolean isCascading, final String cascadeSource) {
+			this.level = level;
+			this.expiry = expiry;
+			this.isCascading = isCascading;
+			this.cascadeSource = cascadeSource;
+		}
+
+		/**
+		 * Returns the level required for users to be able to perform the
+		 * protected action for which this <tt>Protection</tt> was created. The
+		 * return value is equivalent to, but not necessarily the same object
+		 * as, either <code>MediaWiki.ProtectionLevel.AUTOCONFIRMED_USERS</code>
+		 * or <code>MediaWiki.ProtectionLevel.SYSOPS</code>.
+		 * 
+		 * @return the level required for users to be able to perform the
+		 *         protected action for which this <tt>Protection</tt> was
+		 *         created
+		 */
+		public String getLevel() {
+			return level;
+		}
+
+		/**
+		 * Returns the date and time at which the protection for which this
+		 * <tt>Protection</tt> was created is set to expire. After this, the
+		 * protected action may be performed by everyone. The return value is
+		 * <code>null</code> if the protection is set never to expire.
+		 * 
+		 * @return the date and time at which the protection for which this
+		 *         <tt>Protection</tt> was created is set to expire
+		 */
+		public Date getExpiry() {
+			return expiry;
+		}
+
+		/**
+		 * Returns whether the protection for which this <tt>Protection</tt> was
+		 * created is cascading, i.e. whether pages transcluded into the
+		 * protected page are also to be protected. For pages that are protected
+		 * <em>due to</em> cascade protection on another page, this method
+		 * returns <code>false</code> and <code>getCascadeSource</code> returns
+		 * the source of the protection.
+		 * 
+		 * @return whether the protection for which this <tt>Protection</tt> was
+		 *         created is cascading
+		 */
+		public boolean isCascading() {
+			return isCascading;
+		}
+
+		/**
+		 * Returns the full name of the page that caused the action for which
+		 * this <tt>Protection</tt> was created to be protected. The return
+		 * value is <code>null</code> if there is no such page.
+		 * 
+		 * @return whether the protection for which this <tt>Protection</tt> was
+		 *         created is cascading
+		 */
+		public String getCascadeSource() {
+			return cascadeSource;
+		}
+
+		@Override
+		public String toString() {
+			// Protection[sysop expiring DATE, cascading, from "Other page"]
+			return String.format("Protection[%s expiring %s%s%s]", level, expiry != null ? expiry.toString() : "never", isCascading ? ", cascading" : "", cascadeSource != null ? ", from \"" + cascadeSource + "\"" : "");
+		}
+	}
+
+	public class Revision {
+		private final long revisionID;
+
+		private final long parentID;
+
+		private final Date timestamp;
+
+		private final String userName;
+
+		private final boolean userHidden;
+
+		private final long length;
+
+		private final String comment;
+
+		private final boolean commentHidden;
+
+		private final boolean isMinor;
+
+		private final boolean isAnonymous;
+
+		private String content;
+
+		/**
+		 * The content of this revision, as Deflater-compressed UTF-8 in a
+		 * direct buffer, if the enclosing <tt>MediaWiki</tt> was compressing
+		 * revision content when it was stored. In that case,
+		 * <code>content</code> is <code>null</code>.
+		 */
+		private ByteBuffer compressedContent;
+
+		private boolean contentHidden;
+
+		private boolean contentStored;
+
+		/**
+		 * Whether the content of this revision was streamed by
+		 * <code>getContentReader</code> without being stored, in which case
+		 * it is known not to be hidden.
+		 */
+		private boolean contentStreamed;
+
+		Revision(final long revisionID, final long parentID, final Date timestamp, final String userName, final boolean userHidden, final long length, final String comment, final boolean commentHidden, final boolean isMinor, final boolean isAnonymous) {
+			this.revisionID = revisionID;
+			this.parentID = parentID;
+			this.timestamp = timestamp;
+			this.userName = pool(userName);
+			this.userHidden = userHidden;
+			this.length = length;
+			this.comment = comment;
+			this.commentHidden = commentHidden;
+			this.isMinor = isMinor;
+			this.isAnonymous = isAnonymous;
+		}
+
+		/**
+		 * Returns the ID of the revision for which this <tt>Revision</tt> was
+		 * created. The return value is guaranteed to be greater than or equal
+		 * to 0, and to be known even if the revision is deleted.
+		 * 
+		 * @return the ID of the revision for which this <tt>Revision</tt> was
+		 *         created
+		 */
+		public long getRevisionID() {
+			return revisionID;
+		}
+
+		/**
+		 * Returns the ID of the revision before the one for which this
+		 * <tt>Revision</tt> was created, from the same page. The return value
+		 * is greater than or equal to 0 if known, or -1 if unknown. It can be
+		 * known even if the revision is deleted. The return value is 0 if this
+		 * revision created its page.
+		 * 
+		 * @return the ID of the revision before the one for which this
+		 *         <tt>Revision</tt> was created, from the same page
+		 */
+		public long getParentID() {
+			return parentID;
+		}
+
+		/**
+		 * Returns the timestamp at which the revision for which this
+		 * <tt>Revision</tt> was created was made. The return value is
+		 * guaranteed to be non-<code>null</code>, even if the revision is
+		 * deleted.
+		 * 
+		 * @return the timestamp at which the revision for which this
+		 *         <tt>Revision</tt> was created was made
+		 */
+		public Date getTimestamp() {
+			return timestamp;
+		}
+
+		/**
+		 * Returns the name of the user who made the revision for which this
+		 * <tt>Revision</tt> was created. The return value is <code>null</code>
+		 * if the revision is deleted with the username hidden.
+		 * 
+		 * @return the name of the user who made the revision for which this
+		 *         <tt>Revision</tt> was created
+		 */
+		public String getUserName() {
+			return userName;
+		}
+
+		/**
+		 * Returns whether the name of the user who made the revision for which
+		 * this <tt>Revision</tt> was created is hidden by revision deletion.
+		 * 
+		 * @return whether the name of the user who made the revision for which
+		 *         this <tt>Revision</tt> was created is hidden by revision
+		 *         deletion
+		 */
+		public boolean isUserNameHidden() {
+			return userHidden;
+		}
+
+		/**
+		 * Returns the length of the page as of the revision for which this
+		 * <tt>Revision</tt> was created.
+		 * 
+		 * @return the length of the page as of the revision for which this
+		 *         <tt>Revision</tt> was created
+		 */
+		public long getLength() {
+			return length;
+		}
+
+		/**
+		 * Returns the comment for the revision for which this <tt>Revision</tt>
+		 * was created. The return value is <code>null</code> if the revision is
+		 * deleted with the comment hidden.
+		 * 
+		 * @return the comment for the revision for which this <tt>Revision</tt>
+		 *         was created
+		 */
+		public String getComment() {
+			return comment;
+		}
+
+		/**
+		 * Returns whether the comment for the revision for which this
+		 * <tt>Revision</tt> was created is hidden by revision deletion.
+		 * 
+		 * @return whether the comment for the revision for which this
+		 *         <tt>Revision</tt> was created is hidden by revision deletion
+		 */
+		public boolean isCommentHidden() {
+			return commentHidden;
+		}
+
+		/**
+		 * Returns <code>true</code> if any piece of information about the
+		 * revision for which this <tt>Revision</tt> was created is deleted.
+		 * 
+		 * @return <code>true</code> if any piece of information about the
+		 *         revision for which this <tt>Revision</tt> was created is
+		 *         deleted
+		 */
+		public boolean isDeleted() {
+			return userHidden || commentHidden || (contentStored && contentHidden);
+		}
+
+		/**
+		 * Returns whether the revision for which this <tt>Revision</tt> was
+		 * created was marked by the user who made it as <i>minor</i>.
+		 * 
+		 * @return whether the revision for which this <tt>Revision</tt> was
+		 *         created was marked by the user who made it as <i>minor</i>
+		 */
+		public boolean isMinor() {
+			return isMinor;
+		}
+
+		/**
+		 * Returns whether the revision for which this <tt>Revision</tt> was
+		 * created was made by an anonymous user. The return value is undefined
+		 * if the user's name is hidden by revision deletion.
+		 * 
+		 * @return whether the revision for which this <tt>Revision</tt> was
+		 *         created was made by an anonymous user
+		 */
+		public boolean isAnonymous() {
+			return isAnonymous;
+		}
+
+		/**
+		 * Returns the content of this revision. If no exception is thrown, the
+		 * return value is cached in this <tt>Revision</tt> so it can be
+		 * returned later. The return value is undefined if the content is
+		 * hidden by revision deletion.
+		 * 
+		 * @return the content of this revision
+		 * @throws IOException
+		 *             if <tt>IOException</tt> is thrown while connecting to the
+		 *             wiki or while reading the XML reply from the API
+		 * @throws MediaWiki.MediaWikiException
+		 *             if the API does not return a result in the expected
+		 *             format (subtypes thrown:
+		 *             <tt>MediaWiki.MediaWikiException</tt>,
+		 *             <tt>MediaWiki.UnknownError</tt>)
+		 */
+		public synchronized String getContent() throws IOException, MediaWiki.MediaWikiException {
+			if (contentStored) {
+				if (compressedContent == null)
+					return content;
+				final Reader reader = getContentReader();
+				try {
+					final StringBuilder result = new StringBuilder((int) Math.min(length, Integer.MAX_VALUE));
+					final char[] buffer = new char[4096];
+					int n;
+					while ((n = reader.read(buffer)) != -1) {
+						result.append(buffer, 0, n);
+					}
+					return result.toString();
+				} finally {
+					reader.close();
+				}
+			} else {
+				storeContent();
+				return getContent();
+			}
+		}
+
+		/**
+		 * Returns a <tt>Reader</tt> over the content of this revision. If the
+		 * content is kept compressed, it is decompressed as it is read, without
+		 * creating a <tt>String</tt> holding all of it.
+		 * <p>
+		 * If the content is not yet stored in this <tt>Revision</tt>, it is
+		 * requested from the wiki, and the <tt>Reader</tt> reads it from the
+		 * reply as the reply arrives; it is not stored. This allows writing the
+		 * content of very large pages elsewhere, or scanning it, without
+		 * buffering it entirely. Until the <tt>Reader</tt> is closed, the
+		 * network lock of the enclosing <tt>MediaWiki</tt> stays held, so the
+		 * <tt>Reader</tt> must be closed, by the thread that called this
+		 * method, as soon as it is no longer needed. The reply is buffered
+		 * entirely only if the response cache keeps it.
+		 * <p>
+		 * If the content is hidden by revision deletion, the <tt>Reader</tt>
+		 * reads nothing, and <code>isContentHidden</code> returns
+		 * <code>true</code> without another request.
+		 * 
+		 * @return a <tt>Reader</tt> over the content of this revision
+		 * @throws IOException
+		 *             if <tt>IOException</tt> is thrown while connecting to the
+		 *             wiki or while reading the XML reply from the API
+		 * @throws MediaWiki.MediaWikiException
+		 *             if the API does not return a result in the expected
+		 *             format (subtypes thrown:
+		 *             <tt>MediaWiki.MediaWikiException</tt>,
+		 *             <tt>MediaWiki.UnknownError</tt>)
+		 * @see MediaWiki#setCompressingRevisionContent(boolean)
+		 */
+		public synchronized Reader getContentReader() throws IOException, MediaWiki.MediaWikiException {
+			if (contentStored) {
+				if (compressedContent == null)
+					return new StringReader(content != null ? content : "");
+				return new InputStreamReader(new InflaterInputStream(new MediaWiki.ByteBufferInputStream(compressedContent.duplicate())), "UTF-8");
+			}
+			return streamContent();
+		}
+
+		/**
+		 * Requests the content of this revision and returns a
+		 * <tt>Reader</tt> over it that reads the reply as it arrives, holding
+		 * the network lock until it is closed. If the content is hidden, it is
+		 * stored as such, and the <tt>Reader</tt> reads nothing.
+		 */
+		private Reader streamContent() throws IOException, MediaWiki.MediaWikiException {
+			final Map<String, String> getParams = paramValuesToMap("action", "query", "format", "xml", "prop", "revisions", "rvprop", "content", "revids", Long.toString(revisionID));
+
+			final String url = createApiGetUrl(getParams);
+
+			networkLock.lock();
+			InputStream in = null;
+			XMLStreamReader xml = null;
+			boolean streaming = false;
+			try {
+				in = get(url);
+				xml = xmlInputFactory.createXMLStreamReader(in);
+
+				while (xml.hasNext()) {
+					if (xml.next() != XMLStreamConstants.START_ELEMENT) {
+						continue;
+					}
+					final String tagName = xml.getLocalName();
+					if (tagName.equals("error")) {
+						checkError(copyErrorTag(xml));
+					} else if (tagName.equals("badrevids"))
+						throw new MediaWiki.MediaWikiException("Revision ID " + revisionID + " is now inexistent");
+					else if (tagName.equals("page") && (xml.getAttributeValue(null, "missing") != null))
+						throw new MediaWiki.MediaWikiException("Revision ID " + revisionID + " now belongs to no page");
+					else if (tagName.equals("rev")) {
+						if (xml.getAttributeValue(null, "texthidden") != null) {
+							contentHidden = true;
+							contentStored = true;
+							return new StringReader("");
+						}
+						contentStreamed = true;
+						streaming = true;
+						return new MediaWiki.StreamedContentReader(in, xml);
+					}
+				}
+				throw new MediaWiki.ResponseFormatException("expected <rev> tag not found");
+			} catch (final XMLStreamException e) {
+				throw new IOException(e);
+			} finally {
+				if (!streaming) {
+					try {
+						if (xml != null) {
+							try {
+								xml.close();
+							} catch (final XMLStreamException e) {
+								// don't care; the stream is closed next
+							}
+						}
+						if (in != null) {
+							in.close();
+						}
+					} finally {
+						networkLock.unlock();
+					}
+				}
+			}
+		}
+
+		/**
+		 * Returns whether the content of this revision is hidden by revision
+		 * deletion.
+		 * 
+		 * @return whether the content of this revision is hidden by revision
+		 *         deletion
+		 * @throws IOException
+		 *             if <tt>IOException</tt> is thrown while connecting to the
+		 *             wiki or while reading the XML reply from the API
+		 * @throws MediaWiki.MediaWikiException
+		 *             if the API does not return a result in the expected
+		 *             format (subtypes thrown:
+		 *             <tt>MediaWiki.MediaWikiException</tt>,
+		 *             <tt>MediaWiki.UnknownError</tt>)
+		 */
+		public synchronized boolean isContentHidden() throws IOException, MediaWiki.MediaWikiException {
+			if (contentStored)
+				return contentHidden;
+			else if (contentStreamed)
+				return false;
+			else {
+				storeContent();
+				return isContentHidden();
+			}
+		}
+
+		/**
+		 * Stores the given content in this <tt>Revision</tt>, compressing it if
+		 * the enclosing <tt>MediaWiki</tt> is compressing revision content.
+		 * 
+		 * @param newContent
+		 *            The content to store.
+		 */
+		synchronized void setContent(final String newContent) {
+			if (isCompressingRevisionContent()) {
+				content = null;
+				compressedContent = compress(newContent);
+			} else {
+				content = newContent;
+				compressedContent = null;
+			}
+		}
+
+		protected synchronized void storeContent() throws IOException, MediaWiki.MediaWikiException {
+			if (isCompressingRevisionContent()) {
+				// Compress the content as it arrives.
+				final Reader reader = streamContent();
+				try {
+					if (!contentStored) {
+						content = null;
+						compressedContent = compress(reader);
+						contentStored = true;
+					}
+				} finally {
+					reader.close();
+				}
+				return;
+			}
+
+			final Map<String, String> getParams = paramValuesToMap("action", "query", "format", "xml", "prop", "revisions", "rvprop", "content", "revids", Long.toString(revisionID));
+
+			final String url = createApiGetUrl(getParams);
+
+			networkLock.lock();
+			try {
+				final InputStream in = get(url);
+				final Document xml = parse(in);
+				checkError(xml);
+
+				final NodeList badrevidsTags = xml.getElementsByTagName("badrevids");
+				if (badrevidsTags.getLength() > 0)
+					throw new MediaWiki.MediaWikiException("Revision ID " + revisionID + " is now inexistent");
+
+				final NodeList pageTags = xml.getElementsByTagName("page");
+
+				if (pageTags.getLength() > 0) {
+					final Element pageTag = (Element) pageTags.item(0);
+
+					if (pageTag.hasAttribute("missing"))
+						throw new MediaWiki.MediaWikiException("Revision ID " + revisionID + " now belongs to no page");
+
+					final NodeList revTags = pageTag.getElementsByTagName("rev");
+
+					if (revTags.getLength() > 0) {
+						final Element revTag = (Element) revTags.item(0);
+
+						if (revTag.hasAttribute("texthidden")) {
+							contentHidden = true;
+						} else {
+							setContent(revTag.getTextContent());
+						}
+						contentStored = true;
+					} else
+						throw new MediaWiki.ResponseFormatException("expected <rev> tag not found");
+				} else
+					throw new MediaWiki.ResponseFormatException("expected <page> tag not found");
+			} finally {
+				networkLock.unlock();
+			}
+		}
+
+		@Override
+		public String toString() {
+			// Revision[1337 <- 1336 @ DATE (SIZE) by <user hidden>
+			// or USER, minor, anonymous <comment hidden> or (COMMENT)]
+			return String.format("Revision[%d <- %d (%d bytes) @ %s by %s%s%s %s]", revisionID, parentID, length, timestamp, userHidden ? "<user hidden>" : userName, isMinor ? ", minor" : "", isAnonymous ? ", anonymous" : "", commentHidden ? "<comment hidden>" : "(" + comment + ")");
+		}
+	}
+
+	public class CategoryMembership {
+		private final String category;
+
+		private final String sortKey;
+
+		CategoryMembership(final String category, final String sortKey) {
+			this.category = category;
+			this.sortKey = sortKey;
+		}
+
+		/**
+		 * Returns the full name of the category to which a page belongs.
+		 * 
+		 * @return the full name of the category to which a page belongs
+		 */
+		public String getCategoryName() {
+			return category;
+		}
+
+		/**
+		 * Returns the base name of the category to which a page belongs; that
+		 * is, the category's name without its namespace prefix.
+		 * 
+		 * @return the base name of the category to which a page belongs
+		 * @throws IOException
+		 *             if an error occurs while getting the list of namespaces
+		 *             on the wiki represented by the enclosing
+		 *             <tt>MediaWiki</tt>
+		 */
+		public String getCategoryBaseName() throws IOException {
+			return getNamespaces().removeNamespacePrefix(category);
+		}
+
+		/**
+		 * Returns the name of the page as it is used to sort it inside the
+		 * category's members.
+		 * 
+		 * @return the name of the page as it is used to sort it inside the
+		 *         category's members
+		 */
+		public String getSortKey() {
+			return sortKey;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("CategoryMembership[\"%s\" as \"%s\"]", category, sortKey);
+		}
+	}
+
+	public class CategoryMember extends PageNameComponents {
+		private String sortKey;
+
+		private Date addTime;
 
-			if (editTags.getLength() > 0) {
-				final Element editTag = (Element) editTags.item(0);
+		/**
+		 * The attributes of the <tt>&lt;cm&gt;</tt> tag from which the sort
+		 * key and addition time of this <tt>CategoryMember</tt> are to be
+		 * decoded, or <code>null</code> if they are decoded. The tag itself is
+		 * not kept, so that its reply document is not kept alive or read from
+		 * other threads.
+		 */
+		private String[] attributes;
 
-				if (editTag.hasAttribute("result")) {
-					if (editTag.getAttribute("result").equals("Success"))
-						return this;
-					else
-						throw new MediaWiki.ActionFailureException(editTag.getAttribute("result"));
-				} else
-					throw new MediaWiki.ResponseFormatException("expected <edit result=\"\"> attribute not present");
-			} else
-				throw new MediaWiki.ResponseFormatException("expected <edit> tag not present");
-		} finally {
-			networkLock.unlock();
+		CategoryMember(final long namespaceID, final long pageID, final Date addTime, final String fullPageName, final String sortKey) throws IOException {
+			super(fullPageName, namespaceID, pageID);
+			this.addTime = addTime;
+			this.sortKey = sortKey;
 		}
-	}
 
-	// - - - UNDO - - -
+		/**
+		 * Creates a <tt>CategoryMember</tt> from a <tt>&lt;cm&gt;</tt> tag in a
+		 * reply from the API. The sort key and addition time are decoded from
+		 * a copy of its attributes the first time either of them is requested.
+		 * 
+		 * @param element
+		 *            The <tt>&lt;cm&gt;</tt> tag.
+		 */
+		CategoryMember(final Element element) throws IOException {
+			super(element.getAttribute("title"), Long.parseLong(element.getAttribute("ns")), Long.parseLong(element.getAttribute("pageid")));
+			attributes = copyAttributes(element, "sortkeyprefix", "timestamp");
+		}
 
-	/**
-	 * Undoes a revision on the page embodied by the specified
-	 * <code>editToken</code>.
-	 * 
-	 * @param editToken
-	 *            The <tt>EditToken</tt> describing the page to undo a revision
-	 *            of and containing information to detect conflicts. This is
-	 *            gotten using <code>startEdit</code>.
-	 * @param revisionID
-	 *            The ID of the revision to undo.
-	 * @param editSummary
-	 *            The summary to be used to describe the edit that undoes the
-	 *            revision.
-	 * @param bot
-	 *            Whether to mark the edit that undoes the revision as made by a
-	 *            bot ( <code>true</code>) or not (<code>false</code>).
-	 * @param minor
-	 *            Whether to mark the edit that undoes the revision as minor (
-	 *            <code>true</code>) or not ( <code>false</code>) or to use the
-	 *            value in <tt>Special:Preferences</tt> for the currently-logged
-	 *            in user of this <tt>MediaWiki</tt>.
-	 * @return this <tt>MediaWiki</tt>
-	 * @throws IOException
-	 * @throws MediaWiki.MediaWikiException
-	 */
-	public MediaWiki undoRevision(final MediaWiki.EditToken editToken, final long revisionID, final String editSummary, final boolean bot, final Boolean minor) throws IOException, MediaWiki.MediaWikiException {
-		final Map<String, String> getParams = paramValuesToMap("action", "edit", "format", "xml");
-		final Map<String, String> postParams = paramValuesToMap("title", editToken.getFullPageName(), "token", editToken.getTokenText(), "starttimestamp", iso8601TimestampParser.format(editToken.getStartTime()), "undo", Long.toString(revisionID), "summary", editSummary);
-		if (bot) {
-			postParams.put("bot", "true");
+		/**
+		 * Decodes the sort key and addition time of this
+		 * <tt>CategoryMember</tt> if they are not yet decoded, then releases
+		 * the attributes they are decoded from.
+		 * 
+		 * @throws MediaWiki.IterationException
+		 *             if the tag contained an invalid timestamp
+		 */
+		private synchronized void decode() throws MediaWiki.IterationException {
+			if (attributes == null)
+				return;
+			sortKey = attributes[0] != null ? attributes[0] : "";
+			try {
+				addTime = timestampToDate(attributes[1] != null ? attributes[1] : "");
+			} catch (final ParseException e) {
+				throw new MediaWiki.IterationException(e);
+			}
+			attributes = null;
 		}
-		if (minor != null) {
-			postParams.put(minor ? "minor" : "notminor", "true");
+
+		/**
+		 * Returns the name of the page as it is used to sort it inside the
+		 * category's members.
+		 * 
+		 * @return the name of the page as it is used to sort it inside the
+		 *         category's members
+		 */
+		public String getSortKey() {
+			decode();
+			return sortKey;
 		}
-		if (editToken.getLastRevisionTime() != null) {
-			postParams.put("basetimestamp", iso8601TimestampParser.format(editToken.getLastRevisionTime()));
+
+		/**
+		 * Returns the time when this page was added to the category of which it
+		 * is a member.
+		 * 
+		 * @return the time when this page was added to the category of which it
+		 *         is a member
+		 */
+		public Date getAdditionTime() {
+			decode();
+			return addTime;
 		}
 
-		final String url = createApiGetUrl(getParams);
+		@Override
+		public String toString() {
+			decode();
+			return String.format("CategoryMember[\"%s\" (ID %d) as \"%s\", added %s]", getFullPageName(), getPageID(), sortKey, addTime);
+		}
+	}
 
-		networkLock.lock();
-		try {
-			final InputStream in = post(url, postParams);
-			final Document xml = parse(in);
-			checkError(xml);
+	public class ImageRevision extends PageNameComponents {
+		private Date timestamp;
 
-			final NodeList editTags = xml.getElementsByTagName("edit");
+		private String userName;
 
-			if (editTags.getLength() > 0) {
-				final Element editTag = (Element) editTags.item(0);
+		private long length;
 
-				if (editTag.hasAttribute("result")) {
-					if (editTag.getAttribute("result").equals("Success"))
-						return this;
-					else
-						throw new MediaWiki.ActionFailureException(editTag.getAttribute("result"));
-				} else
-					throw new MediaWiki.ResponseFormatException("expected <edit result=\"\"> attribute not present");
-			} else
-				throw new MediaWiki.ResponseFormatException("expected <edit> tag not present");
-		} finally {
-			networkLock.unlock();
-		}
-	}
+		private long width;
 
-	// - - - PREPEND AND APPEND - - -
+		private long height;
 
-	/**
-	 * Prepends (i.e. writes text before the start) or appends (i.e. writes text
-	 * after the end) some text to the page embodied by the specified
-	 * <code>editToken</code>.
-	 * 
-	 * @param editToken
-	 *            The <tt>EditToken</tt> describing the page to add the text to
-	 *            and containing information to detect conflicts. This is gotten
-	 *            using <code>startEdit</code>.
-	 * @param text
-	 *            The text to add.
-	 * @param atEnd
-	 *            If <code>true</code>, text will be added after the end of the
-	 *            page. If <code>false</code>, text will be added before the
-	 *            start of the page.
-	 * @param editSummary
-	 *            The summary to be used to describe the edit that adds the
-	 *            text..
-	 * @param bot
-	 *            Whether to mark the edit that adds the text as made by a bot (
-	 *            <code>true</code>) or not (<code>false</code>).
-	 * @param minor
-	 *            Whether to mark the edit that adds the text as minor (
-	 *            <code>true</code>) or not ( <code>false</code>) or to use the
-	 *            value in <tt>Special:Preferences</tt> for the currently-logged
-	 *            in user of this <tt>MediaWiki</tt>.
-	 * @return this <tt>MediaWiki</tt>
-	 * @throws IOException
-	 * @throws MediaWiki.MediaWikiException
-	 */
-	public MediaWiki addText(final MediaWiki.EditToken editToken, final String text, final boolean atEnd, final String editSummary, final boolean bot, final Boolean minor) throws IOException, MediaWiki.MediaWikiException {
-		final Map<String, String> getParams = paramValuesToMap("action", "edit", "format", "xml");
-		final Map<String, String> postParams = paramValuesToMap("title", editToken.getFullPageName(), "token", editToken.getTokenText(), "starttimestamp", iso8601TimestampParser.format(editToken.getStartTime()), atEnd ? "appendtext" : "prependtext", text, "summary", editSummary);
-		if (bot) {
-			postParams.put("bot", "true");
-		}
-		if (minor != null) {
-			postParams.put(minor ? "minor" : "notminor", "true");
-		}
-		if (editToken.getLastRevisionTime() != null) {
-			postParams.put("basetimestamp", iso8601TimestampParser.format(editToken.getLastRevisionTime()));
-		}
+		private String url;
 
-		final String url = createApiGetUrl(getParams);
+		private String comment;
 
-		networkLock.lock();
-		try {
-			final InputStream in = post(url, postParams);
-			final Document xml = parse(in);
-			checkError(xml);
+		private String sha1hash;
 
-			final NodeList editTags = xml.getElementsByTagName("edit");
+		private String mimeType;
 
-			if (editTags.getLength() > 0) {
-				final Element editTag = (Element) editTags.item(0);
+		/**
+		 * The attributes of the tag from which the fields of this
+		 * <tt>ImageRevision</tt> other than its page name are to be decoded,
+		 * or <code>null</code> if they are decoded. The tag itself is not
+		 * kept, so that its reply document is not kept alive or read from
+		 * other threads.
+		 */
+		private String[] attributes;
 
-				if (editTag.hasAttribute("result")) {
-					if (editTag.getAttribute("result").equals("Success"))
-						return this;
-					else
-						throw new MediaWiki.ActionFailureException(editTag.getAttribute("result"));
-				} else
-					throw new MediaWiki.ResponseFormatException("expected <edit result=\"\"> attribute not present");
-			} else
-				throw new MediaWiki.ResponseFormatException("expected <edit> tag not present");
-		} finally {
-			networkLock.unlock();
+		ImageRevision(final String fullName, final Date timestamp, final String userName, final long length, final long width, final long height, final String url, final String comment, final String sha1hash, final String mimeType) throws IOException {
+			super(fullName);
+			this.timestamp = timestamp;
+			this.userName = pool(userName);
+			this.length = length;
+			this.width = width;
+			this.height = height;
+			this.url = url;
+			this.comment = comment;
+			this.sha1hash = sha1hash;
+			this.mimeType = mimeType;
 		}
-	}
 
-	// - - - MOVE - - -
+		/**
+		 * Creates an <tt>ImageRevision</tt> from an <tt>&lt;ii&gt;</tt> or
+		 * <tt>&lt;img&gt;</tt> tag in a reply from the API. The fields other
+		 * than the page name are decoded from a copy of its attributes the
+		 * first time any of them is requested.
+		 * 
+		 * @param fullName
+		 *            The full name of the image.
+		 * @param element
+		 *            The <tt>&lt;ii&gt;</tt> or <tt>&lt;img&gt;</tt> tag.
+		 */
+		ImageRevision(final String fullName, final Element element) throws IOException {
+			super(fullName);
+			attributes = copyAttributes(element, "timestamp", "user", "size", "width", "height", "url", "comment", "sha1", "mime");
+		}
 
-	/**
-	 * Starts a move of the given page, specified by its full name. The returned
-	 * token contains informaton used to detect conflicts when the move is
-	 * ended.
-	 * 
-	 * @param fullName
-	 *            The full name, including the namespace, of the page to start
-	 *            moving. This is the name of the page as it exists before the
-	 *            move.
-	 * @return a <tt>MediaWiki.EditToken</tt> containing informaton used to
-	 *         detect conflicts when the move is ended
-	 * @throws IOException
-	 *             if <tt>IOException</tt> is thrown while connecting to the
-	 *             wiki or while reading the XML reply from the API
-	 * @throws MediaWiki.MediaWikiException
-	 *             if a MediaWiki API error is returned
-	 */
-	public MediaWiki.EditToken startMove(final String fullName) throws IOException, MediaWiki.MediaWikiException {
-		final Map<String, String> getParams = paramValuesToMap("action", "query", "format", "xml", "prop", "info", "intoken", "move", "titles", titleToAPIForm(fullName));
+		/**
+		 * Decodes the fields of this <tt>ImageRevision</tt> if they are not yet
+		 * decoded, then releases the attributes they are decoded from.
+		 * 
+		 * @throws MediaWiki.IterationException
+		 *             if the tag contained an invalid timestamp or size
+		 */
+		private synchronized void decode() throws MediaWiki.IterationException {
+			if (attributes == null)
+				return;
+			try {
+				timestamp = timestampToDate(attributes[0] != null ? attributes[0] : "");
+			} catch (final ParseException e) {
+				throw new MediaWiki.IterationException(e);
+			}
+			userName = pool(attributes[1] != null ? attributes[1] : "");
+			try {
+				length = Long.parseLong(attributes[2]);
+				width = Long.parseLong(attributes[3]);
+				height = Long.parseLong(attributes[4]);
+			} catch (final NumberFormatException e) {
+				throw new MediaWiki.IterationException(new MediaWiki.ResponseFormatException("cannot parse the size of an image revision"));
+			}
+			url = attributes[5] != null ? attributes[5] : "";
+			comment = attributes[6] != null ? attributes[6] : "";
+			sha1hash = attributes[7] != null ? attributes[7] : "";
+			mimeType = attributes[8] != null ? attributes[8] : "";
+			attributes = null;
+		}
 
-		final String url = createApiGetUrl(getParams);
+		/**
+		 * Returns the timestamp at which the image revision for which this
+		 * <tt>ImageRevision</tt> was created was made. The return value is
+		 * guaranteed to be non-<code>null</code>, even if the revision is
+		 * deleted.
+		 * 
+		 * @return the timestamp at which the revision for which this
+		 *         <tt>Revision</tt> was created was made
+		 */
+		public Date getTimestamp() {
+			decode();
+			return timestamp;
+		}
 
-		networkLock.lock();
-		try {
-			final InputStream in = get(url);
-			final Document xml = parse(in);
-			checkError(xml);
+		/**
+		 * Returns the name of the user who made the image revision for which
+		 * this <tt>Revision</tt> was created. The return value is
+		 * <code>null</code> if the revision is deleted with the username
+		 * hidden.
+		 * 
+		 * @return the name of the user who made the revision for which this
+		 *         <tt>Revision</tt> was created
+		 */
+		public String getUserName() {
+			decode();
+			return userName;
+		}
 
-			final NodeList pageTags = xml.getElementsByTagName("page");
+		/**
+		 * Returns the length, in bytes, of the image as of the revision for
+		 * which this <tt>ImageRevision</tt> was created.
+		 * 
+		 * @return the length, in bytes, of the image as of the revision for
+		 *         which this <tt>Revision</tt> was created
+		 */
+		public long getLength() {
+			decode();
+			return length;
+		}
 
-			if (pageTags.getLength() > 0) {
-				final Element pageTag = (Element) pageTags.item(0);
+		/**
+		 * Returns the width, in pixels, of the image as of the revision for
+		 * which this <tt>ImageRevision</tt> was created.
+		 * 
+		 * @return the width, in pixels, of the image as of the revision for
+		 *         which this <tt>ImageRevision</tt> was created
+		 */
+		public long getWidth() {
+			decode();
+			return width;
+		}
 
-				if (!pageTag.hasAttribute("movetoken"))
-					throw new MediaWiki.PermissionException("move");
+		/**
+		 * Returns the height, in pixels, of the image as of the revision for
+		 * which this <tt>ImageRevision</tt> was created.
+		 * 
+		 * @return the height, in pixels, of the image as of the revision for
+		 *         which this <tt>ImageRevision</tt> was created
+		 */
+		public long getHeight() {
+			decode();
+			return height;
+		}
 
-				final Date lastRevision = pageTag.hasAttribute("touched") ? iso8601TimestampParser.parse(pageTag.getAttribute("touched")) : null;
-				final Date start = iso8601TimestampParser.parse(pageTag.getAttribute("starttimestamp"));
-				final String token = pageTag.getAttribute("movetoken");
+		/**
+		 * Returns the URL at which the contents of the image as of the revision
+		 * for which this <tt>ImageRevision</tt> was created can be retrieved.
+		 * 
+		 * @return the URL at which the contents of the image as of the revision
+		 *         for which this <tt>ImageRevision</tt> was created can be
+		 *         retrieved
+		 */
+		public String getURL() {
+			decode();
+			return url;
+		}
 
-				return new MediaWiki.EditToken(fullName, lastRevision, start, token);
-			} else
-				throw new MediaWiki.ResponseFormatException("expected <page> tag not found");
-		} catch (final ParseException pe) {
-			throw new MediaWiki.MediaWikiException(pe);
-		} finally {
-			networkLock.unlock();
+		/**
+		 * Returns the comment for the revision for which this <tt>Revision</tt>
+		 * was created. The return value is <code>null</code> if the revision is
+		 * deleted with the comment hidden.
+		 * 
+		 * @return the comment for the revision for which this <tt>Revision</tt>
+		 *         was created
+		 */
+		public String getComment() {
+			decode();
+			return comment;
 		}
-	}
 
-	/**
-	 * Ends a move embodied by the specified <code>moveToken</code>.
-	 * 
-	 * @param moveToken
-	 *            The <tt>EditToken</tt> describing the page to move and
-	 *            containing information to detect conflicts.
-	 * @param editSummary
-	 *            The reason to be used to describe the move.
-	 * @param suppressRedirect
-	 *            <code>true</code> to move the page without leaving a redirect
-	 *            to the new page's name under its old name. This requires the
-	 *            <tt>suppressredirect</tt> right.
-	 * @param moveTalk
-	 *            <code>true</code> to move the page's talk page as well;
-	 *            <code>false</code> to avoid doing so.
-	 * @param moveSubpages
-	 *            <code>true</code> to move the page's subpages as well;
-	 *            <code>false</code> to avoid doing so.
-	 * @return this <tt>MediaWiki</tt>
-	 * @throws IOException
-	 * @throws MediaWiki.MediaWikiException
-	 */
-	public MediaWiki endMove(final MediaWiki.EditToken moveToken, final String newFullName, final String reason, final boolean suppressRedirect, final boolean moveTalk, final boolean moveSubpages) throws IOException, MediaWiki.MediaWikiException {
-		final Map<String, String> getParams = paramValuesToMap("action", "move", "format", "xml");
-		final Map<String, String> postParams = paramValuesToMap("from", moveToken.getFullPageName(), "to", newFullName, "token", moveToken.getTokenText(), "starttimestamp", iso8601TimestampParser.format(moveToken.getStartTime()), "reason", reason);
-		if (suppressRedirect) {
-			postParams.put("noredirect", "true");
+		/**
+		 * Returns the SHA-1 hash of the contents of the image as of the
+		 * revision for which this <tt>ImageRevision</tt> was created. The
+		 * return value is a hexadecimal string.
+		 * 
+		 * @return the SHA-1 hash of the contents of the image as of the
+		 *         revision for which this <tt>ImageRevision</tt> was created
+		 */
+		public String getSHA1Hash() {
+			decode();
+			return sha1hash;
 		}
-		if (moveTalk) {
-			postParams.put("movetalk", "true");
+
+		/**
+		 * Returns the MIME type of the contents of the image as of the revision
+		 * for which this <tt>ImageRevision</tt> was created. The return value
+		 * is a hexadecimal string.
+		 * 
+		 * @return the SHA-1 hash of the contents of the image as of the
+		 *         revision for which this <tt>ImageRevision</tt> was created
+		 */
+		public String getMIMEType() {
+			decode();
+			return mimeType;
 		}
-		if (moveSubpages) {
-			postParams.put("movesubpages", "true");
+
+		/**
+		 * Returns an <tt>InputStream</tt> that reads the content of the image
+		 * as of this revision.
+		 * 
+		 * @return an <tt>InputStream</tt> that reads the content of the image
+		 *         as of this revision
+		 * @throws IOException
+		 *             if <tt>IOException</tt> is thrown while connecting to the
+		 *             wiki
+		 */
+		public InputStream getContent() throws IOException {
+			decode();
+			return get(url);
 		}
-		if (moveToken.getLastRevisionTime() != null) {
-			postParams.put("basetimestamp", iso8601TimestampParser.format(moveToken.getLastRevisionTime()));
+
+		/**
+		 * Returns an <tt>InputStream</tt> that reads the content of the image
+		 * as of this revision, starting at the given byte <code>offset</code>,
+		 * and reports its progress to the given <code>listener</code>.
+		 * <p>
+		 * This can be used to resume an interrupted download: the
+		 * <code>offset</code> is then the number of bytes already downloaded.
+		 * If the wiki does not support downloading part of an image, the bytes
+		 * before the <code>offset</code> are downloaded and skipped.
+		 * 
+		 * @param offset
+		 *            The number of bytes at the start of the image to skip.
+		 * @param listener
+		 *            The <tt>ProgressListener</tt> to notify as bytes are read,
+		 *            or <code>null</code> if progress is not to be reported.
+		 *            Progress includes the skipped bytes. The total is the
+		 *            length of the image reported by the wiki's reply, or -1
+		 *            if it does not report one.
+		 * @return an <tt>InputStream</tt> that reads the content of the image
+		 *         as of this revision, starting at the given byte
+		 *         <code>offset</code>
+		 * @throws IllegalArgumentException
+		 *             if <code>offset</code> is negative
+		 * @throws IOException
+		 *             if <tt>IOException</tt> is thrown while connecting to the
+		 *             wiki
+		 */
+		public InputStream getContent(final long offset, final MediaWiki.ProgressListener listener) throws IllegalArgumentException, IOException {
+			if (offset < 0)
+				throw new IllegalArgumentException("offset < 0");
+			decode();
+			return offset > 0 || listener != null ? getRange(url, offset, listener) : get(url);
 		}
 
-		final String url = createApiGetUrl(getParams);
+		@Override
+		public String toString() {
+			decode();
+			return String.format("ImageRevision[%s (%d bytes), %dx%d, by %s (%s) <%s>, MIME type: %s, SHA-1 hash: %s]", timestamp, length, width, height, userName, comment, url, mimeType, sha1hash);
+		}
+	}
 
-		networkLock.lock();
-		try {
-			final InputStream in = post(url, postParams);
-			final Document xml = parse(in);
-			checkError(xml);
-			checkError(xml, "talkmove-error-code", "talkmove-error-info");
+	public class InterlanguageLink {
+		private final String language;
 
-			final NodeList moveTags = xml.getElementsByTagName("move");
+		private final String foreignTitle;
 
-			if (moveTags.getLength() > 0)
-				return this;
-			else
-				throw new MediaWiki.ResponseFormatException("expected <move> tag not present");
-		} finally {
-			networkLock.unlock();
+		InterlanguageLink(final String language, final String foreignTitle) {
+			this.language = language;
+			this.foreignTitle = foreignTitle;
 		}
-	}
 
-	// - - - ROLLBACK - - -
+		/**
+		 * Returns the language identifier specified in the interlanguage link
+		 * for which this <tt>InterlanguageLink</tt> was created.
+		 * 
+		 * @return the language identifier specified in the interlanguage link
+		 *         for which this <tt>InterlanguageLink</tt> was created
+		 */
+		public String getLanguage() {
+			return language;
+		}
 
-	/**
-	 * Starts a rollback of the given page, specified by its full name. The
-	 * returned token contains informaton used to abort the rollback if another
-	 * user edits the page. The name of the last user who made an edit to the
-	 * page is also available.
-	 * 
-	 * @param fullName
-	 *            The full name, including the namespace, of the page to start
-	 *            rolling back.
-	 * @return a <tt>MediaWiki.RollbackToken</tt> containing informaton used to
-	 *         detect conflicts when the move is ended
-	 * @throws IOException
-	 *             if <tt>IOException</tt> is thrown while connecting to the
-	 *             wiki or while reading the XML reply from the API
-	 * @throws MediaWiki.MediaWikiException
-	 *             if a MediaWiki API error is returned
-	 */
-	public MediaWiki.RollbackToken startRollback(final String fullName) throws IOException, MediaWiki.MediaWikiException {
-		final Map<String, String> getParams = paramValuesToMap("action", "query", "format", "xml", "prop", "revisions", "rvtoken", "rollback", "titles", titleToAPIForm(fullName), "rvlimit", "1");
+		/**
+		 * Returns the <tt>InterwikiPrefix</tt> corresponding to the language of
+		 * the interlanguage link for which this <tt>InterlanguageLink</tt> was
+		 * created, drawn from the enclosing <tt>MediaWiki</tt>'s interwiki
+		 * prefix map.
+		 * 
+		 * @return the <tt>InterwikiPrefix</tt> corresponding to the language of
+		 *         the interlanguage link for which this
+		 *         <tt>InterlanguageLink</tt> was created
+		 * @throws IOException
+		 *             if an error occurs while getting the interwiki prefixes
+		 *             on the wiki represented by the enclosing
+		 *             <tt>MediaWiki</tt>
+		 */
+		public MediaWiki.InterwikiPrefix getLanguagePrefix() throws IOException {
+			return getInterwikiPrefixes().getInterwikiPrefix(language);
+		}
 
-		final String url = createApiGetUrl(getParams);
+		/**
+		 * Returns the full name of the article on the other wiki.
+		 * 
+		 * @return the full name of the article on the other wiki
+		 */
+		public String getForeignTitle() {
+			return foreignTitle;
+		}
 
-		networkLock.lock();
-		try {
-			final InputStream in = get(url);
-			final Document xml = parse(in);
-			checkError(xml);
+		/**
+		 * Returns the URL at which the article on the other wiki can be seen in
+		 * a browser.
+		 * 
+		 * @return the URL at which the article on the other wiki can be seen in
+		 *         a browser
+		 * @throws IOException
+		 *             if an error occurs while getting the interwiki prefixes
+		 *             on the wiki represented by the enclosing
+		 *             <tt>MediaWiki</tt>
+		 */
+		public String getURL() throws IOException {
+			return getLanguagePrefix().resolveURL(foreignTitle);
+		}
 
-			final NodeList pageTags = xml.getElementsByTagName("page");
+		@Override
+		public String toString() {
+			return String.format("InterlanguageLink[%s:\"%s\"]", language, foreignTitle);
+		}
+	}
 
-			if (pageTags.getLength() > 0) {
-				final Element pageTag = (Element) pageTags.item(0);
+	public class Link extends PageNameComponents {
+		Link(final long namespace, final String fullPageName) throws IOException {
+			super(fullPageName, namespace);
+		}
 
-				if (pageTag.hasAttribute("missing"))
-					throw new MediaWiki.MissingPageException();
+		@Override
+		public String toString() {
+			return String.format("Link[\"%s\"]", getFullPageName());
+		}
+	}
 
-				final NodeList revTags = xml.getElementsByTagName("rev");
+	public class Category extends PageNameComponents {
+		private final long entries;
 
-				String userName, token;
-				if (revTags.getLength() > 0) {
-					final Element revTag = (Element) revTags.item(0);
+		private final long pages;
 
-					if (!revTag.hasAttribute("rollbacktoken"))
-						throw new MediaWiki.PermissionException("rollback");
+		private final long files;
 
-					userName = revTag.getAttribute("user");
-					token = revTag.getAttribute("rollbacktoken");
-				} else
-					throw new MediaWiki.ResponseFormatException("expected <rev> tag not found");
+		private final long subcategories;
 
-				return new MediaWiki.RollbackToken(fullName, userName, token);
-			} else
-				throw new MediaWiki.ResponseFormatException("expected <page> tag not found");
-		} finally {
-			networkLock.unlock();
+		Category(final String fullName, final long entries, final long pages, final long files, final long subcategories) throws IOException {
+			super(fullName);
+			this.entries = entries;
+			this.pages = pages;
+			this.files = files;
+			this.subcategories = subcategories;
 		}
-	}
 
-	/**
-	 * Ends a rollback embodied by the specified <code>rollbackToken</code>.
-	 * 
-	 * @param rollbackToken
-	 *            The <tt>RollbackToken</tt> describing the page to roll back
-	 *            and containing information to abort the rollback if another
-	 *            user edited the page.
-	 * @param comment
-	 *            The reason to be used to describe the rollback. This parameter
-	 *            may be <code>null</code> to use a default rollback comment.
-	 * @param bot
-	 *            <code>true</code> to mark the rolled-back edits and the edit
-	 *            rolling back the edits as made by a bot; <code>false</code> to
-	 *            avoid doing so. Marking the edits as made by a bot hides them
-	 *            from <tt>Special:RecentChanges</tt> by default, which helps in
-	 *            case of severe vandalism.
-	 * @return this <tt>MediaWiki</tt>
-	 * @throws IOException
-	 * @throws MediaWiki.MediaWikiException
-	 */
-	public MediaWiki endRollback(final MediaWiki.RollbackToken rollbackToken, final String comment, final boolean bot) throws IOException, MediaWiki.MediaWikiException {
-		final Map<String, String> getParams = paramValuesToMap("action", "rollback", "format", "xml");
-		final Map<String, String> postParams = paramValuesToMap("title", rollbackToken.getFullPageName(), "user", rollbackToken.getUserName(), "token", rollbackToken.getTokenText(), "summary", comment);
-		if (bot) {
-			postParams.put("markbot", "true");
+		/**
+		 * Returns the number of entries in the category for which this
+		 * <tt>Category</tt> was created. This includes pages, files and
+		 * subcategories.
+		 * 
+		 * @return the number of entries in the category for which this
+		 *         <tt>Category</tt> was created
+		 */
+		public long getEntryCount() {
+			return entries;
 		}
 
-		final String url = createApiGetUrl(getParams);
+		/**
+		 * Returns the number of pages in the category for which this
+		 * <tt>Category</tt> was created.
+		 * 
+		 * @return the number of pages in the category for which this
+		 *         <tt>Category</tt> was created
+		 */
+		public long getPageCount() {
+			return pages;
+		}
 
-		networkLock.lock();
-		try {
-			final InputStream in = post(url, postParams);
-			final Document xml = parse(in);
-			checkError(xml);
+		/**
+		 * Returns the number of files in the category for which this
+		 * <tt>Category</tt> was created.
+		 * 
+		 * @return the number of files in the category for which this
+		 *         <tt>Category</tt> was created
+		 */
+		public long getFileCount() {
+			return files;
+		}
 
-			final NodeList rollbackTags = xml.getElementsByTagName("rollback");
+		/**
+		 * Returns the number of categories placed in the category for which
+		 * this <tt>Category</tt> was created. Those are its sub-categories.
+		 * 
+		 * @return the number of categories placed in the category for which
+		 *         this <tt>Category</tt> was created
+		 */
+		public long getSubcategoryCount() {
+			return subcategories;
+		}
 
-			if (rollbackTags.getLength() > 0)
-				return this;
-			else
-				throw new MediaWiki.ResponseFormatException("expected <rollback> tag not present");
-		} finally {
-			networkLock.unlock();
+		@Override
+		public String toString() {
+			return String.format("Category[\"%s\", entries: %d, pages: %d, files: %d, subcategories: %d]", getFullPageName(), entries, pages, files, subcategories);
 		}
 	}
 
-	// - - - UPLOAD - - -
+	public static class ParseResult {
+		private final String text;
 
-	/**
-	 * Starts an upload to the given image page, specified by its base name. The
-	 * returned token contains informaton used to detect conflicts when the
-	 * upload is ended.
-	 * 
-	 * @param baseName
-	 *            The base name (excluding the namespace) of the page to start
-	 *            uploading to.
-	 * @return a <tt>MediaWiki.EditToken</tt> containing informaton used to
-	 *         detect conflicts when the upload is ended
-	 * @throws IOException
-	 *             if <tt>IOException</tt> is thrown while connecting to the
-	 *             wiki or while reading the XML reply from the API
-	 * @throws MediaWiki.MediaWikiException
-	 *             if a MediaWiki API error is returned
-	 */
-	public MediaWiki.EditToken startUpload(final String baseName) throws IOException, MediaWiki.MediaWikiException {
-		/*
-		 * Implementation note: On MediaWiki 1.18 and earlier, the upload token
-		 * is the edit token.
-		 */
-		return startEdit(getNamespaces().getNamespace(MediaWiki.StandardNamespace.FILE).getFullPageName(baseName));
-	}
+		private final List<MediaWiki.InterlanguageLink> interlanguageLinks;
 
-	/**
-	 * Ends an upload embodied by the specified <code>editToken</code> by making
-	 * the content of the specified <tt>InputStream</tt> the latest revision of
-	 * the image.
-	 * 
-	 * @param uploadToken
-	 *            The <tt>EditToken</tt> describing the image page to upload to
-	 *            and containing information to detect conflicts.
-	 * @param content
-	 *            The bytes to be contained by the image after the edit.
-	 * @param comment
-	 *            The summary to be used to describe the upload. If the file is
-	 *            created by this upload, this comment is also used as the text
-	 *            of the page associated with the image, unless
-	 *            <code>pageText</code> is not <code>null</code>.
-	 * @param pageText
-	 *            The text to be contained by the page associated with the
-	 *            image, if the file is created by this upload.
-	 * @return this <tt>MediaWiki</tt>
-	 * @throws IOException
-	 *             if <tt>IOException</tt> is thrown while connecting to the
-	 *             wiki or while reading the XML reply from the API
-	 * @throws MediaWiki.MediaWikiException
-	 *             if a MediaWiki API error is returned (if the page is
-	 *             protected from uploading,
-	 *             <tt>MediaWiki.PermissionException</tt>)
-	 */
-	public MediaWiki endUpload(final MediaWiki.EditToken uploadToken, final InputStream content, final String comment, final String pageText) throws IOException, MediaWiki.MediaWikiException {
-		final Map<String, String> getParams = paramValuesToMap("action", "upload", "format", "xml");
-		final String url = createApiGetUrl(getParams);
+		private final List<MediaWiki.CategoryMembership> categoryMemberships;
 
-		networkLock.lock();
-		try {
-			// Repeating post() here because we are sending in
-			// multipart/form-data.
-			final HttpURLConnection http = (HttpURLConnection) new URL(url).openConnection();
-			initConnection(http);
-			initPost(http);
-			// Choose a multipart boundary.
-			String boundary;
-			{
-				// It shall have between 14 and 17 characters.
-				final int count = 14 + (int) (Math.random() * 4);
-				// It shall contain only alphanumeric characters, chosen to
-				// minimize the probability that the image contains them.
-				final char[] cc = new char[count];
-				for (int i = 0; i < count; i++) {
-					final int random = (int) (Math.random() * 62);
-					if (random < 26) {
-						cc[i] = (char) ('A' + random);
-					} else if (random < 52) {
-						cc[i] = (char) ('a' + (random - 26));
-					} else {
-						cc[i] = (char) ('0' + (random - 52));
-					}
-				}
-				boundary = new String(cc);
-			}
-			http.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + boundary);
+		private final List<MediaWiki.Link> pageLinks;
 
-			initCookies(http);
-			final BufferedWriter out = new BufferedWriter(new OutputStreamWriter(http.getOutputStream(), "UTF-8"));
+		private final List<MediaWiki.Link> transclusions;
 
-			out.write("\r\n--" + boundary + "\r\nContent-Disposition: form-data; name=\"filename\"\r\nContent-Type: text/plain; charset=UTF-8\r\nContent-Transfer-Encoding: 8bit\r\n\r\n");
-			out.write(getNamespaces().removeNamespacePrefix(uploadToken.getFullPageName()));
+		private final List<MediaWiki.Link> images;
 
-			out.write("\r\n--" + boundary + "\r\nContent-Disposition: form-data; name=\"token\"\r\nContent-Type: text/plain; charset=UTF-8\r\nContent-Transfer-Encoding: 8bit\r\n\r\n");
-			out.write(uploadToken.getTokenText());
+		private final List<String> externalLinks;
 
-			out.write("\r\n--" + boundary + "\r\nContent-Disposition: form-data; name=\"ignorewarnings\"\r\nContent-Type: text/plain; charset=UTF-8\r\nContent-Transfer-Encoding: 8bit\r\n\r\n");
-			out.write("true");
+		ParseResult(final String text, final List<MediaWiki.InterlanguageLink> interlanguageLinks, final List<MediaWiki.CategoryMembership> categoryMemberships, final List<MediaWiki.Link> pageLinks, final List<MediaWiki.Link> transclusions, final List<MediaWiki.Link> images, final List<String> externalLinks) {
+			this.text = text;
+			this.interlanguageLinks = interlanguageLinks != null ? Collections.unmodifiableList(interlanguageLinks) : null;
+			this.categoryMemberships = categoryMemberships != null ? Collections.unmodifiableList(categoryMemberships) : null;
+			this.pageLinks = pageLinks != null ? Collections.unmodifiableList(pageLinks) : null;
+			this.transclusions = transclusions != null ? Collections.unmodifiableList(transclusions) : null;
+			this.images = images != null ? Collections.unmodifiableList(images) : null;
+			this.externalLinks = externalLinks != null ? Collections.unmodifiableList(externalLinks) : null;
+		}
 
-			if (comment != null) {
-				out.write("\r\n--" + boundary + "\r\nContent-Disposition: form-data; name=\"comment\"\r\nContent-Type: text/plain; charset=UTF-8\r\nContent-Transfer-Encoding: 8bit\r\n\r\n");
-				out.write(comment);
-			}
+		/**
+		 * Returns the HTML parsed version of the wikitext for which this
+		 * <tt>ParseResult</tt> was created.
+		 * 
+		 * @return the HTML parsed version of the wikitext for which this
+		 *         <tt>ParseResult</tt> was created
+		 */
+		public String getText() {
+			return text;
+		}
 
-			if (pageText != null) {
-				out.write("\r\n--" + boundary + "\r\nContent-Disposition: form-data; name=\"text\"\r\nContent-Type: text/plain; charset=UTF-8\r\nContent-Transfer-Encoding: 8bit\r\n\r\n");
-				out.write(pageText);
-			}
+		/**
+		 * Returns the list of interlanguage links contained in the wikitext for
+		 * which this <tt>ParseResult</tt> was created. The returned list is not
+		 * modifiable.
+		 * 
+		 * @return the list of interlanguage links contained in the wikitext for
+		 *         which this <tt>ParseResult</tt> was created
+		 */
+		public List<MediaWiki.InterlanguageLink> getInterlanguageLinks() {
+			return interlanguageLinks;
+		}
 
-			out.write("\r\n--" + boundary + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"x\"\r\nContent-Type: application/octet-stream\r\nContent-Transfer-Encoding: binary\r\n\r\n");
-			// Switch from buffered characters to unbuffered bytes.
-			out.flush();
+		/**
+		 * Returns the list of categorisations contained in the wikitext for
+		 * which this <tt>ParseResult</tt> was created. The returned list is not
+		 * modifiable.
+		 * 
+		 * @return the list of categorisations contained in the wikitext for
+		 *         which this <tt>ParseResult</tt> was created
+		 */
+		public List<MediaWiki.CategoryMembership> getCategoryMemberships() {
+			return categoryMemberships;
+		}
+
+		/**
+		 * Returns the list of links pointing to pages on the same wiki
+		 * contained in the wikitext for which this <tt>ParseResult</tt> was
+		 * created. The returned list is not modifiable.
+		 * 
+		 * @return the list of links pointing to pages on the same wiki
+		 *         contained in the wikitext for which this <tt>ParseResult</tt>
+		 *         was created
+		 */
+		public List<MediaWiki.Link> getPageLinks() {
+			return pageLinks;
+		}
 
-			final byte[] buf = new byte[4096];
-			int read;
+		/**
+		 * Returns the list of transclusions contained in the wikitext for which
+		 * this <tt>ParseResult</tt> was created. The returned list is not
+		 * modifiable.
+		 * 
+		 * @return the list of transclusions contained in the wikitext for which
+		 *         this <tt>ParseResult</tt> was created
+		 */
+		public List<MediaWiki.Link> getTransclusions() {
+			return transclusions;
+		}
 
-			while ((read = content.read(buf)) > 0) {
-				http.getOutputStream().write(buf, 0, read);
-			}
+		/**
+		 * Returns the list of images used in the wikitext for which this
+		 * <tt>ParseResult</tt> was created. The returned list is not
+		 * modifiable.
+		 * 
+		 * @return the list of images used in the wikitext for which this
+		 *         <tt>ParseResult</tt> was created
+		 */
+		public List<MediaWiki.Link> getImages() {
+			return images;
+		}
 
-			out.write("\r\n--" + boundary + "--\r\n"); // End
+		/**
+		 * Returns the list of Web links contained in the wikitext for which
+		 * this <tt>ParseResult</tt> was created. The returned list is not
+		 * modifiable.
+		 * 
+		 * @return the list of Web links contained in the wikitext for which
+		 *         this <tt>ParseResult</tt> was created
+		 */
+		public List<String> getExternalLinks() {
+			return externalLinks;
+		}
+	}
 
-			out.flush();
-			out.close();
-			http.connect();
+	public static class User {
+		private final String userName;
 
-			if (http.getResponseCode() != 200)
-				throw new MediaWiki.HttpStatusException(http.getResponseCode());
+		private final Set<String> groups;
 
-			updateCookies(http);
+		private final Set<String> rights;
 
-			final String encoding = http.getHeaderField("Content-Encoding");
-			final InputStream in = (encoding != null) && encoding.equals("gzip") ? new GZIPInputStream(http.getInputStream()) : http.getInputStream();
-			// End of post() repeat.
+		private final long editCount;
 
-			final Document xml = parse(in);
-			checkError(xml);
+		private final String blockingUser;
 
-			final NodeList uploadTags = xml.getElementsByTagName("upload");
+		private final String blockReason;
 
-			if (uploadTags.getLength() > 0) {
-				final Element uploadTag = (Element) uploadTags.item(0);
+		private final Date registration;
 
-				if (uploadTag.hasAttribute("result")) {
-					if (uploadTag.getAttribute("result").equals("Success"))
-						return this;
-					else
-						throw new MediaWiki.ActionFailureException(uploadTag.getAttribute("result"));
-				} else
-					throw new MediaWiki.ResponseFormatException("expected <upload result=\"\"> attribute not present");
-			} else
-				throw new MediaWiki.ResponseFormatException("expected <upload> tag not present");
-		} finally {
-			networkLock.unlock();
-		}
-	}
+		private final boolean isMissing;
 
-	// - - - DELETE - - -
+		User(final boolean isMissing, final String userName, final Collection<String> groups, final Collection<String> rights, final long editCount, final String blockingUser, final String blockReason, final Date registration) {
+			this.isMissing = isMissing;
+			this.userName = userName;
+			this.groups = Collections.unmodifiableSet(groups instanceof TreeSet<?> ? (TreeSet<String>) groups : new TreeSet<String>(groups));
+			this.rights = Collections.unmodifiableSet(rights instanceof TreeSet<?> ? (TreeSet<String>) rights : new TreeSet<String>(rights));
+			this.editCount = editCount;
+			this.blockingUser = blockingUser;
+			this.blockReason = blockReason;
+			this.registration = registration;
+		}
 
-	/**
-	 * Starts a deletion of the given page, specified by its full name. The
-	 * returned token contains informaton used to detect conflicts when the
-	 * deletion is ended.
-	 * 
-	 * @param fullName
-	 *            The full name, including the namespace, of the page to start
-	 *            deleting. This is the name of the page as it exists before the
-	 *            move.
-	 * @return a <tt>MediaWiki.EditToken</tt> containing informaton used to
-	 *         detect conflicts when the deletion is ended
-	 * @throws IOException
-	 *             if <tt>IOException</tt> is thrown while connecting to the
-	 *             wiki or while reading the XML reply from the API
-	 * @throws MediaWiki.MediaWikiException
-	 *             if a MediaWiki API error is returned
-	 */
-	public MediaWiki.EditToken startDelete(final String fullName) throws IOException, MediaWiki.MediaWikiException {
-		final Map<String, String> getParams = paramValuesToMap("action", "query", "format", "xml", "prop", "info", "intoken", "delete", "titles", titleToAPIForm(fullName));
+		/**
+		 * Returns <code>true</code> if this <tt>User</tt> represents a missing
+		 * user on the wiki represented by the enclosing <tt>MediaWiki</tt>, or
+		 * <code>false</code> if he or she exists. If the return value is
+		 * <code>true</code>, all other methods except <code>getUserName</code>
+		 * will return undefined values.
+		 * 
+		 * @return whether this <tt>User</tt> represents a missing user on the
+		 *         wiki represented by the enclosing <tt>MediaWiki</tt>
+		 */
+		public boolean isMissing() {
+			return isMissing;
+		}
 
-		final String url = createApiGetUrl(getParams);
+		/**
+		 * Returns the username (not real name) of the user for whom this
+		 * <tt>User</tt> was created. The return value is an IP address if
+		 * <code>isAnonymous()</code> returns <code>true</code>.
+		 * 
+		 * @return the username of the user for whom this <tt>User</tt> was
+		 *         created
+		 */
+		public String getUserName() {
+			return userName;
+		}
 
-		networkLock.lock();
-		try {
-			final InputStream in = get(url);
-			final Document xml = parse(in);
-			checkError(xml);
+		/**
+		 * Returns an immutable view of the list of groups that the user for
+		 * whom this <tt>User</tt> was created user is a part of.
+		 * 
+		 * @return an immutable view of the list of groups that the user for
+		 *         whom this <tt>User</tt> was created is a part of
+		 */
+		public Collection<String> getGroups() {
+			return groups;
+		}
 
-			final NodeList pageTags = xml.getElementsByTagName("page");
+		/**
+		 * Returns an immutable view of the list of rights that the user for
+		 * whom this <tt>User</tt> was created has.
+		 * 
+		 * @return an immutable view of the list of rights that the user for
+		 *         whom this <tt>User</tt> was created has
+		 */
+		public Collection<String> getRights() {
+			return rights;
+		}
 
-			if (pageTags.getLength() > 0) {
-				final Element pageTag = (Element) pageTags.item(0);
+		/**
+		 * Returns whether the the user for whom this <tt>User</tt> was created
+		 * is in all of the specified groups. The return value is
+		 * <code>true</code> if no groups are specified.
+		 * 
+		 * @param groups
+		 *            The groups to check membership in.
+		 * @return whether the user for whom this <tt>User</tt> was created is
+		 *         in all of the specified groups
+		 */
+		public boolean isInGroups(final String... groups) {
+			for (final String group : groups) {
+				if (!this.groups.contains(group))
+					return false;
+			}
+			return true;
+		}
 
-				if (!pageTag.hasAttribute("deletetoken"))
-					throw new MediaWiki.PermissionException("delete");
+		/**
+		 * Returns whether the user for whom this <tt>User</tt> was created has
+		 * all of the specified rights. The return value is <code>true</code> if
+		 * no rights are specified.
+		 * 
+		 * @param rights
+		 *            The rights to check possession of.
+		 * @return whether the user for whom this <tt>User</tt> was created has
+		 *         all of the specified rights
+		 */
+		public boolean hasRights(final String... rights) {
+			for (final String right : rights) {
+				if (!this.rights.contains(right))
+					return false;
+			}
+			return true;
+		}
 
-				final Date lastRevision = pageTag.hasAttribute("touched") ? iso8601TimestampParser.parse(pageTag.getAttribute("touched")) : null;
-				final Date start = iso8601TimestampParser.parse(pageTag.getAttribute("starttimestamp"));
-				final String token = pageTag.getAttribute("deletetoken");
+		/**
+		 * Returns the number of edits made by the user for whom this
+		 * <tt>User</tt> was created on the wiki represented by the enclosing
+		 * <tt>MediaWiki</tt>.
+		 * 
+		 * @return the number of edits made by the user for whom this
+		 *         <tt>User</tt> was created on the wiki represented by the
+		 *         enclosing <tt>MediaWiki</tt>
+		 */
+		public long getEditCount() {
+			return editCount;
+		}
 
-				return new MediaWiki.EditToken(fullName, lastRevision, start, token);
-			} else
-				throw new MediaWiki.ResponseFormatException("expected <page> tag not found");
-		} catch (final ParseException pe) {
-			throw new MediaWiki.MediaWikiException(pe);
-		} finally {
-			networkLock.unlock();
+		/**
+		 * Returns the name of the user who blocked the user for whom this
+		 * <tt>User</tt> was created. The return value is <code>null</code> if
+		 * the user for whom this <tt>User</tt> was created is not blocked.
+		 * 
+		 * @return the name of the user who blocked the user for whom this
+		 *         <tt>User</tt> was created
+		 */
+		public String getBlockingUser() {
+			return blockingUser;
 		}
-	}
 
-	/**
-	 * Ends a deletion embodied by the specified <code>deletionToken</code>.
-	 * This deletes the page itself and all of its revisions, making them
-	 * accessible only to those who have the rights required to view
-	 * <tt>Special:Undelete</tt> on the wiki that this <tt>MediaWiki</tt>
-	 * represents.
-	 * 
-	 * @param deletionToken
-	 *            The <tt>EditToken</tt> describing the page to delete and
-	 *            containing information to detect conflicts.
-	 * @param reason
-	 *            The reason to be used to describe the deletion.
-	 * @return this <tt>MediaWiki</tt>
-	 * @throws IOException
-	 * @throws MediaWiki.MediaWikiException
-	 */
-	public MediaWiki endDelete(final MediaWiki.EditToken deletionToken, final String reason) throws IOException, MediaWiki.MediaWikiException {
-		final Map<String, String> getParams = paramValuesToMap("action", "delete", "format", "xml");
-		final Map<String, String> postParams = paramValuesToMap("title", deletionToken.getFullPageName(), "starttimestamp", iso8601TimestampParser.format(deletionToken.getStartTime()), "token", deletionToken.getTokenText(), "reason", reason);
-		if (deletionToken.getLastRevisionTime() != null) {
-			postParams.put("basetimestamp", iso8601TimestampParser.format(deletionToken.getLastRevisionTime()));
+		/**
+		 * Returns the reason why the user for whom this <tt>User</tt> was
+		 * created is blocked. The return value is <code>null</code> if the user
+		 * for whom this <tt>User</tt> was created is not blocked.
+		 * 
+		 * @return the reason why the user for whom this <tt>User</tt> was
+		 *         created is blocked
+		 */
+		public String getBlockReason() {
+			return blockReason;
 		}
 
-		final String url = createApiGetUrl(getParams);
-
-		networkLock.lock();
-		try {
-			final InputStream in = post(url, postParams);
-			final Document xml = parse(in);
-			checkError(xml);
-
-			final NodeList deleteTags = xml.getElementsByTagName("delete");
+		/**
+		 * Returns the date and time at which the user for whom this
+		 * <tt>User</tt> was created registered on the enclosing
+		 * <tt>MediaWiki</tt>. The return value is <code>null</code> if this
+		 * information is unavailable.
+		 * 
+		 * @return the date and time at which the user for whom this
+		 *         <tt>User</tt> was created registered on the enclosing
+		 *         <tt>MediaWiki</tt>
+		 */
+		public Date getRegistrationDate() {
+			return registration;
+		}
 
-			if (deleteTags.getLength() > 0)
-				return this;
-			else
-				throw new MediaWiki.ResponseFormatException("expected <delete> tag not present");
-		} finally {
-			networkLock.unlock();
+		@Override
+		public String toString() {
+			// CurrentUser["Name", groups, rights, Y edits, registered DATE,
+			// blocked by Sysop (Reason)]
+			return String.format("User[\"%s\", groups: %s, %rights: %s, %d edits%s%s]", userName, groups, rights, editCount, registration != null ? ", registered " + registration : "", blockingUser != null ? ", blocked by " + blockingUser + " (" + blockReason + ")" : "");
 		}
 	}
 
-	// - - - PROTECT - - -
+	public class RecentChange extends PageNameComponents {
+		private final String changeType;
 
-	/**
-	 * Starts a modification to the protection of the given page, specified by
-	 * its full name. The returned token contains informaton used to detect
-	 * conflicts when the (un)protection is ended.
-	 * 
-	 * @param fullName
-	 *            The full name, including the namespace, of the page to start
-	 *            (un)protecting.
-	 * @return a <tt>MediaWiki.EditToken</tt> containing informaton used to
-	 *         detect conflicts when the (un)protection is ended
-	 * @throws IOException
-	 *             if <tt>IOException</tt> is thrown while connecting to the
-	 *             wiki or while reading the XML reply from the API
-	 * @throws MediaWiki.MediaWikiException
-	 *             if a MediaWiki API error is returned
-	 */
-	public MediaWiki.EditToken startProtect(final String fullName) throws IOException, MediaWiki.MediaWikiException {
-		final Map<String, String> getParams = paramValuesToMap("action", "query", "format", "xml", "prop", "info", "intoken", "protect", "titles", titleToAPIForm(fullName));
+		private final long rcid;
 
-		final String url = createApiGetUrl(getParams);
+		private String username, comment, logType, logAction;
 
-		networkLock.lock();
-		try {
-			final InputStream in = get(url);
-			final Document xml = parse(in);
-			checkError(xml);
+		private long revid, oldRevid, oldLen, newLen, logid;
 
-			final NodeList pageTags = xml.getElementsByTagName("page");
+		private boolean isNew, bot, minor, anonymous;
 
-			if (pageTags.getLength() > 0) {
-				final Element pageTag = (Element) pageTags.item(0);
+		private Date timestamp;
 
-				if (!pageTag.hasAttribute("protecttoken"))
-					throw new MediaWiki.PermissionException("protect");
+		private List<String> logParameters;
 
-				final Date lastRevision = pageTag.hasAttribute("touched") ? iso8601TimestampParser.parse(pageTag.getAttribute("touched")) : null;
-				final Date start = iso8601TimestampParser.parse(pageTag.getAttribute("starttimestamp"));
-				final String token = pageTag.getAttribute("protecttoken");
+		/**
+		 * The revisions and pages named by the enrichers of the feed that
+		 * delivered this <tt>RecentChange</tt> for the changes delivered with
+		 * it, or <code>null</code> if there are none. These are set before the
+		 * change is delivered.
+		 */
+		private Map<Long, MediaWiki.Revision> relatedRevisions;
 
-				return new MediaWiki.EditToken(fullName, lastRevision, start, token);
-			} else
-				throw new MediaWiki.ResponseFormatException("expected <page> tag not found");
-		} catch (final ParseException pe) {
-			throw new MediaWiki.MediaWikiException(pe);
-		} finally {
-			networkLock.unlock();
-		}
-	}
+		private Map<String, MediaWiki.Page> relatedPages;
 
-	/**
-	 * Ends a protection embodied by the specified <code>protectionToken</code>.
-	 * This protects the page itself and, if cascading protection is enabled,
-	 * any page that it transcludes.
-	 * 
-	 * @param protectionToken
-	 *            The <tt>EditToken</tt> describing the page to protect and
-	 *            containing information to detect conflicts.
-	 * @param protections
-	 *            A map associating names of actions to (un)protect to the data
-	 *            associated with the (un)protection. If an action to be
-	 *            protected, it is associated with a
-	 *            <tt>MediaWiki.Protection</tt> object describing the protection
-	 *            type and expiry (the expiry being <code>null</code> to signify
-	 *            never). If an action is to be unprotected, it is
-	 *            <em>explicitly</em> associated with a
-	 *            <tt>MediaWiki.Protection</tt> of <code>null</code>. Actions
-	 *            that are to be left alone are not in this map altogether.
-	 * @param reason
-	 *            The reason to be used to describe the protection.
-	 * @param cascade
-	 *            <code>true</code> if pages that are or become transcluded in
-	 *            the page given in the <code>protectionToken</code> are to be
-	 *            protected as well; <code>false</code> if only the page given
-	 *            in the <code>protectionToken</code> is to be protected.
-	 * @return this <tt>MediaWiki</tt>
-	 * @throws IOException
-	 * @throws MediaWiki.MediaWikiException
-	 */
-	public MediaWiki endProtect(final MediaWiki.EditToken protectionToken, final Map<String, MediaWiki.Protection> protections, final String reason, final boolean cascade) throws IOException, MediaWiki.MediaWikiException {
-		final Map<String, String> getParams = paramValuesToMap("action", "protect", "format", "xml");
-		final Map<String, String> postParams = paramValuesToMap("title", protectionToken.getFullPageName(), "starttimestamp", iso8601TimestampParser.format(protectionToken.getStartTime()), "token", protectionToken.getTokenText(), "reason", reason);
-		if (cascade) {
-			postParams.put("cascade", "true");
-		}
-		if (protectionToken.getLastRevisionTime() != null) {
-			postParams.put("basetimestamp", iso8601TimestampParser.format(protectionToken.getLastRevisionTime()));
+		/**
+		 * The attributes of the <tt>&lt;rc&gt;</tt> tag from which the fields
+		 * of this <tt>RecentChange</tt> that are not yet decoded are to be
+		 * decoded, or <code>null</code> if all fields are decoded. The tag
+		 * itself is not kept, so that its reply document is not kept alive or
+		 * read from other threads.
+		 */
+		private String[] attributes;
+
+		/**
+		 * The texts of the <tt>&lt;param&gt;</tt> tags of the
+		 * <tt>&lt;rc&gt;</tt> tag of a log entry, from which
+		 * <code>logParameters</code> is to be built, or <code>null</code>.
+		 */
+		private String[] logParameterTexts;
+
+		RecentChange(final String changeType, final long namespaceID, final String title, final long pageid, final long rcid, final long revid, final long oldRevid, final String username, final long oldLen, final long newLen, final Date timestamp, final String comment, final boolean isNew, final boolean bot, final boolean minor, final boolean anonymous, final long logid, final String logType, final String logAction, final List<String> logParams) throws IOException {
+			super(title, namespaceID, pageid);
+			this.changeType = pool(changeType);
+			this.rcid = rcid;
+			this.revid = revid;
+			this.oldRevid = oldRevid;
+			this.username = pool(username);
+			this.oldLen = oldLen;
+			this.newLen = newLen;
+			this.timestamp = timestamp;
+			this.comment = comment;
+			this.isNew = isNew;
+			this.bot = bot;
+			this.minor = minor;
+			this.anonymous = anonymous;
+			this.logid = logid;
+			this.logType = pool(logType);
+			this.logAction = pool(logAction);
+			this.logParameters = logParams != null ? Collections.unmodifiableList(logParams) : null;
 		}
-		{
-			final StringBuilder paramProtections = new StringBuilder();
-			final StringBuilder paramExpiry = new StringBuilder();
-			for (final Map.Entry<String, MediaWiki.Protection> protection : protections.entrySet()) {
-				if (protection.getValue() != null) {
-					// Protecting
-					if (paramProtections.length() > 0) {
-						paramProtections.append('|');
-					}
-					paramProtections.append(protection.getKey() + "=" + protection.getValue().getLevel());
-					if (paramExpiry.length() > 0) {
-						paramExpiry.append('|');
-					}
-					paramExpiry.append(protection.getValue().getExpiry() != null ? protection.getValue().getExpiry() : "never");
-				} else {
-					// Unprotecting
-					if (paramProtections.length() > 0) {
-						paramProtections.append('|');
+
+		/**
+		 * Creates a <tt>RecentChange</tt> from an <tt>&lt;rc&gt;</tt> tag in a
+		 * reply from the API. Only the page name, page ID, change type and
+		 * recent change ID are decoded immediately; the other fields are
+		 * decoded from a copy of the tag's attributes the first time any of
+		 * them is requested.
+		 * 
+		 * @param element
+		 *            The <tt>&lt;rc&gt;</tt> tag.
+		 */
+		RecentChange(final Element element) throws IOException {
+			super(element.getAttribute("title"), Long.parseLong(element.getAttribute("ns")), Long.parseLong(element.getAttribute("pageid")));
+			this.changeType = pool(element.getAttribute("type"));
+			this.rcid = Long.parseLong(element.getAttribute("rcid"));
+			attributes = copyAttributes(element, "revid", "old_revid", "user", "comment", "oldlen", "newlen", "timestamp", "new", "bot", "minor", "anon", "logid", "logtype", "logaction");
+
+			if (element.hasAttribute("logid")) {
+				// Count the <param> children, then copy their texts.
+				int paramCount = 0;
+				for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+					if ((child.getNodeType() == Node.ELEMENT_NODE) && child.getNodeName().equals("param")) {
+						paramCount++;
 					}
-					paramProtections.append(protection.getKey() + "=");
-					if (paramExpiry.length() > 0) {
-						paramExpiry.append('|');
+				}
+				logParameterTexts = new String[paramCount];
+				paramCount = 0;
+				for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+					if ((child.getNodeType() == Node.ELEMENT_NODE) && child.getNodeName().equals("param")) {
+						logParameterTexts[paramCount++] = child.getTextContent();
 					}
-					paramExpiry.append("never");
 				}
 			}
-			postParams.put("protections", paramProtections.toString());
-			postParams.put("expiry", paramExpiry.toString());
 		}
 
-		final String url = createApiGetUrl(getParams);
+		/**
+		 * Decodes the fields of this <tt>RecentChange</tt> that are not yet
+		 * decoded, then releases the attributes they are decoded from.
+		 * 
+		 * @throws MediaWiki.IterationException
+		 *             if the tag contained an invalid timestamp or number, or
+		 *             lacked the revision IDs
+		 */
+		private synchronized void decode() throws MediaWiki.IterationException {
+			if (attributes == null)
+				return;
 
-		networkLock.lock();
-		try {
-			final InputStream in = post(url, postParams);
-			final Document xml = parse(in);
-			checkError(xml);
+			try {
+				revid = Long.parseLong(attributes[0]);
+				oldRevid = Long.parseLong(attributes[1]);
 
-			final NodeList protectTags = xml.getElementsByTagName("protect");
+				oldLen = attributes[4] != null ? Long.parseLong(attributes[4]) : 0;
+				newLen = attributes[5] != null ? Long.parseLong(attributes[5]) : 0;
 
-			if (protectTags.getLength() > 0)
-				return this;
-			else
-				throw new MediaWiki.ResponseFormatException("expected <protect> tag not present");
-		} finally {
-			networkLock.unlock();
+				timestamp = timestampToDate(attributes[6] != null ? attributes[6] : "");
+
+				if (attributes[11] != null) {
+					logid = Long.parseLong(attributes[11]);
+				}
+			} catch (final NumberFormatException e) {
+				throw new MediaWiki.IterationException(new MediaWiki.ResponseFormatException("cannot parse a number in recent change " + rcid));
+			} catch (final ParseException e) {
+				throw new MediaWiki.IterationException(e);
+			}
+
+			username = pool(attributes[2] != null ? attributes[2] : "");
+			comment = attributes[3] != null ? attributes[3] : "";
+
+			isNew = attributes[7] != null;
+			bot = attributes[8] != null;
+			minor = attributes[9] != null;
+			anonymous = attributes[10] != null;
+
+			if (attributes[11] != null) {
+				logType = pool(attributes[12] != null ? attributes[12] : "");
+				logAction = pool(attributes[13] != null ? attributes[13] : "");
+			}
+
+			if (logParameterTexts != null) {
+				logParameters = Collections.unmodifiableList(Arrays.asList(logParameterTexts));
+				logParameterTexts = null;
+			}
+
+			attributes = null;
+		}
+
+		/**
+		 * Returns the type of change embodied in this <tt>RecentChange</tt>.
+		 * This is one of the values of <tt>RecentChangeType</tt>.
+		 * 
+		 * @return the type of change embodied in this <tt>RecentChange</tt>
+		 * @see RecentChangeType
+		 */
+		public String getChangeType() {
+			return changeType;
+		}
+
+		/**
+		 * Returns the recent change ID of the change embodied in this
+		 * <tt>RecentChange</tt>. This is used for recent changes patrolling.
+		 * 
+		 * @return the recent change ID of the change embodied in this
+		 *         <tt>RecentChange</tt>
+		 */
+		public long getRcid() {
+			return rcid;
+		}
+
+		/**
+		 * Returns the revision ID of a page after the change embodied in this
+		 * <tt>RecentChange</tt>. This does not apply to log entries.
+		 * 
+		 * @return the revision ID of a page after the change embodied in this
+		 *         <tt>RecentChange</tt>
+		 */
+		public long getNewRevisionID() {
+			decode();
+			return revid;
+		}
+
+		/**
+		 * Returns the revision ID of a page before the change embodied in this
+		 * <tt>RecentChange</tt>. This does not apply to log entries and new
+		 * pages.
+		 * 
+		 * @return the revision ID of a page before the change embodied in this
+		 *         <tt>RecentChange</tt>
+		 */
+		public long getOldRevisionID() {
+			decode();
+			return oldRevid;
+		}
+
+		/**
+		 * Returns the name of the user who introduced the change embodied in
+		 * this <tt>RecentChange</tt>.
+		 * 
+		 * @return the name of the user who introduced the change embodied in
+		 *         this <tt>RecentChange</tt>
+		 */
+		public String getUserName() {
+			decode();
+			return username;
+		}
+
+		/**
+		 * Returns the comment given for the change embodied in this
+		 * <tt>RecentChange</tt>.
+		 * 
+		 * @return the comment given for the change embodied in this
+		 *         <tt>RecentChange</tt>
+		 */
+		public String getComment() {
+			decode();
+			return comment;
 		}
-	}
 
-	// - - - USER RIGHTS MODIFICATION - - -
+		/**
+		 * Returns whether the change embodied in this <tt>RecentChange</tt> has
+		 * created a new page. Essentially, this is similar to
+		 * <code>getChangeType().equals("new")</code>, but is a separate flag in
+		 * the API's result for <tt>list=recentchanges</tt>.
+		 * 
+		 * @return whether the change embodied in this <tt>RecentChange</tt> has
+		 *         created a new page
+		 */
+		public boolean isNewPage() {
+			decode();
+			return isNew;
+		}
 
-	/**
-	 * Starts a modification of the group memberships of the given user,
-	 * specified by its name.
-	 * 
-	 * @param userName
-	 *            The name of the user to modify the group membership of.
-	 * @return a <tt>MediaWiki.UserGroupsToken</tt>
-	 * @throws IOException
-	 *             if <tt>IOException</tt> is thrown while connecting to the
-	 *             wiki or while reading the XML reply from the API
-	 * @throws MediaWiki.MediaWikiException
-	 *             if a MediaWiki API error is returned
-	 */
-	public MediaWiki.UserGroupsToken startUserGroupModification(final String userName) throws IOException, MediaWiki.MediaWikiException {
-		final Map<String, String> getParams = paramValuesToMap("action", "query", "format", "xml", "list", "users", "ustoken", "userrights", "ususers", titleToAPIForm(userName));
+		/**
+		 * Returns whether the change embodied in this <tt>RecentChange</tt> is
+		 * a minor edit. This does not apply to log entries.
+		 * 
+		 * @return whether the change embodied in this <tt>RecentChange</tt> is
+		 *         a minor edit
+		 */
+		public boolean isMinorEdit() {
+			decode();
+			return minor;
+		}
 
-		final String url = createApiGetUrl(getParams);
+		/**
+		 * Returns whether the change embodied in this <tt>RecentChange</tt> is
+		 * a bot action.
+		 * 
+		 * @return whether the change embodied in this <tt>RecentChange</tt> is
+		 *         a bot action
+		 */
+		public boolean isBotAction() {
+			decode();
+			return bot;
+		}
 
-		networkLock.lock();
-		try {
-			final InputStream in = get(url);
-			final Document xml = parse(in);
-			checkError(xml);
+		/**
+		 * Returns whether the change embodied in this <tt>RecentChange</tt> was
+		 * made by an anonymous user.
+		 * 
+		 * @return whether the change embodied in this <tt>RecentChange</tt> was
+		 *         made by an anonymous user
+		 */
+		public boolean isAnonymousAction() {
+			decode();
+			return anonymous;
+		}
 
-			final NodeList userTags = xml.getElementsByTagName("user");
+		/**
+		 * Returns the date and time at which the change embodied in this
+		 * <tt>RecentChange</tt> was made.
+		 * 
+		 * @return the date and time at which the change embodied in this
+		 *         <tt>RecentChange</tt> was made
+		 */
+		public Date getTimestamp() {
+			decode();
+			return timestamp;
+		}
 
-			if (userTags.getLength() > 0) {
-				final Element userTag = (Element) userTags.item(0);
+		/**
+		 * Returns the length of a page after the change embodied in this
+		 * <tt>RecentChange</tt>. This does not apply to log entries.
+		 * 
+		 * @return the length of a page after the change embodied in this
+		 *         <tt>RecentChange</tt>
+		 */
+		public long getNewLength() {
+			decode();
+			return newLen;
+		}
 
-				if (!userTag.hasAttribute("userrightstoken"))
-					throw new MediaWiki.PermissionException("userrights");
+		/**
+		 * Returns the length of a page before the change embodied in this
+		 * <tt>RecentChange</tt>. This does not apply to log entries and new
+		 * pages.
+		 * 
+		 * @return the length a page before the change embodied in this
+		 *         <tt>RecentChange</tt>
+		 */
+		public long getOldLength() {
+			decode();
+			return oldLen;
+		}
 
-				final String token = userTag.getAttribute("userrightstoken");
+		/**
+		 * Returns the ID of the log entry representing the change embodied in
+		 * this <tt>RecentChange</tt>. This applies only to log entries.
+		 * 
+		 * @return the ID of the log entry representing the change embodied in
+		 *         this <tt>RecentChange</tt>
+		 */
+		public long getLogID() {
+			decode();
+			return logid;
+		}
 
-				return new MediaWiki.UserGroupsToken(userName, token);
-			} else
-				throw new MediaWiki.ResponseFormatException("expected <user> tag not found");
-		} finally {
-			networkLock.unlock();
+		/**
+		 * Returns the name of the log containing the log entry representing the
+		 * change embodied in this <tt>RecentChange</tt>. This applies only to
+		 * log entries.
+		 * <p>
+		 * The return value is usually drawn from the constants in
+		 * <tt>StandardLogEntryType</tt>.
+		 * 
+		 * @return the name of the log containing the log entry representing the
+		 *         change embodied in this <tt>RecentChange</tt>
+		 * @see StandardLogEntryType
+		 */
+		public String getLogType() {
+			decode();
+			return logType;
 		}
-	}
 
-	/**
-	 * Ends a modification to user group memberships embodied by the specified
-	 * <code>userGroupsToken</code>.
-	 * 
-	 * @param userGroupsToken
-	 *            The <tt>UserGroupsToken</tt> describing the user to modify the
-	 *            group membership of.
-	 * @param add
-	 *            The group(s) to make the user a member of.
-	 * @param remove
-	 *            The group(s) to remove the user from.
-	 * @param reason
-	 *            The reason to be used to describe the change.
-	 * @return this <tt>MediaWiki</tt>
-	 * @throws IOException
-	 * @throws MediaWiki.MediaWikiException
-	 */
-	public MediaWiki endUserGroupModification(final MediaWiki.UserGroupsToken userRightsToken, final Collection<String> add, final Collection<String> remove, final String reason) throws IOException, MediaWiki.MediaWikiException {
-		final Map<String, String> getParams = paramValuesToMap("action", "userrights", "format", "xml");
-		final Map<String, String> postParams = paramValuesToMap("user", userRightsToken.getUserName(), "token", userRightsToken.getTokenText(), "reason", reason);
-		{
-			final StringBuilder value = new StringBuilder();
-			for (final String group : add) {
-				if (value.length() > 0) {
-					value.append('|');
-				}
-				value.append(group);
-			}
-			if (value.length() > 0) {
-				postParams.put("add", value.toString());
-			}
-			value.setLength(0);
-			for (final String group : remove) {
-				if (value.length() > 0) {
-					value.append('|');
-				}
-				value.append(group);
-			}
-			if (value.length() > 0) {
-				postParams.put("remove", value.toString());
-			}
+		/**
+		 * Returns the name of the log action representing the change embodied
+		 * in this <tt>RecentChange</tt>. This applies only to log entries.
+		 * 
+		 * @return the name of the log action representing the change embodied
+		 *         in this <tt>RecentChange</tt>
+		 */
+		public String getLogAction() {
+			decode();
+			return logAction;
 		}
 
-		final String url = createApiGetUrl(getParams);
+		/**
+		 * Returns the log parameters attached to the change embodied in this
+		 * <tt>RecentChange</tt>. This applies only to log entries.
+		 * <p>
+		 * The returned list is not modifiable.
+		 * 
+		 * @return the log parameters attached to the change embodied in this
+		 *         <tt>RecentChange</tt>
+		 */
+		public List<String> getLogParameters() {
+			decode();
+			return logParameters;
+		}
 
-		networkLock.lock();
-		try {
-			final InputStream in = post(url, postParams);
-			final Document xml = parse(in);
-			checkError(xml);
+		/**
+		 * Returns information about a revision named by an enricher of the
+		 * <tt>RecentChangesFeed</tt> that delivered this
+		 * <tt>RecentChange</tt>, without requesting it from the wiki. The
+		 * return value is <code>null</code> if the revision is missing or was
+		 * not named.
+		 * 
+		 * @param revisionID
+		 *            The ID of the revision.
+		 * @return information about a revision named by an enricher of the
+		 *         <tt>RecentChangesFeed</tt> that delivered this
+		 *         <tt>RecentChange</tt>
+		 * @see MediaWiki.RecentChangesFeed#addEnricher(MediaWiki.RecentChangeEnricher)
+		 */
+		public MediaWiki.Revision getRelatedRevision(final long revisionID) {
+			return relatedRevisions != null ? relatedRevisions.get(revisionID) : null;
+		}
 
-			final NodeList userrightsTags = xml.getElementsByTagName("userrights");
+		/**
+		 * Returns information about a page named by an enricher of the
+		 * <tt>RecentChangesFeed</tt> that delivered this
+		 * <tt>RecentChange</tt>, without requesting it from the wiki. The
+		 * return value is <code>null</code> if the page was not named.
+		 * 
+		 * @param fullPageName
+		 *            The full name of the page, as named by the enricher.
+		 * @return information about a page named by an enricher of the
+		 *         <tt>RecentChangesFeed</tt> that delivered this
+		 *         <tt>RecentChange</tt>
+		 * @see MediaWiki.RecentChangesFeed#addEnricher(MediaWiki.RecentChangeEnricher)
+		 */
+		public MediaWiki.Page getRelatedPage(final String fullPageName) {
+			return relatedPages != null ? relatedPages.get(fullPageName) : null;
+		}
 
-			if (userrightsTags.getLength() > 0)
-				return this;
-			else
-				throw new MediaWiki.ResponseFormatException("expected <userrights> tag not present");
-		} finally {
-			networkLock.unlock();
+		@Override
+		public String toString() {
+			// RecentChange[2544102: "PAGENAME" 1337 <- 1336 (NEWSIZE <-
+			// OLDSIZE) @ DATE by USER, minor, anonymous, bot (COMMENT)]
+			decode();
+			return String.format("RecentChange[%d: %s \"%s\" %d <- %d (%d <- %d bytes) @ %s by %s%s%s%s %s]", rcid, changeType, getFullPageName(), revid, oldRevid, newLen, oldLen, timestamp, username, minor ? ", minor" : "", anonymous ? ", anonymous" : "", bot ? ", bot" : "", "(" + comment + ")");
 		}
 	}
 
-	// - - - DATA CLASSES - - -
+	/**
+	 * Information about an event in one of the logs of a wiki, as returned by
+	 * <code>getLogEvents</code>.
+	 */
+	public class LogEvent extends PageNameComponents {
+		private final long logid;
 
-	public static class CurrentUser {
-		private final boolean isAnonymous;
+		private final String type, action, username, comment;
 
-		private final long userID;
+		private final Date timestamp;
 
-		private final String userName;
+		private final List<String> parameters;
 
-		private final boolean hasNewMessages;
+		private final Map<String, String> details;
 
-		private final Set<String> groups;
+		private final boolean actionHidden;
 
-		private final Set<String> rights;
+		/**
+		 * Creates a <tt>LogEvent</tt> from an <tt>&lt;item&gt;</tt> tag in a
+		 * reply from the API. An event whose action is hidden has no page;
+		 * its page name is then empty, in the main namespace.
+		 * 
+		 * @param element
+		 *            The <tt>&lt;item&gt;</tt> tag.
+		 */
+		LogEvent(final Element element) throws IOException, ParseException {
+			super(element.getAttribute("title"), element.hasAttribute("ns") ? Long.parseLong(element.getAttribute("ns")) : StandardNamespace.MAIN, element.hasAttribute("pageid") ? Long.valueOf(element.getAttribute("pageid")) : null);
+			actionHidden = element.hasAttribute("actionhidden");
+			logid = Long.parseLong(element.getAttribute("logid"));
+			type = pool(element.getAttribute("type"));
+			action = pool(element.getAttribute("action"));
+			username = element.hasAttribute("userhidden") ? null : pool(element.getAttribute("user"));
+			comment = element.hasAttribute("commenthidden") ? null : element.getAttribute("comment");
+			timestamp = timestampToDate(element.getAttribute("timestamp"));
+
+			final List<String> params = new ArrayList<String>();
+			final Map<String, String> detailMap = new TreeMap<String, String>();
 
-		private final long editCount;
+			/*
+			 * Older wikis give unnamed parameters as <param> children. Named
+			 * details are the attributes of a child named after the log, or
+			 * of a <params> child on newer wikis.
+			 */
+			for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+				if (child.getNodeType() != Node.ELEMENT_NODE)
+					continue;
+				if (child.getNodeName().equals("param")) {
+					params.add(child.getTextContent());
+				} else if (child.getNodeName().equals(type) || child.getNodeName().equals("params")) {
+					final NamedNodeMap attributes = child.getAttributes();
+					for (int i = 0; i < attributes.getLength(); i++) {
+						detailMap.put(attributes.item(i).getNodeName(), attributes.item(i).getNodeValue());
+					}
+				}
+			}
 
-		private final String blockingUser;
+			parameters = Collections.unmodifiableList(params);
+			details = Collections.unmodifiableMap(detailMap);
+		}
 
-		private final String blockReason;
+		/**
+		 * Returns the ID of this <tt>LogEvent</tt>. Log IDs increase over time.
+		 * 
+		 * @return the ID of this <tt>LogEvent</tt>
+		 */
+		public long getLogID() {
+			return logid;
+		}
 
-		CurrentUser(final boolean isAnonymous, final String userName, final long userID, final boolean hasNewMessages, final Collection<String> groups, final Collection<String> rights, final long editCount, final String blockingUser, final String blockReason) {
-			this.userID = userID;
-			this.userName = userName;
-			this.isAnonymous = isAnonymous;
-			this.hasNewMessages = hasNewMessages;
-			this.groups = Collections.unmodifiableSet(groups instanceof TreeSet<?> ? (TreeSet<String>) groups : new TreeSet<String>(groups));
-			this.rights = Collections.unmodifiableSet(rights instanceof TreeSet<?> ? (TreeSet<String>) rights : new TreeSet<String>(rights));
-			this.editCount = editCount;
-			this.blockingUser = blockingUser;
-			this.blockReason = blockReason;
+		/**
+		 * Returns the name of the log containing this <tt>LogEvent</tt>.
+		 * <p>
+		 * The return value is usually drawn from the constants in
+		 * <tt>StandardLogEntryType</tt>.
+		 * 
+		 * @return the name of the log containing this <tt>LogEvent</tt>
+		 * @see StandardLogEntryType
+		 */
+		public String getLogType() {
+			return type;
 		}
 
 		/**
-		 * Return whether the currently logged-in user is an anonymous user,
-		 * i.e. an IP address.
+		 * Returns the name of the log action represented by this
+		 * <tt>LogEvent</tt>.
 		 * 
-		 * @return whether the currently logged-in user is an anonymous user
+		 * @return the name of the log action represented by this
+		 *         <tt>LogEvent</tt>
 		 */
-		public boolean isAnonymous() {
-			return isAnonymous;
+		public String getLogAction() {
+			return action;
 		}
 
 		/**
-		 * Returns the ID of the currently logged-in user. The return value is
-		 * undefined if <code>isAnonymous()</code> returns <code>true</code>.
+		 * Returns whether the action represented by this <tt>LogEvent</tt> is
+		 * hidden. If it is, the page it was performed on is not known, and the
+		 * full page name of this <tt>LogEvent</tt> is empty.
 		 * 
-		 * @return the ID of the currently logged-in user
+		 * @return whether the action represented by this <tt>LogEvent</tt> is
+		 *         hidden
 		 */
-		public long getUserID() {
-			return userID;
+		public boolean isActionHidden() {
+			return actionHidden;
 		}
 
 		/**
-		 * Returns the username (not real name) of the currently logged-in user.
-		 * The return value is an IP address if <code>isAnonymous()</code>
-		 * returns <code>true</code>.
+		 * Returns the name of the user who performed the action represented by
+		 * this <tt>LogEvent</tt>. The return value is <code>null</code> if the
+		 * user is hidden.
 		 * 
-		 * @return the username of the currently logged-in user
+		 * @return the name of the user who performed the action represented by
+		 *         this <tt>LogEvent</tt>
 		 */
 		public String getUserName() {
-			return userName;
+			return username;
 		}
 
 		/**
-		 * Returns whether the currently logged-in user has new messages.
+		 * Returns the timestamp of this <tt>LogEvent</tt>.
 		 * 
-		 * @return whether the currently logged-in user has new messages
+		 * @return the timestamp of this <tt>LogEvent</tt>
 		 */
-		public boolean hasNewMessages() {
-			return hasNewMessages;
+		public Date getTimestamp() {
+			return timestamp;
 		}
 
 		/**
-		 * Returns an immutable view of the list of groups that the currently
-		 * logged-in user is a part of.
+		 * Returns the comment attached to this <tt>LogEvent</tt>. The return
+		 * value is <code>null</code> if the comment is hidden.
 		 * 
-		 * @return an immutable view of the list of groups that the currently
-		 *         logged-in user is a part of
+		 * @return the comment attached to this <tt>LogEvent</tt>
 		 */
-		public Collection<String> getGroups() {
-			return groups;
+		public String getComment() {
+			return comment;
 		}
 
 		/**
-		 * Returns an immutable view of the list of rights that the currently
-		 * logged-in user has.
+		 * Returns the unnamed log parameters attached to this
+		 * <tt>LogEvent</tt>, in order.
+		 * <p>
+		 * The returned list is not modifiable.
 		 * 
-		 * @return an immutable view of the list of rights that the currently
-		 *         logged-in user has
+		 * @return the unnamed log parameters attached to this
+		 *         <tt>LogEvent</tt>
 		 */
-		public Collection<String> getRights() {
-			return rights;
+		public List<String> getLogParameters() {
+			return parameters;
 		}
 
 		/**
-		 * Returns whether the currently logged-in user is in all of the
-		 * specified groups. The return value is <code>true</code> if no groups
-		 * are specified.
+		 * Returns the named details attached to this <tt>LogEvent</tt>, such as
+		 * <code>"new_title"</code> for a page move.
+		 * <p>
+		 * The returned map is not modifiable.
 		 * 
-		 * @param groups
-		 *            The groups to check membership in.
-		 * @return whether the currently logged-in user is in all of the
-		 *         specified groups
+		 * @return the named details attached to this <tt>LogEvent</tt>
 		 */
-		public boolean isInGroups(final String... groups) {
-			for (final String group : groups) {
-				if (!this.groups.contains(group))
-					return false;
-			}
-			return true;
+		public Map<String, String> getDetails() {
+			return details;
 		}
 
+		@Override
+		public String toString() {
+			// LogEvent[4421: upload/overwrite "PAGENAME" @ DATE by USER
+			// (COMMENT)]
+			return String.format("LogEvent[%d: %s/%s \"%s\" @ %s by %s (%s)%s]", logid, type, action, getFullPageName(), timestamp, username, comment, details.isEmpty() ? "" : " " + details);
+		}
+	}
+
+	/**
+	 * An edit token returned by the various <tt>start___</tt> methods, which is
+	 * used to perform the action and detect conflicts.
+	 */
+	public class EditToken implements Serializable, ObjectInputValidation {
+		private static final long serialVersionUID = 1L;
+
+		private final String fullName;
+
+		private final Date lastRevision;
+
+		private final Date start;
+
+		private final String token;
+
 		/**
-		 * Returns whether the currently logged-in user has all of the specified
-		 * rights. The return value is <code>true</code> if no rights are
-		 * specified.
+		 * The MD5 hash of the current text of the page, as returned by
+		 * <code>md5</code>, or <code>null</code> if it is unknown.
+		 */
+		private final String contentHash;
+
+		EditToken(final String fullName, final Date lastRevision, final Date start, final String token) {
+			this(fullName, lastRevision, start, token, null);
+		}
+
+		EditToken(final String fullName, final Date lastRevision, final Date start, final String token, final String contentHash) {
+			if ((fullName == null) || (fullName.length() == 0))
+				throw new IllegalArgumentException("fullName may not be null or empty");
+			if (token == null)
+				throw new NullPointerException("token");
+			if (start == null)
+				throw new NullPointerException("start");
+			this.fullName = fullName;
+			this.lastRevision = lastRevision;
+			this.start = start;
+			this.token = token;
+			this.contentHash = contentHash;
+		}
+
+		/**
+		 * Returns the full name of the page to be edited.
 		 * 
-		 * @param rights
-		 *            The rights to check possession of.
-		 * @return whether the currently logged-in user has all of the specified
-		 *         rights
+		 * @return the full name of the page to be edited
 		 */
-		public boolean hasRights(final String... rights) {
-			for (final String right : rights) {
-				if (!this.rights.contains(right))
-					return false;
-			}
-			return true;
+		public String getFullPageName() {
+			return fullName;
 		}
 
 		/**
-		 * Returns the number of edits made by the currently logged-in user on
-		 * the wiki represented by the enclosing <tt>MediaWiki</tt>.
+		 * Returns the time at which the edit started, which is used to detect
+		 * page recreation conflicts.
 		 * 
-		 * @return the number of edits made by the currently logged-in user on
-		 *         the wiki represented by the enclosing <tt>MediaWiki</tt>
+		 * @return the time at which the edit started
 		 */
-		public long getEditCount() {
-			return editCount;
+		public Date getStartTime() {
+			return start;
 		}
 
 		/**
-		 * Returns the name of the user who blocked the currently logged-in
-		 * user. The return value is <code>null</code> if the currently
-		 * logged-in user is not blocked.
+		 * Returns the time at which the page was last edited, which is used to
+		 * detect edit conflicts.
 		 * 
-		 * @return the name of the user who blocked the currently logged-in user
+		 * @return the time at which the page was last edited
 		 */
-		public String getBlockingUser() {
-			return blockingUser;
+		public Date getLastRevisionTime() {
+			return lastRevision;
 		}
 
 		/**
-		 * Returns the reason why the currently logged-in user is blocked. The
-		 * return value is <code>null</code> if the currently logged-in user is
-		 * not blocked.
+		 * Returns the text of the token.
 		 * 
-		 * @return the reason why the currently logged-in user is blocked
+		 * @return the text of the token
 		 */
-		public String getBlockReason() {
-			return blockReason;
+		public String getTokenText() {
+			return token;
 		}
 
-		@Override
-		public String toString() {
-			// CurrentUser["Name" *new messages* (user ID X) (anonymous),
-			// groups, rights, Y edits, blocked by Sysop (Reason)]
-			return String.format("CurrentUser[\"%s\"%s (user ID %d)%s, groups: %s, %rights: %s, %d edits%s]", userName, hasNewMessages ? " *new messages*" : "", userID, isAnonymous ? " (anonymous)" : "", groups, rights, editCount, blockingUser != null ? ", blocked by " + blockingUser + " (" + blockReason + ")" : "");
+		private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+			in.registerValidation(this, 0);
+			in.defaultReadObject();
+		}
+
+		/**
+		 * This method validates deserialized objects and should generally not
+		 * be called by applications.
+		 */
+		public void validateObject() throws InvalidObjectException {
+			if (token == null)
+				throw new InvalidObjectException("token == null");
+			if (start == null)
+				throw new InvalidObjectException("start == null");
+			if ((fullName == null) || (fullName.length() == 0))
+				throw new IllegalArgumentException("fullName may not be null or empty");
 		}
 	}
 
-	public static class Namespaces {
-		private final Collection<MediaWiki.Namespace> list;
+	/**
+	 * The preparation of an edit returned by the <code>prepareEdit</code>
+	 * method, which combines an edit token with the last revision of the page
+	 * it was obtained for, or records why the edit could not be started.
+	 */
+	public class EditPreparation {
+		private final String fullPageName;
 
-		Namespaces(final Collection<MediaWiki.Namespace> list) {
-			this.list = Collections.unmodifiableCollection(list);
+		private final MediaWiki.EditToken editToken;
+
+		private final MediaWiki.Revision lastRevision;
+
+		private final MediaWiki.MediaWikiException failure;
+
+		EditPreparation(final MediaWiki.EditToken editToken, final MediaWiki.Revision lastRevision) {
+			if (editToken == null)
+				throw new NullPointerException("editToken");
+			this.fullPageName = editToken.getFullPageName();
+			this.editToken = editToken;
+			this.lastRevision = lastRevision;
+			this.failure = null;
+		}
+
+		EditPreparation(final String fullPageName, final MediaWiki.MediaWikiException failure) {
+			if (failure == null)
+				throw new NullPointerException("failure");
+			this.fullPageName = fullPageName;
+			this.editToken = null;
+			this.lastRevision = null;
+			this.failure = failure;
 		}
 
 		/**
-		 * Returns a <tt>Namespace</tt> object matching the given
-		 * <code>prefix</code> drawn from this <tt>Namespaces</tt>'s list. The
-		 * return value is <code>null</code> if there is no such namespace.
+		 * Returns the full name of the page, as it was given to be prepared.
 		 * 
-		 * @param prefix
-		 *            The prefix to retrieve a <tt>Namespace</tt> for. This
-		 *            value may not end with a colon <code>':'</code>, nor may
-		 *            it contain a page name. For example,
-		 *            <code>"User talk"</code>.
-		 * @return a <tt>Namespace</tt> object matching the given
-		 *         <code>prefix</code>
+		 * @return the full name of the page, as it was given to be prepared
 		 */
-		public MediaWiki.Namespace getNamespace(final String prefix) {
-			for (final MediaWiki.Namespace namespace : list)
-				if (namespace.matches(prefix))
-					return namespace;
-			return null;
+		public String getFullPageName() {
+			return fullPageName;
 		}
 
 		/**
-		 * Returns a <tt>Namespace</tt> object having the given <code>id</code>
-		 * drawn from this <tt>Namespaces</tt>'s list. The return value is
-		 * <code>null</code> if there is no such namespace.
+		 * Returns whether the edit was started.
 		 * 
-		 * @param id
-		 *            The id of the <tt>Namespace</tt> to retrieve.
-		 * @return a <tt>Namespace</tt> object matching the given
-		 *         <code>prefix</code>
+		 * @return whether the edit was started
 		 */
-		public MediaWiki.Namespace getNamespace(final long id) {
-			for (final MediaWiki.Namespace namespace : list)
-				if (namespace.getID() == id)
-					return namespace;
-			return null;
+		public boolean isSuccessful() {
+			return failure == null;
 		}
 
 		/**
-		 * Returns a read-only <tt>Collection</tt> enumerating the entries in
-		 * this <tt>MediaWiki.Namespaces</tt>.
+		 * Returns the reason why the edit could not be started, or
+		 * <code>null</code> if it was started. This is currently always a
+		 * <tt>MediaWiki.PermissionException</tt>.
 		 * 
-		 * @return a read-only <tt>Collection</tt> enumerating the entries in
-		 *         this <tt>MediaWiki.Namespaces</tt>
+		 * @return the reason why the edit could not be started, or
+		 *         <code>null</code> if it was started
 		 */
-		public Collection<MediaWiki.Namespace> getList() {
-			return list;
+		public MediaWiki.MediaWikiException getFailure() {
+			return failure;
 		}
 
 		/**
-		 * Returns the <tt>Namespace</tt> object designating the namespage
-		 * containing the page of the given name drawn from this
-		 * <tt>Namespaces</tt>'s list. The return value is the
-		 * <tt>Namespace</tt> object having the ID of 0, i.e. the main
-		 * namespace, if there is no such namespace.
+		 * Returns the token used to end the edit.
+		 * 
+		 * @return the token used to end the edit
+		 * @throws MediaWiki.IterationException
+		 *             if the edit could not be started; its cause is the
+		 *             exception returned by <code>getFailure</code>
+		 */
+		public MediaWiki.EditToken getEditToken() throws MediaWiki.IterationException {
+			if (failure != null)
+				throw new MediaWiki.IterationException(failure);
+			return editToken;
+		}
+
+		/**
+		 * Returns the last revision of the page to be edited, including its
+		 * content, or <code>null</code> if the page is missing or the edit
+		 * could not be started.
+		 * 
+		 * @return the last revision of the page to be edited, or
+		 *         <code>null</code> if the page is missing or the edit could
+		 *         not be started
+		 */
+		public MediaWiki.Revision getLastRevision() {
+			return lastRevision;
+		}
+
+		/**
+		 * Returns whether the page to be edited exists.
+		 * 
+		 * @return whether the page to be edited exists
+		 */
+		public boolean exists() {
+			return lastRevision != null;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("EditPreparation[\"%s\" %s]", fullPageName, failure != null ? failure.getClass().getSimpleName() + ": " + failure.getLocalizedMessage() : lastRevision != null ? "r" + lastRevision.getRevisionID() : "missing");
+		}
+	}
+
+	/**
+	 * The outcome of an administrative action on a page, returned by the
+	 * iterator of the <code>performBulkAction</code> method.
+	 */
+	public class BulkActionOutcome {
+		private final String fullPageName;
+
+		private final Exception failure;
+
+		BulkActionOutcome(final String fullPageName, final Exception failure) {
+			this.fullPageName = fullPageName;
+			this.failure = failure;
+		}
+
+		/**
+		 * Returns the full name of the page, as it was given to be acted on.
 		 * 
-		 * @param fullPageName
-		 *            The page to retrieve the <tt>Namespace</tt> of. For
-		 *            example, "Paperclip" (in the main namespace),
-		 *            "Project:Administrator requests" (in the Project
-		 *            namespace), "Inexistent namespace:Example" (in the main
-		 *            namespace, despite there being a colon in the full page
-		 *            name).
-		 * @return the <tt>Namespace</tt> object designating the namespage
-		 *         containing the page of the given name
+		 * @return the full name of the page, as it was given to be acted on
 		 */
-		public MediaWiki.Namespace getNamespaceForPage(final String fullPageName) {
-			final int colonIndex = fullPageName.indexOf(':');
-			if (colonIndex == -1)
-				return getNamespace(0L);
-			MediaWiki.Namespace result;
-			return (result = getNamespace(fullPageName.substring(0, colonIndex))) != null ? result : getNamespace(0L);
+		public String getFullPageName() {
+			return fullPageName;
 		}
 
 		/**
-		 * Returns the name of the given page after stripping it of its
-		 * namespace prefix. The return value is the page name itself if what is
-		 * before the colon is not a valid namespace for the wiki that the
-		 * enclosing <tt>MediaWiki</tt> represents.
+		 * Returns whether the action was performed on the page.
 		 * 
-		 * @param fullPageName
-		 *            The page name to strip of its namespace prefix. For
-		 *            example, "Paperclip" (in the main namespace) becomes
-		 *            "Paperclip", "Project:Administrator requests" (in the
-		 *            Project namespace) becomes "Administrator requests",
-		 *            "Inexistent namespace:Example" (in the main namespace,
-		 *            despite there being a colon in the full page name) becomes
-		 *            "Inexistent namespace:Example".
-		 * @return the name of the given page after stripping it of its
-		 *         namespace prefix
+		 * @return whether the action was performed on the page
 		 */
-		public String removeNamespacePrefix(final String fullPageName) {
-			final int colonIndex = fullPageName.indexOf(':');
-			if (colonIndex == -1)
-				return fullPageName;
-			return getNamespace(fullPageName.substring(0, colonIndex)) != null ? fullPageName.substring(colonIndex + 1) : fullPageName;
+		public boolean isSuccessful() {
+			return failure == null;
 		}
 
 		/**
-		 * Returns the name of the given page's talk page.
+		 * Returns the reason why the action was not performed on the page, or
+		 * <code>null</code> if it was performed. This is an instance of
+		 * <tt>IOException</tt> or of <tt>MediaWiki.MediaWikiException</tt>.
 		 * 
-		 * @param fullPageName
-		 *            The page name to get the talk page of.
-		 * @return the name of the given page's talk page
-		 * @throws IllegalArgumentException
-		 *             if the given page's namespace does not support having, or
-		 *             does not have, a talk namespace; if the given page's
-		 *             namespace is already a talk namespace
+		 * @return the reason why the action was not performed on the page, or
+		 *         <code>null</code> if it was performed
 		 */
-		public String getTalkPage(final String fullPageName) throws IllegalArgumentException {
-			final MediaWiki.Namespace namespace = getNamespaceForPage(fullPageName);
-			final String basePageName = removeNamespacePrefix(fullPageName);
-			if (namespace.getID() < 0 /*- Special:, Media: */)
-				throw new IllegalArgumentException("Namespace '" + namespace.getCanonicalName() + "' does not support having an associated talk namespace");
-			else if ((namespace.getID() % 2) == 1 /*- Talk namespace */)
-				throw new IllegalArgumentException("Namespace '" + namespace.getCanonicalName() + "' is a talk namespace");
-			else {
-				// Talk namespaces have the same ID as the ones they are talking
-				// about, plus 1.
-				final MediaWiki.Namespace talkNamespace = getNamespace(namespace.getID() + 1L);
-				if (talkNamespace == null)
-					throw new IllegalArgumentException("Namespace '" + namespace.getCanonicalName() + "' does not have an associated talk namespace");
-				return talkNamespace.getFullPageName(basePageName);
-			}
+		public Exception getFailure() {
+			return failure;
 		}
 
 		@Override
 		public String toString() {
-			return list.toString();
+			return String.format("BulkActionOutcome[\"%s\" %s]", fullPageName, failure == null ? "done" : failure.getClass().getSimpleName() + ": " + failure.getLocalizedMessage());
 		}
 	}
 
-	public static class Namespace {
-		private final long id;
-
-		private final String canonicalName;
-
-		private final Set<String> aliases;
-
-		private final boolean caseSensitive;
-
-		private final boolean isContent;
+	/**
+	 * The result of purging a page, returned by the iterators of the
+	 * <code>purge</code> and <code>purgePages</code> methods.
+	 */
+	public class PurgeResult {
+		private final String fullPageName;
 
-		private final boolean allowsSubpages;
+		private final boolean purged, missing, invalid;
 
-		Namespace(final long id, final String canonicalName, final Collection<String> aliases, final boolean caseSensitive, final boolean isContent, final boolean allowsSubpages) {
-			this.id = id;
-			this.canonicalName = canonicalName;
-			this.aliases = Collections.unmodifiableSet(aliases instanceof TreeSet<?> ? (TreeSet<String>) aliases : (aliases != null ? new TreeSet<String>(aliases) : new TreeSet<String>()));
-			this.caseSensitive = caseSensitive;
-			this.isContent = isContent;
-			this.allowsSubpages = allowsSubpages;
+		PurgeResult(final String fullPageName, final boolean purged, final boolean missing, final boolean invalid) {
+			this.fullPageName = fullPageName;
+			this.purged = purged;
+			this.missing = missing;
+			this.invalid = invalid;
 		}
 
 		/**
-		 * Returns the ID of this <tt>Namespace</tt>.
+		 * Returns the full name of the page, as it was given to be purged.
 		 * 
-		 * @return the ID of this <tt>Namespace</tt>
+		 * @return the full name of the page, as it was given to be purged
 		 */
-		public long getID() {
-			return id;
+		public String getFullPageName() {
+			return fullPageName;
 		}
 
 		/**
-		 * Returns the canonical name of this <tt>Namespace</tt>.
+		 * Returns whether the page was purged.
 		 * 
-		 * @return the canonical name of this <tt>Namespace</tt>
+		 * @return whether the page was purged
 		 */
-		public String getCanonicalName() {
-			return canonicalName;
+		public boolean isPurged() {
+			return purged;
 		}
 
 		/**
-		 * Returns an unmodifiable view of the aliases that can be used to refer
-		 * to this <tt>Namespace</tt>.
+		 * Returns whether the page was not purged because it is missing.
 		 * 
-		 * @return an unmodifiable view of the aliases that can be used to refer
-		 *         to this <tt>Namespace</tt>
+		 * @return whether the page was not purged because it is missing
 		 */
-		public Collection<String> getAliases() {
-			return aliases;
+		public boolean isMissing() {
+			return missing;
 		}
 
 		/**
-		 * Returns whether the first letter of the name of this
-		 * <tt>Namespace</tt> must be written with the correct case, as
-		 * specified in its canonical name. If <code>false</code>, this
-		 * <tt>Namespace</tt> allows using any case for its first letter.
+		 * Returns whether the page was not purged because its name is invalid.
 		 * 
-		 * @return whether the first letter of the name of this
-		 *         <tt>Namespace</tt> must be written with the correct case, as
-		 *         specified in its canonical name
+		 * @return whether the page was not purged because its name is invalid
 		 */
-		public boolean isCaseSensitive() {
-			return caseSensitive;
+		public boolean isInvalid() {
+			return invalid;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("PurgeResult[\"%s\" %s]", fullPageName, purged ? "purged" : missing ? "missing" : invalid ? "invalid" : "not purged");
+		}
+	}
+
+	/**
+	 * The result of watching or unwatching a page, returned by the iterators
+	 * of the <code>watch</code> and <code>unwatch</code> methods.
+	 */
+	public class WatchResult {
+		private final String fullPageName;
+
+		private final boolean unwatch, done, missing, invalid;
+
+		WatchResult(final String fullPageName, final boolean unwatch, final boolean done, final boolean missing, final boolean invalid) {
+			this.fullPageName = fullPageName;
+			this.unwatch = unwatch;
+			this.done = done;
+			this.missing = missing;
+			this.invalid = invalid;
 		}
 
 		/**
-		 * Returns whether this <tt>Namespace</tt> is a content namespace, i.e.
-		 * whether it gets added to page count statistics etc.
+		 * Returns the full name of the page, as it was given to be watched or
+		 * unwatched.
 		 * 
-		 * @return whether this <tt>Namespace</tt> is a content namespace
+		 * @return the full name of the page, as it was given to be watched or
+		 *         unwatched
 		 */
-		public boolean isContent() {
-			return isContent;
+		public String getFullPageName() {
+			return fullPageName;
 		}
 
 		/**
-		 * Returns whether this <tt>Namespace</tt> allows pages to be under
-		 * other pages, separated by slashes.
+		 * Returns whether the page was being unwatched rather than watched.
 		 * 
-		 * @return whether this <tt>Namespace</tt> allows pages to be under
-		 *         other pages
+		 * @return whether the page was being unwatched rather than watched
 		 */
-		public boolean allowsSubpages() {
-			return allowsSubpages;
+		public boolean isUnwatch() {
+			return unwatch;
 		}
 
 		/**
-		 * Returns whether the given <code>prefix</code> matches this
-		 * <tt>Namespace</tt>'s prefix.
+		 * Returns whether the page was watched or unwatched, as requested.
 		 * 
-		 * @param prefix
-		 *            The prefix to check. This value may not end with a colon
-		 *            <code>':'</code>, nor may it contain a page name.
-		 * @return whether the given <code>prefix</code> matches this
-		 *         <tt>Namespace</tt>'s prefix
+		 * @return whether the page was watched or unwatched, as requested
 		 */
-		public boolean matches(final String prefix) {
-			if (matches(canonicalName, prefix, caseSensitive))
-				return true;
-			for (final String alias : aliases)
-				if (matches(alias, prefix, caseSensitive))
-					return true;
-			return false;
+		public boolean isDone() {
+			return done;
 		}
 
 		/**
-		 * Returns the full name of a page having the given base name in this
-		 * <tt>Namespace</tt>.
+		 * Returns whether the page is missing. Missing pages can still be
+		 * watched, so that their creation appears on the watchlist.
 		 * 
-		 * @param basePageName
-		 *            Base name of the page, without a namespace prefix or
-		 *            colon.
-		 * @return the full name of a page having the given base name in this
-		 *         <tt>Namespace</tt>
+		 * @return whether the page is missing
 		 */
-		public String getFullPageName(final String basePageName) {
-			return canonicalName.length() != 0 ? canonicalName + ":" + basePageName : basePageName;
+		public boolean isMissing() {
+			return missing;
 		}
 
-		private static boolean matches(final String namespace, final String prefix, final boolean caseSensitive) {
-			if (caseSensitive)
-				// May throw NullPointerException
-				return prefix.equals(namespace);
-			else {
-				// May throw NullPointerException
-				if (namespace.length() == 0)
-					return prefix.length() == 0;
-				else if (namespace.length() == 1)
-					return (prefix.length() == 1) && (Character.toLowerCase(namespace.charAt(0)) == Character.toLowerCase(prefix.charAt(0)));
-				else
-					return (prefix.length() == namespace.length()) && (Character.toLowerCase(namespace.charAt(0)) == Character.toLowerCase(prefix.charAt(0))) && namespace.substring(1).replace(' ', '_').equals(prefix.substring(1).replace(' ', '_'));
-			}
+		/**
+		 * Returns whether the page was not watched or unwatched because its
+		 * name is invalid.
+		 * 
+		 * @return whether the page was not watched or unwatched because its
+		 *         name is invalid
+		 */
+		public boolean isInvalid() {
+			return invalid;
 		}
 
 		@Override
 		public String toString() {
-			return String.format("Namespace[\"%s\" or %s (ID %d), case sensitive: %s, content: %s, subpages allowed: %s]", canonicalName, aliases, id, caseSensitive, isContent, allowsSubpages);
+			return String.format("WatchResult[\"%s\" %s%s]", fullPageName, done ? (unwatch ? "unwatched" : "watched") : invalid ? "invalid" : unwatch ? "not unwatched" : "not watched", missing ? ", missing" : "");
 		}
 	}
 
-	public static class Statistics {
-		private final long pages, articles, edits, images, users, activeUsers, admins, jobs, views;
+	/**
+	 * The progress of a chunked upload returned by the
+	 * <code>startChunkedUpload</code> method.
+	 */
+	public class ChunkedUpload {
+		private final MediaWiki.EditToken uploadToken;
 
-		Statistics(final long pages, final long articles, final long edits, final long images, final long users, final long activeUsers, final long admins, final long jobs, final long views) {
-			this.pages = pages;
-			this.articles = articles;
-			this.edits = edits;
-			this.images = images;
-			this.users = users;
-			this.activeUsers = activeUsers;
-			this.admins = admins;
-			this.jobs = jobs;
-			this.views = views;
-		}
+		private final FileChannel content;
+
+		private final int chunkSize;
+
+		private final long size;
 
 		/**
-		 * Returns the number of pages on all namespaces of the wiki for which
-		 * this <tt>Statistics</tt> was created.
-		 * 
-		 * @return the number of pages on all namespaces of the wiki
+		 * The number of bytes accepted by the wiki so far.
 		 */
-		public long getPageCount() {
-			return pages;
-		}
+		private long offset;
 
 		/**
-		 * Returns the number of pages on all content namespaces of the wiki for
-		 * which this <tt>Statistics</tt> was created.
-		 * 
-		 * @return the number of pages on all content namespaces of the wiki
-		 * @see Namespace#isContent()
+		 * The key of the file in the wiki's upload stash, or <code>null</code>
+		 * if no part has been accepted yet.
 		 */
-		public long getContentPageCount() {
-			return articles;
+		private String fileKey;
+
+		ChunkedUpload(final MediaWiki.EditToken uploadToken, final FileChannel content, final int chunkSize) throws IOException {
+			if (uploadToken == null)
+				throw new NullPointerException("uploadToken");
+			if (content == null)
+				throw new NullPointerException("content");
+			if (chunkSize <= 0)
+				throw new IllegalArgumentException("chunkSize <= 0");
+			this.uploadToken = uploadToken;
+			this.content = content;
+			this.chunkSize = chunkSize;
+			size = content.size();
 		}
 
 		/**
-		 * Returns the number of edits that have been made in total on the wiki
-		 * for which this <tt>Statistics</tt> was created.
+		 * Returns the number of bytes accepted by the wiki so far.
 		 * 
-		 * @return the number of edits that have been made in total on the wiki
+		 * @return the number of bytes accepted by the wiki so far
 		 */
-		public long getEditCount() {
-			return edits;
+		public long getOffset() {
+			return offset;
 		}
 
 		/**
-		 * Returns the number of user accounts that have been made in total on
-		 * the wiki for which this <tt>Statistics</tt> was created.
+		 * Returns the size of the file being uploaded, in bytes.
 		 * 
-		 * @return the number of user accounts that have been made in total on
-		 *         the wiki
+		 * @return the size of the file being uploaded, in bytes
 		 */
-		public long getUserCount() {
-			return users;
+		public long getSize() {
+			return size;
 		}
 
 		/**
-		 * Returns the number of user accounts that have been active in the last
-		 * 30 days on the wiki for which this <tt>Statistics</tt> was created.
+		 * Returns the key of the file in the wiki's upload stash, or
+		 * <code>null</code> if no part has been accepted yet.
 		 * 
-		 * @return the number of user accounts that have been active in the last
-		 *         30 days on the wiki
+		 * @return the key of the file in the wiki's upload stash
 		 */
-		public long getActiveUserCount() {
-			return activeUsers;
+		public String getFileKey() {
+			return fileKey;
 		}
 
 		/**
-		 * Returns the number of images that have been uploaded on the wiki for
-		 * which this <tt>Statistics</tt> was created.
+		 * Returns whether all parts of the file have been accepted by the
+		 * wiki, so that the file can be published.
 		 * 
-		 * @return the number of images that have been uploaded on the wiki
+		 * @return whether all parts of the file have been accepted by the wiki
 		 */
-		public long getImageCount() {
-			return images;
+		public boolean isStashed() {
+			return (offset >= size) && (fileKey != null);
+		}
+	}
+
+	/**
+	 * An edit token returned by the <code>startRollback</code> method, which is
+	 * used to perform the action and detect new edits.
+	 */
+	public class RollbackToken implements Serializable, ObjectInputValidation {
+		private static final long serialVersionUID = 1L;
+
+		private final String fullName;
+
+		private final String userName;
+
+		private final String token;
+
+		RollbackToken(final String fullName, final String userName, final String token) {
+			if ((fullName == null) || (fullName.length() == 0))
+				throw new IllegalArgumentException("fullName may not be null or empty");
+			if ((userName == null) || (userName.length() == 0))
+				throw new IllegalArgumentException("userName may not be null or empty");
+			if (token == null)
+				throw new NullPointerException("token");
+			this.fullName = fullName;
+			this.userName = userName;
+			this.token = token;
 		}
 
 		/**
-		 * Returns the number of user accounts that are administrators on the
-		 * wiki for which this <tt>Statistics</tt> was created.
+		 * Returns the full name of the page to be rolled back.
 		 * 
-		 * @return the number of user accounts that are administrators on the
-		 *         wiki
+		 * @return the full name of the page to be rolled back
 		 */
-		public long getAdministratorCount() {
-			return admins;
+		public String getFullPageName() {
+			return fullName;
 		}
 
 		/**
-		 * Returns the number of jobs that are pending on the wiki for which
-		 * this <tt>Statistics</tt> was created.
+		 * Returns the name of the user who made the last revision to the page
+		 * to be rolled back, and whose edits would therefore be rolled back if
+		 * this <tt>RollbackToken</tt> were used to complete the rollback.
 		 * 
-		 * @return the number of jobs that are pending on the wiki
+		 * @return the name of the user who made the last revision to the page
+		 *         to be rolled back
 		 */
-		public long getJobQueueLength() {
-			return jobs;
+		public String getUserName() {
+			return userName;
 		}
 
 		/**
-		 * Returns the number of views for all pages on the wiki for which this
-		 * <tt>Statistics</tt> was created.
-		 * <p>
-		 * Not all wikis show this information. The return value is -1 if the
-		 * number of views is unknown.
+		 * Returns the text of the token.
 		 * 
-		 * @return the number of views for all pages on the wiki
+		 * @return the text of the token
 		 */
-		public long getViewCount() {
-			return views;
+		public String getTokenText() {
+			return token;
 		}
 
-		@Override
-		public String toString() {
-			return String.format("Statistics[pages: %d, articles: %d, edits: %d, images: %d, users: %d (%d active, %d administrators), job queue: %d%s]", pages, articles, edits, images, users, activeUsers, admins, jobs, views != -1 ? ", " + views + " total views" : ", unknown total views");
+		private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+			in.registerValidation(this, 0);
+			in.defaultReadObject();
+		}
+
+		/**
+		 * This method validates deserialized objects and should generally not
+		 * be called by applications.
+		 */
+		public void validateObject() throws InvalidObjectException {
+			if (token == null)
+				throw new InvalidObjectException("token == null");
+			if ((fullName == null) || (fullName.length() == 0))
+				throw new InvalidObjectException("fullName may not be null or empty");
+			if ((userName == null) || (userName.length() == 0))
+				throw new InvalidObjectException("userName may not be null or empty");
 		}
 	}
 
-	public static class InterwikiPrefixes {
-		private final Map<String, MediaWiki.InterwikiPrefix> map;
+	/**
+	 * A user group modification token returned by the
+	 * <code>startUserGroupModification</code> method, which is used to perform
+	 * the action and detect new edits.
+	 */
+	public class UserGroupsToken implements Serializable, ObjectInputValidation {
+		private static final long serialVersionUID = 1L;
 
-		InterwikiPrefixes(final Map<String, MediaWiki.InterwikiPrefix> map) {
-			this.map = Collections.unmodifiableMap(map);
+		private final String userName;
+
+		private final String token;
+
+		UserGroupsToken(final String userName, final String token) {
+			if ((userName == null) || (userName.length() == 0))
+				throw new IllegalArgumentException("userName may not be null or empty");
+			if (token == null)
+				throw new NullPointerException("token");
+			this.userName = userName;
+			this.token = token;
 		}
 
 		/**
-		 * Returns an <tt>InterwikiPrefix</tt> object matching the given
-		 * <code>prefix</code> drawn from this <tt>InterwikiPrefixes</tt>'s
-		 * list. The return value is <code>null</code> if there is no such
-		 * object.
+		 * Returns the name of the user whose group memberships are to be
+		 * modified.
 		 * 
-		 * @param prefix
-		 *            The prefix to retrieve an <tt>InterwikiPrefix</tt> for.
-		 *            This value may not end with a colon <code>':'</code>, nor
-		 *            may it contain a page name. For example,
-		 *            <code>"wikipedia"</code>.
-		 * @return a <tt>Namespace</tt> object matching the given
-		 *         <code>prefix</code>
+		 * @return the name of the user whose group memberships are to be
+		 *         modified
 		 */
-		public MediaWiki.InterwikiPrefix getInterwikiPrefix(final String prefix) {
-			return map.get(prefix);
+		public String getUserName() {
+			return userName;
 		}
 
 		/**
-		 * Returns the <tt>InterwikiPrefix</tt> object designating the other
-		 * wiki containing the page of the given name drawn from this
-		 * <tt>InterwikiPrefixes</tt>'s list. The return value is
-		 * <code>null</code> if there is no such other wiki, i.e. if the link
-		 * points inside the wiki that the enclosing <tt>MediaWiki</tt>
-		 * represents.
+		 * Returns the text of the token.
 		 * 
-		 * @param fullPageName
-		 *            The page to retrieve the <tt>InterwikiPrefix</tt> of. For
-		 *            example, "Paperclip" (<code>null</code>: on the active
-		 *            wiki), "Project:Administrator requests" (<code>null</code>
-		 *            : on the active wiki, in a namespace),
-		 *            "wikipedia:Internet" (an <tt>InterwikiPrefix</tt>
-		 *            describing Wikipedia: on an external wiki),
-		 *            "mw:Manual:Contents" (an <tt>InterwikiPrefix</tt>
-		 *            describing Mediawiki.org: on an external wiki in a
-		 *            namespace).
-		 * @return the <tt>InterwikiPrefix</tt> object designating the other
-		 *         wiki containing the page of the given name
+		 * @return the text of the token
 		 */
-		public MediaWiki.InterwikiPrefix getInterwikiPrefixForPage(final String fullPageName) {
-			final int colonIndex = fullPageName.indexOf(':');
-			if (colonIndex == -1)
-				return null;
-			return getInterwikiPrefix(fullPageName.substring(0, colonIndex));
+		public String getTokenText() {
+			return token;
 		}
 
-		/**
-		 * Returns the name of the given page after stripping it of its
-		 * interwiki prefix. The return value is the page name itself if what is
-		 * before the colon is not a valid interwiki prefix for the wiki that
-		 * the enclosing <tt>MediaWiki</tt> represents.
-		 * 
-		 * @param fullPageName
-		 *            The page name to strip of its interwiki prefix. For
-		 *            example, "Paperclip" (in the main namespace) becomes
-		 *            "Paperclip", "Project:Administrator requests" (in the
-		 *            Project namespace) becomes
-		 *            "Project:Administrator requests", "wikipedia:Internet" (on
-		 *            another wiki) becomes "Internet".
-		 * @return the name of the given page after stripping it of its
-		 *         namespace prefix
-		 */
-		public String removeInterwikiPrefix(final String fullPageName) {
-			final int colonIndex = fullPageName.indexOf(':');
-			if (colonIndex == -1)
-				return fullPageName;
-			return getInterwikiPrefix(fullPageName.substring(0, colonIndex)) != null ? fullPageName.substring(colonIndex + 1) : fullPageName;
+		private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+			in.registerValidation(this, 0);
+			in.defaultReadObject();
 		}
 
-		@Override
-		public String toString() {
-			return map.toString();
+		/**
+		 * This method validates deserialized objects and should generally not
+		 * be called by applications.
+		 */
+		public void validateObject() throws InvalidObjectException {
+			if (token == null)
+				throw new InvalidObjectException("token == null");
+			if ((userName == null) || (userName.length() == 0))
+				throw new InvalidObjectException("userName may not be null or empty");
 		}
 	}
 
-	public static class InterwikiPrefix {
-		private final String name;
-
-		private final String language;
-
-		private final String urlPattern;
-
-		private final boolean isLocal;
+	/**
+	 * A position in a chronological list of items, returned by the
+	 * <code>getPosition</code> method of a
+	 * <tt>MediaWiki.ResumableIterator</tt>. It consists of the timestamp of
+	 * the last item returned and the IDs of the items returned with that
+	 * timestamp, so that a list resumed from it returns neither those items
+	 * again nor skips the others made on the same second.
+	 * <p>
+	 * Instances of this class are immutable. They can be serialized to resume
+	 * a list in a later run.
+	 */
+	public static class StreamPosition implements Serializable, ObjectInputValidation {
+		private static final long serialVersionUID = 1L;
 
-		InterwikiPrefix(final String name, final String language, final String urlPattern, final boolean isLocal) {
-			this.name = name;
-			this.language = language;
-			this.urlPattern = urlPattern;
-			this.isLocal = isLocal;
-		}
+		private final Date timestamp;
 
 		/**
-		 * Returns the name of this <tt>InterwikiPrefix</tt>. This is the prefix
-		 * itself, not the name of the target wiki.
-		 * 
-		 * @return the name of this <tt>InterwikiPrefix</tt>
+		 * The IDs of the items returned with <code>timestamp</code>, in
+		 * ascending order.
 		 */
-		public String getName() {
-			return name;
-		}
+		private final long[] ids;
 
 		/**
-		 * Returns the language of the wiki targetted by this
-		 * <tt>InterwikiPrefix</tt>.
+		 * Creates a <tt>StreamPosition</tt> before the items made on the given
+		 * second, except those having the given IDs.
 		 * 
-		 * @return the language of the wiki targetted by this
-		 *         <tt>InterwikiPrefix</tt>
+		 * @param timestamp
+		 *            The timestamp of the position.
+		 * @param ids
+		 *            The IDs of the items made on that second that are before
+		 *            the position. Their meaning depends on the list.
 		 */
-		public String getLanguage() {
-			return language;
+		public StreamPosition(final Date timestamp, final long... ids) {
+			if (timestamp == null)
+				throw new NullPointerException("timestamp");
+			this.timestamp = timestamp;
+			this.ids = ids != null ? ids.clone() : new long[0];
+			Arrays.sort(this.ids);
 		}
 
 		/**
-		 * Returns the URL pattern of this <tt>InterwikiPrefix</tt>, containing
-		 * a <code>"$1"</code> placeholder where the article name goes.
+		 * Returns the timestamp of the last item before this
+		 * <tt>StreamPosition</tt>.
+		 * 
+		 * @return the timestamp of the last item before this
+		 *         <tt>StreamPosition</tt>
 		 */
-		public String getURLPattern() {
-			return urlPattern;
+		public Date getTimestamp() {
+			return timestamp;
 		}
 
 		/**
-		 * Returns whether this <tt>InterwikiPrefix</tt> refers to a wiki on the
-		 * same project (loosely defined as being controlled by the same
-		 * organisation) as the wiki that the enclosing <tt>MediaWiki</tt>
-		 * represents.
+		 * Returns the IDs of the items made on the second of this
+		 * <tt>StreamPosition</tt> that are before it, in ascending order. With
+		 * <code>getTimestamp</code>, this allows saving the position as text.
 		 * 
-		 * @return whether this <tt>InterwikiPrefix</tt> refers to a wiki on the
-		 *         same project as the wiki that the enclosing
-		 *         <tt>MediaWiki</tt> represents
+		 * @return the IDs of the items made on the second of this
+		 *         <tt>StreamPosition</tt> that are before it
 		 */
-		public boolean isLocal() {
-			return isLocal;
+		public long[] getIDs() {
+			return ids.clone();
 		}
 
 		/**
-		 * Returns the full name of a page having the given base name in a wiki
-		 * and starting with this <tt>InterwikiPrefix</tt>.
-		 * 
-		 * @param basePageName
-		 *            Base name of the page, which may contain a namespace
-		 *            prefix.
-		 * @return the full name of a page having the given base name in a wiki
-		 *         and starting with this <tt>InterwikiPrefix</tt>
+		 * Returns whether the item made at the given time with the given ID
+		 * is before this <tt>StreamPosition</tt>.
 		 */
-		public String getFullPageName(final String basePageName) {
-			return name + ":" + basePageName;
+		boolean includes(final Date itemTimestamp, final long id) {
+			final int order = itemTimestamp.compareTo(timestamp);
+			return (order < 0) || ((order == 0) && (Arrays.binarySearch(ids, id) >= 0));
 		}
 
 		/**
-		 * Returns the full URL to the interwiki resource having this
-		 * <tt>InterwikiPrefix</tt> as its prefix and the given page name. In
-		 * the case that the page name contains an interwiki prefix of its own,
-		 * it is not resolved. To resolve it, a
-		 * <code>new MediaWiki(new URL(return value).getHost(),
-		 * <i>the new wiki's script path</i>)</code> is needed.
-		 * 
-		 * @param pageName
-		 *            Name of the page, which may contain a namespace prefix or
-		 *            another interwiki prefix.
-		 * @return the full URL to the interwiki resource having this
-		 *         <tt>InterwikiPrefix</tt> as its prefix and the given page
-		 *         name
+		 * Returns the position after this one and the item made at the given
+		 * time with the given ID, which is not before this one.
 		 */
-		public String resolveURL(final String pageName) {
-			try {
-				// If $1 is at the end...
-				if (urlPattern.endsWith("$1"))
-					// Put the entire page name at the end.
-					return urlPattern.substring(0, urlPattern.length() - 2) + URLEncoder.encode(titleToDisplayForm(pageName), "UTF-8");
-				else {
-					/*
-					 * Not at the end. Put the first colon-separated token where
-					 * $1 is, and put the rest of the page at the end. (For
-					 * Wikia's c:wikiname:Page thing.)
-					 */
-					final int colonIndex = pageName.indexOf(':');
-					if (colonIndex == -1)
-						return urlPattern.replaceAll("\\$1", Matcher.quoteReplacement(URLEncoder.encode(pageName, "UTF-8")));
-					else
-						return urlPattern.replaceAll("\\$1", Matcher.quoteReplacement(pageName.substring(0, colonIndex))) + URLEncoder.encode(titleToDisplayForm(pageName.substring(colonIndex + 1)), "UTF-8");
-				}
-			} catch (final UnsupportedEncodingException shouldNeverHappen) {
-				throw new InternalError("UTF-8 is not supported by this Java VM");
+		MediaWiki.StreamPosition after(final Date itemTimestamp, final long id) {
+			if (!itemTimestamp.equals(timestamp))
+				return new MediaWiki.StreamPosition(itemTimestamp, id);
+			if (Arrays.binarySearch(ids, id) >= 0)
+				return this;
+			final long[] newIDs = new long[ids.length + 1];
+			System.arraycopy(ids, 0, newIDs, 0, ids.length);
+			newIDs[ids.length] = id;
+			return new MediaWiki.StreamPosition(timestamp, newIDs);
+		}
+
+		private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+			in.registerValidation(this, 0);
+			in.defaultReadObject();
+		}
+
+		/**
+		 * This method validates deserialized objects and should generally not
+		 * be called by applications.
+		 */
+		public void validateObject() throws InvalidObjectException {
+			if (timestamp == null)
+				throw new InvalidObjectException("timestamp == null");
+			if (ids == null)
+				throw new InvalidObjectException("ids == null");
+			for (int i = 1; i < ids.length; i++) {
+				if (ids[i - 1] > ids[i])
+					throw new InvalidObjectException("ids not in ascending order");
 			}
 		}
 
 		@Override
 		public String toString() {
-			// InterwikiPrefix["Name" -> <URL>, local: true, language: English
-			return String.format("InterwikiPrefix[\"%s\" -> <%s>, local: %s%s]", name, urlPattern, isLocal, language != null ? ", language prefix: " + language : "");
+			return String.format("StreamPosition[%s after %s]", dateToISO8601(timestamp), Arrays.toString(ids));
 		}
 	}
 
-	public abstract class PageNameComponents {
+	// - - - ENUMS AND ENUM-LIKE CLASSES - - -
+
+	/**
+	 * Useful constants for protection actions. These describe actions that are
+	 * prohibited to users who are not in certain groups.
+	 */
+	public static class ProtectionAction {
 		/**
-		 * Page ID. If unknown, this field contains <code>null</code>.
+		 * Protection against creation.
 		 */
-		private final Long pageID;
+		public static final String CREATE = "create";
 
 		/**
-		 * Namespace ID.
+		 * Protection against edition.
 		 */
-		private final long namespaceID;
+		public static final String EDIT = "edit";
 
 		/**
-		 * Namespace.
+		 * Protection against movement.
 		 */
-		private final MediaWiki.Namespace namespace;
+		public static final String MOVE = "move";
 
 		/**
-		 * Base name of the page.
+		 * Protection against uploads (in the <tt>File</tt> namespace).
 		 */
-		private final String baseName;
+		public static final String UPLOAD = "upload";
+	}
 
+	/**
+	 * Useful constants for protection levels. These describe the groups that
+	 * users must belong to in order to perform protected actions.
+	 */
+	public static class ProtectionLevel {
 		/**
-		 * Full name of the page.
+		 * Actions require that users be autoconfirmed.
+		 * <p>
+		 * The definition of autoconfirmed varies from wiki to wiki, but
+		 * generally requires some number of edits or days since the creation of
+		 * a user account.
 		 */
-		private final String fullName;
+		public static final String AUTOCONFIRMED_USERS = "autoconfirmed";
 
 		/**
-		 * Initialises an instance of <tt>PageNameComponents</tt> from a full
-		 * page name. The base page name, namespace and namespace ID are filled
-		 * in after getting the list of namespaces from the wiki represented by
-		 * the enclosing <tt>MediaWiki</tt>. The page ID is considered to be
-		 * unknown.
-		 * 
-		 * @param fullPageName
-		 *            Full page name, including namespace prefix.
-		 * @throws IOException
-		 *             if gathering the list of namespaces from the wiki
-		 *             represented by the enclosing <tt>MediaWiki</tt> raises
-		 *             <tt>IOException</tt>
+		 * Actions require that users be sysops.
 		 */
-		public PageNameComponents(final String fullPageName) throws IOException {
-			this(fullPageName, (Long) null);
-		}
+		public static final String SYSOPS = "sysop";
+	}
 
+	/**
+	 * Useful constants for request classes, which are paced separately by the
+	 * <tt>MediaWiki.RequestGovernor</tt> of a <tt>MediaWiki</tt>.
+	 */
+	public static class RequestClass {
 		/**
-		 * Initialises an instance of <tt>PageNameComponents</tt> from a full
-		 * page name and a base page name. The namespace and namespace ID are
-		 * filled in after getting the list of namespaces from the wiki
-		 * represented by the enclosing <tt>MediaWiki</tt>. The page ID is
-		 * considered to be unknown.
-		 * 
-		 * @param fullPageName
-		 *            Full page name, including namespace prefix.
-		 * @param basePageName
-		 *            Base page name, excluding namespace prefix.
-		 * @throws IOException
-		 *             if gathering the list of namespaces from the wiki
-		 *             represented by the enclosing <tt>MediaWiki</tt> raises
-		 *             <tt>IOException</tt>
+		 * Requests that only read from the wiki. These are sent with GET.
 		 */
-		public PageNameComponents(final String fullPageName, final String basePageName) throws IOException {
-			this(fullPageName, basePageName, (Long) null);
-		}
+		public static final String READ = "read";
 
 		/**
-		 * Initialises an instance of <tt>PageNameComponents</tt> from a full
-		 * page name and namespace ID. The base page name and namespace are
-		 * filled in after getting the list of namespaces from the wiki
-		 * represented by the enclosing <tt>MediaWiki</tt>. The page ID is
-		 * considered to be unknown.
-		 * 
-		 * @param fullPageName
-		 *            Full page name, including namespace prefix.
-		 * @param namespaceID
-		 *            ID of the namespace containing the page.
-		 * @throws IOException
-		 *             if gathering the list of namespaces from the wiki
-		 *             represented by the enclosing <tt>MediaWiki</tt> raises
-		 *             <tt>IOException</tt>
+		 * Requests that write to the wiki, such as edits, moves, deletions and
+		 * protections. These are sent with POST.
 		 */
-		public PageNameComponents(final String fullPageName, final long namespaceID) throws IOException {
-			this(fullPageName, namespaceID, (Long) null);
-		}
+		public static final String EDIT = "edit";
 
 		/**
-		 * Initialises an instance of <tt>PageNameComponents</tt> from a full
-		 * page name and a base page name. The namespace is filled in after
-		 * getting the list of namespaces from the wiki represented by the
-		 * enclosing <tt>MediaWiki</tt>. The page ID is considered to be
-		 * unknown.
-		 * 
-		 * @param fullPageName
-		 *            Full page name, including namespace prefix.
-		 * @param basePageName
-		 *            Base page name, excluding namespace prefix.
-		 * @param namespaceID
-		 *            ID of the namespace containing the page.
-		 * @throws IOException
-		 *             if gathering the list of namespaces from the wiki
-		 *             represented by the enclosing <tt>MediaWiki</tt> raises
-		 *             <tt>IOException</tt>
+		 * File uploads.
 		 */
-		public PageNameComponents(final String fullPageName, final String basePageName, final long namespaceID) throws IOException {
-			this(fullPageName, basePageName, namespaceID, (Long) null);
-		}
+		public static final String UPLOAD = "upload";
 
 		/**
-		 * Initialises an instance of <tt>PageNameComponents</tt> from a full
-		 * page name. The base page name, namespace and namespace ID are filled
-		 * in after getting the list of namespaces from the wiki represented by
-		 * the enclosing <tt>MediaWiki</tt>.
-		 * 
-		 * @param fullPageName
-		 *            Full page name, including namespace prefix.
-		 * @param pageID
-		 *            Page ID, or <code>null</code> if not known.
-		 * @throws IOException
-		 *             if gathering the list of namespaces from the wiki
-		 *             represented by the enclosing <tt>MediaWiki</tt> raises
-		 *             <tt>IOException</tt>
+		 * Purges of the cached rendering of pages. These are sent with POST.
 		 */
-		public PageNameComponents(final String fullPageName, final Long pageID) throws IOException {
-			fullName = fullPageName;
-			final MediaWiki.Namespaces namespaces = getNamespaces();
-			baseName = namespaces.removeNamespacePrefix(fullPageName);
-			namespace = namespaces.getNamespaceForPage(fullPageName);
-			namespaceID = namespace.getID();
-			this.pageID = pageID;
-		}
+		public static final String PURGE = "purge";
+	}
 
+	/**
+	 * Useful constants for recent change types.
+	 */
+	public static class RecentChangeType {
 		/**
-		 * Initialises an instance of <tt>PageNameComponents</tt> from a full
-		 * page name and a base page name. The namespace and namespace ID are
-		 * filled in after getting the list of namespaces from the wiki
-		 * represented by the enclosing <tt>MediaWiki</tt>.
-		 * 
-		 * @param fullPageName
-		 *            Full page name, including namespace prefix.
-		 * @param basePageName
-		 *            Base page name, excluding namespace prefix.
-		 * @param pageID
-		 *            Page ID, or <code>null</code> if not known.
-		 * @throws IOException
-		 *             if gathering the list of namespaces from the wiki
-		 *             represented by the enclosing <tt>MediaWiki</tt> raises
-		 *             <tt>IOException</tt>
+		 * The recent change is a regular page edit.
 		 */
-		public PageNameComponents(final String fullPageName, final String basePageName, final Long pageID) throws IOException {
-			fullName = fullPageName;
-			final MediaWiki.Namespaces namespaces = getNamespaces();
-			baseName = basePageName;
-			namespace = namespaces.getNamespaceForPage(fullPageName);
-			namespaceID = namespace.getID();
-			this.pageID = pageID;
-		}
+		public static final String EDIT = "edit";
 
 		/**
-		 * Initialises an instance of <tt>PageNameComponents</tt> from a full
-		 * page name and namespace ID. The base page name and namespace are
-		 * filled in after getting the list of namespaces from the wiki
-		 * represented by the enclosing <tt>MediaWiki</tt>.
-		 * 
-		 * @param fullPageName
-		 *            Full page name, including namespace prefix.
-		 * @param namespaceID
-		 *            ID of the namespace containing the page.
-		 * @param pageID
-		 *            Page ID, or <code>null</code> if not known.
-		 * @throws IOException
-		 *             if gathering the list of namespaces from the wiki
-		 *             represented by the enclosing <tt>MediaWiki</tt> raises
-		 *             <tt>IOException</tt>
+		 * The recent change is a page creation.
 		 */
-		public PageNameComponents(final String fullPageName, final long namespaceID, final Long pageID) throws IOException {
-			fullName = fullPageName;
-			final MediaWiki.Namespaces namespaces = getNamespaces();
-			baseName = namespaces.removeNamespacePrefix(fullPageName);
-			namespace = namespaces.getNamespace(namespaceID);
-			this.namespaceID = namespaceID;
-			this.pageID = pageID;
-		}
+		public static final String NEW_PAGE = "new";
 
 		/**
-		 * Initialises an instance of <tt>PageNameComponents</tt> from a full
-		 * page name and a base page name. The namespace is filled in after
-		 * getting the list of namespaces from the wiki represented by the
-		 * enclosing <tt>MediaWiki</tt>.
-		 * 
-		 * @param fullPageName
-		 *            Full page name, including namespace prefix.
-		 * @param basePageName
-		 *            Base page name, excluding namespace prefix.
-		 * @param namespaceID
-		 *            ID of the namespace containing the page.
-		 * @param pageID
-		 *            Page ID, or <code>null</code> if not known.
-		 * @throws IOException
-		 *             if gathering the list of namespaces from the wiki
-		 *             represented by the enclosing <tt>MediaWiki</tt> raises
-		 *             <tt>IOException</tt>
+		 * The recent change is a log entry.
+		 */
+		public static final String LOG_ENTRY = "log";
+	}
+
+	/**
+	 * Useful constants for log entry types. These do not form an exhaustive
+	 * list; you may encounter log events that have another name.
+	 */
+	public static class StandardLogEntryType {
+		/**
+		 * The log entry is from the block log. Possible actions are
+		 * <code>"block"</code>, <code>"unblock"</code> and
+		 * <code>"reblock"</code>.
+		 */
+		public static final String BLOCK = "block";
+
+		/**
+		 * The log entry is from the protection log. Possible actions are
+		 * <code>"protect"</code>, <code>"modify"</code>,
+		 * <code>"unprotect"</code> and <code>"move_prot"</code>.
+		 */
+		public static final String PROTECTION = "protect";
+
+		/**
+		 * The log entry is from the user rights log. Possible actions are
+		 * <code>"rights"</code> and <code>"autopromote"</code>.
+		 */
+		public static final String USER_RIGHTS = "rights";
+
+		/**
+		 * The log entry is from the upload log. Possible actions are
+		 * <code>"upload"</code>, <code>"overwrite"</code> and
+		 * <code>"revert"</code>.
+		 */
+		public static final String UPLOAD = "upload";
+
+		/**
+		 * The log entry is from the import log. Possible actions are
+		 * <code>"upload"</code> and <code>"interwiki"</code>.
+		 */
+		public static final String IMPORT = "import";
+
+		/**
+		 * The log entry is from the move log. Possible actions are
+		 * <code>"move"</code> and <code>"move_redir"</code>.
+		 */
+		public static final String MOVE = "move";
+
+		/**
+		 * The log entry is from the deletion log. Possible actions are
+		 * <code>"delete"</code>, <code>"restore"</code>,
+		 * <code>"revision"</code> and <code>"event"</code>.
 		 */
-		public PageNameComponents(final String fullPageName, final String basePageName, final long namespaceID, final Long pageID) throws IOException {
-			fullName = fullPageName;
-			final MediaWiki.Namespaces namespaces = getNamespaces();
-			baseName = basePageName;
-			namespace = namespaces.getNamespace(namespaceID);
-			this.namespaceID = namespaceID;
-			this.pageID = pageID;
-		}
+		public static final String DELETION = "delete";
 
 		/**
-		 * Returns the full page name for which this <tt>PageNameComponents</tt>
-		 * was created. The full page name consists of the namespace's prefix
-		 * followed by a colon, if it is not the <i>main namespace</i>, followed
-		 * by the base page name.
-		 * 
-		 * @return the full page name for which this <tt>PageNameComponents</tt>
-		 *         was created
-		 * @see #getBasePageName()
-		 * @see MediaWiki.StandardNamespace#MAIN
+		 * The log entry is from the patrol log. The only possible action is
+		 * <code>"patrol"</code>.
 		 */
-		public String getFullPageName() {
-			return fullName;
-		}
+		public static final String PATROL = "patrol";
 
 		/**
-		 * Returns the base page name for which this <tt>PageNameComponents</tt>
-		 * was created.
-		 * 
-		 * @return the base page name for which this <tt>PageNameComponents</tt>
-		 *         was created
+		 * The log entry is from the abuse filter log. Possible actions are
+		 * <code>"modify"</code> and <code>"hit"</code>.
 		 */
-		public String getBasePageName() {
-			return baseName;
-		}
+		public static final String ABUSE_FILTER = "abusefilter";
 
 		/**
-		 * Returns the namespace containing the page for which this
-		 * <tt>PageNameComponents</tt> was created.
-		 * 
-		 * @return the namespace containing the page for which this
-		 *         <tt>PageNameComponents</tt> was created
+		 * The log entry is from the user creation log. Possible actions are
+		 * <code>"newusers"</code>, <code>"create"</code>,
+		 * <code>"create2"</code> and <code>"autocreate"</code>.
 		 */
-		public MediaWiki.Namespace getNamespace() {
-			return namespace;
-		}
+		public static final String USER_CREATION = "newusers";
+	}
 
+	/**
+	 * Useful constants for standard namespaces. These designate namespace IDs
+	 * that are standard in many MediaWiki installations.
+	 */
+	public static class StandardNamespace {
 		/**
-		 * Returns the ID of the namespace containing the page for which this
-		 * <tt>PageNameComponents</tt> was created.
-		 * <p>
-		 * This is a convenience method for <code>getNamespace().getID()</code>.
-		 * 
-		 * @return the ID of the namespace containing the page for which this
-		 *         <tt>PageNameComponents</tt> was created
+		 * The namespace identifier for the Media namespace.
 		 */
-		public long getNamespaceID() {
-			return namespaceID;
-		}
+		public static final long MEDIA = -2;
 
 		/**
-		 * Returns the ID of the page for which this <tt>PageNameComponents</tt>
-		 * was created.
-		 * <p>
-		 * The ID may be unknown because it was not provided by the API reply
-		 * that created this <tt>PageNameComponents</tt>. In that case, the
-		 * return value is <code>null</code>, and one may get the page ID using
-		 * <code>getPageInformation</code> on the enclosing <tt>MediaWiki</tt>
-		 * instance.
-		 * 
-		 * @return the ID of the page for which this <tt>PageNameComponents</tt>
-		 *         was created, or <code>null</code> if it is unknown
+		 * The namespace identifier for the Special namespace.
 		 */
-		public Long getPageID() {
-			return pageID;
-		}
+		public static final long SPECIAL = -1;
 
-		@Override
-		public String toString() {
-			return String.format("PageNameComponents[\"%s\"%s]", fullName, pageID != null ? " (ID " + pageID + ")" : "");
-		}
-	}
+		/**
+		 * The namespace identifier for the main namespace.
+		 */
+		public static final long MAIN = 0;
 
-	public class Page extends PageNameComponents {
-		private final boolean missing;
+		/**
+		 * The namespace identifier for the Talk namespace, which contains talk
+		 * pages for the main namespace.
+		 */
+		public static final long TALK = 1;
 
-		private final Date lastEdit;
+		/**
+		 * The namespace identifier for the User namespace.
+		 */
+		public static final long USER = 2;
 
-		private final long lastRevisionID;
+		/**
+		 * The namespace identifier for the User talk namespace.
+		 */
+		public static final long USER_TALK = 3;
 
-		private final long views;
+		/**
+		 * The namespace identifier for the Project namespace.
+		 */
+		public static final long PROJECT = 4;
 
-		private final long length;
+		/**
+		 * The namespace identifier for the Project talk namespace.
+		 */
+		public static final long PROJECT_TALK = 5;
 
-		private final boolean isRedirect;
+		/**
+		 * The namespace identifier for the File namespace.
+		 */
+		public static final long FILE = 6;
 
-		private final boolean isNew;
+		/**
+		 * The namespace identifier for the File talk namespace.
+		 */
+		public static final long FILE_TALK = 7;
 
-		private final Map<String, MediaWiki.Protection> protections;
+		/**
+		 * The namespace identifier for the MediaWiki namespace, which contains
+		 * system messages.
+		 */
+		public static final long MEDIAWIKI = 8;
 
-		Page(final boolean missing, final long pageID, final String fullName, final Date lastEdit, final long namespaceID, final long lastRevisionID, final long views, final long length, final boolean isRedirect, final boolean isNew, final Map<String, MediaWiki.Protection> protections) throws IOException {
-			super(fullName, namespaceID, missing ? null : pageID);
-			this.missing = missing;
-			this.lastEdit = lastEdit;
-			this.lastRevisionID = lastRevisionID;
-			this.views = views;
-			this.length = length;
-			this.isRedirect = isRedirect;
-			this.isNew = isNew;
-			this.protections = Collections.unmodifiableMap(protections);
-		}
+		/**
+		 * The namespace identifier for the MediaWiki talk namespace.
+		 */
+		public static final long MEDIAWIKI_TALK = 9;
 
 		/**
-		 * Returns <code>true</code> if the page designated by this
-		 * <tt>Page</tt> is missing, or <code>false</code> if it exists. Most
-		 * other attributes will also be missing if this is the case; however,
-		 * information about page creation protection (if applicable), and the
-		 * namespace and title of the page will still be available.
-		 * 
-		 * @return <code>true</code> if the page designated by this
-		 *         <tt>Page</tt> is missing; <code>false</code> if it exists
+		 * The namespace identifier for the Template namespace.
 		 */
-		public boolean isMissing() {
-			return missing;
-		}
+		public static final long TEMPLATE = 10;
 
 		/**
-		 * Returns the date and time at which the page designated by this
-		 * <tt>Page</tt> was last edited. The return value is <code>null</code>
-		 * if the page is missing.
-		 * 
-		 * @return the date and time at which the page designated by this
-		 *         <tt>Page</tt> was last edited
-		 * @see #isMissing()
+		 * The namespace identifier for the Template talk namespace.
 		 */
-		public Date getLastEdit() {
-			return lastEdit;
-		}
+		public static final long TEMPLATE_TALK = 11;
 
 		/**
-		 * Returns the ID of the last revision made to the page designated by
-		 * this <tt>Page</tt>. The return value is -1 if the page is missing.
-		 * 
-		 * @return the ID of the last revision made to the page designated by
-		 *         this <tt>Page</tt>
-		 * @see #isMissing()
+		 * The namespace identifier for the Help namespace.
 		 */
-		public long getLastRevisionID() {
-			return lastRevisionID;
-		}
+		public static final long HELP = 12;
 
 		/**
-		 * Returns the number of times the page designated by this <tt>Page</tt>
-		 * has been viewed. The return value is -1 if the page is missing, or if
-		 * the wiki represented by the enclosing <tt>MediaWiki</tt> does not
-		 * give this information.
-		 * 
-		 * @return the number of times the page designated by this <tt>Page</tt>
-		 *         has been viewed
+		 * The namespace identifier for the Help talk namespace.
 		 */
-		public long getViewCount() {
-			return views;
-		}
+		public static final long HELP_TALK = 13;
 
 		/**
-		 * Returns the length the page designated by this <tt>Page</tt> as of
-		 * its last revision. The return value is 0 if the page is missing.
-		 * 
-		 * @return the length the page designated by this <tt>Page</tt> as of
-		 *         its last revision
-		 * @see #isMissing()
+		 * The namespace identifier for the Category namespace.
 		 */
-		public long getLength() {
-			return length;
+		public static final long CATEGORY = 14;
+
+		/**
+		 * The namespace identifier for the Category talk namespace.
+		 */
+		public static final long CATEGORY_TALK = 15;
+	}
+
+	// - - - HELPER METHODS FOR DATA FORMAT CONVERSION - - -
+
+	/**
+	 * Returns the given text, encoded as UTF-8 and compressed with
+	 * <tt>Deflater</tt>, in a direct <tt>ByteBuffer</tt> whose position is 0
+	 * and whose limit is the length of the compressed data.
+	 * 
+	 * @param text
+	 *            The text to compress.
+	 * @return the given text, encoded as UTF-8 and compressed with
+	 *         <tt>Deflater</tt>, in a direct <tt>ByteBuffer</tt>
+	 */
+	protected static ByteBuffer compress(final String text) {
+		try {
+			return compress(new StringReader(text));
+		} catch (final IOException shouldNeverHappen) {
+			// StringReader does not throw IOException.
+			throw new InternalError("IOException while compressing from memory");
+		}
+	}
+
+	/**
+	 * Returns the text read from the given <tt>Reader</tt> up to its end,
+	 * encoded as UTF-8 and compressed with <tt>Deflater</tt> as it is read,
+	 * in a direct <tt>ByteBuffer</tt> whose position is 0 and whose limit is
+	 * the length of the compressed data. The <tt>Reader</tt> is not closed.
+	 * 
+	 * @param text
+	 *            The <tt>Reader</tt> to read the text to compress from.
+	 * @return the text, encoded as UTF-8 and compressed with
+	 *         <tt>Deflater</tt>, in a direct <tt>ByteBuffer</tt>
+	 * @throws IOException
+	 *             if <tt>IOException</tt> is thrown while reading the text
+	 */
+	protected static ByteBuffer compress(final Reader text) throws IOException {
+		final ByteArrayOutputStream compressed = new ByteArrayOutputStream(4096);
+		final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			final Writer out = new OutputStreamWriter(new DeflaterOutputStream(compressed, deflater), "UTF-8");
+			final char[] buffer = new char[4096];
+			int n;
+			while ((n = text.read(buffer)) != -1) {
+				out.write(buffer, 0, n);
+			}
+			out.close();
+		} finally {
+			deflater.end();
+		}
+		final ByteBuffer result = ByteBuffer.allocateDirect(compressed.size());
+		result.put(compressed.toByteArray());
+		result.flip();
+		return result;
+	}
+
+	private static final Pattern sectionHeadingRegex = Pattern.compile("^(=+)[^\\n]*[^=\\n][^\\n]*?(=+)[ \\t]*$", Pattern.MULTILINE);
+
+	private static final Pattern sectionUnsafeRegex = Pattern.compile("<(?:!--|nowiki|pre|includeonly|noinclude|onlyinclude|source|syntaxhighlight|math|gallery)", Pattern.CASE_INSENSITIVE);
+
+	/**
+	 * Splits the given wikitext into sections. The first element of the
+	 * return value is the text before the first heading; each subsequent
+	 * element starts with a heading and extends up to the next heading of any
+	 * level. Concatenating the elements yields the given wikitext.
+	 * 
+	 * @param text
+	 *            The wikitext to split.
+	 * @return the given wikitext split into sections
+	 */
+	protected static List<String> splitSections(final String text) {
+		final List<String> result = new ArrayList<String>();
+		final Matcher m = sectionHeadingRegex.matcher(text);
+		int start = 0;
+		while (m.find()) {
+			result.add(text.substring(start, m.start()));
+			start = m.start();
+		}
+		result.add(text.substring(start));
+		return result;
+	}
+
+	/**
+	 * Returns the level of the heading that starts the given section, as
+	 * returned by <code>splitSections</code>, or 0 if the section does not
+	 * start with a heading.
+	 * 
+	 * @param section
+	 *            The section to examine.
+	 * @return the level of the heading that starts the given section
+	 */
+	protected static int getHeadingLevel(final String section) {
+		final int lineEnd = section.indexOf('\n');
+		final Matcher m = sectionHeadingRegex.matcher(lineEnd != -1 ? section.substring(0, lineEnd) : section);
+		if (!m.lookingAt())
+			return 0;
+		return Math.min(Math.min(m.group(1).length(), m.group(2).length()), 6);
+	}
+
+	private static CharSequence rtrim(final CharSequence text) {
+		int end = text.length();
+		while ((end > 0) && (" \t\n\r\0\u000B".indexOf(text.charAt(end - 1)) != -1)) {
+			end--;
+		}
+		return text.subSequence(0, end);
+	}
+
+	private static boolean isBlankLineTerminated(final CharSequence section) {
+		final CharSequence trimmed = rtrim(section);
+		return (section.length() == trimmed.length() + 2) && (section.charAt(section.length() - 2) == '\n') && (section.charAt(section.length() - 1) == '\n');
+	}
+
+	/**
+	 * Returns the MD5 hash of the given text, encoded as UTF-8, in lowercase
+	 * hexadecimal. This is the form accepted by the <tt>md5</tt> parameter of
+	 * <tt>action=edit</tt>.
+	 * 
+	 * @param text
+	 *            The text to hash.
+	 * @return the MD5 hash of the given text, encoded as UTF-8, in lowercase
+	 *         hexadecimal
+	 */
+	protected static String md5(final String text) {
+		final byte[] hash;
+		try {
+			hash = MessageDigest.getInstance("MD5").digest(text.getBytes("UTF-8"));
+		} catch (final NoSuchAlgorithmException shouldNeverHappen) {
+			throw new InternalError("MD5 is not supported by this Java VM");
+		} catch (final UnsupportedEncodingException shouldNeverHappen) {
+			throw new InternalError("UTF-8 is not supported by this Java VM");
 		}
+		return toHex(hash);
+	}
 
-		/**
-		 * Returns <code>true</code> if the page designated by this
-		 * <tt>Page</tt> exists and is a redirect to another page, and
-		 * <code>false</code> otherwise.
-		 * <p>
-		 * Redirect pages start with <code>"#REDIRECT"</code> followed by a
-		 * wikilink to the targetted page.
-		 * 
-		 * @return <code>true</code> if the page designated by this
-		 *         <tt>Page</tt> exists and is a redirect to another page, and
-		 *         <code>false</code> otherwise
-		 */
-		public boolean isRedirect() {
-			return isRedirect;
+	/**
+	 * Returns the SHA-1 hash of the content of the given channel, in
+	 * lowercase hexadecimal. This is the form used by the wiki for the hashes
+	 * of files. The content is read from the channel's current position to its
+	 * end through a direct buffer.
+	 * 
+	 * @param content
+	 *            The channel to hash the content of.
+	 * @return the SHA-1 hash of the content of the given channel, in lowercase
+	 *         hexadecimal
+	 * @throws IOException
+	 *             if <tt>IOException</tt> is thrown while reading from the
+	 *             channel
+	 */
+	public static String sha1(final ReadableByteChannel content) throws IOException {
+		final MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (final NoSuchAlgorithmException shouldNeverHappen) {
+			throw new InternalError("SHA-1 is not supported by this Java VM");
+		}
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(65536);
+		while (content.read(buffer) != -1) {
+			buffer.flip();
+			digest.update(buffer);
+			buffer.clear();
 		}
+		return toHex(digest.digest());
+	}
 
-		/**
-		 * Returns <code>true</code> if the page designated by this
-		 * <tt>Page</tt> exists and has one revision, and <code>false</code>
-		 * otherwise.
-		 * 
-		 * @return <code>true</code> if the page designated by this
-		 *         <tt>Page</tt> exists and has one revision, and
-		 *         <code>false</code> otherwise
-		 */
-		public boolean isNew() {
-			return isNew;
+	private static String toHex(final byte[] bytes) {
+		final StringBuilder result = new StringBuilder(bytes.length * 2);
+		for (final byte b : bytes) {
+			result.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
 		}
+		return result.toString();
+	}
 
-		/**
-		 * Returns a map associating action names (such as those in
-		 * <tt>MediaWiki.ProtectionAction</tt>) to <tt>MediaWiki.Protection</tt>
-		 * objects describing the terms of their protection. The return value is
-		 * never <code>null</code>, but the map may be empty.
-		 * 
-		 * @return a map associating action names (such as those in
-		 *         <tt>MediaWiki.ProtectionAction</tt>) to
-		 *         <tt>MediaWiki.Protection</tt> objects describing the terms of
-		 *         their protection
-		 */
-		public Map<String, MediaWiki.Protection> getProtection() {
-			return protections;
+	/**
+	 * Returns a canonical copy of the given string from the pool of this
+	 * <tt>MediaWiki</tt>. Result objects created from API replies store their
+	 * titles, namespace prefixes and user names through this method, so that
+	 * iterating over many results that mention the same pages and users does
+	 * not keep a separate copy of each name per result.
+	 * 
+	 * @param value
+	 *            The string to get a canonical copy of. This may be
+	 *            <code>null</code>.
+	 * @return a string equal to <code>value</code> that is shared with other
+	 *         result objects created by this <tt>MediaWiki</tt>, or
+	 *         <code>null</code> if <code>value</code> is <code>null</code>
+	 */
+	protected String pool(final String value) {
+		if (value == null)
+			return null;
+		final int hash = value.hashCode();
+		final Map<String, WeakReference<String>> stripe = stringPool[(hash ^ (hash >>> 16)) & (STRING_POOL_STRIPES - 1)];
+		synchronized (stripe) {
+			final WeakReference<String> ref = stripe.get(value);
+			String result = ref != null ? ref.get() : null;
+			if (result == null) {
+				// Do not keep a larger string alive through a substring.
+				result = new String(value);
+				stripe.put(result, new WeakReference<String>(result));
+			}
+			return result;
 		}
+	}
 
-		@Override
-		public String toString() {
-			// Page["Main Page" (missing) (ID 1), redirect, new, 410 bytes
-			// long, last revision: 5207, edited on DATE, views: 61358,
-			// protections: {edit=...}]
-			return String.format("Page[\"%s\"%s%s%s%s%s%s%s%s, protections: %s]", getFullPageName(), missing ? " (missing)" : "", getPageID() != null ? " (ID " + getPageID() + ")" : "", isRedirect ? ", redirect" : "", isNew ? ", new" : "", ", " + length + " bytes long", lastRevisionID != -1 ? ", last revision: " + lastRevisionID : "", lastEdit != null ? ", edited on " + lastEdit.toString() : "", views != -1 ? ", views: " + views : "", protections);
+	@SuppressWarnings("unchecked")
+	private static Map<String, WeakReference<String>>[] createStringPool() {
+		final Map<String, WeakReference<String>>[] result = (Map<String, WeakReference<String>>[]) new Map<?, ?>[STRING_POOL_STRIPES];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = new WeakHashMap<String, WeakReference<String>>();
 		}
+		return result;
 	}
 
-	public class PageDesignation extends PageNameComponents {
-		PageDesignation(final long pageID, final String fullName, final long namespaceID) throws IOException {
-			super(fullName, namespaceID, pageID);
+	private static final SimpleDateFormat timestampFormatter = new SimpleDateFormat("yyyyMMddHHmmss", Locale.US);
+
+	static {
+		timestampFormatter.setTimeZone(TimeZone.getTimeZone("GMT"));
+	}
+
+	/**
+	 * Returns the specified <code>date</code> formatted for use as a MediaWiki
+	 * timestamp value. The return value is a string containing at least 14
+	 * digits, with at least 4 for the year, 2 for the month, 2 for the day of
+	 * the month, 2 for the hour in 24-hour format, 2 for the minute and 2 for
+	 * the second (<tt><em>yyyyMMddHHmmss</em></tt>).
+	 * 
+	 * @param date
+	 *            The date to format.
+	 * @return the specified <code>date</code> formatted for use as a MediaWiki
+	 *         timestamp value
+	 */
+	public static String dateToTimestamp(final Date date) {
+		synchronized (timestampFormatter) {
+			return timestampFormatter.format(date);
 		}
+	}
 
-		@Override
-		public String toString() {
-			return String.format("PageDesignation[\"%s\" (ID %d)]", getFullPageName(), getPageID());
+	/**
+	 * Returns the specified <code>date</code> formatted for use as a MediaWiki
+	 * timestamp value. The return value is a string containing at least 14
+	 * digits, with at least 4 for the year, 2 for the month, 2 for the day of
+	 * the month, 2 for the hour in 24-hour format, 2 for the minute and 2 for
+	 * the second (<tt><em>yyyyMMddHHmmss</em></tt>).
+	 * 
+	 * @param date
+	 *            The date to format.
+	 * @return the specified <code>date</code> formatted for use as a MediaWiki
+	 *         timestamp value
+	 */
+	public static String dateToISO8601(final Date date) {
+		synchronized (iso8601TimestampParser) {
+			return iso8601TimestampParser.format(date);
 		}
 	}
 
-	public static class Protection implements Serializable {
-		private static final long serialVersionUID = 1L;
+	/**
+	 * Returns the specified <code>timestamp</code> parsed as a <tt>Date</tt>
+	 * object.
+	 * 
+	 * @param timestamp
+	 *            The timestamp value to parse. This value is either of the
+	 *            following:
+	 *            <ul>
+	 *            <li>a MediaWiki timestamp value, i.e. a string containing at
+	 *            least 14 digits, with at least 4 for the year, 2 for the
+	 *            month, 2 for the day of the month, 2 for the hour in 24-hour
+	 *            format, 2 for the minute and 2 for the second (
+	 *            <tt><em>yyyyMMddHHmmss</em></tt>);
+	 *            <li>an ISO 8601 date and time stamp in the GMT timezone, i.e.
+	 *            a string conforming to the format
+	 *            <tt><em>yyyy</em>-<em>MM</em>-<em>dd</em>T<em>HH</em>:<em>mm</em>:<em>ss</em>Z</tt>.
+	 *            </ul>
+	 * @return the specified <code>timestamp</code> parsed as a <tt>Date</tt>
+	 *         object
+	 * @throws ParseException
+	 *             if the specified <code>timestamp</code> is not a valid
+	 *             timestamp
+	 */
+	public static Date timestampToDate(final String timestamp) throws ParseException {
+		// SimpleDateFormat is not thread-safe, and result objects may decode
+		// their timestamps from any thread. Every use of the shared formats
+		// goes through this method, dateToTimestamp or dateToISO8601.
+		if ((timestamp.length() > 0) && (timestamp.charAt(timestamp.length() - 1) == 'Z'))
+			synchronized (iso8601TimestampParser) {
+				return iso8601TimestampParser.parse(timestamp);
+			}
+		else
+			synchronized (timestampFormatter) {
+				return timestampFormatter.parse(timestamp);
+			}
+	}
 
-		private final String level;
+	/**
+	 * Returns the values of the specified attributes of the specified
+	 * <code>element</code>, in the same order as their names. The value of an
+	 * attribute that the element does not have is <code>null</code>.
+	 * <p>
+	 * Result objects that decode their fields lazily keep this copy instead of
+	 * the element itself: a DOM element keeps its entire reply document alive,
+	 * and DOM trees are not safe to read from several threads at once.
+	 * 
+	 * @param element
+	 *            The element to copy the attributes of.
+	 * @param names
+	 *            The names of the attributes to copy.
+	 * @return the values of the attributes
+	 */
+	private static String[] copyAttributes(final Element element, final String... names) {
+		final String[] result = new String[names.length];
+		for (int i = 0; i < names.length; i++) {
+			if (element.hasAttribute(names[i]))
+				result[i] = element.getAttribute(names[i]);
+		}
+		return result;
+	}
 
-		private final Date expiry;
+	/**
+	 * Normalises the given <code>title</code> according to the rules in place
+	 * on the wiki represented by this <tt>MediaWiki</tt>.
+	 * 
+	 * @param title
+	 *            Title to normalise.
+	 * @return the normalised title
+	 * @throws IOException
+	 * @throws MediaWikiException
+	 */
+	public String normalizeTitle(final String title) throws IOException, MediaWikiException {
+		final Map<String, String> getParams = paramValuesToMap("action", "query", "format", "xml", "prop", "info", "titles", title);
+		final String url = createApiGetUrl(getParams);
 
-		private final boolean isCascading;
+		networkLock.lock();
+		try {
+			final InputStream in = get(url);
+			final Document xml = parse(in);
+			checkError(xml);
 
-		private final String cascadeSource;
+			final NodeList normalizedTags = xml.getElementsByTagName("normalized");
 
-		public Protection(final String level, final Date expiry, final boolean isCascading, final String cascadeSource) {
-			this.level = level;
-			this.expiry = expiry;
-			this.isCascading = isCascading;
-			this.cascadeSource = cascadeSource;
-		}
+			final Map<String, String> normalizations = new TreeMap<String, String>();
 
-		/**
-		 * Returns the level required for users to be able to perform the
-		 * protected action for which this <tt>Protection</tt> was created. The
-		 * return value is equivalent to, but not necessarily the same object
-		 * as, either <code>MediaWiki.ProtectionLevel.AUTOCONFIRMED_USERS</code>
-		 * or <code>MediaWiki.ProtectionLevel.SYSOPS</code>.
-		 * 
-		 * @return the level required for users to be able to perform the
-		 *         protected action for which this <tt>Protection</tt> was
-		 *         created
-		 */
-		public String getLevel() {
-			return level;
-		}
+			for (int i = 0; i < normalizedTags.getLength(); i++) {
+				final Element normalizedTag = (Element) normalizedTags.item(i);
 
-		/**
-		 * Returns the date and time at which the protection for which this
-		 * <tt>Protection</tt> was created is set to expire. After this, the
-		 * protected action may be performed by everyone. The return value is
-		 * <code>null</code> if the protection is set never to expire.
-		 * 
-		 * @return the date and time at which the protection for which this
-		 *         <tt>Protection</tt> was created is set to expire
-		 */
-		public Date getExpiry() {
-			return expiry;
-		}
+				final NodeList nTags = normalizedTag.getElementsByTagName("n");
 
-		/**
-		 * Returns whether the protection for which this <tt>Protection</tt> was
-		 * created is cascading, i.e. whether pages transcluded into the
-		 * protected page are also to be protected. For pages that are protected
-		 * <em>due to</em> cascade protection on another page, this method
-		 * returns <code>false</code> and <code>getCascadeSource</code> returns
-		 * the source of the protection.
-		 * 
-		 * @return whether the protection for which this <tt>Protection</tt> was
-		 *         created is cascading
-		 */
-		public boolean isCascading() {
-			return isCascading;
-		}
+				for (int j = 0; j < nTags.getLength(); j++) {
+					final Element nTag = (Element) nTags.item(i);
 
-		/**
-		 * Returns the full name of the page that caused the action for which
-		 * this <tt>Protection</tt> was created to be protected. The return
-		 * value is <code>null</code> if there is no such page.
-		 * 
-		 * @return whether the protection for which this <tt>Protection</tt> was
-		 *         created is cascading
-		 */
-		public String getCascadeSource() {
-			return cascadeSource;
-		}
+					normalizations.put(nTag.getAttribute("from"), nTag.getAttribute("to"));
+				}
+			}
 
-		@Override
-		public String toString() {
-			// Protection[sysop expiring DATE, cascading, from "Other page"]
-			return String.format("Protection[%s expiring %s%s%s]", level, expiry != null ? expiry.toString() : "never", isCascading ? ", cascading" : "", cascadeSource != null ? ", from \"" + cascadeSource + "\"" : "");
+			return normalizations.containsKey(title) ? normalizations.get(title) : title;
+		} finally {
+			networkLock.unlock();
 		}
 	}
 
-	public class Revision {
-		private final long revisionID;
-
-		private final long parentID;
-
-		private final Date timestamp;
+	/**
+	 * Normalises the given <code>titles</code> according to the rules in place
+	 * on the wiki represented by this <tt>MediaWiki</tt>.
+	 * 
+	 * @param titles
+	 *            Titles to normalise. The members of this list are modified
+	 *            in-place.
+	 * @return <code>titles</code>
+	 * @throws IOException
+	 * @throws MediaWikiException
+	 */
+	public List<String> normalizeTitles(final List<String> titles) throws IOException, MediaWikiException {
+		if (titles.isEmpty())
+			return titles;
 
-		private final String userName;
+		int index = 0, max = Math.min(titles.size(), 500);
 
-		private final boolean userHidden;
+		while (index < titles.size()) {
+			final int end = Math.min(index + max, titles.size());
 
-		private final long length;
+			final StringBuilder titleString = new StringBuilder((end - index) * 2);
+			for (int i = index; i < end; i++) {
+				if (titleString.length() > 0) {
+					titleString.append('|');
+				}
+				titleString.append(titles.get(i));
+			}
 
-		private final String comment;
+			final Map<String, String> getParams = paramValuesToMap("action", "query", "format", "xml", "prop", "info", "titles", titleString.toString());
+			final String url = createApiGetUrl(getParams);
 
-		private final boolean commentHidden;
+			networkLock.lock();
+			try {
+				final InputStream in = get(url);
+				final Document xml = parse(in);
+				checkError(xml);
 
-		private final boolean isMinor;
+				final NodeList normalizedTags = xml.getElementsByTagName("normalized");
 
-		private final boolean isAnonymous;
+				if (normalizedTags.getLength() == 0)
+					throw new MediaWiki.ResponseFormatException("expected <normalized> tag not found");
+				if (normalizedTags.getLength() >= 2)
+					throw new MediaWiki.ResponseFormatException("more than one <normalized> tag found");
 
-		private String content;
+				final Map<String, String> normalizations = new TreeMap<String, String>();
 
-		private boolean contentHidden;
+				final Element normalizedTag = (Element) normalizedTags.item(0);
 
-		private boolean contentStored;
+				final NodeList nTags = normalizedTag.getElementsByTagName("n");
 
-		Revision(final long revisionID, final long parentID, final Date timestamp, final String userName, final boolean userHidden, final long length, final String comment, final boolean commentHidden, final boolean isMinor, final boolean isAnonymous) {
-			this.revisionID = revisionID;
-			this.parentID = parentID;
-			this.timestamp = timestamp;
-			this.userName = userName;
-			this.userHidden = userHidden;
-			this.length = length;
-			this.comment = comment;
-			this.commentHidden = commentHidden;
-			this.isMinor = isMinor;
-			this.isAnonymous = isAnonymous;
-		}
+				for (int j = 0; j < nTags.getLength(); j++) {
+					final Element nTag = (Element) nTags.item(j);
 
-		/**
-		 * Returns the ID of the revision for which this <tt>Revision</tt> was
-		 * created. The return value is guaranteed to be greater than or equal
-		 * to 0, and to be known even if the revision is deleted.
-		 * 
-		 * @return the ID of the revision for which this <tt>Revision</tt> was
-		 *         created
-		 */
-		public long getRevisionID() {
-			return revisionID;
-		}
+					normalizations.put(nTag.getAttribute("from"), nTag.getAttribute("to"));
+				}
 
-		/**
-		 * Returns the ID of the revision before the one for which this
-		 * <tt>Revision</tt> was created, from the same page. The return value
-		 * is greater than or equal to 0 if known, or -1 if unknown. It can be
-		 * known even if the revision is deleted. The return value is 0 if this
-		 * revision created its page.
-		 * 
-		 * @return the ID of the revision before the one for which this
-		 *         <tt>Revision</tt> was created, from the same page
-		 */
-		public long getParentID() {
-			return parentID;
-		}
+				for (int i = index; i < end; i++) {
+					if (normalizations.containsKey(titles.get(i))) {
+						titles.set(i, normalizations.get(titles.get(i)));
+					}
+				}
 
-		/**
-		 * Returns the timestamp at which the revision for which this
-		 * <tt>Revision</tt> was created was made. The return value is
-		 * guaranteed to be non-<code>null</code>, even if the revision is
-		 * deleted.
-		 * 
-		 * @return the timestamp at which the revision for which this
-		 *         <tt>Revision</tt> was created was made
-		 */
-		public Date getTimestamp() {
-			return timestamp;
-		}
+				final NodeList pagesTags = xml.getElementsByTagName("pages");
 
-		/**
-		 * Returns the name of the user who made the revision for which this
-		 * <tt>Revision</tt> was created. The return value is <code>null</code>
-		 * if the revision is deleted with the username hidden.
-		 * 
-		 * @return the name of the user who made the revision for which this
-		 *         <tt>Revision</tt> was created
-		 */
-		public String getUserName() {
-			return userName;
-		}
+				if (pagesTags.getLength() == 0)
+					throw new MediaWiki.ResponseFormatException("expected <pages> tag not found");
+				if (pagesTags.getLength() >= 2)
+					throw new MediaWiki.ResponseFormatException("more than one <pages> tag found");
 
-		/**
-		 * Returns whether the name of the user who made the revision for which
-		 * this <tt>Revision</tt> was created is hidden by revision deletion.
-		 * 
-		 * @return whether the name of the user who made the revision for which
-		 *         this <tt>Revision</tt> was created is hidden by revision
-		 *         deletion
-		 */
-		public boolean isUserNameHidden() {
-			return userHidden;
-		}
+				final Element pagesTag = (Element) pagesTags.item(0);
 
-		/**
-		 * Returns the length of the page as of the revision for which this
-		 * <tt>Revision</tt> was created.
-		 * 
-		 * @return the length of the page as of the revision for which this
-		 *         <tt>Revision</tt> was created
-		 */
-		public long getLength() {
-			return length;
-		}
+				final NodeList pageTags = pagesTag.getElementsByTagName("page");
 
-		/**
-		 * Returns the comment for the revision for which this <tt>Revision</tt>
-		 * was created. The return value is <code>null</code> if the revision is
-		 * deleted with the comment hidden.
-		 * 
-		 * @return the comment for the revision for which this <tt>Revision</tt>
-		 *         was created
-		 */
-		public String getComment() {
-			return comment;
-		}
+				max = pageTags.getLength();
 
-		/**
-		 * Returns whether the comment for the revision for which this
-		 * <tt>Revision</tt> was created is hidden by revision deletion.
-		 * 
-		 * @return whether the comment for the revision for which this
-		 *         <tt>Revision</tt> was created is hidden by revision deletion
-		 */
-		public boolean isCommentHidden() {
-			return commentHidden;
+				index += max;
+			} finally {
+				networkLock.unlock();
+			}
 		}
 
-		/**
-		 * Returns <code>true</code> if any piece of information about the
-		 * revision for which this <tt>Revision</tt> was created is deleted.
-		 * 
-		 * @return <code>true</code> if any piece of information about the
-		 *         revision for which this <tt>Revision</tt> was created is
-		 *         deleted
-		 */
-		public boolean isDeleted() {
-			return userHidden || commentHidden || (contentStored && contentHidden);
-		}
+		return titles;
+	}
 
-		/**
-		 * Returns whether the revision for which this <tt>Revision</tt> was
-		 * created was marked by the user who made it as <i>minor</i>.
-		 * 
-		 * @return whether the revision for which this <tt>Revision</tt> was
-		 *         created was marked by the user who made it as <i>minor</i>
-		 */
-		public boolean isMinor() {
-			return isMinor;
-		}
+	/**
+	 * Converts the given title, which may include a namespace, to the form most
+	 * suitable for the API. Currently, this means that the title's underscores
+	 * are replaced with spaces.
+	 * <p>
+	 * Use of this method reduces the occurrence of the API returning
+	 * normalisation replies, which saves bandwidth.
+	 * 
+	 * @param title
+	 *            The title to convert.
+	 * @return the given title, which may include a namespace, to the form most
+	 *         suitable for the API
+	 */
+	public static String titleToAPIForm(final String title) {
+		return title.replace('_', ' ');
+	}
 
-		/**
-		 * Returns whether the revision for which this <tt>Revision</tt> was
-		 * created was made by an anonymous user. The return value is undefined
-		 * if the user's name is hidden by revision deletion.
-		 * 
-		 * @return whether the revision for which this <tt>Revision</tt> was
-		 *         created was made by an anonymous user
-		 */
-		public boolean isAnonymous() {
-			return isAnonymous;
-		}
+	/**
+	 * Converts the given title, which may include a namespace, to the form most
+	 * suitable for display, e.g. in URLs. Currently, this means that the
+	 * title's spaces are replaced with underscores.
+	 * 
+	 * @param title
+	 *            The title to convert.
+	 * @return the given title, which may include a namespace, to the form most
+	 *         suitable for the display
+	 */
+	public static String titleToDisplayForm(final String title) {
+		return title.replace(' ', '_');
+	}
 
-		/**
-		 * Returns the content of this revision. If no exception is thrown, the
-		 * return value is cached in this <tt>Revision</tt> so it can be
-		 * returned later. The return value is undefined if the content is
-		 * hidden by revision deletion.
-		 * 
-		 * @return the content of this revision
-		 * @throws IOException
-		 *             if <tt>IOException</tt> is thrown while connecting to the
-		 *             wiki or while reading the XML reply from the API
-		 * @throws MediaWiki.MediaWikiException
-		 *             if the API does not return a result in the expected
-		 *             format (subtypes thrown:
-		 *             <tt>MediaWiki.MediaWikiException</tt>,
-		 *             <tt>MediaWiki.UnknownError</tt>)
-		 */
-		public synchronized String getContent() throws IOException, MediaWiki.MediaWikiException {
-			if (contentStored)
-				return content;
-			else {
-				storeContent();
-				return getContent();
-			}
+	/**
+	 * Converts an array of namespace IDs into the form expected by the API for
+	 * <code>functionShortName + "namespace"</code> parameters, which is the
+	 * namespace IDs in ASCII digit form without thousands separators, separated
+	 * by <code>'|'</code>.
+	 * 
+	 * @param namespaceIDs
+	 *            The IDs of the namespaces to convert. This may be
+	 *            <code>null</code> or empty, in which case <code>null</code>
+	 *            will be returned.
+	 * @return a text string suitable for the API and representing the specified
+	 *         namespace IDs, or <code>null</code> if no namespaces are
+	 *         specified
+	 */
+	protected static String namespacesParameter(final long[] namespaceIDs) {
+		if ((namespaceIDs == null) || (namespaceIDs.length == 0))
+			return null;
+		final StringBuilder result = new StringBuilder(namespaceIDs.length * 4);
+		result.append(namespaceIDs[0]);
+		for (int i = 1; i < namespaceIDs.length; i++) {
+			result.append('|').append(namespaceIDs[i]);
 		}
+		return result.toString();
+	}
 
-		/**
-		 * Returns whether the content of this revision is hidden by revision
-		 * deletion.
-		 * 
-		 * @return whether the content of this revision is hidden by revision
-		 *         deletion
-		 * @throws IOException
-		 *             if <tt>IOException</tt> is thrown while connecting to the
-		 *             wiki or while reading the XML reply from the API
-		 * @throws MediaWiki.MediaWikiException
-		 *             if the API does not return a result in the expected
-		 *             format (subtypes thrown:
-		 *             <tt>MediaWiki.MediaWikiException</tt>,
-		 *             <tt>MediaWiki.UnknownError</tt>)
-		 */
-		public synchronized boolean isContentHidden() throws IOException, MediaWiki.MediaWikiException {
-			if (contentStored)
-				return contentHidden;
-			else {
-				storeContent();
-				return isContentHidden();
-			}
+	// - - - HELPER CLASSES - - -
+
+	/**
+	 * Reads bytes from a <tt>ByteBuffer</tt>, which may be direct, from its
+	 * position to its limit. Reading advances the position of the buffer.
+	 */
+	protected static class ByteBufferInputStream extends InputStream {
+		private final ByteBuffer buffer;
+
+		public ByteBufferInputStream(final ByteBuffer buffer) {
+			this.buffer = buffer;
 		}
 
-		protected synchronized void storeContent() throws IOException, MediaWiki.MediaWikiException {
-			final Map<String, String> getParams = paramValuesToMap("action", "query", "format", "xml", "prop", "revisions", "rvprop", "content", "revids", Long.toString(revisionID));
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
 
-			final String url = createApiGetUrl(getParams);
+		@Override
+		public int read(final byte[] b, final int off, final int len) {
+			if (len == 0)
+				return 0;
+			if (!buffer.hasRemaining())
+				return -1;
+			final int n = Math.min(len, buffer.remaining());
+			buffer.get(b, off, n);
+			return n;
+		}
 
-			networkLock.lock();
-			try {
-				final InputStream in = get(url);
-				final Document xml = parse(in);
-				checkError(xml);
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
 
-				final NodeList badrevidsTags = xml.getElementsByTagName("badrevids");
-				if (badrevidsTags.getLength() > 0)
-					throw new MediaWiki.MediaWikiException("Revision ID " + revisionID + " is now inexistent");
+	/**
+	 * Reads the text of the element at which an <tt>XMLStreamReader</tt> is
+	 * positioned, up to the end of that element, as it arrives. Closing it
+	 * closes the reply and releases the network lock, which was held by the
+	 * thread that created it since the request was made.
+	 */
+	protected class StreamedContentReader extends Reader {
+		private final InputStream in;
 
-				final NodeList pageTags = xml.getElementsByTagName("page");
+		private final XMLStreamReader xml;
 
-				if (pageTags.getLength() > 0) {
-					final Element pageTag = (Element) pageTags.item(0);
+		/**
+		 * The number of elements opened inside the element being read.
+		 */
+		private int depth;
 
-					if (pageTag.hasAttribute("missing"))
-						throw new MediaWiki.MediaWikiException("Revision ID " + revisionID + " now belongs to no page");
+		/**
+		 * The position, in the current text event, of the next character to
+		 * read, and the number of characters left in it.
+		 */
+		private int textStart, textLeft;
 
-					final NodeList revTags = pageTag.getElementsByTagName("rev");
+		private boolean ended, closed;
 
-					if (revTags.getLength() > 0) {
-						final Element revTag = (Element) revTags.item(0);
+		StreamedContentReader(final InputStream in, final XMLStreamReader xml) {
+			this.in = in;
+			this.xml = xml;
+		}
 
-						if (revTag.hasAttribute("texthidden")) {
-							contentHidden = true;
-						} else {
-							content = revTag.getTextContent();
+		@Override
+		public int read(final char[] cbuf, final int off, final int len) throws IOException {
+			if (closed)
+				throw new IOException("Reader closed");
+			if (len == 0)
+				return 0;
+			try {
+				while (!ended) {
+					if (textLeft > 0) {
+						final int n = xml.getTextCharacters(textStart, cbuf, off, Math.min(len, textLeft));
+						textStart += n;
+						textLeft -= n;
+						return n;
+					}
+					switch (xml.next()) {
+					case XMLStreamConstants.CHARACTERS:
+					case XMLStreamConstants.CDATA:
+					case XMLStreamConstants.SPACE:
+						textStart = 0;
+						textLeft = xml.getTextLength();
+						break;
+					case XMLStreamConstants.START_ELEMENT:
+						depth++;
+						break;
+					case XMLStreamConstants.END_ELEMENT:
+						if (depth-- == 0) {
+							ended = true;
 						}
-						contentStored = true;
-					} else
-						throw new MediaWiki.ResponseFormatException("expected <rev> tag not found");
-				} else
-					throw new MediaWiki.ResponseFormatException("expected <page> tag not found");
-			} finally {
-				networkLock.unlock();
+						break;
+					case XMLStreamConstants.END_DOCUMENT:
+						throw new IOException("reply ended inside the content");
+					}
+				}
+				return -1;
+			} catch (final XMLStreamException e) {
+				throw new IOException(e);
 			}
 		}
 
 		@Override
-		public String toString() {
-			// Revision[1337 <- 1336 @ DATE (SIZE) by <user hidden>
-			// or USER, minor, anonymous <comment hidden> or (COMMENT)]
-			return String.format("Revision[%d <- %d (%d bytes) @ %s by %s%s%s %s]", revisionID, parentID, length, timestamp, userHidden ? "<user hidden>" : userName, isMinor ? ", minor" : "", isAnonymous ? ", anonymous" : "", commentHidden ? "<comment hidden>" : "(" + comment + ")");
+		public void close() throws IOException {
+			if (closed)
+				return;
+			closed = true;
+			try {
+				try {
+					xml.close();
+				} catch (final XMLStreamException e) {
+					// don't care; the stream is closed next
+				}
+				in.close();
+			} finally {
+				networkLock.unlock();
+			}
 		}
 	}
 
-	public class CategoryMembership {
-		private final String category;
-
-		private final String sortKey;
-
-		CategoryMembership(final String category, final String sortKey) {
-			this.category = category;
-			this.sortKey = sortKey;
-		}
+	/**
+	 * Returns a <tt>Document</tt> holding an API reply whose only content is
+	 * a copy of the <tt>&lt;error&gt;</tt> tag at which the given
+	 * <tt>XMLStreamReader</tt> is positioned, so that it can be given to
+	 * <code>checkError</code>.
+	 */
+	private Document copyErrorTag(final XMLStreamReader xml) {
+		final Document result = documentBuilder.newDocument();
+		final Element apiTag = result.createElement("api");
+		final Element errorTag = result.createElement("error");
+		for (int i = 0; i < xml.getAttributeCount(); i++) {
+			errorTag.setAttribute(xml.getAttributeLocalName(i), xml.getAttributeValue(i));
+		}
+		apiTag.appendChild(errorTag);
+		result.appendChild(apiTag);
+		return result;
+	}
 
+	/**
+	 * Receives notifications about the progress of a transfer between the
+	 * wiki and the local system.
+	 */
+	public interface ProgressListener {
 		/**
-		 * Returns the full name of the category to which a page belongs.
+		 * Notifies this <tt>ProgressListener</tt> that a transfer has
+		 * progressed.
 		 * 
-		 * @return the full name of the category to which a page belongs
+		 * @param bytesDone
+		 *            The number of bytes transferred so far.
+		 * @param bytesTotal
+		 *            The total number of bytes to be transferred, or -1 if
+		 *            unknown.
 		 */
-		public String getCategoryName() {
-			return category;
-		}
+		void progress(long bytesDone, long bytesTotal);
+	}
 
+	/**
+	 * An iterator over a chronological list of items that reports its
+	 * position in the list, so that a later call can resume the list where
+	 * this iterator stopped.
+	 */
+	public interface ResumableIterator<T> extends Iterator<T> {
 		/**
-		 * Returns the base name of the category to which a page belongs; that
-		 * is, the category's name without its namespace prefix.
+		 * Returns the position after the last item returned by
+		 * <code>next</code>, or the position this
+		 * <tt>ResumableIterator</tt> started from if <code>next</code> has
+		 * not returned an item yet. The return value is <code>null</code> if
+		 * there is neither.
 		 * 
-		 * @return the base name of the category to which a page belongs
-		 * @throws IOException
-		 *             if an error occurs while getting the list of namespaces
-		 *             on the wiki represented by the enclosing
-		 *             <tt>MediaWiki</tt>
+		 * @return the position after the last item returned by
+		 *         <code>next</code>
 		 */
-		public String getCategoryBaseName() throws IOException {
-			return getNamespaces().removeNamespacePrefix(category);
+		MediaWiki.StreamPosition getPosition();
+	}
+
+	/**
+	 * Reports the number of bytes read from an <tt>InputStream</tt> to a
+	 * <tt>ProgressListener</tt>.
+	 */
+	protected static class ProgressInputStream extends FilterInputStream {
+		private long bytesDone;
+
+		private final long bytesTotal;
+
+		private final MediaWiki.ProgressListener listener;
+
+		public ProgressInputStream(final InputStream in, final long bytesDone, final long bytesTotal, final MediaWiki.ProgressListener listener) {
+			super(in);
+			this.bytesDone = bytesDone;
+			this.bytesTotal = bytesTotal;
+			this.listener = listener;
 		}
 
-		/**
-		 * Returns the name of the page as it is used to sort it inside the
-		 * category's members.
-		 * 
-		 * @return the name of the page as it is used to sort it inside the
-		 *         category's members
-		 */
-		public String getSortKey() {
-			return sortKey;
+		@Override
+		public int read() throws IOException {
+			final int result = super.read();
+			if (result != -1) {
+				listener.progress(++bytesDone, bytesTotal);
+			}
+			return result;
 		}
 
 		@Override
-		public String toString() {
-			return String.format("CategoryMembership[\"%s\" as \"%s\"]", category, sortKey);
+		public int read(final byte[] b, final int off, final int len) throws IOException {
+			final int result = super.read(b, off, len);
+			if (result > 0) {
+				bytesDone += result;
+				listener.progress(bytesDone, bytesTotal);
+			}
+			return result;
 		}
-	}
 
-	public class CategoryMember extends PageNameComponents {
-		private final String sortKey;
+		@Override
+		public long skip(final long n) throws IOException {
+			final long result = super.skip(n);
+			if (result > 0) {
+				bytesDone += result;
+				listener.progress(bytesDone, bytesTotal);
+			}
+			return result;
+		}
 
-		private final Date addTime;
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+	}
 
-		CategoryMember(final long namespaceID, final long pageID, final Date addTime, final String fullPageName, final String sortKey) throws IOException {
-			super(fullPageName, namespaceID, pageID);
-			this.addTime = addTime;
-			this.sortKey = sortKey;
+	protected abstract class AbstractReadOnlyIterator<T> implements Iterator<T> {
+		public final void remove() {
+			throw new UnsupportedOperationException("read-only iterator");
 		}
+	}
 
+	protected abstract class AbstractBufferingIterator<T> extends AbstractReadOnlyIterator<T> {
 		/**
-		 * Returns the name of the page as it is used to sort it inside the
-		 * category's members.
-		 * 
-		 * @return the name of the page as it is used to sort it inside the
-		 *         category's members
+		 * The index of the last node returned among <code>upcoming</code>. This
+		 * field has the value <code>-1</code> if iteration has not yet started
+		 * or <code>upcoming</code> was just refilled.
 		 */
-		public String getSortKey() {
-			return sortKey;
-		}
+		private int i = -1;
 
 		/**
-		 * Returns the time when this page was added to the category of which it
-		 * is a member.
+		 * The list of nodes that are being buffered by this
+		 * <tt>AbstractBufferingIterator</tt>. Query continuation, if
+		 * applicable, loads more nodes into this field.
+		 */
+		private List<? extends Element> upcoming;
+
+		/**
+		 * Returns the index of the last node returned among
+		 * <code>getUpcoming()</code>. The return value is <code>-1</code> if
+		 * iteration has not yet started or <code>upcoming</code> was just
+		 * refilled.
 		 * 
-		 * @return the time when this page was added to the category of which it
-		 *         is a member
+		 * @return the index of the last node to return among
+		 *         <code>getUpcoming()</code>
 		 */
-		public Date getAdditionTime() {
-			return addTime;
+		protected int getIndex() {
+			return i;
 		}
 
-		@Override
-		public String toString() {
-			return String.format("CategoryMember[\"%s\" (ID %d) as \"%s\", added %s]", getFullPageName(), getPageID(), sortKey, addTime);
+		/**
+		 * Sets the index of the last node returned among
+		 * <code>getUpcoming()</code>.
+		 * 
+		 * @param newValue
+		 *            The index of the last node returned among
+		 *            <code>getUpcoming()</code>. This value is <code>-1</code>
+		 *            if <code>upcoming</code> was just refilled.
+		 */
+		protected void setIndex(final int newValue) {
+			i = newValue;
 		}
-	}
-
-	public class ImageRevision extends PageNameComponents {
-		private final Date timestamp;
-
-		private final String userName;
-
-		private final long length;
-
-		private final long width;
-
-		private final long height;
-
-		private final String url;
 
-		private final String comment;
-
-		private final String sha1hash;
-
-		private final String mimeType;
-
-		ImageRevision(final String fullName, final Date timestamp, final String userName, final long length, final long width, final long height, final String url, final String comment, final String sha1hash, final String mimeType) throws IOException {
-			super(fullName);
-			this.timestamp = timestamp;
-			this.userName = userName;
-			this.length = length;
-			this.width = width;
-			this.height = height;
-			this.url = url;
-			this.comment = comment;
-			this.sha1hash = sha1hash;
-			this.mimeType = mimeType;
+		/**
+		 * Returns the list of nodes that this
+		 * <tt>AbstractBufferingIterator</tt> is iterating over for the time
+		 * being.
+		 * 
+		 * @return the list of nodes that this
+		 *         <tt>AbstractBufferingIterator</tt> is iterating over for the
+		 *         time being
+		 */
+		protected List<? extends Element> getUpcoming() {
+			return upcoming;
 		}
 
 		/**
-		 * Returns the timestamp at which the image revision for which this
-		 * <tt>ImageRevision</tt> was created was made. The return value is
-		 * guaranteed to be non-<code>null</code>, even if the revision is
-		 * deleted.
+		 * Sets the list of nodes that this <tt>AbstractBufferingIterator</tt>
+		 * will be iterating over.
+		 * <p>
+		 * This method also resets the index to <code>-1</code>.
 		 * 
-		 * @return the timestamp at which the revision for which this
-		 *         <tt>Revision</tt> was created was made
+		 * @param newValue
+		 *            The list of nodes that this
+		 *            <tt>AbstractBufferingIterator</tt> will be iterating over.
 		 */
-		public Date getTimestamp() {
-			return timestamp;
+		protected void setUpcoming(final List<? extends Element> newValue) {
+			this.upcoming = newValue;
+			setIndex(-1);
 		}
 
 		/**
-		 * Returns the name of the user who made the image revision for which
-		 * this <tt>Revision</tt> was created. The return value is
-		 * <code>null</code> if the revision is deleted with the username
-		 * hidden.
+		 * Creates a Java <tt>List</tt> out of the DOM <tt>NodeList</tt>
+		 * supplied and fills the <code>upcoming</code> queue with it.
+		 * <p>
+		 * This method also resets the index to <code>-1</code>.
 		 * 
-		 * @return the name of the user who made the revision for which this
-		 *         <tt>Revision</tt> was created
+		 * @param nodes
+		 *            The list of nodes that this
+		 *            <tt>AbstractBufferingIterator</tt> will be iterating over.
+		 * @throws ClassCastException
+		 *             if any of the nodes supplied is not an <tt>Element</tt>
+		 *             node
 		 */
-		public String getUserName() {
-			return userName;
+		protected void setUpcoming(final NodeList nodes) {
+			if (nodes == null) {
+				setUpcoming((List<Element>) null);
+			} else {
+				final List<Element> newUpcoming = new ArrayList<Element>(nodes.getLength());
+				for (int i = 0; i < nodes.getLength(); i++) {
+					newUpcoming.add((Element) nodes.item(i));
+				}
+				setUpcoming(newUpcoming);
+			}
 		}
+	}
 
+	protected abstract class AbstractContinuableQueryIterator<T> extends AbstractBufferingIterator<T> {
 		/**
-		 * Returns the length, in bytes, of the image as of the revision for
-		 * which this <tt>ImageRevision</tt> was created.
-		 * 
-		 * @return the length, in bytes, of the image as of the revision for
-		 *         which this <tt>Revision</tt> was created
+		 * This field contains the name of the continuation value; for example,
+		 * <code>"rvstartid"</code>, <code>"eloffset"</code>.
 		 */
-		public long getLength() {
-			return length;
-		}
+		private String continuationName;
 
 		/**
-		 * Returns the width, in pixels, of the image as of the revision for
-		 * which this <tt>ImageRevision</tt> was created.
+		 * This field contains the start or continue value for the next API
+		 * reply's worth of things being iterated over.
+		 */
+		private String continuation;
+
+		/**
+		 * This field is <code>true</code> if the iteration is done.
+		 */
+		private boolean done;
+
+		/**
+		 * Constructs a new instance of
+		 * <tt>AbstractContinuableQueryIterator</tt> without any continuation.
+		 * In other words, the new iterator will start iterating at the
+		 * beginning.
+		 */
+		AbstractContinuableQueryIterator() {}
+
+		/**
+		 * Constructs a new instance of
+		 * <tt>AbstractContinuableQueryIterator</tt> with the given
+		 * continuation. This can be useful when a start parameter is provided
+		 * to an iterator implementation's constructor.
 		 * 
-		 * @return the width, in pixels, of the image as of the revision for
-		 *         which this <tt>ImageRevision</tt> was created
+		 * @param continuation
+		 *            The continuation to start with.
 		 */
-		public long getWidth() {
-			return width;
+		AbstractContinuableQueryIterator(final String continuationName, final String continuation) {
+			this.continuationName = continuationName;
+			this.continuation = continuation;
 		}
 
 		/**
-		 * Returns the height, in pixels, of the image as of the revision for
-		 * which this <tt>ImageRevision</tt> was created.
+		 * Returns whether the iteration is done. If the return value is
+		 * <code>true</code>, then <code>hasNext</code> should return
+		 * <code>false</code> forever from that point on.
 		 * 
-		 * @return the height, in pixels, of the image as of the revision for
-		 *         which this <tt>ImageRevision</tt> was created
+		 * @return whether the iteration is done
 		 */
-		public long getHeight() {
-			return height;
+		public boolean isDone() {
+			return done;
 		}
 
 		/**
-		 * Returns the URL at which the contents of the image as of the revision
-		 * for which this <tt>ImageRevision</tt> was created can be retrieved.
+		 * Returns the next continuation name to be used by
+		 * <code>cacheUpcoming</code>. Depending on the concrete implementation
+		 * of <tt>AbstractContinuableQueryIterator</tt>, this is a
+		 * <tt>start</tt>, <tt>from</tt> or <tt>continue</tt> value.
 		 * 
-		 * @return the URL at which the contents of the image as of the revision
-		 *         for which this <tt>ImageRevision</tt> was created can be
-		 *         retrieved
+		 * @return the next continuation name to be used by
+		 *         <code>cacheUpcoming</code>
 		 */
-		public String getURL() {
-			return url;
+		protected String getContinuationName() {
+			return continuationName;
 		}
 
 		/**
-		 * Returns the comment for the revision for which this <tt>Revision</tt>
-		 * was created. The return value is <code>null</code> if the revision is
-		 * deleted with the comment hidden.
+		 * Returns the next continuation value to be used by
+		 * <code>cacheUpcoming</code>. Depending on the concrete implementation
+		 * of <tt>AbstractContinuableQueryIterator</tt>, this is a
+		 * <tt>start</tt>, <tt>from</tt> or <tt>continue</tt> value.
 		 * 
-		 * @return the comment for the revision for which this <tt>Revision</tt>
-		 *         was created
+		 * @return the next continuation value to be used by
+		 *         <code>cacheUpcoming</code>
 		 */
-		public String getComment() {
-			return comment;
+		protected String getContinuation() {
+			return continuation;
 		}
 
 		/**
-		 * Returns the SHA-1 hash of the contents of the image as of the
-		 * revision for which this <tt>ImageRevision</tt> was created. The
-		 * return value is a hexadecimal string.
-		 * 
-		 * @return the SHA-1 hash of the contents of the image as of the
-		 *         revision for which this <tt>ImageRevision</tt> was created
+		 * Returns whether this <tt>AbstractContinuableQueryIterator</tt> has at
+		 * least one more element to return. If the pointer into the buffer is
+		 * past the end, the query is continued by calling
+		 * <code>cacheUpcoming</code> before deciding the return value.
 		 */
-		public String getSHA1Hash() {
-			return sha1hash;
+		public synchronized boolean hasNext() throws MediaWiki.IterationException {
+			if ((getUpcoming() != null) && ((getIndex() + 1) < getUpcoming().size()))
+				return true;
+			if (!isDone()) {
+				try {
+					cacheUpcoming();
+				} catch (final MediaWiki.IterationException ie) {
+					throw ie;
+				} catch (final Exception e) {
+					throw new MediaWiki.IterationException(e);
+				}
+				if (getUpcoming() == null) {
+					done = true;
+					return false;
+				} else
+					return (getIndex() + 1) < getUpcoming().size();
+			} else
+				return false;
 		}
 
 		/**
-		 * Returns the MIME type of the contents of the image as of the revision
-		 * for which this <tt>ImageRevision</tt> was created. The return value
-		 * is a hexadecimal string.
+		 * Returns the next element of this
+		 * <tt>AbstractContinuableQueryIterator</tt>. The XML <tt>Element</tt>
+		 * at the buffer's current pointer is converted to an element of type
+		 * <tt>T</tt> using the <code>convert</code> method.
+		 * <p>
+		 * If the pointer into the buffer is past the end, the query is
+		 * continued by calling <code>cacheUpcoming</code> before deciding the
+		 * return value.
 		 * 
-		 * @return the SHA-1 hash of the contents of the image as of the
-		 *         revision for which this <tt>ImageRevision</tt> was created
+		 * @throws NoSuchElementException
+		 *             if <code>isDone</code> returns <code>true</code>
 		 */
-		public String getMIMEType() {
-			return mimeType;
+		public synchronized T next() throws MediaWiki.IterationException {
+			if (((getUpcoming() != null) && ((getIndex() + 1) < getUpcoming().size())) || !isDone()) {
+				if ((getUpcoming() == null) || ((getIndex() + 1) >= getUpcoming().size())) {
+					try {
+						cacheUpcoming();
+					} catch (final MediaWiki.IterationException ie) {
+						throw ie;
+					} catch (final Exception e) {
+						throw new MediaWiki.IterationException(e);
+					}
+				}
+				if (getUpcoming() == null) {
+					done = true;
+					throw new NoSuchElementException();
+				}
+				final int index = getIndex() + 1;
+				setIndex(index);
+				final Element element = getUpcoming().get(index);
+				if ((getIndex() + 1) >= getUpcoming().size()) {
+					setUpcoming((List<Element>) null);
+				}
+				try {
+					return convert(element);
+				} catch (final MediaWiki.IterationException ie) {
+					throw ie;
+				} catch (final Exception e) {
+					throw new MediaWiki.IterationException(e);
+				}
+			} else
+				throw new NoSuchElementException();
 		}
 
 		/**
-		 * Returns an <tt>InputStream</tt> that reads the content of the image
-		 * as of this revision.
+		 * Processes the <tt>&lt;query-continue&gt;</tt> tag, updating the
+		 * continuation name and value as appropriate and updating the done
+		 * flag.
+		 * <p>
+		 * The attribute is parsed from the
 		 * 
-		 * @return an <tt>InputStream</tt> that reads the content of the image
-		 *         as of this revision
-		 * @throws IOException
-		 *             if <tt>IOException</tt> is thrown while connecting to the
-		 *             wiki
+		 * @param reply
+		 *            The continuable reply from the API in XML format.
+		 * @param tagName
+		 *            The name of the tag in <tt>&lt;query-continue&gt;</tt>
+		 *            containing the new continuation value, for example
+		 *            <code>"allpages"</code>.
 		 */
-		public InputStream getContent() throws IOException {
-			return get(url);
-		}
+		protected void processContinuation(final Document reply, final String tagName) throws MediaWiki.ResponseFormatException {
+			final NodeList queryContinueTags = reply.getElementsByTagName("query-continue");
 
-		@Override
-		public String toString() {
-			return String.format("ImageRevision[%s (%d bytes), %dx%d, by %s (%s) <%s>, MIME type: %s, SHA-1 hash: %s]", timestamp, length, width, height, userName, comment, url, mimeType, sha1hash);
-		}
-	}
+			if (queryContinueTags.getLength() > 0) {
+				final Element queryContinueTag = (Element) queryContinueTags.item(0);
 
-	public class InterlanguageLink {
-		private final String language;
+				final NodeList continuationTags = queryContinueTag.getElementsByTagName(tagName);
 
-		private final String foreignTitle;
+				if (continuationTags.getLength() > 0) {
+					final Element continuationTag = (Element) continuationTags.item(0);
 
-		InterlanguageLink(final String language, final String foreignTitle) {
-			this.language = language;
-			this.foreignTitle = foreignTitle;
+					final NamedNodeMap attributes = continuationTag.getAttributes();
+
+					if (attributes.getLength() == 0)
+						throw new MediaWiki.ResponseFormatException("no attribute in query-continue/" + tagName);
+
+					continuationName = attributes.item(0).getNodeName();
+					continuation = attributes.item(0).getNodeValue();
+				} else {
+					done = true;
+				}
+			} else {
+				done = true;
+			}
 		}
 
 		/**
-		 * Returns the language identifier specified in the interlanguage link
-		 * for which this <tt>InterlanguageLink</tt> was created.
+		 * Converts an XML <tt>Element</tt> containing information to be
+		 * returned into an object of type <tt>T</tt>.
 		 * 
-		 * @return the language identifier specified in the interlanguage link
-		 *         for which this <tt>InterlanguageLink</tt> was created
+		 * @param element
+		 *            An XML <tt>Element</tt> containing information to be
+		 *            converted.
+		 * @return the converted element
+		 * @throws Exception
+		 *             if parsing the <tt>Element</tt>'s data throws
+		 *             <tt>Exception</tt>
 		 */
-		public String getLanguage() {
-			return language;
-		}
+		protected abstract T convert(Element element) throws Exception;
 
 		/**
-		 * Returns the <tt>InterwikiPrefix</tt> corresponding to the language of
-		 * the interlanguage link for which this <tt>InterlanguageLink</tt> was
-		 * created, drawn from the enclosing <tt>MediaWiki</tt>'s interwiki
-		 * prefix map.
+		 * Reads the continuation name and value, stores the next buffer of
+		 * elements using <code>setUpcoming</code>, and stores the new
+		 * continuation name and value.
+		 * <p>
+		 * This method can assume that, when it is called, all of the following
+		 * conditions are met:
+		 * <ul>
+		 * <li>The buffer pointer is past its end or the buffer is
+		 * <code>null</code>, so more elements are needed;
+		 * <li>The iteration is not done; that is, <code>isDone()</code> returns
+		 * <code>false</code>.
+		 * <p>
+		 * This method can assume that, if it throws a checked exception, the
+		 * buffer will not be filled, and the iteration will not be considered
+		 * done. It can then be retried later safely.
 		 * 
-		 * @return the <tt>InterwikiPrefix</tt> corresponding to the language of
-		 *         the interlanguage link for which this
-		 *         <tt>InterlanguageLink</tt> was created
-		 * @throws IOException
-		 *             if an error occurs while getting the interwiki prefixes
-		 *             on the wiki represented by the enclosing
-		 *             <tt>MediaWiki</tt>
+		 * @throws Exception
+		 *             if receiving the next buffer's worth of <tt>Element</tt>s
+		 *             throws <tt>Exception</tt>
 		 */
-		public MediaWiki.InterwikiPrefix getLanguagePrefix() throws IOException {
-			return getInterwikiPrefixes().getInterwikiPrefix(language);
-		}
+		protected abstract void cacheUpcoming() throws Exception;
+	}
 
+	/**
+	 * A continuable query iterator over a chronological list whose items are
+	 * identified by their timestamp and an ID, which reports its position in
+	 * the list and skips the items before the position it started from.
+	 */
+	protected abstract class AbstractResumableQueryIterator<T> extends AbstractContinuableQueryIterator<T> implements MediaWiki.ResumableIterator<T> {
 		/**
-		 * Returns the full name of the article on the other wiki.
-		 * 
-		 * @return the full name of the article on the other wiki
+		 * The position after the last item returned, or the position given
+		 * to start from if none was returned yet.
 		 */
-		public String getForeignTitle() {
-			return foreignTitle;
-		}
+		private MediaWiki.StreamPosition position;
 
 		/**
-		 * Returns the URL at which the article on the other wiki can be seen in
-		 * a browser.
+		 * Constructs a new instance of
+		 * <tt>AbstractResumableQueryIterator</tt> that skips the items before
+		 * the given position. The start parameter of the query must be set to
+		 * the timestamp of the position by the subclass.
 		 * 
-		 * @return the URL at which the article on the other wiki can be seen in
-		 *         a browser
-		 * @throws IOException
-		 *             if an error occurs while getting the interwiki prefixes
-		 *             on the wiki represented by the enclosing
-		 *             <tt>MediaWiki</tt>
+		 * @param after
+		 *            The position to start from, or <code>null</code> to start
+		 *            at the beginning of the list.
 		 */
-		public String getURL() throws IOException {
-			return getLanguagePrefix().resolveURL(foreignTitle);
+		AbstractResumableQueryIterator(final MediaWiki.StreamPosition after) {
+			position = after;
 		}
 
-		@Override
-		public String toString() {
-			return String.format("InterlanguageLink[%s:\"%s\"]", language, foreignTitle);
+		public synchronized MediaWiki.StreamPosition getPosition() {
+			return position;
 		}
-	}
 
-	public class Link extends PageNameComponents {
-		Link(final long namespace, final String fullPageName) throws IOException {
-			super(fullPageName, namespace);
+		@Override
+		public synchronized T next() throws MediaWiki.IterationException {
+			final T result = super.next();
+			final Date timestamp = getTimestamp(result);
+			final long id = getItemID(result);
+			position = position != null ? position.after(timestamp, id) : new MediaWiki.StreamPosition(timestamp, id);
+			return result;
 		}
 
+		/**
+		 * Gets replies using <code>cacheReply</code> until one has items after
+		 * the position or the list ends, so that an empty buffer only means the
+		 * end of the list.
+		 */
 		@Override
-		public String toString() {
-			return String.format("Link[\"%s\"]", getFullPageName());
+		protected synchronized void cacheUpcoming() throws Exception {
+			do {
+				cacheReply();
+			} while ((getUpcoming() == null) && !isDone());
 		}
-	}
-
-	public class Category extends PageNameComponents {
-		private final long entries;
 
-		private final long pages;
+		/**
+		 * Stores the items of the given reply that are after the position
+		 * using <code>setUpcoming</code>, if there are any. The start
+		 * parameter of the query is inclusive, so the items returned before
+		 * the position on the same second are listed again.
+		 * 
+		 * @param itemTags
+		 *            The tags of the items in the reply, each with a
+		 *            <tt>timestamp</tt> attribute.
+		 */
+		protected void setUpcomingAfterPosition(final NodeList itemTags) throws Exception {
+			final List<Element> items = new ArrayList<Element>(itemTags.getLength());
 
-		private final long files;
+			for (int i = 0; i < itemTags.getLength(); i++) {
+				final Element itemTag = (Element) itemTags.item(i);
 
-		private final long subcategories;
+				if ((position == null) || !position.includes(timestampToDate(itemTag.getAttribute("timestamp")), getItemID(itemTag))) {
+					items.add(itemTag);
+				}
+			}
 
-		Category(final String fullName, final long entries, final long pages, final long files, final long subcategories) throws IOException {
-			super(fullName);
-			this.entries = entries;
-			this.pages = pages;
-			this.files = files;
-			this.subcategories = subcategories;
+			if (!items.isEmpty()) {
+				setUpcoming(items);
+			}
 		}
 
 		/**
-		 * Returns the number of entries in the category for which this
-		 * <tt>Category</tt> was created. This includes pages, files and
-		 * subcategories.
-		 * 
-		 * @return the number of entries in the category for which this
-		 *         <tt>Category</tt> was created
+		 * Gets the next reply's worth of items, under the same conditions as
+		 * <code>cacheUpcoming</code>, and stores them using
+		 * <code>setUpcomingAfterPosition</code>.
 		 */
-		public long getEntryCount() {
-			return entries;
-		}
+		protected abstract void cacheReply() throws Exception;
 
 		/**
-		 * Returns the number of pages in the category for which this
-		 * <tt>Category</tt> was created.
-		 * 
-		 * @return the number of pages in the category for which this
-		 *         <tt>Category</tt> was created
+		 * Returns the timestamp of the given item.
 		 */
-		public long getPageCount() {
-			return pages;
-		}
+		protected abstract Date getTimestamp(T item);
 
 		/**
-		 * Returns the number of files in the category for which this
-		 * <tt>Category</tt> was created.
-		 * 
-		 * @return the number of files in the category for which this
-		 *         <tt>Category</tt> was created
+		 * Returns the ID identifying the given item among those made on the
+		 * same second.
 		 */
-		public long getFileCount() {
-			return files;
-		}
+		protected abstract long getItemID(T item);
 
 		/**
-		 * Returns the number of categories placed in the category for which
-		 * this <tt>Category</tt> was created. Those are its sub-categories.
-		 * 
-		 * @return the number of categories placed in the category for which
-		 *         this <tt>Category</tt> was created
+		 * Returns the ID identifying the item described by the given tag among
+		 * those made on the same second.
 		 */
-		public long getSubcategoryCount() {
-			return subcategories;
-		}
-
-		@Override
-		public String toString() {
-			return String.format("Category[\"%s\", entries: %d, pages: %d, files: %d, subcategories: %d]", getFullPageName(), entries, pages, files, subcategories);
-		}
+		protected abstract long getItemID(Element itemTag) throws Exception;
 	}
 
-	public static class ParseResult {
-		private final String text;
-
-		private final List<MediaWiki.InterlanguageLink> interlanguageLinks;
-
-		private final List<MediaWiki.CategoryMembership> categoryMemberships;
-
-		private final List<MediaWiki.Link> pageLinks;
-
-		private final List<MediaWiki.Link> transclusions;
-
-		private final List<MediaWiki.Link> images;
-
-		private final List<String> externalLinks;
-
-		ParseResult(final String text, final List<MediaWiki.InterlanguageLink> interlanguageLinks, final List<MediaWiki.CategoryMembership> categoryMemberships, final List<MediaWiki.Link> pageLinks, final List<MediaWiki.Link> transclusions, final List<MediaWiki.Link> images, final List<String> externalLinks) {
-			this.text = text;
-			this.interlanguageLinks = interlanguageLinks != null ? Collections.unmodifiableList(interlanguageLinks) : null;
-			this.categoryMemberships = categoryMemberships != null ? Collections.unmodifiableList(categoryMemberships) : null;
-			this.pageLinks = pageLinks != null ? Collections.unmodifiableList(pageLinks) : null;
-			this.transclusions = transclusions != null ? Collections.unmodifiableList(transclusions) : null;
-			this.images = images != null ? Collections.unmodifiableList(images) : null;
-			this.externalLinks = externalLinks != null ? Collections.unmodifiableList(externalLinks) : null;
-		}
+	/**
+	 * Stores replies to read-only API requests made through a
+	 * <tt>MediaWiki</tt>, so that identical requests can be answered without
+	 * downloading the reply again. The total size of the stored replies is
+	 * bounded; the least recently used replies are evicted first.
+	 * <p>
+	 * A stored reply is reused as-is while it is fresh. Its freshness lifetime
+	 * comes from the time-to-live policy set for the request's API modules
+	 * with <code>setTimeToLive</code>, or, if there is none, from the
+	 * <tt>Cache-Control</tt> header sent by the wiki. Once it is stale, it is
+	 * revalidated with a conditional GET request if the wiki sent an
+	 * <tt>ETag</tt> or <tt>Last-Modified</tt> header for it.
+	 * <p>
+	 * Setting a time-to-live policy trades freshness for network usage: edits
+	 * made on the wiki, even by the same <tt>MediaWiki</tt>, are not reflected
+	 * in replies reused from the cache until they become stale.
+	 * <p>
+	 * This class is thread-safe.
+	 * 
+	 * @see MediaWiki#setResponseCache(MediaWiki.ResponseCache)
+	 */
+	public static class ResponseCache {
+		private final long maxBytes;
 
-		/**
-		 * Returns the HTML parsed version of the wikitext for which this
-		 * <tt>ParseResult</tt> was created.
-		 * 
-		 * @return the HTML parsed version of the wikitext for which this
-		 *         <tt>ParseResult</tt> was created
-		 */
-		public String getText() {
-			return text;
-		}
+		private long bytes;
 
 		/**
-		 * Returns the list of interlanguage links contained in the wikitext for
-		 * which this <tt>ParseResult</tt> was created. The returned list is not
-		 * modifiable.
-		 * 
-		 * @return the list of interlanguage links contained in the wikitext for
-		 *         which this <tt>ParseResult</tt> was created
+		 * Stored replies, keyed by request URL without its request ID, in
+		 * access order.
 		 */
-		public List<MediaWiki.InterlanguageLink> getInterlanguageLinks() {
-			return interlanguageLinks;
-		}
+		private final LinkedHashMap<String, MediaWiki.ResponseCache.Entry> entries = new LinkedHashMap<String, MediaWiki.ResponseCache.Entry>(16, 0.75f, true);
 
 		/**
-		 * Returns the list of categorisations contained in the wikitext for
-		 * which this <tt>ParseResult</tt> was created. The returned list is not
-		 * modifiable.
-		 * 
-		 * @return the list of categorisations contained in the wikitext for
-		 *         which this <tt>ParseResult</tt> was created
+		 * Time-to-live policies, in milliseconds, keyed by API module.
 		 */
-		public List<MediaWiki.CategoryMembership> getCategoryMemberships() {
-			return categoryMemberships;
-		}
+		private final Map<String, Long> timesToLive = new TreeMap<String, Long>();
 
-		/**
-		 * Returns the list of links pointing to pages on the same wiki
-		 * contained in the wikitext for which this <tt>ParseResult</tt> was
-		 * created. The returned list is not modifiable.
-		 * 
-		 * @return the list of links pointing to pages on the same wiki
-		 *         contained in the wikitext for which this <tt>ParseResult</tt>
-		 *         was created
-		 */
-		public List<MediaWiki.Link> getPageLinks() {
-			return pageLinks;
-		}
+		private long hits, revalidations, misses, bytesSaved, evictions;
 
 		/**
-		 * Returns the list of transclusions contained in the wikitext for which
-		 * this <tt>ParseResult</tt> was created. The returned list is not
-		 * modifiable.
+		 * Creates a <tt>ResponseCache</tt> that stores at most
+		 * <code>maxBytes</code> bytes of replies.
 		 * 
-		 * @return the list of transclusions contained in the wikitext for which
-		 *         this <tt>ParseResult</tt> was created
+		 * @param maxBytes
+		 *            The maximum total size of the replies stored by the new
+		 *            <tt>ResponseCache</tt>, in bytes, after decompression.
+		 * @throws IllegalArgumentException
+		 *             if <code>maxBytes</code> is negative or zero
 		 */
-		public List<MediaWiki.Link> getTransclusions() {
-			return transclusions;
+		public ResponseCache(final long maxBytes) throws IllegalArgumentException {
+			if (maxBytes <= 0)
+				throw new IllegalArgumentException("maxBytes <= 0");
+			this.maxBytes = maxBytes;
 		}
 
 		/**
-		 * Returns the list of images used in the wikitext for which this
-		 * <tt>ParseResult</tt> was created. The returned list is not
-		 * modifiable.
+		 * Sets the time-to-live policy for requests using the given API
+		 * module. Replies to such requests are reused without contacting the
+		 * wiki for the given amount of time after they are received.
+		 * <p>
+		 * If a request uses multiple modules that have a time-to-live policy,
+		 * the shortest one applies.
 		 * 
-		 * @return the list of images used in the wikitext for which this
-		 *         <tt>ParseResult</tt> was created
+		 * @param module
+		 *            The API module. This is either an action, such as
+		 *            <code>"parse"</code> or <code>"expandtemplates"</code>, or
+		 *            a query module preceded by its type and an equals sign,
+		 *            such as <code>"meta=siteinfo"</code>,
+		 *            <code>"list=embeddedin"</code> or
+		 *            <code>"prop=revisions"</code>.
+		 * @param time
+		 *            The time during which replies are to be reused. If this is
+		 *            0, the policy is removed.
+		 * @param unit
+		 *            The unit of <code>time</code>.
+		 * @return this <tt>ResponseCache</tt>
+		 * @throws IllegalArgumentException
+		 *             if <code>time</code> is negative
 		 */
-		public List<MediaWiki.Link> getImages() {
-			return images;
+		public synchronized MediaWiki.ResponseCache setTimeToLive(final String module, final long time, final TimeUnit unit) throws IllegalArgumentException {
+			if (time < 0)
+				throw new IllegalArgumentException("time < 0");
+			if (time == 0) {
+				timesToLive.remove(module);
+			} else {
+				timesToLive.put(module, unit.toMillis(time));
+			}
+			return this;
 		}
 
 		/**
-		 * Returns the list of Web links contained in the wikitext for which
-		 * this <tt>ParseResult</tt> was created. The returned list is not
-		 * modifiable.
+		 * Returns the time-to-live policy, in milliseconds, that applies to the
+		 * request having the given cache key, or 0 if there is none.
 		 * 
-		 * @return the list of Web links contained in the wikitext for which
-		 *         this <tt>ParseResult</tt> was created
+		 * @param key
+		 *            The cache key of the request.
+		 * @return the time-to-live policy, in milliseconds, that applies to the
+		 *         request having the given cache key
 		 */
-		public List<String> getExternalLinks() {
-			return externalLinks;
+		synchronized long getTimeToLive(final String key) {
+			if (timesToLive.isEmpty())
+				return 0;
+			final Map<String, String> params = getParams(key);
+			final List<String> modules = new ArrayList<String>();
+			modules.add(params.get("action"));
+			for (final String type : new String[] { "prop", "list", "meta" }) {
+				if (params.containsKey(type)) {
+					for (final String module : params.get(type).split("\\|")) {
+						modules.add(type + "=" + module);
+					}
+				}
+			}
+			long result = 0;
+			for (final String module : modules) {
+				final Long timeToLive = timesToLive.get(module);
+				if ((timeToLive != null) && ((result == 0) || (timeToLive < result))) {
+					result = timeToLive;
+				}
+			}
+			return result;
 		}
-	}
-
-	public static class User {
-		private final String userName;
-
-		private final Set<String> groups;
-
-		private final Set<String> rights;
 
-		private final long editCount;
-
-		private final String blockingUser;
+		synchronized MediaWiki.ResponseCache.Entry lookup(final String key) {
+			return entries.get(key);
+		}
 
-		private final String blockReason;
+		synchronized byte[] hit(final MediaWiki.ResponseCache.Entry entry) {
+			hits++;
+			bytesSaved += entry.content.length;
+			return entry.content;
+		}
 
-		private final Date registration;
+		synchronized byte[] revalidated(final MediaWiki.ResponseCache.Entry entry, final long freshnessLifetime) {
+			revalidations++;
+			bytesSaved += entry.content.length;
+			entry.expires = System.currentTimeMillis() + freshnessLifetime;
+			return entry.content;
+		}
 
-		private final boolean isMissing;
+		synchronized void miss() {
+			misses++;
+		}
 
-		User(final boolean isMissing, final String userName, final Collection<String> groups, final Collection<String> rights, final long editCount, final String blockingUser, final String blockReason, final Date registration) {
-			this.isMissing = isMissing;
-			this.userName = userName;
-			this.groups = Collections.unmodifiableSet(groups instanceof TreeSet<?> ? (TreeSet<String>) groups : new TreeSet<String>(groups));
-			this.rights = Collections.unmodifiableSet(rights instanceof TreeSet<?> ? (TreeSet<String>) rights : new TreeSet<String>(rights));
-			this.editCount = editCount;
-			this.blockingUser = blockingUser;
-			this.blockReason = blockReason;
-			this.registration = registration;
+		synchronized void store(final String key, final MediaWiki.ResponseCache.Entry entry) {
+			misses++;
+			if (entry.content.length > maxBytes)
+				return;
+			final MediaWiki.ResponseCache.Entry old = entries.put(key, entry);
+			if (old != null) {
+				bytes -= old.content.length;
+			}
+			bytes += entry.content.length;
+			final Iterator<MediaWiki.ResponseCache.Entry> i = entries.values().iterator();
+			while (bytes > maxBytes) {
+				bytes -= i.next().content.length;
+				i.remove();
+				evictions++;
+			}
 		}
 
 		/**
-		 * Returns <code>true</code> if this <tt>User</tt> represents a missing
-		 * user on the wiki represented by the enclosing <tt>MediaWiki</tt>, or
-		 * <code>false</code> if he or she exists. If the return value is
-		 * <code>true</code>, all other methods except <code>getUserName</code>
-		 * will return undefined values.
-		 * 
-		 * @return whether this <tt>User</tt> represents a missing user on the
-		 *         wiki represented by the enclosing <tt>MediaWiki</tt>
+		 * Removes all replies stored in this <tt>ResponseCache</tt>. The
+		 * statistics are not reset.
 		 */
-		public boolean isMissing() {
-			return isMissing;
+		public synchronized void clear() {
+			entries.clear();
+			bytes = 0;
 		}
 
 		/**
-		 * Returns the username (not real name) of the user for whom this
-		 * <tt>User</tt> was created. The return value is an IP address if
-		 * <code>isAnonymous()</code> returns <code>true</code>.
+		 * Returns the number of requests answered from this
+		 * <tt>ResponseCache</tt> without contacting the wiki.
 		 * 
-		 * @return the username of the user for whom this <tt>User</tt> was
-		 *         created
+		 * @return the number of requests answered from this
+		 *         <tt>ResponseCache</tt> without contacting the wiki
 		 */
-		public String getUserName() {
-			return userName;
+		public synchronized long getHitCount() {
+			return hits;
 		}
 
 		/**
-		 * Returns an immutable view of the list of groups that the user for
-		 * whom this <tt>User</tt> was created user is a part of.
+		 * Returns the number of requests answered from this
+		 * <tt>ResponseCache</tt> after the wiki confirmed, with
+		 * <tt>304 Not Modified</tt>, that a stored reply was still current.
 		 * 
-		 * @return an immutable view of the list of groups that the user for
-		 *         whom this <tt>User</tt> was created is a part of
+		 * @return the number of requests answered from this
+		 *         <tt>ResponseCache</tt> after the wiki confirmed that a stored
+		 *         reply was still current
 		 */
-		public Collection<String> getGroups() {
-			return groups;
+		public synchronized long getRevalidationCount() {
+			return revalidations;
 		}
 
 		/**
-		 * Returns an immutable view of the list of rights that the user for
-		 * whom this <tt>User</tt> was created has.
+		 * Returns the number of cacheable requests for which the reply had to
+		 * be downloaded in full.
 		 * 
-		 * @return an immutable view of the list of rights that the user for
-		 *         whom this <tt>User</tt> was created has
+		 * @return the number of cacheable requests for which the reply had to
+		 *         be downloaded in full
 		 */
-		public Collection<String> getRights() {
-			return rights;
+		public synchronized long getMissCount() {
+			return misses;
 		}
 
 		/**
-		 * Returns whether the the user for whom this <tt>User</tt> was created
-		 * is in all of the specified groups. The return value is
-		 * <code>true</code> if no groups are specified.
+		 * Returns the number of bytes, after decompression, that did not have
+		 * to be downloaded from the wiki thanks to this <tt>ResponseCache</tt>.
 		 * 
-		 * @param groups
-		 *            The groups to check membership in.
-		 * @return whether the user for whom this <tt>User</tt> was created is
-		 *         in all of the specified groups
+		 * @return the number of bytes, after decompression, that did not have
+		 *         to be downloaded from the wiki thanks to this
+		 *         <tt>ResponseCache</tt>
 		 */
-		public boolean isInGroups(final String... groups) {
-			for (final String group : groups) {
-				if (!this.groups.contains(group))
-					return false;
-			}
-			return true;
+		public synchronized long getBytesSaved() {
+			return bytesSaved;
 		}
 
 		/**
-		 * Returns whether the user for whom this <tt>User</tt> was created has
-		 * all of the specified rights. The return value is <code>true</code> if
-		 * no rights are specified.
+		 * Returns the number of replies that were removed from this
+		 * <tt>ResponseCache</tt> to keep it under its maximum size.
 		 * 
-		 * @param rights
-		 *            The rights to check possession of.
-		 * @return whether the user for whom this <tt>User</tt> was created has
-		 *         all of the specified rights
+		 * @return the number of replies that were removed from this
+		 *         <tt>ResponseCache</tt> to keep it under its maximum size
 		 */
-		public boolean hasRights(final String... rights) {
-			for (final String right : rights) {
-				if (!this.rights.contains(right))
-					return false;
-			}
-			return true;
+		public synchronized long getEvictionCount() {
+			return evictions;
 		}
 
 		/**
-		 * Returns the number of edits made by the user for whom this
-		 * <tt>User</tt> was created on the wiki represented by the enclosing
-		 * <tt>MediaWiki</tt>.
+		 * Returns the number of replies currently stored in this
+		 * <tt>ResponseCache</tt>.
 		 * 
-		 * @return the number of edits made by the user for whom this
-		 *         <tt>User</tt> was created on the wiki represented by the
-		 *         enclosing <tt>MediaWiki</tt>
+		 * @return the number of replies currently stored in this
+		 *         <tt>ResponseCache</tt>
 		 */
-		public long getEditCount() {
-			return editCount;
+		public synchronized int size() {
+			return entries.size();
 		}
 
 		/**
-		 * Returns the name of the user who blocked the user for whom this
-		 * <tt>User</tt> was created. The return value is <code>null</code> if
-		 * the user for whom this <tt>User</tt> was created is not blocked.
+		 * Returns the total size of the replies currently stored in this
+		 * <tt>ResponseCache</tt>, in bytes, after decompression.
 		 * 
-		 * @return the name of the user who blocked the user for whom this
-		 *         <tt>User</tt> was created
+		 * @return the total size of the replies currently stored in this
+		 *         <tt>ResponseCache</tt>, in bytes, after decompression
 		 */
-		public String getBlockingUser() {
-			return blockingUser;
+		public synchronized long getByteSize() {
+			return bytes;
+		}
+
+		@Override
+		public synchronized String toString() {
+			return String.format("ResponseCache[%d entries, %d/%d bytes, %d hits, %d revalidations, %d misses, %d bytes saved, %d evictions]", entries.size(), bytes, maxBytes, hits, revalidations, misses, bytesSaved, evictions);
 		}
 
+		private static final Pattern requestIDRegex = Pattern.compile("requestid=[^&]*&?");
+
 		/**
-		 * Returns the reason why the user for whom this <tt>User</tt> was
-		 * created is blocked. The return value is <code>null</code> if the user
-		 * for whom this <tt>User</tt> was created is not blocked.
+		 * Returns the cache key for the given URL, or <code>null</code> if the
+		 * URL is not that of a cacheable API request. Requests for tokens,
+		 * logins and logouts are not cacheable.
 		 * 
-		 * @return the reason why the user for whom this <tt>User</tt> was
-		 *         created is blocked
+		 * @param url
+		 *            The URL to examine.
+		 * @return the cache key for the given URL, or <code>null</code> if the
+		 *         URL is not that of a cacheable API request
 		 */
-		public String getBlockReason() {
-			return blockReason;
+		static String getKey(final String url) {
+			if (url.indexOf("/api.php?") == -1)
+				return null;
+			final String key = requestIDRegex.matcher(url).replaceFirst("");
+			final Map<String, String> params = getParams(key);
+			final String action = params.get("action");
+			if ((action == null) || action.equals("login") || action.equals("logout") || action.equals("tokens"))
+				return null;
+			if (params.containsKey("meta") && Arrays.asList(params.get("meta").split("\\|")).contains("tokens"))
+				return null;
+			for (final String param : params.keySet()) {
+				if (param.endsWith("token"))
+					return null;
+			}
+			return key;
+		}
+
+		private static Map<String, String> getParams(final String url) {
+			final Map<String, String> result = new TreeMap<String, String>();
+			for (final String param : url.substring(url.indexOf('?') + 1).split("&")) {
+				final int equals = param.indexOf('=');
+				if (equals == -1) {
+					continue;
+				}
+				try {
+					result.put(URLDecoder.decode(param.substring(0, equals), "UTF-8"), URLDecoder.decode(param.substring(equals + 1), "UTF-8"));
+				} catch (final UnsupportedEncodingException shouldNeverHappen) {
+					throw new InternalError("UTF-8 is not supported by this Java VM");
+				}
+			}
+			return result;
+		}
+
+		static class Entry {
+			final byte[] content;
+
+			final String entityTag, lastModified;
+
+			/**
+			 * The time at which this <tt>Entry</tt> becomes stale, in
+			 * milliseconds since the epoch. Written only by the
+			 * <tt>ResponseCache</tt>.
+			 */
+			volatile long expires;
+
+			Entry(final byte[] content, final String entityTag, final String lastModified, final long expires) {
+				this.content = content;
+				this.entityTag = entityTag;
+				this.lastModified = lastModified;
+				this.expires = expires;
+			}
+
+			boolean isFresh() {
+				return System.currentTimeMillis() < expires;
+			}
 		}
+	}
 
+	/**
+	 * A job submitted to a <tt>MediaWiki.WriteQueue</tt>. Its
+	 * <code>prepare</code> method is called first, on one of the queue's
+	 * preparation threads, and may read from the wiki and compute the content
+	 * to be written. Its <code>write</code> method is called afterwards, on the
+	 * queue's writer thread, and should perform the write itself, for example
+	 * by calling <code>replacePage</code> or <code>endDelete</code>.
+	 * 
+	 * @param <T>
+	 *            The type of the outcome of the job.
+	 */
+	public static abstract class WriteJob<T> {
 		/**
-		 * Returns the date and time at which the user for whom this
-		 * <tt>User</tt> was created registered on the enclosing
-		 * <tt>MediaWiki</tt>. The return value is <code>null</code> if this
-		 * information is unavailable.
+		 * Prepares this job. This method may run concurrently with the
+		 * preparation of other jobs and with writes. The default
+		 * implementation does nothing.
 		 * 
-		 * @return the date and time at which the user for whom this
-		 *         <tt>User</tt> was created registered on the enclosing
-		 *         <tt>MediaWiki</tt>
+		 * @param wiki
+		 *            The <tt>MediaWiki</tt> that will perform the write.
+		 * @throws IOException
+		 *             if <tt>IOException</tt> is thrown while connecting to
+		 *             the wiki or while reading the XML reply from the API
+		 * @throws MediaWiki.MediaWikiException
+		 *             if a MediaWiki API error is returned
 		 */
-		public Date getRegistrationDate() {
-			return registration;
-		}
+		protected void prepare(final MediaWiki wiki) throws IOException, MediaWiki.MediaWikiException {}
 
-		@Override
-		public String toString() {
-			// CurrentUser["Name", groups, rights, Y edits, registered DATE,
-			// blocked by Sysop (Reason)]
-			return String.format("User[\"%s\", groups: %s, %rights: %s, %d edits%s%s]", userName, groups, rights, editCount, registration != null ? ", registered " + registration : "", blockingUser != null ? ", blocked by " + blockingUser + " (" + blockReason + ")" : "");
-		}
+		/**
+		 * Performs the write embodied by this job and returns its outcome.
+		 * Writes made through the same <tt>MediaWiki.WriteQueue</tt> never run
+		 * concurrently.
+		 * 
+		 * @param wiki
+		 *            The <tt>MediaWiki</tt> to perform the write with.
+		 * @return the outcome of the write
+		 * @throws IOException
+		 *             if <tt>IOException</tt> is thrown while connecting to
+		 *             the wiki or while reading the XML reply from the API
+		 * @throws MediaWiki.MediaWikiException
+		 *             if a MediaWiki API error is returned
+		 */
+		protected abstract T write(MediaWiki wiki) throws IOException, MediaWiki.MediaWikiException;
 	}
 
-	public class RecentChange extends PageNameComponents {
-		private final String changeType, username, comment, logType, logAction;
+	/**
+	 * A pipeline of writes to the wiki represented by a <tt>MediaWiki</tt>.
+	 * Jobs submitted to a <tt>WriteQueue</tt> are prepared concurrently by a
+	 * pool of threads, then written one at a time, in the order in which their
+	 * preparation completes, by a single writer thread. The outcome of a job,
+	 * or the exception it threw, is available from the <tt>Future</tt>
+	 * returned when it is submitted; see <code>getWriteOutcome</code>.
+	 * <p>
+	 * A <tt>MediaWiki</tt> still sends its requests one at a time. The gain
+	 * comes from preparing the next jobs while a write waits for its reply, so
+	 * that writes follow each other as closely as the write interval allows.
+	 * <p>
+	 * The threads of a <tt>WriteQueue</tt> end after a minute without work,
+	 * so that a queue that is neither finished nor closed does not keep them.
+	 */
+	public class WriteQueue {
+		/**
+		 * The time after which an idle thread of a <tt>WriteQueue</tt> ends,
+		 * in seconds.
+		 */
+		private static final long KEEP_ALIVE_SECONDS = 60;
 
-		private final long rcid, revid, oldRevid, oldLen, newLen, logid;
+		private final ThreadPoolExecutor preparers;
 
-		private final boolean isNew, bot, minor, anonymous;
+		private final ThreadPoolExecutor writer;
 
-		private final Date timestamp;
+		private final AtomicInteger pending = new AtomicInteger();
 
-		private final List<String> logParameters;
+		/**
+		 * The minimum time between the starts of two writes, in nanoseconds.
+		 */
+		private volatile long writeInterval;
 
-		RecentChange(final String changeType, final long namespaceID, final String title, final long pageid, final long rcid, final long revid, final long oldRevid, final String username, final long oldLen, final long newLen, final Date timestamp, final String comment, final boolean isNew, final boolean bot, final boolean minor, final boolean anonymous, final long logid, final String logType, final String logAction, final List<String> logParams) throws IOException {
-			super(title, namespaceID, pageid);
-			this.changeType = changeType;
-			this.rcid = rcid;
-			this.revid = revid;
-			this.oldRevid = oldRevid;
-			this.username = username;
-			this.oldLen = oldLen;
-			this.newLen = newLen;
-			this.timestamp = timestamp;
-			this.comment = comment;
-			this.isNew = isNew;
-			this.bot = bot;
-			this.minor = minor;
-			this.anonymous = anonymous;
-			this.logid = logid;
-			this.logType = logType;
-			this.logAction = logAction;
-			this.logParameters = logParams != null ? Collections.unmodifiableList(logParams) : null;
+		/**
+		 * The value of <code>System.nanoTime()</code> when the last write
+		 * started. Accessed only by the writer thread.
+		 */
+		private long lastWrite;
+
+		WriteQueue(final int preparationThreads) {
+			if (preparationThreads < 1)
+				throw new IllegalArgumentException("preparationThreads < 1");
+			preparers = new ThreadPoolExecutor(preparationThreads, preparationThreads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new MediaWiki.DaemonThreadFactory("MediaWiki write queue preparer"));
+			preparers.allowCoreThreadTimeOut(true);
+			writer = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new MediaWiki.DaemonThreadFactory("MediaWiki write queue writer"));
+			writer.allowCoreThreadTimeOut(true);
+			lastWrite = System.nanoTime();
 		}
 
 		/**
-		 * Returns the type of change embodied in this <tt>RecentChange</tt>.
-		 * This is one of the values of <tt>RecentChangeType</tt>.
+		 * Submits a job to this <tt>WriteQueue</tt>.
 		 * 
-		 * @return the type of change embodied in this <tt>RecentChange</tt>
-		 * @see RecentChangeType
+		 * @param job
+		 *            The job to be prepared and written.
+		 * @return a <tt>Future</tt> that holds the outcome of the job, or the
+		 *         exception it threw, once it has been written
+		 * @throws RejectedExecutionException
+		 *             if <code>finish</code> or <code>close</code> has been
+		 *             called
 		 */
-		public String getChangeType() {
-			return changeType;
+		public <T> Future<T> submit(final MediaWiki.WriteJob<T> job) {
+			if (job == null)
+				throw new NullPointerException("job");
+
+			final MediaWiki.WriteQueue.JobFuture<T> future = new MediaWiki.WriteQueue.JobFuture<T>(new Callable<T>() {
+				public T call() throws Exception {
+					waitForWriteInterval();
+					return job.write(MediaWiki.this);
+				}
+			});
+
+			pending.incrementAndGet();
+			try {
+				preparers.execute(new MediaWiki.WriteQueue.Preparation<T>(job, future));
+			} catch (final RejectedExecutionException ree) {
+				// Counts the job as done.
+				future.cancel(false);
+				throw ree;
+			}
+			return future;
 		}
 
 		/**
-		 * Returns the recent change ID of the change embodied in this
-		 * <tt>RecentChange</tt>. This is used for recent changes patrolling.
+		 * Returns the number of jobs submitted to this <tt>WriteQueue</tt>
+		 * that have not yet been written or failed.
 		 * 
-		 * @return the recent change ID of the change embodied in this
-		 *         <tt>RecentChange</tt>
+		 * @return the number of jobs submitted to this <tt>WriteQueue</tt> that
+		 *         have not yet been written or failed
 		 */
-		public long getRcid() {
-			return rcid;
+		public int getPendingCount() {
+			return pending.get();
 		}
 
 		/**
-		 * Returns the revision ID of a page after the change embodied in this
-		 * <tt>RecentChange</tt>. This does not apply to log entries.
+		 * Returns the minimum time between the starts of two writes.
 		 * 
-		 * @return the revision ID of a page after the change embodied in this
-		 *         <tt>RecentChange</tt>
+		 * @param unit
+		 *            The unit to return the interval in.
+		 * @return the minimum time between the starts of two writes
 		 */
-		public long getNewRevisionID() {
-			return revid;
+		public long getWriteInterval(final TimeUnit unit) {
+			return unit.convert(writeInterval, TimeUnit.NANOSECONDS);
 		}
 
 		/**
-		 * Returns the revision ID of a page before the change embodied in this
-		 * <tt>RecentChange</tt>. This does not apply to log entries and new
-		 * pages.
+		 * Sets the minimum time between the starts of two writes. This should
+		 * match the rate limit of the user on the wiki, if any. The default is
+		 * 0, meaning writes are sent as soon as the previous one completes.
 		 * 
-		 * @return the revision ID of a page before the change embodied in this
-		 *         <tt>RecentChange</tt>
+		 * @param interval
+		 *            The minimum time between the starts of two writes.
+		 * @param unit
+		 *            The unit of <code>interval</code>.
+		 * @return this <tt>WriteQueue</tt>
 		 */
-		public long getOldRevisionID() {
-			return oldRevid;
+		public MediaWiki.WriteQueue setWriteInterval(final long interval, final TimeUnit unit) {
+			if (interval < 0)
+				throw new IllegalArgumentException("interval < 0");
+			writeInterval = unit.toNanos(interval);
+			return this;
 		}
 
 		/**
-		 * Returns the name of the user who introduced the change embodied in
-		 * this <tt>RecentChange</tt>.
+		 * Stops accepting jobs and waits for all jobs already submitted to be
+		 * written or to fail.
 		 * 
-		 * @return the name of the user who introduced the change embodied in
-		 *         this <tt>RecentChange</tt>
+		 * @throws InterruptedException
+		 *             if the current thread is interrupted while waiting
 		 */
-		public String getUserName() {
-			return username;
+		public void finish() throws InterruptedException {
+			preparers.shutdown();
+			preparers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			writer.shutdown();
+			writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * Stops accepting jobs and cancels the jobs submitted that are not
+		 * being prepared or written yet, without waiting. The jobs being
+		 * prepared fail, and the job being written, if any, is completed.
+		 */
+		public void close() {
+			preparers.shutdown();
+			writer.shutdown();
+			cancelQueued(preparers);
+			cancelQueued(writer);
+		}
+
+		private void cancelQueued(final ThreadPoolExecutor executor) {
+			final List<Runnable> queued = new ArrayList<Runnable>();
+			executor.getQueue().drainTo(queued);
+			for (final Runnable task : queued) {
+				if (task instanceof MediaWiki.WriteQueue.Preparation) {
+					((MediaWiki.WriteQueue.Preparation<?>) task).future.cancel(false);
+				} else if (task instanceof Future) {
+					((Future<?>) task).cancel(false);
+				}
+			}
+		}
+
+		private void waitForWriteInterval() throws InterruptedException {
+			final long wait = lastWrite + writeInterval - System.nanoTime();
+			if (wait > 0) {
+				TimeUnit.NANOSECONDS.sleep(wait);
+			}
+			lastWrite = System.nanoTime();
+		}
+
+		/**
+		 * Prepares a job on a preparer thread, then hands it to the writer.
+		 */
+		private class Preparation<T> implements Runnable {
+			private final MediaWiki.WriteJob<T> job;
+
+			final MediaWiki.WriteQueue.JobFuture<T> future;
+
+			Preparation(final MediaWiki.WriteJob<T> job, final MediaWiki.WriteQueue.JobFuture<T> future) {
+				this.job = job;
+				this.future = future;
+			}
+
+			public void run() {
+				if (future.isCancelled())
+					return;
+				try {
+					job.prepare(MediaWiki.this);
+					writer.execute(future);
+				} catch (final Throwable t) {
+					// Including the rejection of a closed writer.
+					future.fail(t);
+				}
+			}
+		}
+
+		private class JobFuture<T> extends FutureTask<T> {
+			JobFuture(final Callable<T> callable) {
+				super(callable);
+			}
+
+			void fail(final Throwable t) {
+				setException(t);
+			}
+
+			@Override
+			protected void done() {
+				pending.decrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * An administrative action to be performed on many pages by the
+	 * <code>performBulkAction</code> method.
+	 * 
+	 * @see MediaWiki.BulkDeletion
+	 * @see MediaWiki.BulkProtection
+	 * @see MediaWiki.BulkMove
+	 */
+	public static abstract class BulkAction {
+		private final String tokenType;
+
+		private final String reason;
+
+		BulkAction(final String tokenType, final String reason) {
+			this.tokenType = tokenType;
+			this.reason = reason;
 		}
 
 		/**
-		 * Returns the comment given for the change embodied in this
-		 * <tt>RecentChange</tt>.
+		 * Returns the reason to be used to describe the action.
 		 * 
-		 * @return the comment given for the change embodied in this
-		 *         <tt>RecentChange</tt>
+		 * @return the reason to be used to describe the action
 		 */
-		public String getComment() {
-			return comment;
+		public String getReason() {
+			return reason;
 		}
 
 		/**
-		 * Returns whether the change embodied in this <tt>RecentChange</tt> has
-		 * created a new page. Essentially, this is similar to
-		 * <code>getChangeType().equals("new")</code>, but is a separate flag in
-		 * the API's result for <tt>list=recentchanges</tt>.
-		 * 
-		 * @return whether the change embodied in this <tt>RecentChange</tt> has
-		 *         created a new page
+		 * Returns the type of token required by the action, as used in the
+		 * <code>intoken</code> parameter of the API.
 		 */
-		public boolean isNewPage() {
-			return isNew;
+		String getTokenType() {
+			return tokenType;
 		}
 
 		/**
-		 * Returns whether the change embodied in this <tt>RecentChange</tt> is
-		 * a minor edit. This does not apply to log entries.
-		 * 
-		 * @return whether the change embodied in this <tt>RecentChange</tt> is
-		 *         a minor edit
+		 * Returns whether the action can only be performed on pages that
+		 * exist.
 		 */
-		public boolean isMinorEdit() {
-			return minor;
+		boolean requiresExistingPage() {
+			return true;
 		}
 
 		/**
-		 * Returns whether the change embodied in this <tt>RecentChange</tt> is
-		 * a bot action.
+		 * Performs the action on the page specified by <code>token</code>.
 		 * 
-		 * @return whether the change embodied in this <tt>RecentChange</tt> is
-		 *         a bot action
+		 * @param wiki
+		 *            The <tt>MediaWiki</tt> to perform the action with.
+		 * @param token
+		 *            The <tt>EditToken</tt> describing the page to act on and
+		 *            containing information to detect conflicts.
+		 * @throws IOException
+		 *             if <tt>IOException</tt> is thrown while connecting to
+		 *             the wiki or while reading the XML reply from the API
+		 * @throws MediaWiki.MediaWikiException
+		 *             if a MediaWiki API error is returned
 		 */
-		public boolean isBotAction() {
-			return bot;
-		}
+		protected abstract void perform(MediaWiki wiki, MediaWiki.EditToken token) throws IOException, MediaWiki.MediaWikiException;
+	}
 
+	/**
+	 * The deletion of many pages by the <code>performBulkAction</code>
+	 * method.
+	 */
+	public static class BulkDeletion extends MediaWiki.BulkAction {
 		/**
-		 * Returns whether the change embodied in this <tt>RecentChange</tt> was
-		 * made by an anonymous user.
+		 * Initialises a <tt>BulkDeletion</tt>.
 		 * 
-		 * @return whether the change embodied in this <tt>RecentChange</tt> was
-		 *         made by an anonymous user
+		 * @param reason
+		 *            The reason to be used to describe the deletions.
 		 */
-		public boolean isAnonymousAction() {
-			return anonymous;
+		public BulkDeletion(final String reason) {
+			super("delete", reason);
+		}
+
+		@Override
+		protected void perform(final MediaWiki wiki, final MediaWiki.EditToken token) throws IOException, MediaWiki.MediaWikiException {
+			wiki.endDelete(token, getReason());
 		}
+	}
+
+	/**
+	 * The modification of the protection of many pages by the
+	 * <code>performBulkAction</code> method. Missing pages can be acted on,
+	 * which protects them from creation.
+	 */
+	public static class BulkProtection extends MediaWiki.BulkAction {
+		private final Map<String, MediaWiki.Protection> protections;
+
+		private final boolean cascade;
 
 		/**
-		 * Returns the date and time at which the change embodied in this
-		 * <tt>RecentChange</tt> was made.
+		 * Initialises a <tt>BulkProtection</tt>.
 		 * 
-		 * @return the date and time at which the change embodied in this
-		 *         <tt>RecentChange</tt> was made
+		 * @param protections
+		 *            The protections to apply, as described for
+		 *            <code>MediaWiki.endProtect</code>.
+		 * @param reason
+		 *            The reason to be used to describe the protections.
+		 * @param cascade
+		 *            <code>true</code> if pages that are or become
+		 *            transcluded in the protected pages are to be protected
+		 *            as well.
 		 */
-		public Date getTimestamp() {
-			return timestamp;
+		public BulkProtection(final Map<String, MediaWiki.Protection> protections, final String reason, final boolean cascade) {
+			super("protect", reason);
+			if (protections == null)
+				throw new NullPointerException("protections");
+			this.protections = protections;
+			this.cascade = cascade;
+		}
+
+		@Override
+		boolean requiresExistingPage() {
+			return false;
+		}
+
+		@Override
+		protected void perform(final MediaWiki wiki, final MediaWiki.EditToken token) throws IOException, MediaWiki.MediaWikiException {
+			wiki.endProtect(token, protections, getReason(), cascade);
 		}
+	}
+
+	/**
+	 * The move of many pages by the <code>performBulkAction</code> method.
+	 */
+	public static class BulkMove extends MediaWiki.BulkAction {
+		private final Map<String, String> newFullNames;
+
+		private final boolean suppressRedirect, moveTalk, moveSubpages;
 
 		/**
-		 * Returns the length of a page after the change embodied in this
-		 * <tt>RecentChange</tt>. This does not apply to log entries.
+		 * Initialises a <tt>BulkMove</tt>.
 		 * 
-		 * @return the length of a page after the change embodied in this
-		 *         <tt>RecentChange</tt>
+		 * @param newFullNames
+		 *            A map from the full name of each page to move, as it is
+		 *            given to <code>performBulkAction</code>, to its new full
+		 *            name. Subclasses that override <code>getNewFullName</code>
+		 *            may pass <code>null</code>.
+		 * @param reason
+		 *            The reason to be used to describe the moves.
+		 * @param suppressRedirect
+		 *            <code>true</code> to move the pages without leaving
+		 *            redirects under their old names.
+		 * @param moveTalk
+		 *            <code>true</code> to move the pages' talk pages as well.
+		 * @param moveSubpages
+		 *            <code>true</code> to move the pages' subpages as well.
 		 */
-		public long getNewLength() {
-			return newLen;
+		public BulkMove(final Map<String, String> newFullNames, final String reason, final boolean suppressRedirect, final boolean moveTalk, final boolean moveSubpages) {
+			super("move", reason);
+			this.newFullNames = newFullNames;
+			this.suppressRedirect = suppressRedirect;
+			this.moveTalk = moveTalk;
+			this.moveSubpages = moveSubpages;
 		}
 
 		/**
-		 * Returns the length of a page before the change embodied in this
-		 * <tt>RecentChange</tt>. This does not apply to log entries and new
-		 * pages.
+		 * Returns the name that the page with the given full name is to be
+		 * moved to, or <code>null</code> if it has none.
 		 * 
-		 * @return the length a page before the change embodied in this
-		 *         <tt>RecentChange</tt>
+		 * @param fullName
+		 *            The full name of the page to move, as it was given to
+		 *            <code>performBulkAction</code>.
+		 * @return the name that the page with the given full name is to be
+		 *         moved to, or <code>null</code> if it has none
 		 */
-		public long getOldLength() {
-			return oldLen;
+		protected String getNewFullName(final String fullName) {
+			return newFullNames != null ? newFullNames.get(fullName) : null;
+		}
+
+		@Override
+		protected void perform(final MediaWiki wiki, final MediaWiki.EditToken token) throws IOException, MediaWiki.MediaWikiException {
+			final String newFullName = getNewFullName(token.getFullPageName());
+			if (newFullName == null)
+				throw new MediaWiki.ActionFailureException("no new name for " + token.getFullPageName());
+			wiki.endMove(token, newFullName, getReason(), suppressRedirect, moveTalk, moveSubpages);
 		}
+	}
 
+	/**
+	 * Receives the changes delivered by a
+	 * <tt>MediaWiki.RecentChangesFeed</tt> to which it is subscribed. The
+	 * methods of a listener are called on a thread dedicated to its
+	 * subscription, one call at a time.
+	 */
+	public interface RecentChangesListener {
 		/**
-		 * Returns the ID of the log entry representing the change embodied in
-		 * this <tt>RecentChange</tt>. This applies only to log entries.
+		 * Notifies this <tt>RecentChangesListener</tt> of a change made to the
+		 * wiki.
 		 * 
-		 * @return the ID of the log entry representing the change embodied in
-		 *         this <tt>RecentChange</tt>
+		 * @param rc
+		 *            The change.
 		 */
-		public long getLogID() {
-			return logid;
-		}
+		void recentChange(MediaWiki.RecentChange rc);
 
 		/**
-		 * Returns the name of the log containing the log entry representing the
-		 * change embodied in this <tt>RecentChange</tt>. This applies only to
-		 * log entries.
-		 * <p>
-		 * The return value is usually drawn from the constants in
-		 * <tt>StandardLogEntryType</tt>.
+		 * Notifies this <tt>RecentChangesListener</tt> that the feed failed
+		 * to poll the wiki, or to save its cursor. The feed polls again
+		 * later; no change is lost.
 		 * 
-		 * @return the name of the log containing the log entry representing the
-		 *         change embodied in this <tt>RecentChange</tt>
-		 * @see StandardLogEntryType
+		 * @param t
+		 *            The reason for the failure.
 		 */
-		public String getLogType() {
-			return logType;
-		}
+		void pollFailed(Throwable t);
+	}
 
+	/**
+	 * Selects the changes delivered to a subscriber of a
+	 * <tt>MediaWiki.RecentChangesFeed</tt>.
+	 */
+	public interface RecentChangeFilter {
 		/**
-		 * Returns the name of the log action representing the change embodied
-		 * in this <tt>RecentChange</tt>. This applies only to log entries.
+		 * Returns whether the given change is to be delivered.
 		 * 
-		 * @return the name of the log action representing the change embodied
-		 *         in this <tt>RecentChange</tt>
+		 * @param rc
+		 *            The change.
+		 * @return whether the given change is to be delivered
 		 */
-		public String getLogAction() {
-			return logAction;
-		}
+		boolean accept(MediaWiki.RecentChange rc);
+	}
 
+	/**
+	 * Names the revisions and pages that the subscribers of a
+	 * <tt>MediaWiki.RecentChangesFeed</tt> need to know about to process a
+	 * change. The feed requests them for all the changes of a poll together,
+	 * in batches, and attaches them to the changes before delivering them.
+	 * The methods of an enricher are called on the thread that polls the wiki,
+	 * and must not make requests themselves.
+	 * 
+	 * @see MediaWiki.RecentChange#getRelatedRevision(long)
+	 * @see MediaWiki.RecentChange#getRelatedPage(String)
+	 */
+	public interface RecentChangeEnricher {
 		/**
-		 * Returns the log parameters attached to the change embodied in this
-		 * <tt>RecentChange</tt>. This applies only to log entries.
-		 * <p>
-		 * The returned list is not modifiable.
+		 * Returns the IDs of the revisions needed to process the given change,
+		 * or <code>null</code> if none are needed.
 		 * 
-		 * @return the log parameters attached to the change embodied in this
-		 *         <tt>RecentChange</tt>
+		 * @param rc
+		 *            The change.
+		 * @return the IDs of the revisions needed to process the given change
 		 */
-		public List<String> getLogParameters() {
-			return logParameters;
-		}
+		long[] getRevisionIDs(MediaWiki.RecentChange rc);
 
-		@Override
-		public String toString() {
-			// RecentChange[2544102: "PAGENAME" 1337 <- 1336 (NEWSIZE <-
-			// OLDSIZE) @ DATE by USER, minor, anonymous, bot (COMMENT)]
-			return String.format("RecentChange[%d: %s \"%s\" %d <- %d (%d <- %d bytes) @ %s by %s%s%s%s %s]", rcid, changeType, getFullPageName(), revid, oldRevid, newLen, oldLen, timestamp, username, minor ? ", minor" : "", anonymous ? ", anonymous" : "", bot ? ", bot" : "", "(" + comment + ")");
-		}
+		/**
+		 * Returns the full names of the pages whose information is needed to
+		 * process the given change, or <code>null</code> if none are needed.
+		 * 
+		 * @param rc
+		 *            The change.
+		 * @return the full names of the pages whose information is needed to
+		 *         process the given change
+		 */
+		String[] getPageNames(MediaWiki.RecentChange rc);
 	}
 
 	/**
-	 * An edit token returned by the various <tt>start___</tt> methods, which is
-	 * used to perform the action and detect conflicts.
+	 * Delivers the changes made to the wiki represented by a
+	 * <tt>MediaWiki</tt> to any number of subscribers. A single thread polls
+	 * the wiki for all subscribers, and each subscriber receives the changes
+	 * that pass its filter on a thread of its own, in order of recent change
+	 * ID within each poll. A change is delivered once, even though polls
+	 * overlap by a second to catch changes recorded late in that second.
+	 * <p>
+	 * The time between polls and the number of changes requested at once
+	 * follow the rate at which changes are made: on a busy wiki, polls are as
+	 * frequent as the minimum interval allows, while an idle wiki is polled
+	 * as rarely as the maximum interval allows.
+	 * <p>
+	 * Changes are placed in a ring of preallocated slots shared by all
+	 * subscribers, each of which follows the ring at its own pace with a
+	 * sequence number of its own, so that a slow subscriber does not delay the
+	 * others until it falls behind by the size of the ring. The feed then
+	 * waits for it before delivering more changes to anyone, and resumes
+	 * polling from where it stopped. The lag of each subscriber is available
+	 * from its subscription.
+	 * <p>
+	 * If a cursor file is set, the position of the feed is saved to it each
+	 * time every subscriber has received a poll's changes, and a feed started
+	 * later resumes from that position. Changes made while no feed was running
+	 * are then delivered first, requesting as many changes at once as the API
+	 * allows and without waiting between polls, until the feed has caught up.
 	 */
-	public class EditToken implements Serializable, ObjectInputValidation {
-		private static final long serialVersionUID = 1L;
-
-		private final String fullName;
+	public class RecentChangesFeed {
+		private static final int MINIMUM_ELEMENT_COUNT = 10;
 
-		private final Date lastRevision;
-
-		private final Date start;
+		private static final int MAXIMUM_ELEMENT_COUNT = 500;
 
-		private final String token;
+		/**
+		 * The number of changes expected between two polls, from which the
+		 * interval between polls is derived.
+		 */
+		private static final double TARGET_CHANGES_PER_POLL = 10;
 
-		EditToken(final String fullName, final Date lastRevision, final Date start, final String token) {
-			if ((fullName == null) || (fullName.length() == 0))
-				throw new IllegalArgumentException("fullName may not be null or empty");
-			if (token == null)
-				throw new NullPointerException("token");
-			if (start == null)
-				throw new NullPointerException("start");
-			this.fullName = fullName;
-			this.lastRevision = lastRevision;
-			this.start = start;
-			this.token = token;
-		}
+		/**
+		 * The weight of the latest poll in the estimated rate of changes.
+		 */
+		private static final double RATE_SMOOTHING = 0.3;
 
 		/**
-		 * Returns the full name of the page to be edited.
-		 * 
-		 * @return the full name of the page to be edited
+		 * The number of recent change IDs below the highest delivered for
+		 * which the feed remembers whether they were delivered.
 		 */
-		public String getFullPageName() {
-			return fullName;
-		}
+		private static final int SEEN_RCID_CAPACITY = 1 << 16;
 
 		/**
-		 * Returns the time at which the edit started, which is used to detect
-		 * page recreation conflicts.
-		 * 
-		 * @return the time at which the edit started
+		 * The number of slots in the ring of items delivered to subscribers,
+		 * which is the number of items a subscriber may lag behind. This is a
+		 * power of two.
 		 */
-		public Date getStartTime() {
-			return start;
-		}
+		private static final int RING_SIZE = 1024;
 
 		/**
-		 * Returns the time at which the page was last edited, which is used to
-		 * detect edit conflicts.
-		 * 
-		 * @return the time at which the page was last edited
+		 * The maximum number of changes delivered by one poll. A poll that
+		 * reaches it is followed immediately by another.
 		 */
-		public Date getLastRevisionTime() {
-			return lastRevision;
-		}
+		private static final int MAXIMUM_CHANGES_PER_POLL = 5000;
 
 		/**
-		 * Returns the text of the token.
-		 * 
-		 * @return the text of the token
+		 * Marks the end of the changes to be delivered to a subscriber.
 		 */
-		public String getTokenText() {
-			return token;
-		}
+		private final Object END = new Object();
 
-		private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
-			in.registerValidation(this, 0);
-			in.defaultReadObject();
-		}
+		private final String showUser, hideUser;
+
+		private final boolean showRegularEdits, showNewPages, showLogEntries;
+
+		private final Boolean showMinorEdits, showBotActions, showAnonymousActions, showRedirects, showPatrolled;
+
+		private final long[] namespaceIDs;
+
+		private final List<MediaWiki.RecentChangesFeed.Subscription> subscriptions = new CopyOnWriteArrayList<MediaWiki.RecentChangesFeed.Subscription>();
+
+		private final List<MediaWiki.RecentChangeEnricher> enrichers = new CopyOnWriteArrayList<MediaWiki.RecentChangeEnricher>();
 
 		/**
-		 * This method validates deserialized objects and should generally not
-		 * be called by applications.
+		 * The items delivered to subscribers: changes, failures to poll,
+		 * checkpoints and <code>END</code>. The item with sequence number
+		 * <var>n</var> is in slot <var>n</var> modulo <code>RING_SIZE</code>.
+		 * The ring is also the lock guarding the sequence numbers.
 		 */
-		public void validateObject() throws InvalidObjectException {
-			if (token == null)
-				throw new InvalidObjectException("token == null");
-			if (start == null)
-				throw new InvalidObjectException("start == null");
-			if ((fullName == null) || (fullName.length() == 0))
-				throw new IllegalArgumentException("fullName may not be null or empty");
-		}
-	}
+		private final Object[] ring = new Object[RING_SIZE];
 
-	/**
-	 * An edit token returned by the <code>startRollback</code> method, which is
-	 * used to perform the action and detect new edits.
-	 */
-	public class RollbackToken implements Serializable, ObjectInputValidation {
-		private static final long serialVersionUID = 1L;
+		/**
+		 * The sequence number of the last item published to the ring.
+		 */
+		private long publishedSequence = -1;
 
-		private final String fullName;
+		private volatile long minimumInterval = TimeUnit.SECONDS.toNanos(2), maximumInterval = TimeUnit.MINUTES.toNanos(1);
 
-		private final String userName;
+		private volatile long interval = minimumInterval;
 
-		private final String token;
+		private volatile int elementCount = MINIMUM_ELEMENT_COUNT;
 
-		RollbackToken(final String fullName, final String userName, final String token) {
-			if ((fullName == null) || (fullName.length() == 0))
-				throw new IllegalArgumentException("fullName may not be null or empty");
-			if ((userName == null) || (userName.length() == 0))
-				throw new IllegalArgumentException("userName may not be null or empty");
-			if (token == null)
-				throw new NullPointerException("token");
-			this.fullName = fullName;
-			this.userName = userName;
-			this.token = token;
-		}
+		private volatile double changesPerSecond;
+
+		private Thread poller;
+
+		private volatile File cursorFile;
 
 		/**
-		 * Returns the full name of the page to be rolled back.
-		 * 
-		 * @return the full name of the page to be rolled back
+		 * The sequence number of the last checkpoint saved to
+		 * <code>cursorFile</code>. Guarded by <code>cursorFile</code>'s
+		 * writer, <code>saveCursor</code>.
 		 */
-		public String getFullPageName() {
-			return fullName;
-		}
+		private long savedSequence = -1;
 
 		/**
-		 * Returns the name of the user who made the last revision to the page
-		 * to be rolled back, and whose edits would therefore be rolled back if
-		 * this <tt>RollbackToken</tt> were used to complete the rollback.
-		 * 
-		 * @return the name of the user who made the last revision to the page
-		 *         to be rolled back
+		 * The number of checkpoints created. Accessed only by the polling
+		 * thread.
 		 */
-		public String getUserName() {
-			return userName;
-		}
+		private long checkpointCount;
+
+		/**
+		 * The checkpoints published to the ring and not yet saved, in the
+		 * order in which they were published. A checkpoint is saved once every
+		 * subscriber has received it or was cancelled. Guarded by
+		 * <code>ring</code>.
+		 */
+		private final LinkedList<MediaWiki.RecentChangesFeed.Checkpoint> unsavedCheckpoints = new LinkedList<MediaWiki.RecentChangesFeed.Checkpoint>();
 
 		/**
-		 * Returns the text of the token.
-		 * 
-		 * @return the text of the token
+		 * The timestamps of the changes retained by listeners, by recent
+		 * change ID. The saved position never passes them. Guarded by itself.
 		 */
-		public String getTokenText() {
-			return token;
-		}
-
-		private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
-			in.registerValidation(this, 0);
-			in.defaultReadObject();
-		}
+		private final Map<Long, Date> retainedChanges = new HashMap<Long, Date>();
 
 		/**
-		 * This method validates deserialized objects and should generally not
-		 * be called by applications.
+		 * The timestamp of the latest change seen. The next poll starts there.
+		 * Accessed only by the polling thread.
 		 */
-		public void validateObject() throws InvalidObjectException {
-			if (token == null)
-				throw new InvalidObjectException("token == null");
-			if ((fullName == null) || (fullName.length() == 0))
-				throw new InvalidObjectException("fullName may not be null or empty");
-			if ((userName == null) || (userName.length() == 0))
-				throw new InvalidObjectException("userName may not be null or empty");
-		}
-	}
+		private Date earliest;
 
-	/**
-	 * A user group modification token returned by the
-	 * <code>startUserGroupModification</code> method, which is used to perform
-	 * the action and detect new edits.
-	 */
-	public class UserGroupsToken implements Serializable, ObjectInputValidation {
-		private static final long serialVersionUID = 1L;
+		/**
+		 * The IDs of the changes seen whose timestamp is <code>earliest</code>.
+		 * Accessed only by the polling thread.
+		 */
+		private final Set<Long> rcidsAtEarliest = new TreeSet<Long>();
 
-		private final String userName;
+		/**
+		 * The file replayed by this feed instead of polling the wiki, or
+		 * <code>null</code> if it polls the wiki, and the speed of the
+		 * replay. These are set when the feed is created.
+		 */
+		private File recording;
 
-		private final String token;
+		private double replaySpeed;
 
-		UserGroupsToken(final String userName, final String token) {
-			if ((userName == null) || (userName.length() == 0))
-				throw new IllegalArgumentException("userName may not be null or empty");
-			if (token == null)
-				throw new NullPointerException("token");
-			this.userName = userName;
-			this.token = token;
+		/**
+		 * The IDs of the changes recently delivered, so that a change listed
+		 * again by a later poll is not delivered twice. Accessed only by the
+		 * polling thread.
+		 */
+		private final MediaWiki.SlidingIDSet deliveredRcids = new MediaWiki.SlidingIDSet(SEEN_RCID_CAPACITY);
+
+		RecentChangesFeed(final String showUser, final String hideUser, final boolean showRegularEdits, final boolean showNewPages, final boolean showLogEntries, final Boolean showMinorEdits, final Boolean showBotActions, final Boolean showAnonymousActions, final Boolean showRedirects, final Boolean showPatrolled, final long[] namespaceIDs) {
+			this.showUser = showUser;
+			this.hideUser = hideUser;
+			this.showRegularEdits = showRegularEdits;
+			this.showNewPages = showNewPages;
+			this.showLogEntries = showLogEntries;
+			this.showMinorEdits = showMinorEdits;
+			this.showBotActions = showBotActions;
+			this.showAnonymousActions = showAnonymousActions;
+			this.showRedirects = showRedirects;
+			this.showPatrolled = showPatrolled;
+			this.namespaceIDs = namespaceIDs;
 		}
 
 		/**
-		 * Returns the name of the user whose group memberships are to be
-		 * modified.
+		 * Subscribes a listener to this <tt>RecentChangesFeed</tt>. The
+		 * listener receives the changes polled after this call that pass
+		 * <code>filter</code>.
+		 * <p>
+		 * If the listener throws an unchecked exception, its subscription is
+		 * cancelled.
 		 * 
-		 * @return the name of the user whose group memberships are to be
-		 *         modified
+		 * @param listener
+		 *            The listener to deliver changes to.
+		 * @param filter
+		 *            The filter selecting the changes to deliver, or
+		 *            <code>null</code> to deliver all changes.
+		 * @return the subscription, which may be used to cancel it
 		 */
-		public String getUserName() {
-			return userName;
+		public MediaWiki.RecentChangesFeed.Subscription subscribe(final MediaWiki.RecentChangesListener listener, final MediaWiki.RecentChangeFilter filter) {
+			if (listener == null)
+				throw new NullPointerException("listener");
+			final MediaWiki.RecentChangesFeed.Subscription result = new MediaWiki.RecentChangesFeed.Subscription(listener, filter);
+			synchronized (ring) {
+				result.sequence = publishedSequence;
+				subscriptions.add(result);
+			}
+			result.deliverer.start();
+			return result;
 		}
 
 		/**
-		 * Returns the text of the token.
+		 * Keeps the position saved to the cursor file from passing the given
+		 * change until it is released. A listener that defers its processing
+		 * of a change, for example to a timer, retains the change while
+		 * receiving it and releases it once the processing has run, so that
+		 * the change is delivered again after a restart if it had not.
+		 * <p>
+		 * While a change is retained, the saved position is its timestamp, and
+		 * changes made at and after it are delivered again after a restart.
 		 * 
-		 * @return the text of the token
+		 * @param rc
+		 *            The change to retain.
 		 */
-		public String getTokenText() {
-			return token;
-		}
-
-		private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
-			in.registerValidation(this, 0);
-			in.defaultReadObject();
+		public void retain(final MediaWiki.RecentChange rc) {
+			synchronized (retainedChanges) {
+				retainedChanges.put(rc.getRcid(), rc.getTimestamp());
+			}
 		}
 
 		/**
-		 * This method validates deserialized objects and should generally not
-		 * be called by applications.
+		 * Releases a change retained by <code>retain</code>. The next position
+		 * saved may pass it.
+		 * 
+		 * @param rc
+		 *            The change to release.
 		 */
-		public void validateObject() throws InvalidObjectException {
-			if (token == null)
-				throw new InvalidObjectException("token == null");
-			if ((userName == null) || (userName.length() == 0))
-				throw new InvalidObjectException("userName may not be null or empty");
+		public void release(final MediaWiki.RecentChange rc) {
+			synchronized (retainedChanges) {
+				retainedChanges.remove(rc.getRcid());
+			}
 		}
-	}
-
-	// - - - ENUMS AND ENUM-LIKE CLASSES - - -
 
-	/**
-	 * Useful constants for protection actions. These describe actions that are
-	 * prohibited to users who are not in certain groups.
-	 */
-	public static class ProtectionAction {
 		/**
-		 * Protection against creation.
+		 * Adds an enricher to this <tt>RecentChangesFeed</tt>. The revisions
+		 * and pages it names for the changes of each poll are requested
+		 * together before the changes are delivered, so that subscribers
+		 * processing a change need not request them one at a time. If they
+		 * cannot be requested, the poll fails and is made again later.
+		 * 
+		 * @param enricher
+		 *            The enricher to add.
 		 */
-		public static final String CREATE = "create";
+		public void addEnricher(final MediaWiki.RecentChangeEnricher enricher) {
+			if (enricher == null)
+				throw new NullPointerException("enricher");
+			enrichers.add(enricher);
+		}
 
 		/**
-		 * Protection against edition.
+		 * Removes an enricher from this <tt>RecentChangesFeed</tt>.
+		 * 
+		 * @param enricher
+		 *            The enricher to remove.
 		 */
-		public static final String EDIT = "edit";
+		public void removeEnricher(final MediaWiki.RecentChangeEnricher enricher) {
+			enrichers.remove(enricher);
+		}
 
 		/**
-		 * Protection against movement.
+		 * Starts polling the wiki for changes made since the given time.
+		 * 
+		 * @param since
+		 *            The timestamp of the earliest change to deliver, or
+		 *            <code>null</code> to resume from the cursor read by
+		 *            <code>setCursorFile</code>, if any, or else to deliver
+		 *            changes made from now on.
+		 * @throws IllegalStateException
+		 *             if this <tt>RecentChangesFeed</tt> was already started
 		 */
-		public static final String MOVE = "move";
+		public synchronized void start(final Date since) {
+			if (poller != null)
+				throw new IllegalStateException("already started");
+			if (recording != null) {
+				poller = new Thread(new Runnable() {
+					public void run() {
+						replay();
+					}
+				}, "MediaWiki recent changes replay");
+				poller.setDaemon(true);
+				poller.start();
+				return;
+			}
+			if (since != null) {
+				earliest = since;
+				rcidsAtEarliest.clear();
+				deliveredRcids.clear();
+			} else if (earliest == null) {
+				earliest = new Date();
+			}
+			if (earliest.getTime() < System.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(maximumInterval)) {
+				// Catch up with large requests.
+				elementCount = MAXIMUM_ELEMENT_COUNT;
+			}
+			poller = new Thread(new Runnable() {
+				public void run() {
+					poll();
+				}
+			}, "MediaWiki recent changes feed poller");
+			poller.setDaemon(true);
+			poller.start();
+		}
 
 		/**
-		 * Protection against uploads (in the <tt>File</tt> namespace).
+		 * Stops polling the wiki and waits for the poll in progress, if any,
+		 * to end. Changes already polled are still delivered to subscribers,
+		 * after which their threads end.
+		 * 
+		 * @throws InterruptedException
+		 *             if the current thread is interrupted while waiting
 		 */
-		public static final String UPLOAD = "upload";
-	}
+		public void stop() throws InterruptedException {
+			final Thread poller;
+			synchronized (this) {
+				poller = this.poller;
+			}
+			if (poller != null) {
+				poller.interrupt();
+				poller.join();
+			}
+		}
 
-	/**
-	 * Useful constants for protection levels. These describe the groups that
-	 * users must belong to in order to perform protected actions.
-	 */
-	public static class ProtectionLevel {
 		/**
-		 * Actions require that users be autoconfirmed.
+		 * Sets the file to which the position of this
+		 * <tt>RecentChangesFeed</tt> is saved, and reads the position saved
+		 * in it, if it exists. Unless <code>start</code> is given another
+		 * time, polling resumes from that position.
 		 * <p>
-		 * The definition of autoconfirmed varies from wiki to wiki, but
-		 * generally requires some number of edits or days since the creation of
-		 * a user account.
+		 * The position is saved each time all subscribers have received the
+		 * changes delivered by a poll, so that a change is delivered again
+		 * after a crash rather than lost. It does not pass the changes
+		 * retained with <code>retain</code>. The file is replaced atomically.
+		 * 
+		 * @param file
+		 *            The cursor file, or <code>null</code> not to save the
+		 *            position of this <tt>RecentChangesFeed</tt>.
+		 * @return this <tt>RecentChangesFeed</tt>
+		 * @throws IOException
+		 *             if the file exists but cannot be read or is not a
+		 *             cursor file
+		 * @throws IllegalStateException
+		 *             if this <tt>RecentChangesFeed</tt> was already started
 		 */
-		public static final String AUTOCONFIRMED_USERS = "autoconfirmed";
+		public synchronized MediaWiki.RecentChangesFeed setCursorFile(final File file) throws IOException {
+			if (poller != null)
+				throw new IllegalStateException("already started");
+			if (recording != null)
+				throw new IllegalStateException("a replay has no cursor");
+			if (file != null && file.exists()) {
+				final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+				try {
+					final String timestamp = reader.readLine(), rcids = reader.readLine();
+					if (timestamp == null)
+						throw new IOException(file + ": empty cursor file");
+					earliest = timestampToDate(timestamp);
+					rcidsAtEarliest.clear();
+					deliveredRcids.clear();
+					if (rcids != null && rcids.length() > 0) {
+						for (final String rcid : rcids.split("\\|")) {
+							rcidsAtEarliest.add(Long.valueOf(rcid));
+							deliveredRcids.add(Long.parseLong(rcid));
+						}
+					}
+				} catch (final ParseException pe) {
+					throw new IOException(file + ": " + pe.getMessage());
+				} catch (final NumberFormatException nfe) {
+					throw new IOException(file + ": " + nfe.getMessage());
+				} finally {
+					reader.close();
+				}
+			}
+			cursorFile = file;
+			return this;
+		}
 
 		/**
-		 * Actions require that users be sysops.
+		 * Returns the file to which the position of this
+		 * <tt>RecentChangesFeed</tt> is saved, or <code>null</code> if none
+		 * was set.
+		 * 
+		 * @return the file to which the position of this
+		 *         <tt>RecentChangesFeed</tt> is saved
 		 */
-		public static final String SYSOPS = "sysop";
-	}
+		public File getCursorFile() {
+			return cursorFile;
+		}
 
-	/**
-	 * Useful constants for recent change types.
-	 */
-	public static class RecentChangeType {
 		/**
-		 * The recent change is a regular page edit.
+		 * Returns the minimum time between the starts of two polls.
+		 * 
+		 * @param unit
+		 *            The unit to return the interval in.
+		 * @return the minimum time between the starts of two polls
 		 */
-		public static final String EDIT = "edit";
+		public long getMinimumInterval(final TimeUnit unit) {
+			return unit.convert(minimumInterval, TimeUnit.NANOSECONDS);
+		}
 
 		/**
-		 * The recent change is a page creation.
+		 * Sets the minimum time between the starts of two polls. The default
+		 * is 2 seconds.
+		 * 
+		 * @param interval
+		 *            The minimum time between the starts of two polls.
+		 * @param unit
+		 *            The unit of <code>interval</code>.
+		 * @return this <tt>RecentChangesFeed</tt>
 		 */
-		public static final String NEW_PAGE = "new";
+		public MediaWiki.RecentChangesFeed setMinimumInterval(final long interval, final TimeUnit unit) {
+			if (interval < 0)
+				throw new IllegalArgumentException("interval < 0");
+			minimumInterval = unit.toNanos(interval);
+			return this;
+		}
 
 		/**
-		 * The recent change is a log entry.
+		 * Returns the maximum time between the starts of two polls.
+		 * 
+		 * @param unit
+		 *            The unit to return the interval in.
+		 * @return the maximum time between the starts of two polls
 		 */
-		public static final String LOG_ENTRY = "log";
-	}
+		public long getMaximumInterval(final TimeUnit unit) {
+			return unit.convert(maximumInterval, TimeUnit.NANOSECONDS);
+		}
 
-	/**
-	 * Useful constants for log entry types. These do not form an exhaustive
-	 * list; you may encounter log events that have another name.
-	 */
-	public static class StandardLogEntryType {
 		/**
-		 * The log entry is from the block log. Possible actions are
-		 * <code>"block"</code>, <code>"unblock"</code> and
-		 * <code>"reblock"</code>.
+		 * Sets the maximum time between the starts of two polls. This is also
+		 * the time waited after a failed poll. The default is 1 minute.
+		 * 
+		 * @param interval
+		 *            The maximum time between the starts of two polls.
+		 * @param unit
+		 *            The unit of <code>interval</code>.
+		 * @return this <tt>RecentChangesFeed</tt>
 		 */
-		public static final String BLOCK = "block";
+		public MediaWiki.RecentChangesFeed setMaximumInterval(final long interval, final TimeUnit unit) {
+			if (interval < 0)
+				throw new IllegalArgumentException("interval < 0");
+			maximumInterval = unit.toNanos(interval);
+			return this;
+		}
 
 		/**
-		 * The log entry is from the protection log. Possible actions are
-		 * <code>"protect"</code>, <code>"modify"</code>,
-		 * <code>"unprotect"</code> and <code>"move_prot"</code>.
+		 * Returns the time currently waited between the starts of two polls,
+		 * derived from the rate at which changes are made.
+		 * 
+		 * @param unit
+		 *            The unit to return the interval in.
+		 * @return the time currently waited between the starts of two polls
 		 */
-		public static final String PROTECTION = "protect";
+		public long getPollInterval(final TimeUnit unit) {
+			return unit.convert(interval, TimeUnit.NANOSECONDS);
+		}
 
 		/**
-		 * The log entry is from the user rights log. Possible actions are
-		 * <code>"rights"</code> and <code>"autopromote"</code>.
+		 * Returns the number of changes currently requested at once.
+		 * 
+		 * @return the number of changes currently requested at once
 		 */
-		public static final String USER_RIGHTS = "rights";
+		public int getElementCount() {
+			return elementCount;
+		}
 
 		/**
-		 * The log entry is from the upload log. Possible actions are
-		 * <code>"upload"</code>, <code>"overwrite"</code> and
-		 * <code>"revert"</code>.
+		 * Returns the estimated number of changes made to the wiki per second,
+		 * among those matching the restrictions of this
+		 * <tt>RecentChangesFeed</tt>.
+		 * 
+		 * @return the estimated number of changes made to the wiki per second
 		 */
-		public static final String UPLOAD = "upload";
+		public double getChangesPerSecond() {
+			return changesPerSecond;
+		}
 
 		/**
-		 * The log entry is from the import log. Possible actions are
-		 * <code>"upload"</code> and <code>"interwiki"</code>.
+		 * Returns the number of items that the slowest subscriber has yet to
+		 * receive, including changes that its filter rejects.
+		 * 
+		 * @return the number of items that the slowest subscriber has yet to
+		 *         receive
 		 */
-		public static final String IMPORT = "import";
+		public long getLag() {
+			synchronized (ring) {
+				return publishedSequence - getSlowestSequence();
+			}
+		}
 
-		/**
-		 * The log entry is from the move log. Possible actions are
-		 * <code>"move"</code> and <code>"move_redir"</code>.
-		 */
-		public static final String MOVE = "move";
+		@Override
+		public String toString() {
+			return String.format("RecentChangesFeed[%.2f changes/s, polling every %d ms for %d changes, %d subscribers, lag %d]", changesPerSecond, TimeUnit.NANOSECONDS.toMillis(interval), elementCount, subscriptions.size(), getLag());
+		}
 
-		/**
-		 * The log entry is from the deletion log. Possible actions are
-		 * <code>"delete"</code>, <code>"restore"</code>,
-		 * <code>"revision"</code> and <code>"event"</code>.
-		 */
-		public static final String DELETION = "delete";
+		private void poll() {
+			try {
+				long lastPoll = System.nanoTime();
+				boolean catchingUp = false;
+				while (!Thread.currentThread().isInterrupted()) {
+					final long pollStart = System.nanoTime();
+					final int changeCount;
+					try {
+						changeCount = pollOnce();
+					} catch (final MediaWiki.IterationException ie) {
+						publish(ie.getCause() != null ? ie.getCause() : ie);
+						TimeUnit.NANOSECONDS.sleep(maximumInterval);
+						continue;
+					}
 
-		/**
-		 * The log entry is from the patrol log. The only possible action is
-		 * <code>"patrol"</code>.
-		 */
-		public static final String PATROL = "patrol";
+					if (changeCount >= MAXIMUM_CHANGES_PER_POLL) {
+						/*
+						 * There are more changes waiting. Get them at once;
+						 * they say nothing about the current rate of changes.
+						 */
+						catchingUp = true;
+						elementCount = MAXIMUM_ELEMENT_COUNT;
+						continue;
+					} else if (catchingUp) {
+						catchingUp = false;
+					} else {
+						adapt(changeCount, pollStart - lastPoll);
+					}
+					lastPoll = pollStart;
+
+					final long wait = pollStart + interval - System.nanoTime();
+					if (wait > 0) {
+						TimeUnit.NANOSECONDS.sleep(wait);
+					}
+				}
+			} catch (final InterruptedException e) {
+				// stop() was called
+			} finally {
+				// Let the subscribers receive what was already polled.
+				Thread.interrupted();
+				try {
+					publish(END);
+				} catch (final InterruptedException e) {
+					for (final MediaWiki.RecentChangesFeed.Subscription subscription : subscriptions) {
+						subscription.cancel();
+					}
+				}
+			}
+		}
 
 		/**
-		 * The log entry is from the abuse filter log. Possible actions are
-		 * <code>"modify"</code> and <code>"hit"</code>.
+		 * Delivers the changes recorded in <code>recording</code>, paced by
+		 * their timestamps, then ends the subscriptions.
 		 */
-		public static final String ABUSE_FILTER = "abusefilter";
+		private void replay() {
+			try {
+				final DocumentBuilder builder = createDocumentBuilder();
+				final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(recording), "UTF-8"));
+				try {
+					final long replayStart = System.nanoTime();
+					long firstChange = 0;
+					boolean first = true;
+					String line;
+					while (!Thread.currentThread().isInterrupted() && (line = reader.readLine()) != null) {
+						if (line.length() == 0) {
+							continue;
+						}
+						final MediaWiki.RecentChange rc = new MediaWiki.RecentChange(builder.parse(new InputSource(new StringReader(line))).getDocumentElement());
+						while (true) {
+							try {
+								enrich(Collections.singletonList(rc));
+								break;
+							} catch (final MediaWiki.IterationException ie) {
+								// Report the lookup failure and retry it, as
+								// polls do.
+								publish(ie.getCause() != null ? ie.getCause() : ie);
+								TimeUnit.NANOSECONDS.sleep(maximumInterval);
+							}
+						}
+						if (!Double.isInfinite(replaySpeed)) {
+							final long time = rc.getTimestamp().getTime();
+							if (first) {
+								firstChange = time;
+								first = false;
+							}
+							final long wait = replayStart + (long) (TimeUnit.MILLISECONDS.toNanos(time - firstChange) / replaySpeed) - System.nanoTime();
+							if (wait > 0) {
+								TimeUnit.NANOSECONDS.sleep(wait);
+							}
+						}
+						publish(rc);
+					}
+				} finally {
+					reader.close();
+				}
+			} catch (final InterruptedException e) {
+				// stop() was called
+			} catch (final Exception e) {
+				// The recording is unreadable from here on.
+				try {
+					publish(e instanceof MediaWiki.IterationException && e.getCause() != null ? e.getCause() : e);
+				} catch (final InterruptedException ie) {
+					// stop() was called
+				}
+			} finally {
+				Thread.interrupted();
+				try {
+					publish(END);
+				} catch (final InterruptedException e) {
+					for (final MediaWiki.RecentChangesFeed.Subscription subscription : subscriptions) {
+						subscription.cancel();
+					}
+				}
+			}
+		}
 
 		/**
-		 * The log entry is from the user creation log. Possible actions are
-		 * <code>"newusers"</code>, <code>"create"</code>,
-		 * <code>"create2"</code> and <code>"autocreate"</code>.
+		 * Polls the wiki once and delivers the changes not seen before.
+		 * 
+		 * @return the number of changes not seen before
 		 */
-		public static final String USER_CREATION = "newusers";
-	}
+		private int pollOnce() throws InterruptedException {
+			final Iterator<MediaWiki.RecentChange> rci = recentChanges(earliest, null /*- no latest */, true /*- chronological */, elementCount, showUser, hideUser, showRegularEdits, showNewPages, showLogEntries, showMinorEdits, showBotActions, showAnonymousActions, showRedirects, showPatrolled, false /*- getPatrolInformation */, namespaceIDs);
+			final List<MediaWiki.RecentChange> changes = new ArrayList<MediaWiki.RecentChange>();
+			// Only advance once the whole poll has succeeded.
+			Date newEarliest = earliest;
+			final Set<Long> newRcids = new TreeSet<Long>(rcidsAtEarliest);
+			final Set<Long> polledRcids = new HashSet<Long>();
+
+			while (changes.size() < MAXIMUM_CHANGES_PER_POLL && rci.hasNext()) {
+				final MediaWiki.RecentChange rc = rci.next();
+				final int comparison = rc.getTimestamp().compareTo(newEarliest);
+				if (comparison > 0) {
+					newEarliest = rc.getTimestamp();
+					newRcids.clear();
+				}
+				if (comparison >= 0) {
+					newRcids.add(rc.getRcid());
+				}
+				// Changes listed out of order are delivered as well.
+				if (!deliveredRcids.contains(rc.getRcid()) && polledRcids.add(rc.getRcid())) {
+					changes.add(rc);
+				}
+			}
+
+			enrich(changes);
+
+			earliest = newEarliest;
+			rcidsAtEarliest.clear();
+			rcidsAtEarliest.addAll(newRcids);
+			for (final MediaWiki.RecentChange rc : changes) {
+				deliveredRcids.add(rc.getRcid());
+			}
+
+			Collections.sort(changes, new Comparator<MediaWiki.RecentChange>() {
+				public int compare(final MediaWiki.RecentChange a, final MediaWiki.RecentChange b) {
+					return a.getRcid() < b.getRcid() ? -1 : a.getRcid() > b.getRcid() ? 1 : 0;
+				}
+			});
+
+			for (final MediaWiki.RecentChange rc : changes) {
+				publish(rc);
+			}
+
+			if (cursorFile != null && !changes.isEmpty()) {
+				publish(new MediaWiki.RecentChangesFeed.Checkpoint(checkpointCount++, earliest, rcidsAtEarliest));
+				// Saved now if there are no subscribers. A failure has nobody
+				// to be reported to; the next poll saves again.
+				saveReceivedCheckpoints();
+			}
+			return changes.size();
+		}
 
-	/**
-	 * Useful constants for standard namespaces. These designate namespace IDs
-	 * that are standard in many MediaWiki installations.
-	 */
-	public static class StandardNamespace {
 		/**
-		 * The namespace identifier for the Media namespace.
+		 * Saves the latest checkpoint that every subscriber has received, if
+		 * it is not saved yet.
+		 * 
+		 * @return the exception thrown while saving the checkpoint, or
+		 *         <code>null</code> if there was none
 		 */
-		public static final long MEDIA = -2;
+		private IOException saveReceivedCheckpoints() {
+			MediaWiki.RecentChangesFeed.Checkpoint received = null;
+			synchronized (ring) {
+				final long slowest = getSlowestSequence();
+				while (!unsavedCheckpoints.isEmpty() && unsavedCheckpoints.getFirst().ringSequence <= slowest) {
+					received = unsavedCheckpoints.removeFirst();
+				}
+			}
+			if (received != null) {
+				try {
+					saveCursor(received);
+				} catch (final IOException ioe) {
+					return ioe;
+				}
+			}
+			return null;
+		}
 
 		/**
-		 * The namespace identifier for the Special namespace.
+		 * Saves the position of this <tt>RecentChangesFeed</tt> to its cursor
+		 * file, unless a later position was already saved. The position saved
+		 * is that of the checkpoint, or the timestamp of the earliest change
+		 * retained if it is not later. The file is written under a temporary
+		 * name, then renamed over the previous one.
 		 */
-		public static final long SPECIAL = -1;
+		private synchronized void saveCursor(final MediaWiki.RecentChangesFeed.Checkpoint checkpoint) throws IOException {
+			final File file = cursorFile;
+			if (file == null || checkpoint.sequence <= savedSequence)
+				return;
+
+			Date timestamp = checkpoint.timestamp;
+			String rcids = checkpoint.rcids;
+			synchronized (retainedChanges) {
+				for (final Date retained : retainedChanges.values()) {
+					if (!retained.after(timestamp)) {
+						// Deliver everything from the retained change again.
+						timestamp = retained;
+						rcids = "";
+					}
+				}
+			}
 
-		/**
-		 * The namespace identifier for the main namespace.
-		 */
-		public static final long MAIN = 0;
+			{
+				final File temporary = new File(file.getPath() + ".tmp");
+				final FileOutputStream out = new FileOutputStream(temporary);
+				try {
+					final Writer writer = new OutputStreamWriter(out, "UTF-8");
+					writer.write(dateToISO8601(timestamp));
+					writer.write('\n');
+					writer.write(rcids);
+					writer.write('\n');
+					writer.flush();
+					out.getFD().sync();
+				} finally {
+					out.close();
+				}
+				if (!temporary.renameTo(file)) {
+					// Some platforms do not rename over an existing file.
+					file.delete();
+					if (!temporary.renameTo(file))
+						throw new IOException("cannot rename " + temporary + " to " + file);
+				}
+				savedSequence = checkpoint.sequence;
+			}
+		}
 
 		/**
-		 * The namespace identifier for the Talk namespace, which contains talk
-		 * pages for the main namespace.
+		 * Updates the estimated rate of changes after a poll, then derives the
+		 * interval until the next poll and the number of changes to request
+		 * in it.
 		 */
-		public static final long TALK = 1;
+		private void adapt(final int changeCount, final long elapsed) {
+			if (elapsed > 0) {
+				final double rate = changeCount / (elapsed / 1e9);
+				changesPerSecond = changesPerSecond * (1 - RATE_SMOOTHING) + rate * RATE_SMOOTHING;
+			}
 
-		/**
-		 * The namespace identifier for the User namespace.
-		 */
-		public static final long USER = 2;
+			final long minimum = minimumInterval, maximum = Math.max(minimum, maximumInterval);
+			long nextInterval = changesPerSecond > 0 ? (long) (TARGET_CHANGES_PER_POLL / changesPerSecond * 1e9) : maximum;
+			nextInterval = Math.max(minimum, Math.min(maximum, nextInterval));
+			interval = nextInterval;
 
-		/**
-		 * The namespace identifier for the User talk namespace.
-		 */
-		public static final long USER_TALK = 3;
+			// Request half again as many changes as expected, so that most
+			// polls need a single request.
+			final double expected = changesPerSecond * (nextInterval / 1e9) * 1.5;
+			elementCount = (int) Math.max(MINIMUM_ELEMENT_COUNT, Math.min(MAXIMUM_ELEMENT_COUNT, Math.ceil(expected)));
+		}
 
 		/**
-		 * The namespace identifier for the Project namespace.
+		 * Requests the revisions and pages named by the enrichers for the
+		 * given changes, and attaches them to the changes.
+		 * 
+		 * @throws MediaWiki.IterationException
+		 *             if the revisions or pages cannot be requested
 		 */
-		public static final long PROJECT = 4;
+		private void enrich(final List<MediaWiki.RecentChange> changes) throws MediaWiki.IterationException {
+			if (enrichers.isEmpty() || changes.isEmpty())
+				return;
+
+			final Set<Long> revisionIDs = new TreeSet<Long>();
+			final Set<String> pageNames = new TreeSet<String>();
+			for (final MediaWiki.RecentChange rc : changes) {
+				for (final MediaWiki.RecentChangeEnricher enricher : enrichers) {
+					final long[] enricherRevisionIDs = enricher.getRevisionIDs(rc);
+					if (enricherRevisionIDs != null) {
+						for (final long revisionID : enricherRevisionIDs) {
+							revisionIDs.add(revisionID);
+						}
+					}
+					final String[] enricherPageNames = enricher.getPageNames(rc);
+					if (enricherPageNames != null) {
+						pageNames.addAll(Arrays.asList(enricherPageNames));
+					}
+				}
+			}
 
-		/**
-		 * The namespace identifier for the Project talk namespace.
-		 */
-		public static final long PROJECT_TALK = 5;
+			final Map<Long, MediaWiki.Revision> revisions = new HashMap<Long, MediaWiki.Revision>();
+			if (!revisionIDs.isEmpty()) {
+				final long[] ids = new long[revisionIDs.size()];
+				int n = 0;
+				for (final Long revisionID : revisionIDs) {
+					ids[n++] = revisionID;
+				}
+				final Iterator<MediaWiki.Revision> ri = getRevisions(ids);
+				for (final long id : ids) {
+					revisions.put(id, ri.next());
+				}
+			}
 
-		/**
-		 * The namespace identifier for the File namespace.
-		 */
-		public static final long FILE = 6;
+			final Map<String, MediaWiki.Page> pages = new HashMap<String, MediaWiki.Page>();
+			if (!pageNames.isEmpty()) {
+				final String[] names = pageNames.toArray(new String[pageNames.size()]);
+				final Iterator<MediaWiki.Page> pi = getPageInformation(names);
+				for (final String name : names) {
+					pages.put(name, pi.next());
+				}
+			}
 
-		/**
-		 * The namespace identifier for the File talk namespace.
-		 */
-		public static final long FILE_TALK = 7;
+			final Map<Long, MediaWiki.Revision> relatedRevisions = Collections.unmodifiableMap(revisions);
+			final Map<String, MediaWiki.Page> relatedPages = Collections.unmodifiableMap(pages);
+			for (final MediaWiki.RecentChange rc : changes) {
+				rc.relatedRevisions = relatedRevisions;
+				rc.relatedPages = relatedPages;
+			}
+		}
 
 		/**
-		 * The namespace identifier for the MediaWiki namespace, which contains
-		 * system messages.
+		 * Places an item in the next slot of the ring, waiting for every
+		 * subscriber to be done with the item previously in that slot.
 		 */
-		public static final long MEDIAWIKI = 8;
+		private void publish(final Object item) throws InterruptedException {
+			synchronized (ring) {
+				final long sequence = publishedSequence + 1;
+				while (sequence - getSlowestSequence() > RING_SIZE) {
+					ring.wait();
+				}
+				if (item instanceof MediaWiki.RecentChangesFeed.Checkpoint) {
+					((MediaWiki.RecentChangesFeed.Checkpoint) item).ringSequence = sequence;
+					unsavedCheckpoints.add((MediaWiki.RecentChangesFeed.Checkpoint) item);
+				}
+				ring[(int) (sequence & (RING_SIZE - 1))] = item;
+				publishedSequence = sequence;
+				ring.notifyAll();
+			}
+		}
 
 		/**
-		 * The namespace identifier for the MediaWiki talk namespace.
+		 * Returns the sequence number of the last item received by the
+		 * slowest subscriber, or that of the last item published if there are
+		 * no subscribers. The caller holds the lock on <code>ring</code>.
 		 */
-		public static final long MEDIAWIKI_TALK = 9;
+		private long getSlowestSequence() {
+			long result = publishedSequence;
+			for (final MediaWiki.RecentChangesFeed.Subscription subscription : subscriptions) {
+				result = Math.min(result, subscription.sequence);
+			}
+			return result;
+		}
 
 		/**
-		 * The namespace identifier for the Template namespace.
+		 * The subscription of a listener to a
+		 * <tt>MediaWiki.RecentChangesFeed</tt>.
 		 */
-		public static final long TEMPLATE = 10;
+		public class Subscription implements Runnable {
+			private final MediaWiki.RecentChangesListener listener;
 
-		/**
-		 * The namespace identifier for the Template talk namespace.
-		 */
-		public static final long TEMPLATE_TALK = 11;
+			private final MediaWiki.RecentChangeFilter filter;
 
-		/**
-		 * The namespace identifier for the Help namespace.
-		 */
-		public static final long HELP = 12;
+			private final Thread deliverer;
 
-		/**
-		 * The namespace identifier for the Help talk namespace.
-		 */
-		public static final long HELP_TALK = 13;
+			/**
+			 * The sequence number of the last item received from the ring.
+			 * Guarded by <code>ring</code>.
+			 */
+			private long sequence;
 
-		/**
-		 * The namespace identifier for the Category namespace.
-		 */
-		public static final long CATEGORY = 14;
+			/**
+			 * The largest lag observed. Guarded by <code>ring</code>.
+			 */
+			private long peakLag;
 
-		/**
-		 * The namespace identifier for the Category talk namespace.
-		 */
-		public static final long CATEGORY_TALK = 15;
-	}
+			private final AtomicLong deliveredCount = new AtomicLong();
 
-	// - - - HELPER METHODS FOR DATA FORMAT CONVERSION - - -
+			private volatile boolean cancelled;
 
-	private static final SimpleDateFormat timestampFormatter = new SimpleDateFormat("yyyyMMddHHmmss", Locale.US);
+			Subscription(final MediaWiki.RecentChangesListener listener, final MediaWiki.RecentChangeFilter filter) {
+				this.listener = listener;
+				this.filter = filter;
+				deliverer = new Thread(this, "MediaWiki recent changes feed subscriber");
+				deliverer.setDaemon(true);
+			}
 
-	static {
-		timestampFormatter.setTimeZone(TimeZone.getTimeZone("GMT"));
-	}
+			/**
+			 * Returns the number of items published to the feed that this
+			 * subscription has yet to receive, including changes that its
+			 * filter rejects.
+			 * 
+			 * @return the number of items published to the feed that this
+			 *         subscription has yet to receive
+			 */
+			public long getLag() {
+				synchronized (ring) {
+					return publishedSequence - sequence;
+				}
+			}
 
-	/**
-	 * Returns the specified <code>date</code> formatted for use as a MediaWiki
-	 * timestamp value. The return value is a string containing at least 14
-	 * digits, with at least 4 for the year, 2 for the month, 2 for the day of
-	 * the month, 2 for the hour in 24-hour format, 2 for the minute and 2 for
-	 * the second (<tt><em>yyyyMMddHHmmss</em></tt>).
-	 * 
-	 * @param date
-	 *            The date to format.
-	 * @return the specified <code>date</code> formatted for use as a MediaWiki
-	 *         timestamp value
-	 */
-	public static String dateToTimestamp(final Date date) {
-		return timestampFormatter.format(date);
-	}
+			/**
+			 * Returns the largest lag of this subscription observed so far. A
+			 * peak lag approaching the size of the ring, 1024 items, means that
+			 * the listener slows down the whole feed.
+			 * 
+			 * @return the largest lag of this subscription observed so far
+			 */
+			public long getPeakLag() {
+				synchronized (ring) {
+					return peakLag;
+				}
+			}
 
-	/**
-	 * Returns the specified <code>date</code> formatted for use as a MediaWiki
-	 * timestamp value. The return value is a string containing at least 14
-	 * digits, with at least 4 for the year, 2 for the month, 2 for the day of
-	 * the month, 2 for the hour in 24-hour format, 2 for the minute and 2 for
-	 * the second (<tt><em>yyyyMMddHHmmss</em></tt>).
-	 * 
-	 * @param date
-	 *            The date to format.
-	 * @return the specified <code>date</code> formatted for use as a MediaWiki
-	 *         timestamp value
-	 */
-	public static String dateToISO8601(final Date date) {
-		return iso8601TimestampParser.format(date);
-	}
+			/**
+			 * Returns the number of changes delivered to the listener.
+			 * 
+			 * @return the number of changes delivered to the listener
+			 */
+			public long getDeliveredCount() {
+				return deliveredCount.get();
+			}
 
-	/**
-	 * Returns the specified <code>timestamp</code> parsed as a <tt>Date</tt>
-	 * object.
-	 * 
-	 * @param timestamp
-	 *            The timestamp value to parse. This value is either of the
-	 *            following:
-	 *            <ul>
-	 *            <li>a MediaWiki timestamp value, i.e. a string containing at
-	 *            least 14 digits, with at least 4 for the year, 2 for the
-	 *            month, 2 for the day of the month, 2 for the hour in 24-hour
-	 *            format, 2 for the minute and 2 for the second (
-	 *            <tt><em>yyyyMMddHHmmss</em></tt>);
-	 *            <li>an ISO 8601 date and time stamp in the GMT timezone, i.e.
-	 *            a string conforming to the format
-	 *            <tt><em>yyyy</em>-<em>MM</em>-<em>dd</em>T<em>HH</em>:<em>mm</em>:<em>ss</em>Z</tt>.
-	 *            </ul>
-	 * @return the specified <code>timestamp</code> parsed as a <tt>Date</tt>
-	 *         object
-	 * @throws ParseException
-	 *             if the specified <code>timestamp</code> is not a valid
-	 *             timestamp
-	 */
-	public static Date timestampToDate(final String timestamp) throws ParseException {
-		if ((timestamp.length() > 0) && (timestamp.charAt(timestamp.length() - 1) == 'Z'))
-			return iso8601TimestampParser.parse(timestamp);
-		else
-			return timestampFormatter.parse(timestamp);
+			/**
+			 * Cancels this subscription. Changes waiting to be delivered are
+			 * discarded; the listener may still be notified of the change
+			 * being delivered when this method is called. Checkpoints waiting
+			 * only for this subscription are saved.
+			 */
+			public void cancel() {
+				cancelled = true;
+				subscriptions.remove(this);
+				synchronized (ring) {
+					ring.notifyAll();
+				}
+				deliverer.interrupt();
+				// A failure has nobody to be reported to; the next poll saves
+				// again.
+				saveReceivedCheckpoints();
+			}
+
+			public void run() {
+				try {
+					while (true) {
+						final Object item;
+						synchronized (ring) {
+							while (!cancelled && publishedSequence <= sequence) {
+								ring.wait();
+							}
+							if (cancelled)
+								return;
+							peakLag = Math.max(peakLag, publishedSequence - sequence);
+							item = ring[(int) ((sequence + 1) & (RING_SIZE - 1))];
+						}
+
+						try {
+							if (item == END)
+								return;
+							deliver(item);
+						} finally {
+							synchronized (ring) {
+								sequence++;
+								ring.notifyAll();
+							}
+						}
+
+						if (item instanceof MediaWiki.RecentChangesFeed.Checkpoint) {
+							final IOException ioe = saveReceivedCheckpoints();
+							if (ioe != null) {
+								listener.pollFailed(ioe);
+							}
+						}
+					}
+				} catch (final InterruptedException e) {
+					// cancel() was called
+				} catch (final RuntimeException e) {
+					cancel();
+					throw e;
+				}
+			}
+
+			private void deliver(final Object item) {
+				if (item instanceof MediaWiki.RecentChange) {
+					final MediaWiki.RecentChange rc = (MediaWiki.RecentChange) item;
+					if (filter == null || filter.accept(rc)) {
+						listener.recentChange(rc);
+						deliveredCount.incrementAndGet();
+					}
+				} else if (item instanceof MediaWiki.RecentChangesFeed.Checkpoint) {
+					// Saved by run() once every subscriber has received it.
+				} else {
+					listener.pollFailed((Throwable) item);
+				}
+			}
+		}
+
+		/**
+		 * The position of the feed after a poll, to be saved once every
+		 * subscriber has received the changes delivered by the poll.
+		 */
+		private class Checkpoint {
+			final long sequence;
+
+			final Date timestamp;
+
+			final String rcids;
+
+			/**
+			 * The sequence number of this checkpoint in the ring. Guarded by
+			 * <code>ring</code>.
+			 */
+			long ringSequence;
+
+			Checkpoint(final long sequence, final Date timestamp, final Set<Long> rcids) {
+				this.sequence = sequence;
+				this.timestamp = timestamp;
+				final StringBuilder rcidString = new StringBuilder();
+				for (final Long rcid : rcids) {
+					if (rcidString.length() > 0) {
+						rcidString.append('|');
+					}
+					rcidString.append(rcid);
+				}
+				this.rcids = rcidString.toString();
+			}
+		}
 	}
 
 	/**
-	 * Normalises the given <code>title</code> according to the rules in place
-	 * on the wiki represented by this <tt>MediaWiki</tt>.
-	 * 
-	 * @param title
-	 *            Title to normalise.
-	 * @return the normalised title
-	 * @throws IOException
-	 * @throws MediaWikiException
+	 * Records the changes delivered by a <tt>MediaWiki.RecentChangesFeed</tt>
+	 * to a file, which <code>createRecentChangesReplay</code> can replay
+	 * later. Each change is written on a line of its own as an
+	 * <tt>&lt;rc&gt;</tt> tag like those in replies from the API, and the
+	 * file is flushed after each change so that a recording survives a crash.
+	 * Changes are appended to an existing file.
 	 */
-	public String normalizeTitle(final String title) throws IOException, MediaWikiException {
-		final Map<String, String> getParams = paramValuesToMap("action", "query", "format", "xml", "prop", "info", "titles", title);
-		final String url = createApiGetUrl(getParams);
+	public static class RecentChangesRecorder implements MediaWiki.RecentChangesListener {
+		private final Writer out;
 
-		networkLock.lock();
-		try {
-			final InputStream in = get(url);
-			final Document xml = parse(in);
-			checkError(xml);
+		/**
+		 * The exception thrown while writing a change, after which no more
+		 * changes are recorded, or <code>null</code> if there was none.
+		 */
+		private IOException failure;
 
-			final NodeList normalizedTags = xml.getElementsByTagName("normalized");
+		/**
+		 * Creates a <tt>RecentChangesRecorder</tt> that appends to the given
+		 * file.
+		 * 
+		 * @param file
+		 *            The file to record changes to.
+		 * @throws IOException
+		 *             if the file cannot be opened for writing
+		 */
+		public RecentChangesRecorder(final File file) throws IOException {
+			out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8"));
+		}
+
+		public synchronized void recentChange(final MediaWiki.RecentChange rc) {
+			if (failure != null)
+				return;
+
+			final StringBuilder line = new StringBuilder("<rc");
+			appendAttribute(line, "type", rc.getChangeType());
+			appendAttribute(line, "ns", Long.toString(rc.getNamespaceID()));
+			appendAttribute(line, "title", rc.getFullPageName());
+			appendAttribute(line, "pageid", rc.getPageID() != null ? rc.getPageID().toString() : "0");
+			appendAttribute(line, "rcid", Long.toString(rc.getRcid()));
+			appendAttribute(line, "revid", Long.toString(rc.getNewRevisionID()));
+			appendAttribute(line, "old_revid", Long.toString(rc.getOldRevisionID()));
+			if (rc.getUserName() != null) {
+				appendAttribute(line, "user", rc.getUserName());
+			}
+			if (rc.getComment() != null) {
+				appendAttribute(line, "comment", rc.getComment());
+			}
+			appendAttribute(line, "oldlen", Long.toString(rc.getOldLength()));
+			appendAttribute(line, "newlen", Long.toString(rc.getNewLength()));
+			appendAttribute(line, "timestamp", dateToISO8601(rc.getTimestamp()));
+			if (rc.isNewPage()) {
+				appendAttribute(line, "new", "");
+			}
+			if (rc.isBotAction()) {
+				appendAttribute(line, "bot", "");
+			}
+			if (rc.isMinorEdit()) {
+				appendAttribute(line, "minor", "");
+			}
+			if (rc.isAnonymousAction()) {
+				appendAttribute(line, "anon", "");
+			}
+			if (rc.getLogType() != null) {
+				appendAttribute(line, "logid", Long.toString(rc.getLogID()));
+				appendAttribute(line, "logtype", rc.getLogType());
+				appendAttribute(line, "logaction", rc.getLogAction());
+			}
+			if (rc.getLogParameters() != null && !rc.getLogParameters().isEmpty()) {
+				line.append('>');
+				for (final String param : rc.getLogParameters()) {
+					line.append("<param>").append(escapeXml(param)).append("</param>");
+				}
+				line.append("</rc>");
+			} else {
+				line.append(" />");
+			}
 
-			final Map<String, String> normalizations = new TreeMap<String, String>();
+			try {
+				out.write(line.toString());
+				out.write('\n');
+				out.flush();
+			} catch (final IOException ioe) {
+				failure = ioe;
+			}
+		}
 
-			for (int i = 0; i < normalizedTags.getLength(); i++) {
-				final Element normalizedTag = (Element) normalizedTags.item(i);
+		public void pollFailed(final Throwable t) {
+			// Failures to poll are not recorded.
+		}
 
-				final NodeList nTags = normalizedTag.getElementsByTagName("n");
+		/**
+		 * Closes the file that this <tt>RecentChangesRecorder</tt> records
+		 * changes to.
+		 * 
+		 * @throws IOException
+		 *             if a change could not be written, or if the file cannot
+		 *             be closed
+		 */
+		public synchronized void close() throws IOException {
+			out.close();
+			if (failure != null)
+				throw failure;
+		}
 
-				for (int j = 0; j < nTags.getLength(); j++) {
-					final Element nTag = (Element) nTags.item(i);
+		private static void appendAttribute(final StringBuilder line, final String name, final String value) {
+			line.append(' ').append(name).append("=\"").append(escapeXml(value)).append('"');
+		}
 
-					normalizations.put(nTag.getAttribute("from"), nTag.getAttribute("to"));
+		/**
+		 * Escapes a string for use in XML text or an attribute value on a
+		 * single line.
+		 */
+		private static String escapeXml(final String s) {
+			final StringBuilder result = new StringBuilder(s.length());
+			for (int i = 0; i < s.length(); i++) {
+				final char c = s.charAt(i);
+				switch (c) {
+				case '&':
+					result.append("&amp;");
+					break;
+				case '<':
+					result.append("&lt;");
+					break;
+				case '>':
+					result.append("&gt;");
+					break;
+				case '"':
+					result.append("&quot;");
+					break;
+				case '\n':
+					result.append("&#10;");
+					break;
+				case '\r':
+					result.append("&#13;");
+					break;
+				case '\t':
+					result.append("&#9;");
+					break;
+				default:
+					result.append(c);
 				}
 			}
-
-			return normalizations.containsKey(title) ? normalizations.get(title) : title;
-		} finally {
-			networkLock.unlock();
+			return result.toString();
 		}
 	}
 
 	/**
-	 * Normalises the given <code>titles</code> according to the rules in place
-	 * on the wiki represented by this <tt>MediaWiki</tt>.
-	 * 
-	 * @param titles
-	 *            Titles to normalise. The members of this list are modified
-	 *            in-place.
-	 * @return <code>titles</code>
-	 * @throws IOException
-	 * @throws MediaWikiException
+	 * Answers the edits and uploads made by a <tt>MediaWiki</tt> in place of
+	 * the wiki, after a fixed latency, and measures them. It is set with
+	 * <code>MediaWiki.setWriteStandIn</code> to measure the throughput of a
+	 * bot without changing the wiki.
+	 * <p>
+	 * If a <tt>WriteStandIn</tt> is also subscribed to the recent changes feed
+	 * that drives the bot, such as one created by
+	 * <code>createRecentChangesReplay</code>, it also measures the latency of
+	 * the bot from end to end: the time between the delivery of a change to a
+	 * page and the next write to that page.
+	 * <p>
+	 * A <tt>WriteStandIn</tt> is safe for use by multiple threads.
 	 */
-	public List<String> normalizeTitles(final List<String> titles) throws IOException, MediaWikiException {
-		if (titles.isEmpty())
-			return titles;
+	public static class WriteStandIn implements MediaWiki.RecentChangesListener {
+		/**
+		 * The number of pages whose last change is remembered to measure
+		 * latency. Changes to older pages are forgotten first.
+		 */
+		private static final int MAXIMUM_TRACKED_PAGES = 10000;
 
-		int index = 0, max = Math.min(titles.size(), 500);
+		private final long latency;
 
-		while (index < titles.size()) {
-			final int end = Math.min(index + max, titles.size());
+		/**
+		 * The time, according to <code>System.nanoTime</code>, at which a
+		 * change was last delivered for each page not yet written.
+		 */
+		private final Map<String, Long> deliveries = new LinkedHashMap<String, Long>() {
+			private static final long serialVersionUID = 1L;
 
-			final StringBuilder titleString = new StringBuilder((end - index) * 2);
-			for (int i = index; i < end; i++) {
-				if (titleString.length() > 0) {
-					titleString.append('|');
-				}
-				titleString.append(titles.get(i));
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String, Long> eldest) {
+				return size() > MAXIMUM_TRACKED_PAGES;
 			}
+		};
 
-			final Map<String, String> getParams = paramValuesToMap("action", "query", "format", "xml", "prop", "info", "titles", titleString.toString());
-			final String url = createApiGetUrl(getParams);
-
-			networkLock.lock();
-			try {
-				final InputStream in = get(url);
-				final Document xml = parse(in);
-				checkError(xml);
-
-				final NodeList normalizedTags = xml.getElementsByTagName("normalized");
-
-				if (normalizedTags.getLength() == 0)
-					throw new MediaWiki.ResponseFormatException("expected <normalized> tag not found");
-				if (normalizedTags.getLength() >= 2)
-					throw new MediaWiki.ResponseFormatException("more than one <normalized> tag found");
+		private long writeCount, uploadedBytes, firstWrite, lastWrite;
 
-				final Map<String, String> normalizations = new TreeMap<String, String>();
+		private long latencyCount, totalLatency, maximumLatency;
 
-				final Element normalizedTag = (Element) normalizedTags.item(0);
+		/**
+		 * Creates a <tt>WriteStandIn</tt> that answers each write after the
+		 * given latency.
+		 * 
+		 * @param latencyMillis
+		 *            The time taken to answer each edit, upload or upload
+		 *            chunk, in milliseconds, standing in for the time the wiki
+		 *            would take.
+		 */
+		public WriteStandIn(final long latencyMillis) {
+			if (latencyMillis < 0)
+				throw new IllegalArgumentException("latencyMillis " + latencyMillis + " < 0");
+			latency = TimeUnit.MILLISECONDS.toNanos(latencyMillis);
+		}
 
-				final NodeList nTags = normalizedTag.getElementsByTagName("n");
+		/**
+		 * Answers an edit or upload to the given page, of which the given
+		 * number of bytes were uploaded in the request. The latency was
+		 * already waited with <code>pause</code>.
+		 */
+		void write(final String fullPageName, final long bytes) {
+			final long now = System.nanoTime();
+			synchronized (this) {
+				if (writeCount++ == 0) {
+					firstWrite = now;
+				}
+				lastWrite = now;
+				uploadedBytes += bytes;
+				final Long delivered = deliveries.remove(fullPageName);
+				if (delivered != null) {
+					final long elapsed = now - delivered;
+					latencyCount++;
+					totalLatency += elapsed;
+					maximumLatency = Math.max(maximumLatency, elapsed);
+				}
+			}
+		}
 
-				for (int j = 0; j < nTags.getLength(); j++) {
-					final Element nTag = (Element) nTags.item(j);
+		/**
+		 * Answers a chunk of the given number of bytes of an upload. The
+		 * latency was already waited with <code>pause</code>.
+		 */
+		synchronized void receive(final long bytes) {
+			uploadedBytes += bytes;
+		}
 
-					normalizations.put(nTag.getAttribute("from"), nTag.getAttribute("to"));
+		/**
+		 * Waits for the latency of this <tt>WriteStandIn</tt>. The
+		 * <tt>MediaWiki</tt> calls this without holding its network lock, so
+		 * that the latency does not hold back the requests of other threads.
+		 */
+		void pause() throws InterruptedIOException {
+			if (latency > 0) {
+				try {
+					TimeUnit.NANOSECONDS.sleep(latency);
+				} catch (final InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("interrupted while standing in for the wiki");
 				}
+			}
+		}
 
-				for (int i = index; i < end; i++) {
-					if (normalizations.containsKey(titles.get(i))) {
-						titles.set(i, normalizations.get(titles.get(i)));
-					}
-				}
+		public synchronized void recentChange(final MediaWiki.RecentChange rc) {
+			// Keep the pages in the order of their last change.
+			deliveries.remove(rc.getFullPageName());
+			deliveries.put(rc.getFullPageName(), System.nanoTime());
+		}
 
-				final NodeList pagesTags = xml.getElementsByTagName("pages");
+		public void pollFailed(final Throwable t) {
+			// Not a write.
+		}
 
-				if (pagesTags.getLength() == 0)
-					throw new MediaWiki.ResponseFormatException("expected <pages> tag not found");
-				if (pagesTags.getLength() >= 2)
-					throw new MediaWiki.ResponseFormatException("more than one <pages> tag found");
+		/**
+		 * Returns the number of edits and uploads answered by this
+		 * <tt>WriteStandIn</tt>.
+		 * 
+		 * @return the number of edits and uploads answered by this
+		 *         <tt>WriteStandIn</tt>
+		 */
+		public synchronized long getWriteCount() {
+			return writeCount;
+		}
 
-				final Element pagesTag = (Element) pagesTags.item(0);
+		/**
+		 * Returns the number of bytes of files uploaded to this
+		 * <tt>WriteStandIn</tt>.
+		 * 
+		 * @return the number of bytes of files uploaded to this
+		 *         <tt>WriteStandIn</tt>
+		 */
+		public synchronized long getUploadedBytes() {
+			return uploadedBytes;
+		}
 
-				final NodeList pageTags = pagesTag.getElementsByTagName("page");
+		/**
+		 * Returns the number of edits and uploads answered per second between
+		 * the first and the last, or 0 if fewer than two were answered.
+		 * 
+		 * @return the number of edits and uploads answered per second
+		 */
+		public synchronized double getWritesPerSecond() {
+			if (writeCount < 2 || lastWrite == firstWrite)
+				return 0;
+			return (writeCount - 1) * (double) TimeUnit.SECONDS.toNanos(1) / (lastWrite - firstWrite);
+		}
 
-				max = pageTags.getLength();
+		/**
+		 * Returns the number of writes whose latency from end to end was
+		 * measured, that is, writes to a page after a change to it was
+		 * delivered to this <tt>WriteStandIn</tt>.
+		 * 
+		 * @return the number of writes whose latency from end to end was
+		 *         measured
+		 */
+		public synchronized long getLatencyCount() {
+			return latencyCount;
+		}
 
-				index += max;
-			} finally {
-				networkLock.unlock();
-			}
+		/**
+		 * Returns the mean latency from end to end of the writes measured, in
+		 * milliseconds, or 0 if none was measured.
+		 * 
+		 * @return the mean latency from end to end of the writes measured
+		 */
+		public synchronized long getMeanLatencyMillis() {
+			return latencyCount != 0 ? TimeUnit.NANOSECONDS.toMillis(totalLatency / latencyCount) : 0;
 		}
 
-		return titles;
+		/**
+		 * Returns the largest latency from end to end of the writes measured,
+		 * in milliseconds, or 0 if none was measured.
+		 * 
+		 * @return the largest latency from end to end of the writes measured
+		 */
+		public synchronized long getMaximumLatencyMillis() {
+			return TimeUnit.NANOSECONDS.toMillis(maximumLatency);
+		}
+
+		@Override
+		public synchronized String toString() {
+			return String.format("WriteStandIn[%d writes, %.2f writes/s, %d bytes uploaded, latency %d ms mean, %d ms maximum over %d writes]", writeCount, getWritesPerSecond(), uploadedBytes, getMeanLatencyMillis(), getMaximumLatencyMillis(), latencyCount);
+		}
 	}
 
 	/**
-	 * Converts the given title, which may include a namespace, to the form most
-	 * suitable for the API. Currently, this means that the title's underscores
-	 * are replaced with spaces.
+	 * A set of IDs, such as recent change IDs or revision IDs, that remembers
+	 * a fixed number of the highest IDs added to it. It is a bitmap with one
+	 * bit per ID in a window that slides forward as higher IDs are added, so
+	 * adding and looking up an ID take constant time and the set never grows
+	 * beyond its capacity, whatever the IDs added.
 	 * <p>
-	 * Use of this method reduces the occurrence of the API returning
-	 * normalisation replies, which saves bandwidth.
-	 * 
-	 * @param title
-	 *            The title to convert.
-	 * @return the given title, which may include a namespace, to the form most
-	 *         suitable for the API
+	 * IDs below the window are considered to be in the set: an ID that old is
+	 * assumed to have been seen before it fell out of the window. The window
+	 * starts out just below and including the first ID added, so that late
+	 * arrivals slightly older than it are still told apart.
+	 * <p>
+	 * A <tt>SlidingIDSet</tt> is not safe for use by multiple threads.
 	 */
-	public static String titleToAPIForm(final String title) {
-		return title.replace('_', ' ');
-	}
+	public static class SlidingIDSet {
+		/**
+		 * The bits for the IDs in the window. The bit for an ID is bit
+		 * <var>ID</var> modulo 64 of word (<var>ID</var> / 64) modulo the
+		 * number of words.
+		 */
+		private final long[] words;
 
-	/**
-	 * Converts the given title, which may include a namespace, to the form most
-	 * suitable for display, e.g. in URLs. Currently, this means that the
-	 * title's spaces are replaced with underscores.
-	 * 
-	 * @param title
-	 *            The title to convert.
-	 * @return the given title, which may include a namespace, to the form most
-	 *         suitable for the display
-	 */
-	public static String titleToDisplayForm(final String title) {
-		return title.replace(' ', '_');
-	}
+		private final int mask;
 
-	/**
-	 * Converts an array of namespace IDs into the form expected by the API for
-	 * <code>functionShortName + "namespace"</code> parameters, which is the
-	 * namespace IDs in ASCII digit form without thousands separators, separated
-	 * by <code>'|'</code>.
-	 * 
-	 * @param namespaceIDs
-	 *            The IDs of the namespaces to convert. This may be
-	 *            <code>null</code> or empty, in which case <code>null</code>
-	 *            will be returned.
-	 * @return a text string suitable for the API and representing the specified
-	 *         namespace IDs, or <code>null</code> if no namespaces are
-	 *         specified
-	 */
-	protected static String namespacesParameter(final long[] namespaceIDs) {
-		if ((namespaceIDs == null) || (namespaceIDs.length == 0))
-			return null;
-		final StringBuilder result = new StringBuilder(namespaceIDs.length * 4);
-		result.append(namespaceIDs[0]);
-		for (int i = 1; i < namespaceIDs.length; i++) {
-			result.append('|').append(namespaceIDs[i]);
+		/**
+		 * The index of the word holding the lowest IDs in the window.
+		 */
+		private long lowestWord;
+
+		private boolean empty = true;
+
+		private int size;
+
+		/**
+		 * Creates a <tt>SlidingIDSet</tt> remembering at least the given
+		 * number of IDs.
+		 * 
+		 * @param capacity
+		 *            The minimum number of consecutive IDs that the set
+		 *            remembers. It is rounded up to a power of two no lower
+		 *            than 64.
+		 * @throws IllegalArgumentException
+		 *             if <code>capacity</code> is not positive or is greater
+		 *             than 2<sup>30</sup>
+		 */
+		public SlidingIDSet(final int capacity) {
+			if (capacity <= 0 || capacity > 1 << 30)
+				throw new IllegalArgumentException("capacity " + capacity + " out of range");
+			int wordCount = 1;
+			while (wordCount * 64 < capacity) {
+				wordCount <<= 1;
+			}
+			words = new long[wordCount];
+			mask = wordCount - 1;
 		}
-		return result.toString();
-	}
 
-	// - - - HELPER CLASSES - - -
+		/**
+		 * Adds an ID to this <tt>SlidingIDSet</tt>, sliding its window forward
+		 * if the ID is above it.
+		 * 
+		 * @param id
+		 *            The ID to add.
+		 * @return <code>true</code> if the ID was not in the set before;
+		 *         <code>false</code> if it was, or if it is below the window
+		 */
+		public boolean add(final long id) {
+			final long word = id >> 6;
+			if (empty) {
+				lowestWord = word - mask;
+				empty = false;
+			} else if (word < lowestWord) {
+				return false;
+			} else if (word > lowestWord + mask) {
+				slideTo(word - mask);
+			}
 
-	protected abstract class AbstractReadOnlyIterator<T> implements Iterator<T> {
-		public final void remove() {
-			throw new UnsupportedOperationException("read-only iterator");
+			final int index = (int) (word & mask);
+			final long bit = 1L << (id & 63);
+			if ((words[index] & bit) != 0)
+				return false;
+			words[index] |= bit;
+			size++;
+			return true;
 		}
-	}
 
-	protected abstract class AbstractBufferingIterator<T> extends AbstractReadOnlyIterator<T> {
 		/**
-		 * The index of the last node returned among <code>upcoming</code>. This
-		 * field has the value <code>-1</code> if iteration has not yet started
-		 * or <code>upcoming</code> was just refilled.
+		 * Returns whether an ID is in this <tt>SlidingIDSet</tt>. IDs below
+		 * its window are considered to be in it.
+		 * 
+		 * @param id
+		 *            The ID to look up.
+		 * @return whether an ID is in this <tt>SlidingIDSet</tt>
 		 */
-		private int i = -1;
+		public boolean contains(final long id) {
+			if (empty)
+				return false;
+			final long word = id >> 6;
+			if (word < lowestWord)
+				return true;
+			if (word > lowestWord + mask)
+				return false;
+			return (words[(int) (word & mask)] & (1L << (id & 63))) != 0;
+		}
 
 		/**
-		 * The list of nodes that are being buffered by this
-		 * <tt>AbstractBufferingIterator</tt>. Query continuation, if
-		 * applicable, loads more nodes into this field.
+		 * Clears the words leaving the window as its lowest word becomes
+		 * <code>newLowestWord</code>.
 		 */
-		private List<? extends Element> upcoming;
+		private void slideTo(final long newLowestWord) {
+			if (newLowestWord - lowestWord > mask) {
+				Arrays.fill(words, 0L);
+				size = 0;
+			} else {
+				for (long word = lowestWord; word < newLowestWord; word++) {
+					final int index = (int) (word & mask);
+					size -= Long.bitCount(words[index]);
+					words[index] = 0L;
+				}
+			}
+			lowestWord = newLowestWord;
+		}
 
 		/**
-		 * Returns the index of the last node returned among
-		 * <code>getUpcoming()</code>. The return value is <code>-1</code> if
-		 * iteration has not yet started or <code>upcoming</code> was just
-		 * refilled.
+		 * Returns the lowest ID that this <tt>SlidingIDSet</tt> can tell
+		 * apart, or <code>Long.MIN_VALUE</code> if it is empty. IDs below it
+		 * are considered to be in the set.
 		 * 
-		 * @return the index of the last node to return among
-		 *         <code>getUpcoming()</code>
+		 * @return the lowest ID that this <tt>SlidingIDSet</tt> can tell apart
 		 */
-		protected int getIndex() {
-			return i;
+		public long getLowestID() {
+			return empty ? Long.MIN_VALUE : lowestWord << 6;
+		}
+
+		/**
+		 * Returns the number of consecutive IDs that this
+		 * <tt>SlidingIDSet</tt> remembers.
+		 * 
+		 * @return the number of consecutive IDs that this
+		 *         <tt>SlidingIDSet</tt> remembers
+		 */
+		public int getCapacity() {
+			return words.length * 64;
+		}
+
+		/**
+		 * Returns the number of IDs in the window of this
+		 * <tt>SlidingIDSet</tt>.
+		 * 
+		 * @return the number of IDs in the window of this
+		 *         <tt>SlidingIDSet</tt>
+		 */
+		public int size() {
+			return size;
+		}
+
+		/**
+		 * Removes all IDs from this <tt>SlidingIDSet</tt>. The window is
+		 * placed again by the next ID added.
+		 */
+		public void clear() {
+			Arrays.fill(words, 0L);
+			size = 0;
+			empty = true;
+		}
+
+		@Override
+		public String toString() {
+			return empty ? "SlidingIDSet[empty]" : String.format("SlidingIDSet[%d IDs from %d to %d]", size, getLowestID(), getLowestID() + getCapacity() - 1);
 		}
+	}
+
+	/**
+	 * Runs tasks after a delay, at most one per key, on an <tt>Executor</tt>.
+	 * It is a hashed timer wheel: a ring of slots, one per tick, each holding
+	 * a linked list of the tasks due on the ticks that fall into it, plus a
+	 * map from each key to its task. Scheduling, rescheduling and cancelling
+	 * a task take constant time, and a tick only visits the tasks in one
+	 * slot, so tens of thousands of pending tasks cost little more than their
+	 * memory.
+	 * <p>
+	 * Each task carries a version, such as a revision ID. Scheduling a task
+	 * for a key that already has one replaces it unless the pending task has
+	 * a higher version, so that the latest version wins even if versions are
+	 * scheduled out of order. Tasks are run late by up to one tick.
+	 * <p>
+	 * A <tt>TimerWheel</tt> is safe for use by multiple threads. Its ticks are
+	 * counted by a daemon thread started by <code>start</code>.
+	 * 
+	 * @param <K>
+	 *            The type of the keys, such as full page names.
+	 */
+	public static class TimerWheel<K> {
+		private final long tickNanos;
+
+		private final Executor executor;
+
+		private final MediaWiki.TimerWheel.Entry<K>[] slots;
+
+		private final int mask;
+
+		private final Map<K, MediaWiki.TimerWheel.Entry<K>> entries = new HashMap<K, MediaWiki.TimerWheel.Entry<K>>();
 
 		/**
-		 * Sets the index of the last node returned among
-		 * <code>getUpcoming()</code>.
-		 * 
-		 * @param newValue
-		 *            The index of the last node returned among
-		 *            <code>getUpcoming()</code>. This value is <code>-1</code>
-		 *            if <code>upcoming</code> was just refilled.
+		 * The time at which tick 0 happened, as given by
+		 * <code>System.nanoTime</code>. Ticks are counted from it so that
+		 * changes to the wall clock do not run tasks early or late.
 		 */
-		protected void setIndex(final int newValue) {
-			i = newValue;
-		}
+		private final long epochNanos;
 
 		/**
-		 * Returns the list of nodes that this
-		 * <tt>AbstractBufferingIterator</tt> is iterating over for the time
-		 * being.
-		 * 
-		 * @return the list of nodes that this
-		 *         <tt>AbstractBufferingIterator</tt> is iterating over for the
-		 *         time being
+		 * The last tick processed. Guarded by <code>this</code>.
 		 */
-		protected List<? extends Element> getUpcoming() {
-			return upcoming;
-		}
+		private long currentTick;
+
+		private Thread ticker;
 
 		/**
-		 * Sets the list of nodes that this <tt>AbstractBufferingIterator</tt>
-		 * will be iterating over.
-		 * <p>
-		 * This method also resets the index to <code>-1</code>.
+		 * Creates a <tt>TimerWheel</tt> that runs its tasks on the given
+		 * <tt>Executor</tt>.
 		 * 
-		 * @param newValue
-		 *            The list of nodes that this
-		 *            <tt>AbstractBufferingIterator</tt> will be iterating over.
+		 * @param tickMillis
+		 *            The length of a tick, in milliseconds.
+		 * @param slotCount
+		 *            The number of slots. It is rounded up to a power of two.
+		 *            Delays up to <code>tickMillis * slotCount</code> visit
+		 *            their slot once; longer delays are checked again on each
+		 *            turn of the wheel.
+		 * @param executor
+		 *            The executor that runs the tasks when they are due.
+		 * @throws IllegalArgumentException
+		 *             if <code>tickMillis</code> or <code>slotCount</code> is
+		 *             not positive, or <code>slotCount</code> is greater than
+		 *             2<sup>30</sup>
 		 */
-		protected void setUpcoming(final List<? extends Element> newValue) {
-			this.upcoming = newValue;
-			setIndex(-1);
+		public TimerWheel(final long tickMillis, final int slotCount, final Executor executor) {
+			if (tickMillis <= 0)
+				throw new IllegalArgumentException("tickMillis " + tickMillis + " <= 0");
+			if (slotCount <= 0 || slotCount > 1 << 30)
+				throw new IllegalArgumentException("slotCount " + slotCount + " out of range");
+			if (executor == null)
+				throw new NullPointerException("executor");
+			int size = 1;
+			while (size < slotCount) {
+				size <<= 1;
+			}
+			tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+			this.executor = executor;
+			slots = MediaWiki.TimerWheel.<K> newSlots(size);
+			mask = size - 1;
+			epochNanos = System.nanoTime();
+		}
+
+		@SuppressWarnings("unchecked")
+		private static <K> MediaWiki.TimerWheel.Entry<K>[] newSlots(final int size) {
+			return (MediaWiki.TimerWheel.Entry<K>[]) new MediaWiki.TimerWheel.Entry<?>[size];
 		}
 
 		/**
-		 * Creates a Java <tt>List</tt> out of the DOM <tt>NodeList</tt>
-		 * supplied and fills the <code>upcoming</code> queue with it.
-		 * <p>
-		 * This method also resets the index to <code>-1</code>.
+		 * Schedules a task to be run after a delay, replacing the task pending
+		 * for the same key unless that one has a higher version.
 		 * 
-		 * @param nodes
-		 *            The list of nodes that this
-		 *            <tt>AbstractBufferingIterator</tt> will be iterating over.
-		 * @throws ClassCastException
-		 *             if any of the nodes supplied is not an <tt>Element</tt>
-		 *             node
+		 * @param key
+		 *            The key of the task.
+		 * @param version
+		 *            The version of the task.
+		 * @param task
+		 *            The task to run.
+		 * @param delayMillis
+		 *            The delay after which to run the task, in milliseconds.
+		 * @return <code>true</code> if the task was scheduled;
+		 *         <code>false</code> if a task with a higher version is pending
+		 *         for the same key
 		 */
-		protected void setUpcoming(final NodeList nodes) {
-			if (nodes == null) {
-				setUpcoming((List<Element>) null);
-			} else {
-				final List<Element> newUpcoming = new ArrayList<Element>(nodes.getLength());
-				for (int i = 0; i < nodes.getLength(); i++) {
-					newUpcoming.add((Element) nodes.item(i));
-				}
-				setUpcoming(newUpcoming);
+		public synchronized boolean schedule(final K key, final long version, final Runnable task, final long delayMillis) {
+			if (task == null)
+				throw new NullPointerException("task");
+			final MediaWiki.TimerWheel.Entry<K> pending = entries.get(key);
+			if (pending != null) {
+				if (pending.version > version)
+					return false;
+				unlink(pending);
+			}
+
+			final long dueNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis));
+			// Round up, so that no task runs early, and never into a slot
+			// already processed.
+			final long dueTick = Math.max(currentTick + 1, (dueNanos - epochNanos + tickNanos - 1) / tickNanos);
+			final MediaWiki.TimerWheel.Entry<K> entry = new MediaWiki.TimerWheel.Entry<K>(key, version, task, dueNanos, dueTick);
+			final int index = (int) (dueTick & mask);
+			entry.next = slots[index];
+			if (entry.next != null) {
+				entry.next.previous = entry;
 			}
+			slots[index] = entry;
+			entries.put(key, entry);
+			return true;
 		}
-	}
 
-	protected abstract class AbstractContinuableQueryIterator<T> extends AbstractBufferingIterator<T> {
 		/**
-		 * This field contains the name of the continuation value; for example,
-		 * <code>"rvstartid"</code>, <code>"eloffset"</code>.
+		 * Cancels the task pending for a key.
+		 * 
+		 * @param key
+		 *            The key of the task.
+		 * @return <code>true</code> if a task was pending for the key;
+		 *         <code>false</code> otherwise
 		 */
-		private String continuationName;
+		public synchronized boolean cancel(final K key) {
+			final MediaWiki.TimerWheel.Entry<K> pending = entries.get(key);
+			if (pending == null)
+				return false;
+			unlink(pending);
+			return true;
+		}
 
 		/**
-		 * This field contains the start or continue value for the next API
-		 * reply's worth of things being iterated over.
+		 * Removes an entry from its slot and from the map of keys.
 		 */
-		private String continuation;
+		private void unlink(final MediaWiki.TimerWheel.Entry<K> entry) {
+			if (entry.previous != null) {
+				entry.previous.next = entry.next;
+			} else {
+				slots[(int) (entry.dueTick & mask)] = entry.next;
+			}
+			if (entry.next != null) {
+				entry.next.previous = entry.previous;
+			}
+			entry.previous = entry.next = null;
+			entries.remove(entry.key);
+		}
 
 		/**
-		 * This field is <code>true</code> if the iteration is done.
+		 * Returns whether a task is pending for a key.
+		 * 
+		 * @param key
+		 *            The key of the task.
+		 * @return whether a task is pending for a key
 		 */
-		private boolean done;
+		public synchronized boolean isPending(final K key) {
+			return entries.containsKey(key);
+		}
 
 		/**
-		 * Constructs a new instance of
-		 * <tt>AbstractContinuableQueryIterator</tt> without any continuation.
-		 * In other words, the new iterator will start iterating at the
-		 * beginning.
+		 * Returns the number of pending tasks.
+		 * 
+		 * @return the number of pending tasks
 		 */
-		AbstractContinuableQueryIterator() {}
+		public synchronized int size() {
+			return entries.size();
+		}
 
 		/**
-		 * Constructs a new instance of
-		 * <tt>AbstractContinuableQueryIterator</tt> with the given
-		 * continuation. This can be useful when a start parameter is provided
-		 * to an iterator implementation's constructor.
+		 * Returns the number of pending tasks due within each of a series of
+		 * consecutive intervals starting now. Element <var>i</var> counts the
+		 * tasks due from <var>i</var> to <var>i</var> + 1 intervals from now,
+		 * except for the last, which counts all tasks due later. Tasks already
+		 * due are counted in element 0.
 		 * 
-		 * @param continuation
-		 *            The continuation to start with.
+		 * @param intervalMillis
+		 *            The length of each interval, in milliseconds.
+		 * @param intervalCount
+		 *            The number of intervals.
+		 * @return the number of pending tasks due within each interval
 		 */
-		AbstractContinuableQueryIterator(final String continuationName, final String continuation) {
-			this.continuationName = continuationName;
-			this.continuation = continuation;
+		public synchronized int[] getDueTimeDistribution(final long intervalMillis, final int intervalCount) {
+			if (intervalMillis <= 0)
+				throw new IllegalArgumentException("intervalMillis " + intervalMillis + " <= 0");
+			if (intervalCount <= 0)
+				throw new IllegalArgumentException("intervalCount " + intervalCount + " <= 0");
+			final int[] result = new int[intervalCount];
+			final long now = System.nanoTime(), intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+			for (final MediaWiki.TimerWheel.Entry<K> entry : entries.values()) {
+				final long interval = Math.max(0, entry.dueNanos - now) / intervalNanos;
+				result[(int) Math.min(interval, intervalCount - 1)]++;
+			}
+			return result;
 		}
 
 		/**
-		 * Returns whether the iteration is done. If the return value is
-		 * <code>true</code>, then <code>hasNext</code> should return
-		 * <code>false</code> forever from that point on.
+		 * Starts counting the ticks of this <tt>TimerWheel</tt> on a daemon
+		 * thread. Tasks are not run until this method is called.
 		 * 
-		 * @return whether the iteration is done
+		 * @throws IllegalStateException
+		 *             if this <tt>TimerWheel</tt> is already started
 		 */
-		public boolean isDone() {
-			return done;
+		public synchronized void start() {
+			if (ticker != null)
+				throw new IllegalStateException("already started");
+			ticker = new MediaWiki.DaemonThreadFactory("Timer wheel").newThread(new Runnable() {
+				public void run() {
+					tick();
+				}
+			});
+			ticker.start();
 		}
 
 		/**
-		 * Returns the next continuation name to be used by
-		 * <code>cacheUpcoming</code>. Depending on the concrete implementation
-		 * of <tt>AbstractContinuableQueryIterator</tt>, this is a
-		 * <tt>start</tt>, <tt>from</tt> or <tt>continue</tt> value.
-		 * 
-		 * @return the next continuation name to be used by
-		 *         <code>cacheUpcoming</code>
+		 * Stops counting the ticks of this <tt>TimerWheel</tt>. Pending tasks
+		 * stay pending, but are not run.
 		 */
-		protected String getContinuationName() {
-			return continuationName;
+		public synchronized void stop() {
+			if (ticker != null) {
+				ticker.interrupt();
+				ticker = null;
+			}
+		}
+
+		private void tick() {
+			final Thread self = Thread.currentThread();
+			final List<Runnable> due = new ArrayList<Runnable>();
+			try {
+				while (true) {
+					final long nextTick;
+					synchronized (this) {
+						if (ticker != self)
+							return;
+						nextTick = currentTick + 1;
+					}
+					final long wait = epochNanos + nextTick * tickNanos - System.nanoTime();
+					if (wait > 0) {
+						TimeUnit.NANOSECONDS.sleep(wait);
+					}
+
+					synchronized (this) {
+						if (ticker != self)
+							return;
+						currentTick = nextTick;
+						MediaWiki.TimerWheel.Entry<K> entry = slots[(int) (nextTick & mask)];
+						while (entry != null) {
+							final MediaWiki.TimerWheel.Entry<K> next = entry.next;
+							if (entry.dueTick <= nextTick) {
+								unlink(entry);
+								due.add(entry.task);
+							}
+							entry = next;
+						}
+					}
+
+					for (final Runnable task : due) {
+						try {
+							executor.execute(task);
+						} catch (final RejectedExecutionException e) {
+							// The executor is shutting down; drop the task.
+						}
+					}
+					due.clear();
+				}
+			} catch (final InterruptedException e) {
+				// stop() was called.
+			}
+		}
+
+		@Override
+		public synchronized String toString() {
+			// Due in minutes from now: [0, 1), [1, 2), ... [15, +inf).
+			return String.format("TimerWheel[%d pending, due by minute: %s]", entries.size(), Arrays.toString(getDueTimeDistribution(60000, 16)));
+		}
+
+		private static class Entry<K> {
+			private final K key;
+
+			private final long version;
+
+			private final Runnable task;
+
+			/**
+			 * The time at which the task is due, as given by
+			 * <code>System.nanoTime</code>.
+			 */
+			private final long dueNanos;
+
+			private final long dueTick;
+
+			private MediaWiki.TimerWheel.Entry<K> previous, next;
+
+			Entry(final K key, final long version, final Runnable task, final long dueNanos, final long dueTick) {
+				this.key = key;
+				this.version = version;
+				this.task = task;
+				this.dueNanos = dueNanos;
+				this.dueTick = dueTick;
+			}
+		}
+	}
+
+	/**
+	 * Creates daemon threads with a given name, so that the threads of a
+	 * <tt>MediaWiki.WriteQueue</tt> do not keep the virtual machine alive.
+	 */
+	protected static class DaemonThreadFactory implements ThreadFactory {
+		private final String name;
+
+		DaemonThreadFactory(final String name) {
+			this.name = name;
+		}
+
+		public Thread newThread(final Runnable r) {
+			final Thread result = new Thread(r, name);
+			result.setDaemon(true);
+			return result;
 		}
+	}
+
+	/**
+	 * Paces the requests made by a <tt>MediaWiki</tt>. Requests are divided
+	 * into classes, such as reads, edits and uploads, each of which has its
+	 * own interval between requests. When the wiki refuses a request because
+	 * its database replication lag exceeds the maximum set with
+	 * <code>setMaxLag</code>, all classes are paused; when it refuses a request
+	 * because the user exceeded a rate limit, only that class is paused and
+	 * its interval is doubled. Pauses grow exponentially with consecutive
+	 * refusals, honour the wiki's <tt>Retry-After</tt> header and reported
+	 * lag, and are lengthened by a random amount so that several clients do
+	 * not retry at the same time. Intervals shrink back towards their minimum
+	 * as requests succeed.
+	 * <p>
+	 * A <tt>RequestGovernor</tt> is shared by all threads using its
+	 * <tt>MediaWiki</tt>, and is safe for use by multiple threads.
+	 * 
+	 * @see MediaWiki.RequestClass
+	 */
+	public static class RequestGovernor {
+		private static final long INITIAL_BACKOFF = TimeUnit.SECONDS.toNanos(5);
+
+		private static final long MAXIMUM_BACKOFF = TimeUnit.MINUTES.toNanos(5);
+
+		private static final long MAXIMUM_INTERVAL = TimeUnit.MINUTES.toNanos(1);
+
+		private final Map<String, MediaWiki.RequestGovernor.ClassState> classes = new TreeMap<String, MediaWiki.RequestGovernor.ClassState>();
 
 		/**
-		 * Returns the next continuation value to be used by
-		 * <code>cacheUpcoming</code>. Depending on the concrete implementation
-		 * of <tt>AbstractContinuableQueryIterator</tt>, this is a
-		 * <tt>start</tt>, <tt>from</tt> or <tt>continue</tt> value.
-		 * 
-		 * @return the next continuation value to be used by
-		 *         <code>cacheUpcoming</code>
+		 * The value of <code>System.nanoTime()</code> before which no request
+		 * of any class may be sent, because the wiki reported replication lag.
 		 */
-		protected String getContinuation() {
-			return continuation;
+		private long pausedUntil;
+
+		private int maxRetries = 3;
+
+		private final Random random = new Random();
+
+		private long delayCount, delayTime;
+
+		RequestGovernor() {
+			pausedUntil = System.nanoTime();
 		}
 
 		/**
-		 * Returns whether this <tt>AbstractContinuableQueryIterator</tt> has at
-		 * least one more element to return. If the pointer into the buffer is
-		 * past the end, the query is continued by calling
-		 * <code>cacheUpcoming</code> before deciding the return value.
+		 * Returns the minimum interval between two requests of the given
+		 * class.
+		 * 
+		 * @param requestClass
+		 *            The class of requests to return the minimum interval of.
+		 *            See <tt>MediaWiki.RequestClass</tt>.
+		 * @param unit
+		 *            The unit to return the interval in.
+		 * @return the minimum interval between two requests of the given class
 		 */
-		public synchronized boolean hasNext() throws MediaWiki.IterationException {
-			if ((getUpcoming() != null) && ((getIndex() + 1) < getUpcoming().size()))
-				return true;
-			if (!isDone()) {
-				try {
-					cacheUpcoming();
-				} catch (final MediaWiki.IterationException ie) {
-					throw ie;
-				} catch (final Exception e) {
-					throw new MediaWiki.IterationException(e);
-				}
-				if (getUpcoming() == null) {
-					done = true;
-					return false;
-				} else
-					return (getIndex() + 1) < getUpcoming().size();
-			} else
-				return false;
+		public synchronized long getMinimumInterval(final String requestClass, final TimeUnit unit) {
+			return unit.convert(getState(requestClass).minimumInterval, TimeUnit.NANOSECONDS);
 		}
 
 		/**
-		 * Returns the next element of this
-		 * <tt>AbstractContinuableQueryIterator</tt>. The XML <tt>Element</tt>
-		 * at the buffer's current pointer is converted to an element of type
-		 * <tt>T</tt> using the <code>convert</code> method.
-		 * <p>
-		 * If the pointer into the buffer is past the end, the query is
-		 * continued by calling <code>cacheUpcoming</code> before deciding the
-		 * return value.
+		 * Sets the minimum interval between two requests of the given class.
+		 * The default is 0, meaning requests of the class are sent as fast as
+		 * the wiki allows.
 		 * 
-		 * @throws NoSuchElementException
-		 *             if <code>isDone</code> returns <code>true</code>
+		 * @param requestClass
+		 *            The class of requests to set the minimum interval of. See
+		 *            <tt>MediaWiki.RequestClass</tt>.
+		 * @param interval
+		 *            The new minimum interval.
+		 * @param unit
+		 *            The unit of <code>interval</code>.
+		 * @return this <tt>RequestGovernor</tt>
 		 */
-		public synchronized T next() throws MediaWiki.IterationException {
-			if (((getUpcoming() != null) && ((getIndex() + 1) < getUpcoming().size())) || !isDone()) {
-				if ((getUpcoming() == null) || ((getIndex() + 1) >= getUpcoming().size())) {
-					try {
-						cacheUpcoming();
-					} catch (final MediaWiki.IterationException ie) {
-						throw ie;
-					} catch (final Exception e) {
-						throw new MediaWiki.IterationException(e);
-					}
-				}
-				if (getUpcoming() == null) {
-					done = true;
-					throw new NoSuchElementException();
-				}
-				final int index = getIndex() + 1;
-				setIndex(index);
-				final Element element = getUpcoming().get(index);
-				if ((getIndex() + 1) >= getUpcoming().size()) {
-					setUpcoming((List<Element>) null);
-				}
-				try {
-					return convert(element);
-				} catch (final MediaWiki.IterationException ie) {
-					throw ie;
-				} catch (final Exception e) {
-					throw new MediaWiki.IterationException(e);
-				}
-			} else
-				throw new NoSuchElementException();
+		public synchronized MediaWiki.RequestGovernor setMinimumInterval(final String requestClass, final long interval, final TimeUnit unit) {
+			if (interval < 0)
+				throw new IllegalArgumentException("interval < 0");
+			final MediaWiki.RequestGovernor.ClassState state = getState(requestClass);
+			state.minimumInterval = unit.toNanos(interval);
+			state.interval = Math.max(state.interval, state.minimumInterval);
+			return this;
 		}
 
 		/**
-		 * Processes the <tt>&lt;query-continue&gt;</tt> tag, updating the
-		 * continuation name and value as appropriate and updating the done
-		 * flag.
-		 * <p>
-		 * The attribute is parsed from the
+		 * Returns the current rate of requests of the given class, in requests
+		 * per second. The return value is infinite if requests of the class
+		 * are not paced.
 		 * 
-		 * @param reply
-		 *            The continuable reply from the API in XML format.
-		 * @param tagName
-		 *            The name of the tag in <tt>&lt;query-continue&gt;</tt>
-		 *            containing the new continuation value, for example
-		 *            <code>"allpages"</code>.
+		 * @param requestClass
+		 *            The class of requests to return the rate of. See
+		 *            <tt>MediaWiki.RequestClass</tt>.
+		 * @return the current rate of requests of the given class, in requests
+		 *         per second
 		 */
-		protected void processContinuation(final Document reply, final String tagName) throws MediaWiki.ResponseFormatException {
-			final NodeList queryContinueTags = reply.getElementsByTagName("query-continue");
-
-			if (queryContinueTags.getLength() > 0) {
-				final Element queryContinueTag = (Element) queryContinueTags.item(0);
+		public synchronized double getRequestsPerSecond(final String requestClass) {
+			final long interval = getState(requestClass).interval;
+			return interval == 0 ? Double.POSITIVE_INFINITY : (double) TimeUnit.SECONDS.toNanos(1) / interval;
+		}
 
-				final NodeList continuationTags = queryContinueTag.getElementsByTagName(tagName);
+		/**
+		 * Returns the number of times a request refused due to replication lag
+		 * or a rate limit is sent again before the refusal is reported to the
+		 * caller as <tt>MediaWiki.ActionDelayException</tt>.
+		 * 
+		 * @return the number of times a refused request is sent again
+		 */
+		public synchronized int getMaxRetries() {
+			return maxRetries;
+		}
 
-				if (continuationTags.getLength() > 0) {
-					final Element continuationTag = (Element) continuationTags.item(0);
+		/**
+		 * Sets the number of times a request refused due to replication lag or
+		 * a rate limit is sent again before the refusal is reported to the
+		 * caller as <tt>MediaWiki.ActionDelayException</tt>. The default is 3.
+		 * 
+		 * @param newValue
+		 *            The new number of times a refused request is sent again.
+		 * @return this <tt>RequestGovernor</tt>
+		 */
+		public synchronized MediaWiki.RequestGovernor setMaxRetries(final int newValue) {
+			if (newValue < 0)
+				throw new IllegalArgumentException("newValue < 0");
+			maxRetries = newValue;
+			return this;
+		}
 
-					final NamedNodeMap attributes = continuationTag.getAttributes();
+		/**
+		 * Returns the number of times the wiki refused a request due to
+		 * replication lag or a rate limit.
+		 * 
+		 * @return the number of times the wiki refused a request due to
+		 *         replication lag or a rate limit
+		 */
+		public synchronized long getDelayCount() {
+			return delayCount;
+		}
 
-					if (attributes.getLength() == 0)
-						throw new MediaWiki.ResponseFormatException("no attribute in query-continue/" + tagName);
+		/**
+		 * Returns the total time for which requests were paused after the
+		 * wiki refused them.
+		 * 
+		 * @param unit
+		 *            The unit to return the time in.
+		 * @return the total time for which requests were paused after the wiki
+		 *         refused them
+		 */
+		public synchronized long getDelayTime(final TimeUnit unit) {
+			return unit.convert(delayTime, TimeUnit.NANOSECONDS);
+		}
 
-					continuationName = attributes.item(0).getNodeName();
-					continuation = attributes.item(0).getNodeValue();
+		@Override
+		public synchronized String toString() {
+			final StringBuilder result = new StringBuilder("RequestGovernor[");
+			for (final Map.Entry<String, MediaWiki.RequestGovernor.ClassState> entry : classes.entrySet()) {
+				result.append(entry.getKey()).append(": ");
+				final long interval = entry.getValue().interval;
+				if (interval == 0) {
+					result.append("unpaced");
 				} else {
-					done = true;
+					result.append(String.format("%.2f/s", (double) TimeUnit.SECONDS.toNanos(1) / interval));
 				}
-			} else {
-				done = true;
+				result.append(", ");
+			}
+			result.append(String.format("%d delays totalling %d s]", delayCount, TimeUnit.NANOSECONDS.toSeconds(delayTime)));
+			return result.toString();
+		}
+
+		private MediaWiki.RequestGovernor.ClassState getState(final String requestClass) {
+			if (requestClass == null)
+				throw new NullPointerException("requestClass");
+			MediaWiki.RequestGovernor.ClassState result = classes.get(requestClass);
+			if (result == null) {
+				result = new MediaWiki.RequestGovernor.ClassState();
+				result.nextAllowed = System.nanoTime();
+				classes.put(requestClass, result);
 			}
+			return result;
 		}
 
 		/**
-		 * Converts an XML <tt>Element</tt> containing information to be
-		 * returned into an object of type <tt>T</tt>.
-		 * 
-		 * @param element
-		 *            An XML <tt>Element</tt> containing information to be
-		 *            converted.
-		 * @return the converted element
-		 * @throws Exception
-		 *             if parsing the <tt>Element</tt>'s data throws
-		 *             <tt>Exception</tt>
+		 * Waits until a request of the given class may be sent, and reserves
+		 * the time at which it is sent.
 		 */
-		protected abstract T convert(Element element) throws Exception;
+		void acquire(final String requestClass) throws InterruptedException {
+			final long wait;
+			synchronized (this) {
+				final MediaWiki.RequestGovernor.ClassState state = getState(requestClass);
+				final long now = System.nanoTime();
+				long start = now;
+				if (state.nextAllowed - start > 0) {
+					start = state.nextAllowed;
+				}
+				if (pausedUntil - start > 0) {
+					start = pausedUntil;
+				}
+				state.nextAllowed = start + state.interval;
+				wait = start - now;
+			}
+			if (wait > 0) {
+				TimeUnit.NANOSECONDS.sleep(wait);
+			}
+		}
 
 		/**
-		 * Reads the continuation name and value, stores the next buffer of
-		 * elements using <code>setUpcoming</code>, and stores the new
-		 * continuation name and value.
-		 * <p>
-		 * This method can assume that, when it is called, all of the following
-		 * conditions are met:
-		 * <ul>
-		 * <li>The buffer pointer is past its end or the buffer is
-		 * <code>null</code>, so more elements are needed;
-		 * <li>The iteration is not done; that is, <code>isDone()</code> returns
-		 * <code>false</code>.
-		 * <p>
-		 * This method can assume that, if it throws a checked exception, the
-		 * buffer will not be filled, and the iteration will not be considered
-		 * done. It can then be retried later safely.
+		 * Records that a request of the given class succeeded, letting the
+		 * interval of the class shrink back towards its minimum.
+		 */
+		synchronized void succeeded(final String requestClass) {
+			final MediaWiki.RequestGovernor.ClassState state = getState(requestClass);
+			state.failures = 0;
+			if (state.interval > state.minimumInterval) {
+				state.interval = Math.max(state.minimumInterval, state.interval - state.interval / 16);
+			}
+		}
+
+		/**
+		 * Records that the wiki refused a request of the given class, and
+		 * pauses further requests accordingly.
 		 * 
-		 * @throws Exception
-		 *             if receiving the next buffer's worth of <tt>Element</tt>s
-		 *             throws <tt>Exception</tt>
+		 * @param lagged
+		 *            <code>true</code> if the request was refused due to
+		 *            replication lag, which pauses all classes;
+		 *            <code>false</code> if it was refused due to a rate limit,
+		 *            which pauses only the given class.
+		 * @param retryAfter
+		 *            The minimum time to wait, in nanoseconds, as requested by
+		 *            the wiki; 0 if unknown.
 		 */
-		protected abstract void cacheUpcoming() throws Exception;
+		synchronized void delayed(final String requestClass, final boolean lagged, final long retryAfter) {
+			final MediaWiki.RequestGovernor.ClassState state = getState(requestClass);
+			state.failures++;
+			long backoff = Math.min(MAXIMUM_BACKOFF, INITIAL_BACKOFF << Math.min(state.failures - 1, 16));
+			backoff = Math.max(backoff, retryAfter);
+			backoff += (long) (random.nextDouble() * (backoff / 2));
+			final long until = System.nanoTime() + backoff;
+			if (lagged) {
+				if (until - pausedUntil > 0) {
+					pausedUntil = until;
+				}
+			} else {
+				if (until - state.nextAllowed > 0) {
+					state.nextAllowed = until;
+				}
+				state.interval = Math.min(MAXIMUM_INTERVAL, Math.max(state.interval * 2, TimeUnit.SECONDS.toNanos(1)));
+			}
+			delayCount++;
+			delayTime += backoff;
+		}
+
+		private static class ClassState {
+			long minimumInterval, interval;
+
+			/**
+			 * The value of <code>System.nanoTime()</code> before which no
+			 * request of this class may be sent.
+			 */
+			long nextAllowed;
+
+			int failures;
+		}
 	}
 
 	// - - - HELPER METHODS FOR CONNECTIONS - - -
@@ -8351,19 +15723,239 @@ public class MediaWiki implements Serializable, ObjectInputValidation {
 	 *             wiki or reading HTTP headers
 	 */
 	protected InputStream get(final String url) throws IOException {
+		final MediaWiki.ResponseCache cache = getResponseCache();
+		final String cacheKey = cache != null ? MediaWiki.ResponseCache.getKey(url) : null;
+
+		MediaWiki.ResponseCache.Entry cached = null;
+		long timeToLive = 0;
+		String requestUrl = url;
+		if (cacheKey != null) {
+			cached = cache.lookup(cacheKey);
+			if ((cached != null) && cached.isFresh())
+				return new ByteArrayInputStream(cache.hit(cached));
+			timeToLive = cache.getTimeToLive(cacheKey);
+			if (timeToLive > 0) {
+				/*
+				 * Let caching proxies between us and the wiki keep the reply
+				 * for as long as we would.
+				 */
+				final long seconds = TimeUnit.MILLISECONDS.toSeconds(timeToLive);
+				requestUrl = url + "&maxage=" + seconds + "&smaxage=" + seconds;
+			}
+		}
+
+		HttpURLConnection http;
+		int attempt = 0;
+		do {
+			http = (HttpURLConnection) new URL(requestUrl).openConnection();
+			initConnection(http);
+			initGet(http);
+			initCookies(http);
+			if (cached != null) {
+				if (cached.entityTag != null) {
+					http.setRequestProperty("If-None-Match", cached.entityTag);
+				}
+				if (cached.lastModified != null) {
+					http.setRequestProperty("If-Modified-Since", cached.lastModified);
+				}
+			}
+			awaitRequestGovernor(MediaWiki.RequestClass.READ);
+			http.connect();
+		} while (retryIfDelayed(http, MediaWiki.RequestClass.READ, attempt++));
+
+		if ((cached != null) && (http.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED)) {
+			updateCookies(http);
+			return new ByteArrayInputStream(cache.revalidated(cached, getFreshnessLifetime(http, timeToLive)));
+		}
+
+		if (http.getResponseCode() != 200)
+			throw new MediaWiki.HttpStatusException(http.getResponseCode());
+
+		updateCookies(http);
+
+		final String encoding = http.getHeaderField("Content-Encoding");
+		final InputStream in = (encoding != null) && encoding.equals("gzip") ? new GZIPInputStream(http.getInputStream()) : http.getInputStream();
+
+		if (cacheKey == null)
+			return in;
+
+		final String cacheControl = http.getHeaderField("Cache-Control");
+		final String entityTag = http.getHeaderField("ETag"), lastModified = http.getHeaderField("Last-Modified");
+		final long freshnessLifetime = getFreshnessLifetime(http, timeToLive);
+		if (((cacheControl != null) && (cacheControl.indexOf("no-store") != -1)) || (http.getHeaderField("MediaWiki-API-Error") != null) || ((freshnessLifetime <= 0) && (entityTag == null) && (lastModified == null))) {
+			/*
+			 * Either the wiki forbids storing this reply, the reply is an API
+			 * error (such as maxlag) that must not be replayed, or the reply
+			 * could never be reused anyway.
+			 */
+			cache.miss();
+			return in;
+		}
+
+		final ByteArrayOutputStream content = new ByteArrayOutputStream();
+		try {
+			final byte[] buffer = new byte[4096];
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+				content.write(buffer, 0, n);
+			}
+		} finally {
+			in.close();
+		}
+		final byte[] bytes = content.toByteArray();
+		if (containsErrorTag(bytes)) {
+			// Not all wikis send MediaWiki-API-Error with an <error> reply.
+			cache.miss();
+		} else {
+			cache.store(cacheKey, new MediaWiki.ResponseCache.Entry(bytes, entityTag, lastModified, System.currentTimeMillis() + freshnessLifetime));
+		}
+		return new ByteArrayInputStream(bytes);
+	}
+
+	/**
+	 * Returns whether the given XML reply from the API contains an
+	 * <code>&lt;error&gt;</code> tag. Page content and other text in the reply
+	 * is escaped, so a match can only be a tag.
+	 */
+	private static boolean containsErrorTag(final byte[] reply) {
+		final byte[] tag = { '<', 'e', 'r', 'r', 'o', 'r' };
+		for (int i = 0; i + tag.length < reply.length; i++) {
+			int j = 0;
+			while ((j < tag.length) && (reply[i + j] == tag[j])) {
+				j++;
+			}
+			if (j < tag.length)
+				continue;
+			final byte next = reply[i + tag.length];
+			if ((next == ' ') || (next == '/') || (next == '>') || (next == '\t') || (next == '\r') || (next == '\n'))
+				return true;
+		}
+		return false;
+	}
+
+	private static final Pattern maxAgeRegex = Pattern.compile("(?:^|[ ,])max-age=([0-9]+)");
+
+	private static final Pattern actionRegex = Pattern.compile("[?&]action=([^&]*)");
+
+	/**
+	 * Returns the number of milliseconds during which the reply read from the
+	 * given HTTP connection can be reused without revalidation. If the
+	 * response cache has a time-to-live policy for the request, it is used;
+	 * otherwise, the <tt>max-age</tt> directive in the <tt>Cache-Control</tt>
+	 * header is used. <tt>s-maxage</tt> is ignored, because it applies to
+	 * shared caches only.
+	 * 
+	 * @param http
+	 *            The HTTP connection to examine.
+	 * @param timeToLive
+	 *            The time-to-live policy of the response cache for the request,
+	 *            in milliseconds, or 0 if there is none.
+	 * @return the number of milliseconds during which the reply read from the
+	 *         given HTTP connection can be reused without revalidation
+	 */
+	private static long getFreshnessLifetime(final HttpURLConnection http, final long timeToLive) {
+		if (timeToLive > 0)
+			return timeToLive;
+		final String cacheControl = http.getHeaderField("Cache-Control");
+		long result = 0;
+		if (cacheControl != null) {
+			if (cacheControl.indexOf("no-cache") != -1)
+				return 0;
+			final Matcher m = maxAgeRegex.matcher(cacheControl);
+			if (m.find()) {
+				try {
+					result = TimeUnit.SECONDS.toMillis(Long.parseLong(m.group(1)));
+				} catch (final NumberFormatException e) {
+					// don't care; the reply is not reused
+				}
+			}
+		}
+		return result;
+	}
+
+	private void clearResponseCache() {
+		final MediaWiki.ResponseCache cache = getResponseCache();
+		if (cache != null) {
+			cache.clear();
+		}
+	}
+
+	/**
+	 * Returns an instance of <tt>InputStream</tt> that reads the wiki's reply
+	 * to a GET request, starting at the given byte <code>offset</code> of the
+	 * reply. The reply is requested without compression, so that the offset
+	 * applies to the content itself.
+	 * 
+	 * @param url
+	 *            The URL to get.
+	 * @param offset
+	 *            The number of bytes at the start of the reply to skip.
+	 * @param listener
+	 *            The <tt>ProgressListener</tt> to notify as bytes are read, or
+	 *            <code>null</code> if progress is not to be reported. The
+	 *            total is the full length of the reply, as reported by the
+	 *            wiki, or -1 if the wiki does not report it.
+	 * @return an instance of <tt>InputStream</tt> that reads the wiki's reply
+	 *         to the GET request, starting at the given byte
+	 *         <code>offset</code>
+	 * @throws IOException
+	 *             if <tt>IOException</tt> is thrown while connecting to the
+	 *             wiki or reading HTTP headers, or if the reply is shorter
+	 *             than <code>offset</code> bytes
+	 */
+	protected InputStream getRange(final String url, final long offset, final MediaWiki.ProgressListener listener) throws IOException {
 		final HttpURLConnection http = (HttpURLConnection) new URL(url).openConnection();
 		initConnection(http);
 		initGet(http);
 		initCookies(http);
+		http.setRequestProperty("Accept-Encoding", "identity");
+		if (offset > 0) {
+			http.setRequestProperty("Range", "bytes=" + offset + "-");
+		}
 		http.connect();
 
-		if (http.getResponseCode() != 200)
+		if ((http.getResponseCode() != HttpURLConnection.HTTP_PARTIAL) && (http.getResponseCode() != 200))
 			throw new MediaWiki.HttpStatusException(http.getResponseCode());
 
 		updateCookies(http);
 
-		final String encoding = http.getHeaderField("Content-Encoding");
-		return (encoding != null) && encoding.equals("gzip") ? new GZIPInputStream(http.getInputStream()) : http.getInputStream();
+		final InputStream in = http.getInputStream();
+		if (http.getResponseCode() == 200) {
+			// The server ignored the Range header. Skip to the offset.
+			long remaining = offset;
+			while (remaining > 0) {
+				final long skipped = in.skip(remaining);
+				if (skipped > 0) {
+					remaining -= skipped;
+				} else if (in.read() != -1) {
+					remaining--;
+				} else {
+					in.close();
+					throw new IOException("reply ended before offset " + offset);
+				}
+			}
+		}
+		if (listener == null)
+			return in;
+
+		// Content-Range: bytes 100-199/200, of which the total may be '*'.
+		long total = -1;
+		try {
+			if (http.getResponseCode() == HttpURLConnection.HTTP_PARTIAL) {
+				final String range = http.getHeaderField("Content-Range");
+				if (range != null && range.indexOf('/') != -1 && !range.endsWith("/*")) {
+					total = Long.parseLong(range.substring(range.indexOf('/') + 1).trim());
+				}
+			} else {
+				final String length = http.getHeaderField("Content-Length");
+				if (length != null) {
+					total = Long.parseLong(length.trim());
+				}
+			}
+		} catch (final NumberFormatException e) {
+			total = -1;
+		}
+		return new MediaWiki.ProgressInputStream(in, offset, total, listener);
 	}
 
 	/**
@@ -8400,19 +15992,56 @@ public class MediaWiki implements Serializable, ObjectInputValidation {
 	 * @throws IOException
 	 *             if <tt>IOException</tt> is thrown while connecting to the
 	 *             wiki or reading HTTP headers
+	 * @throws IllegalStateException
+	 *             if a write stand-in is set and the request is a write action
+	 *             that it cannot answer
+	 * @see #setWriteStandIn(MediaWiki.WriteStandIn)
 	 */
-	protected InputStream post(final String url, final Map<String, String> params) throws IOException {
-		final HttpURLConnection http = (HttpURLConnection) new URL(url).openConnection();
-		initConnection(http);
-		initPost(http);
-		http.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
-		initCookies(http);
-		// URL-encoded data can be written quickly with ISO-8859-1.
-		final BufferedWriter out = new BufferedWriter(new OutputStreamWriter(http.getOutputStream(), "ISO-8859-1"));
-		out.write(createApiPostData(params));
-		out.flush();
-		out.close();
-		http.connect();
+	protected InputStream post(final String url, final Map<String, String> params) throws IOException, IllegalStateException {
+		final String postData = createApiPostData(params);
+		final String requestClass = url.indexOf("action=upload") != -1 ? MediaWiki.RequestClass.UPLOAD : url.indexOf("action=purge") != -1 ? MediaWiki.RequestClass.PURGE : MediaWiki.RequestClass.EDIT;
+
+		final MediaWiki.WriteStandIn standIn = writeStandIn;
+		if (standIn != null) {
+			if (url.indexOf("&action=edit&") != -1) {
+				awaitRequestGovernor(requestClass);
+				awaitWriteStandIn(standIn);
+				standIn.write(params.get("title"), 0);
+				requestGovernor.succeeded(requestClass);
+				return new ByteArrayInputStream("<?xml version=\"1.0\"?><api><edit result=\"Success\" /></api>".getBytes("UTF-8"));
+			} else if (requestClass == MediaWiki.RequestClass.UPLOAD) {
+				awaitRequestGovernor(requestClass);
+				awaitWriteStandIn(standIn);
+				standIn.write(getNamespaces().getNamespace(MediaWiki.StandardNamespace.FILE).getFullPageName(params.get("filename")), 0);
+				requestGovernor.succeeded(requestClass);
+				return new ByteArrayInputStream("<?xml version=\"1.0\"?><api><upload result=\"Success\" /></api>".getBytes("UTF-8"));
+			} else if ((url.indexOf("&action=login&") == -1) && (url.indexOf("&action=purge&") == -1) && (url.indexOf("&action=watch&") == -1)) {
+				/*
+				 * Other write actions, such as deletions, moves, protections,
+				 * rollbacks and user rights changes, have no stand-in reply.
+				 * Refuse them rather than make them on the live wiki.
+				 */
+				final Matcher m = actionRegex.matcher(url);
+				throw new IllegalStateException("a write stand-in is set; refusing to send action " + (m.find() ? m.group(1) : "(unknown)") + " to the wiki");
+			}
+		}
+
+		HttpURLConnection http;
+		int attempt = 0;
+		do {
+			http = (HttpURLConnection) new URL(url).openConnection();
+			initConnection(http);
+			initPost(http);
+			http.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+			initCookies(http);
+			awaitRequestGovernor(requestClass);
+			// URL-encoded data can be written quickly with ISO-8859-1.
+			final BufferedWriter out = new BufferedWriter(new OutputStreamWriter(http.getOutputStream(), "ISO-8859-1"));
+			out.write(postData);
+			out.flush();
+			out.close();
+			http.connect();
+		} while (retryIfDelayed(http, requestClass, attempt++));
 
 		if (http.getResponseCode() != 200)
 			throw new MediaWiki.HttpStatusException(http.getResponseCode());
@@ -8423,6 +16052,162 @@ public class MediaWiki implements Serializable, ObjectInputValidation {
 		return (encoding != null) && encoding.equals("gzip") ? new GZIPInputStream(http.getInputStream()) : http.getInputStream();
 	}
 
+	/**
+	 * Waits until the request governor of this <tt>MediaWiki</tt> allows a
+	 * request of the given class to be sent.
+	 * 
+	 * @param requestClass
+	 *            The class of the request about to be sent.
+	 * @throws InterruptedIOException
+	 *             if the current thread is interrupted while waiting
+	 */
+	private void awaitRequestGovernor(final String requestClass) throws InterruptedIOException {
+		final MediaWiki.RequestRecord record = new MediaWiki.RequestRecord(requestClass);
+		lastRequest.set(record);
+
+		/*
+		 * The wait can last minutes if the wiki refused requests of this
+		 * class. Let other threads use the network meanwhile; requests of
+		 * other classes need not wait for this one.
+		 */
+		final int holdCount = releaseNetworkLock();
+		try {
+			requestGovernor.acquire(requestClass);
+		} catch (final InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while waiting to send a request");
+		} finally {
+			reacquireNetworkLock(holdCount);
+		}
+	}
+
+	/**
+	 * Waits for the latency of the given <tt>WriteStandIn</tt>, which stands
+	 * in for the time the wiki would take to answer a write. Other threads
+	 * may use the network meanwhile, as they could while the wiki answered.
+	 * 
+	 * @param standIn
+	 *            The stand-in answering the write.
+	 * @throws InterruptedIOException
+	 *             if the current thread is interrupted while waiting
+	 */
+	private void awaitWriteStandIn(final MediaWiki.WriteStandIn standIn) throws InterruptedIOException {
+		final int holdCount = releaseNetworkLock();
+		try {
+			standIn.pause();
+		} finally {
+			reacquireNetworkLock(holdCount);
+		}
+	}
+
+	/**
+	 * Releases the network lock if the current thread holds it once. A thread
+	 * that holds it more than once is in a sequence of requests that must
+	 * not be interleaved with other threads' requests, and keeps it.
+	 * 
+	 * @return the number of holds released, to be given to
+	 *         <code>reacquireNetworkLock</code>
+	 */
+	private int releaseNetworkLock() {
+		if (networkLock.getHoldCount() != 1)
+			return 0;
+		networkLock.unlock();
+		return 1;
+	}
+
+	/**
+	 * Takes back the hold on the network lock released by
+	 * <code>releaseNetworkLock</code>, if any.
+	 * 
+	 * @param holdCount
+	 *            The number of holds released.
+	 */
+	private void reacquireNetworkLock(final int holdCount) {
+		if (holdCount > 0) {
+			networkLock.lock();
+		}
+	}
+
+	/**
+	 * The class of a request, and whether the governor was told that the wiki
+	 * refused it. It is confined to the thread that sent the request.
+	 */
+	private static class RequestRecord {
+		final String requestClass;
+
+		boolean delayReported;
+
+		RequestRecord(final String requestClass) {
+			this.requestClass = requestClass;
+		}
+	}
+
+	/**
+	 * Reports the reply read from the given HTTP connection to the request
+	 * governor of this <tt>MediaWiki</tt>, and returns whether the request
+	 * should be sent again. This is the case if the wiki refused the request
+	 * due to replication lag or a rate limit, the request can be sent again,
+	 * and the governor allows another attempt. In that case, the connection
+	 * is closed. HTTP 503 counts as lag only if it carries
+	 * <tt>Retry-After</tt>; other 503 replies are errors of the server, and
+	 * are reported to neither the governor nor the caller as delays.
+	 * 
+	 * @param http
+	 *            The HTTP connection to examine.
+	 * @param requestClass
+	 *            The class of the request.
+	 * @param attempt
+	 *            The number of times the request was already sent again, or
+	 *            <code>-1</code> if it cannot be sent again.
+	 * @return whether the request should be sent again
+	 * @throws IOException
+	 *             if <tt>IOException</tt> is thrown while reading HTTP headers
+	 */
+	private boolean retryIfDelayed(final HttpURLConnection http, final String requestClass, final int attempt) throws IOException {
+		final String apiError = http.getHeaderField("MediaWiki-API-Error");
+		final String lagHeader = http.getHeaderField("X-Database-Lag");
+		final boolean unavailable = http.getResponseCode() == HttpURLConnection.HTTP_UNAVAILABLE;
+		final boolean lagged = "maxlag".equals(apiError) || (lagHeader != null) || (unavailable && (http.getHeaderField("Retry-After") != null));
+
+		if (!lagged && !"ratelimited".equals(apiError)) {
+			if (!unavailable) {
+				requestGovernor.succeeded(requestClass);
+			}
+			return false;
+		}
+
+		long retryAfter = 0;
+		try {
+			final String retryAfterHeader = http.getHeaderField("Retry-After");
+			if (retryAfterHeader != null) {
+				retryAfter = TimeUnit.SECONDS.toNanos(Long.parseLong(retryAfterHeader.trim()));
+			}
+			final Integer maxLag = getMaxLag();
+			if ((lagHeader != null) && (maxLag != null)) {
+				/*
+				 * Estimate that the lag will go down at the rate of 1 second
+				 * per second, so the request can succeed when it has gone down
+				 * to the maximum.
+				 */
+				retryAfter = Math.max(retryAfter, TimeUnit.SECONDS.toNanos(Long.parseLong(lagHeader.trim()) - maxLag));
+			}
+		} catch (final NumberFormatException e) {
+			// don't care; use exponential backoff
+		}
+
+		requestGovernor.delayed(requestClass, lagged, retryAfter);
+		final MediaWiki.RequestRecord record = lastRequest.get();
+		if (record != null) {
+			record.delayReported = true;
+		}
+
+		if ((attempt < 0) || (attempt >= requestGovernor.getMaxRetries()))
+			return false;
+
+		http.disconnect();
+		return true;
+	}
+
 	/**
 	 * Initializes an HTTP connection as desired by the <tt>MediaWiki</tt>
 	 * implementation. Subclasses can override this method to specify a proxy to
@@ -8689,8 +16474,22 @@ public class MediaWiki implements Serializable, ObjectInputValidation {
 					throw new MediaWiki.ExistingPageException(errorInfo);
 				if (errorCode.equals("missingtitle"))
 					throw new MediaWiki.MissingPageException(errorInfo);
-				if (errorCode.equals("ratelimited") || errorCode.equals("maxlag"))
+				if (errorCode.equals("ratelimited") || errorCode.equals("maxlag")) {
+					/*
+					 * Wikis that do not report the error in the HTTP headers
+					 * of the reply were not seen by the request governor yet.
+					 */
+					final MediaWiki.RequestRecord record = lastRequest.get();
+					if ((record != null) && !record.delayReported) {
+						requestGovernor.delayed(record.requestClass, errorCode.equals("maxlag"), 0);
+						record.delayReported = true;
+					}
 					throw new MediaWiki.ActionDelayException(errorCode + ": " + errorInfo);
+				}
+				if (errorCode.equals("badtoken")) {
+					forgetSharedToken();
+					throw new MediaWiki.BadTokenException(errorInfo);
+				}
 
 				if (errorCode.equals("spamdetected") || errorCode.equals("filtered") || errorCode.equals("contenttoobig") || errorCode.equals("emptypage") || errorCode.equals("emptynewsection") || errorCode.equals("selfmove") || errorCode.equals("nonfilenamespace") || errorCode.equals("filetypemismatch"))
 					throw new MediaWiki.ContentException(errorCode + ": " + errorInfo);
@@ -8865,6 +16664,24 @@ public class MediaWiki implements Serializable, ObjectInputValidation {
 		}
 	}
 
+	/**
+	 * Type of exception thrown when an action on a MediaWiki wiki is refused
+	 * because the token it was given is no longer valid, for example because
+	 * the session expired on the wiki.
+	 * <p>
+	 * Generally, after receiving this exception, client code should start the
+	 * action again to obtain a new token, then retry it.
+	 */
+	public static class BadTokenException extends MediaWiki.MediaWikiException {
+		private static final long serialVersionUID = 1L;
+
+		public BadTokenException() {}
+
+		public BadTokenException(final String message) {
+			super(message);
+		}
+	}
+
 	/**
 	 * Type of exception thrown when an action involving writes to a MediaWiki
 	 * wiki is refused due to a problem with the content being written. For
@@ -15,6 +15,7 @@ import java.io.InputStreamReader;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.PrintWriter;
+import java.io.Reader;
 import java.io.Serializable;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -494,6 +495,7 @@ public class WikiShell {
 				}
 			}
 			builtinCommands.put("count", new CountPages());
+			builtinCommands.put("bulk", new BulkAction());
 			builtinCommands.put("help", new Help());
 			builtinCommands.put("commands", new CommandList());
 			builtinCommands.put("make", new MakeCommand());
@@ -2997,24 +2999,60 @@ public class WikiShell {
 
 			final MediaWiki.ImageRevision ir = next(iri);
 			if (ir != null) {
-				final InputStream wikiImageIn = ir.getContent();
-
 				final File localImage = new File(newName);
+				// Download into a .part file first, so that an interrupted
+				// download can be resumed by running this command again. It
+				// is named after the revision's hash, so that the download of
+				// another revision is never resumed into it.
+				final File partialImage = new File(newName + "." + ir.getSHA1Hash() + ".part");
+				final long offset = partialImage.length() < ir.getLength() ? partialImage.length() : 0;
+				if (offset > 0) {
+					System.err.format("Resuming the download after %,d bytes%n", offset);
+				}
+
+				final InputStream wikiImageIn = ir.getContent(offset, new MediaWiki.ProgressListener() {
+					public void progress(final long bytesDone, final long bytesTotal) {
+						if (bytesTotal >= 0) {
+							System.err.format("\r%,d of %,d bytes downloaded", bytesDone, bytesTotal);
+						} else {
+							System.err.format("\r%,d bytes downloaded", bytesDone);
+						}
+					}
+				});
 
-				final FileOutputStream localImageOut = new FileOutputStream(localImage);
 				try {
-					final byte[] buf = new byte[4096];
-					long totalRead = 0;
-					int read;
-					while ((read = wikiImageIn.read(buf)) > 0) {
-						localImageOut.write(buf, 0, read);
-						totalRead += read;
-						System.err.format("\r%,d bytes downloaded", totalRead);
+					final FileOutputStream localImageOut = new FileOutputStream(partialImage, offset > 0 /*- append */);
+					try {
+						final byte[] buf = new byte[4096];
+						int read;
+						while ((read = wikiImageIn.read(buf)) > 0) {
+							localImageOut.write(buf, 0, read);
+						}
+					} finally {
+						localImageOut.close();
 					}
 				} finally {
-					localImageOut.close();
+					wikiImageIn.close();
 				}
 				System.err.println();
+
+				final String downloadedSha1;
+				final FileInputStream partialIn = new FileInputStream(partialImage);
+				try {
+					downloadedSha1 = MediaWiki.sha1(partialIn.getChannel());
+				} finally {
+					partialIn.close();
+				}
+				if (!downloadedSha1.equalsIgnoreCase(ir.getSHA1Hash())) {
+					partialImage.delete();
+					System.err.println("The downloaded file does not match the revision's SHA-1 hash; run this command again to download it anew");
+					return;
+				}
+
+				if ((localImage.exists() && !localImage.delete()) || !partialImage.renameTo(localImage)) {
+					System.err.println("Revision contents saved as " + partialImage.getName() + "; could not rename it to " + newName);
+					return;
+				}
 				System.err.println("Revision contents saved as " + newName);
 			} else {
 				System.err.println(context.pageName + (timestamp != null ? ": " + MediaWiki.dateToISO8601(timestamp) : "") + ": No such revision");
@@ -3028,6 +3066,7 @@ public class WikiShell {
 			System.err.println();
 			System.err.println("The file name is mandatory and will be requested if not provided. The File namespace is implied.");
 			System.err.println("You will be asked to provide the timestamp of the revision to download and a new name for the file. If the timestamp is not provided, the most recent revision will be downloaded. If the name is not provided, the file's display name (with spaces instead of underscores) will be used.");
+			System.err.println("The file is first downloaded as <new name>.<SHA-1 hash>.part. If the download is interrupted, running this command again resumes it. The file is checked against the revision's SHA-1 hash before it is given its new name.");
 		}
 	}
 
@@ -3036,21 +3075,15 @@ public class WikiShell {
 			Iterator<MediaWiki.Revision> ri;
 			work("Getting revision...");
 			try {
-				ri = context.wiki.getLastRevision(true, context.pageName);
+				ri = context.wiki.getLastRevision(context.pageName);
 			} finally {
 				workEnd();
 			}
 
 			final MediaWiki.Revision r = next(ri);
 			if (r != null) {
-				if (r.isContentHidden()) {
-					System.err.println(context.pageName + ": Hidden content");
-				} else {
-					context.output.println(r.getContent());
-					if (context.output.checkError())
-						return;
-					context.output.println();
-				}
+				if (!printContent(context, r, context.pageName))
+					return;
 			} else {
 				System.err.println(context.pageName + ": No such page");
 			}
@@ -3095,21 +3128,15 @@ public class WikiShell {
 			Iterator<MediaWiki.Revision> ri;
 			work("Getting revision...");
 			try {
-				ri = context.wiki.getRevisions(true, (Long) context.essentialInput);
+				ri = context.wiki.getRevisions((Long) context.essentialInput);
 			} finally {
 				workEnd();
 			}
 
 			final MediaWiki.Revision r = next(ri);
 			if (r != null) {
-				if (r.isContentHidden()) {
-					System.err.println(context.essentialInput + ": Hidden content");
-				} else {
-					context.output.println(r.getContent());
-					if (context.output.checkError())
-						return;
-					context.output.println();
-				}
+				if (!printContent(context, r, context.essentialInput.toString()))
+					return;
 			} else {
 				System.err.println(context.essentialInput + ": No such revision");
 			}
@@ -3864,7 +3891,6 @@ public class WikiShell {
 					if (earliestString != null) {
 						earliest = MediaWiki.timestampToDate(earliestString);
 					}
-					final int elementCount = Integer.parseInt(input("get this many recent changes at once (10): ", "10"));
 					final String showUser = input("show only this user (<show all>): ", null);
 					final String hideUser = input("hide this user (<hide none>): ", null);
 					final boolean showRegularEdits = inputBoolean("show edits to existing pages [Y/n]: ", true);
@@ -3877,44 +3903,24 @@ public class WikiShell {
 					final Boolean showPatrolled = inputBoolean("restrict to patrolled [y] or non-patrolled edits [n] (<don't care>): ", null);
 
 					final String namespaceString = input("restrict to changes in this namespace name or number (<all>): ", null);
-					context.auxiliaryInput = new Object[] { earliest, elementCount, showUser, hideUser, showRegularEdits, showNewPages, showLogEntries, showMinorEdits, showBotActions, showAnonymousActions, showRedirects, showPatrolled, namespaceString, null };
-				} catch (NumberFormatException nfe) {
-					System.err.println("Invalid input");
-					throw new CancellationException();
+					context.auxiliaryInput = new Object[] { earliest, showUser, hideUser, showRegularEdits, showNewPages, showLogEntries, showMinorEdits, showBotActions, showAnonymousActions, showRedirects, showPatrolled, namespaceString };
 				} catch (ParseException pe) {
 					System.err.println("Invalid input");
 					throw new CancellationException();
 				}
 			} else {
-				try {
-					final int elementCount = Integer.parseInt(input("get this many recent changes at once (10): ", "10"));
-					context.auxiliaryInput = new Object[] { null, elementCount, null, null, true, true, true, null, null, null, null, null, null, null };
-				} catch (NumberFormatException nfe) {
-					System.err.println("Invalid input");
-					throw new CancellationException();
-				}
-			}
-			try {
-				final int waitSeconds = Integer.parseInt(input("update every this many seconds (10): ", "10"));
-				((Object[]) context.auxiliaryInput)[13] = waitSeconds;
-			} catch (NumberFormatException nfe) {
-				System.err.println("Invalid input");
-				throw new CancellationException();
+				context.auxiliaryInput = new Object[] { null, null, null, true, true, true, null, null, null, null, null, null };
 			}
 		}
 
 		public void perform(final CommandContext context) throws IOException, MediaWiki.MediaWikiException, CancellationException, NullPointerException, ParseException {
 			final Object[] auxiliaryInput = (Object[]) context.auxiliaryInput;
-			Date earliest = (Date) auxiliaryInput[0];
-			final boolean showRegularEdits = (Boolean) auxiliaryInput[4], showNewPages = (Boolean) auxiliaryInput[5], showLogEntries = (Boolean) auxiliaryInput[6];
-			final Boolean showMinorEdits = (Boolean) auxiliaryInput[7], showBotActions = (Boolean) auxiliaryInput[8], showAnonymousActions = (Boolean) auxiliaryInput[9], showRedirects = (Boolean) auxiliaryInput[10], showPatrolled = (Boolean) auxiliaryInput[11];
-			final int elementCount = (Integer) auxiliaryInput[1], waitSeconds = (Integer) auxiliaryInput[13];
-			final String showUser = (String) auxiliaryInput[2], hideUser = (String) auxiliaryInput[3], namespaceString = (String) auxiliaryInput[12];
+			final Date earliest = (Date) auxiliaryInput[0];
+			final boolean showRegularEdits = (Boolean) auxiliaryInput[3], showNewPages = (Boolean) auxiliaryInput[4], showLogEntries = (Boolean) auxiliaryInput[5];
+			final Boolean showMinorEdits = (Boolean) auxiliaryInput[6], showBotActions = (Boolean) auxiliaryInput[7], showAnonymousActions = (Boolean) auxiliaryInput[8], showRedirects = (Boolean) auxiliaryInput[9], showPatrolled = (Boolean) auxiliaryInput[10];
+			final String showUser = (String) auxiliaryInput[1], hideUser = (String) auxiliaryInput[2], namespaceString = (String) auxiliaryInput[11];
 			long[] namespaceIDs = null;
 
-			if (earliest == null)
-				earliest = new Date();
-
 			if (namespaceString != null) {
 				final MediaWiki.Namespaces namespaces = context.wiki.getNamespaces();
 				MediaWiki.Namespace namespace;
@@ -3931,78 +3937,27 @@ public class WikiShell {
 				}
 			}
 
-			final long[] fNamespaceIDs = namespaceIDs; // for thread below
-			final Date initialEarliest = earliest;
-
-			final Thread recentChangesStreamer = new Thread(new Runnable() {
-				public void run() {
-					Date earliest = initialEarliest;
-					long lastRcidSeen = -1L;
-					while (true) {
-						Iterator<MediaWiki.RecentChange> rci;
-						work("Getting recent changes...");
-						try {
-							rci = context.wiki.recentChanges(earliest, null /*- no latest */, true /*- always chronological */, elementCount, showUser, hideUser, showRegularEdits, showNewPages, showLogEntries, showMinorEdits, showBotActions, showAnonymousActions, showRedirects, showPatrolled, false /*- getPatrolInformation */, fNamespaceIDs);
-						} finally {
-							workEnd();
-						}
-
-						MediaWiki.RecentChange rc;
-						while (true) {
-							try {
-								rc = next(rci, "Getting recent changes...");
-								if (rc == null)
-									break;
-								if (rc.getRcid() > lastRcidSeen) {
-									displayRecentChange(rc, context.output);
-									if (rc.getTimestamp().compareTo(earliest) > 0)
-										earliest = rc.getTimestamp();
-									lastRcidSeen = rc.getRcid();
-								}
-							} catch (InterruptedException ie) {
-								return;
-							} catch (Throwable e) {
-								System.err.println(e.getClass().getName() + ": " + e.getLocalizedMessage());
-								work("Error, retrying in 30 seconds...");
-								try {
-									try {
-										Thread.sleep(30000);
-									} catch (InterruptedException ie) {
-										return;
-									}
-								} finally {
-									workEnd();
-								}
-							}
-						}
-
-						try {
-							Thread.sleep((long) waitSeconds * 1000);
-						} catch (InterruptedException ie) {
-							return;
-						}
-					}
+			final MediaWiki.RecentChangesFeed feed = context.wiki.createRecentChangesFeed(showUser, hideUser, showRegularEdits, showNewPages, showLogEntries, showMinorEdits, showBotActions, showAnonymousActions, showRedirects, showPatrolled, namespaceIDs);
+			final MediaWiki.RecentChangesFeed.Subscription subscription = feed.subscribe(new MediaWiki.RecentChangesListener() {
+				public void recentChange(final MediaWiki.RecentChange rc) {
+					displayRecentChange(rc, context.output);
 				}
-			});
-			System.err.println("Streaming recent changes. Press Enter to return to the prompt.");
-			recentChangesStreamer.start();
 
-			final Thread streamStopper = new Thread(new Runnable() {
-				public void run() {
-					try {
-						input("", "");
-					} catch (Throwable e) {} finally {
-						recentChangesStreamer.interrupt();
-					}
+				public void pollFailed(final Throwable t) {
+					System.err.println(t.getClass().getName() + ": " + t.getLocalizedMessage());
 				}
-			});
-			streamStopper.start();
+			}, null);
+
+			System.err.println("Streaming recent changes. Press Enter to return to the prompt.");
+			feed.start(earliest);
 
 			try {
-				recentChangesStreamer.join();
-				streamStopper.join();
-			} catch (InterruptedException e) {
-				return;
+				input("", "");
+			} catch (Throwable e) {} finally {
+				subscription.cancel();
+				try {
+					feed.stop();
+				} catch (InterruptedException e) {}
 			}
 		}
 
@@ -4011,7 +3966,7 @@ public class WikiShell {
 			System.err.println();
 			System.err.println("{rc | recentchange[s]}stream");
 			System.err.println();
-			System.err.println("The list may be filtered in many ways.");
+			System.err.println("The list may be filtered in many ways. The wiki is polled more often while it is busy and less often while it is idle.");
 		}
 	}
 
@@ -4243,26 +4198,26 @@ public class WikiShell {
 		}
 	}
 
-	public static abstract class AbstractReplacementCommand extends AbstractEditTokenCommand {
+	public static abstract class AbstractReplacementCommand extends AbstractWriteCommand {
 		@Override
 		public void getToken(final CommandContext context) throws IOException, MediaWiki.MediaWikiException, ParseException, InterruptedException {
 			super.getToken(context);
 
-			work("Getting page content...");
+			work("Getting edit token and page content...");
 			try {
-				String content = null;
-				final Iterator<MediaWiki.Revision> ri = context.wiki.getLastRevision(true, context.pageName);
-				final MediaWiki.Revision r = next(ri);
-				if (ri != null) {
-					if (r.isContentHidden())
-						throw new MediaWiki.MediaWikiException("Hidden content");
-					else {
-						content = r.getContent();
-					}
-				} else
+				final MediaWiki.EditPreparation p = next(context.wiki.prepareEdit(context.pageName));
+				if (p == null)
+					throw new MediaWiki.MediaWikiException("Invalid title");
+				if (!p.isSuccessful())
+					throw p.getFailure();
+				final MediaWiki.Revision r = p.getLastRevision();
+				if (r == null)
 					throw new MediaWiki.MissingPageException(context.pageName);
+				if (r.isContentHidden())
+					throw new MediaWiki.MediaWikiException("Hidden content");
 
-				context.temporary = content;
+				context.token = p.getEditToken();
+				context.temporary = r.getContent();
 			} finally {
 				workEnd();
 			}
@@ -4781,6 +4736,11 @@ public class WikiShell {
 	}
 
 	public static class UploadFile extends AbstractWriteCommand {
+		/**
+		 * The size of the parts in which large files are uploaded, in bytes.
+		 */
+		protected static final int UPLOAD_CHUNK_SIZE = 1048576;
+
 		@Override
 		public void getToken(final CommandContext context) throws IOException, MediaWiki.MediaWikiException, ParseException, InterruptedException {
 			super.getToken(context);
@@ -4825,11 +4785,77 @@ public class WikiShell {
 			final String localName = expandInput(context, (String) context.essentialInput), uploadComment = (String) auxiliaryInput[0], pageText = (String) auxiliaryInput[1];
 			final MediaWiki.EditToken token = (MediaWiki.EditToken) context.token;
 
-			work("Performing upload...");
+			if (context.temporary == null) {
+				// Don't send bytes that the wiki already has.
+				final List<String> duplicates;
+				work("Checking for duplicates...");
+				try {
+					final FileInputStream localIn = new FileInputStream(localName);
+					try {
+						final String localSha1 = MediaWiki.sha1(localIn.getChannel());
+						duplicates = context.wiki.findFilesBySHA1(localSha1).get(localSha1);
+					} finally {
+						localIn.close();
+					}
+				} finally {
+					workEnd();
+				}
+				if (duplicates.contains(MediaWiki.titleToAPIForm(namespaces.getNamespace(MediaWiki.StandardNamespace.FILE).getFullPageName(context.pageName)))) {
+					System.err.println("The file on the wiki is already identical to the local file; not uploading");
+					return;
+				}
+				if (!duplicates.isEmpty()) {
+					System.err.println("The local file is identical to " + duplicates);
+					if (!inputBoolean("upload it anyway? [y/N] ", false))
+						return;
+				}
+			}
+
+			if (new File(localName).length() <= UPLOAD_CHUNK_SIZE) {
+				work("Performing upload...");
+				try {
+					final FileInputStream localIn = new FileInputStream(localName);
+					try {
+						context.wiki.endUpload(token, localIn, uploadComment, pageText);
+					} finally {
+						localIn.close();
+					}
+				} finally {
+					workEnd();
+				}
+				return;
+			}
+
+			/*
+			 * Large files are sent in parts. If a part cannot be sent because
+			 * of IOException, the upload stays in the context, so that
+			 * retrying the command resumes it. Otherwise, the file is closed.
+			 */
+			Object[] upload = (Object[]) context.temporary;
+			if (upload == null) {
+				final FileInputStream localIn = new FileInputStream(localName);
+				upload = new Object[] { localIn, context.wiki.startChunkedUpload(token, localIn.getChannel(), UPLOAD_CHUNK_SIZE) };
+				context.temporary = upload;
+			}
+			final FileInputStream localIn = (FileInputStream) upload[0];
+			final MediaWiki.ChunkedUpload chunkedUpload = (MediaWiki.ChunkedUpload) upload[1];
+
+			boolean resumable = false;
 			try {
-				context.wiki.endUpload(token, new FileInputStream(localName), uploadComment, pageText);
+				context.wiki.endChunkedUpload(chunkedUpload, uploadComment, pageText, new MediaWiki.ProgressListener() {
+					public void progress(final long bytesDone, final long bytesTotal) {
+						System.err.format("\r%,d of %,d bytes uploaded", bytesDone, bytesTotal);
+					}
+				});
+				System.err.println();
+			} catch (final IOException ioe) {
+				resumable = true;
+				throw ioe;
 			} finally {
-				workEnd();
+				if (!resumable) {
+					context.temporary = null;
+					localIn.close();
+				}
 			}
 		}
 
@@ -4840,6 +4866,8 @@ public class WikiShell {
 			System.err.println();
 			System.err.println("The file name is mandatory and will be requested if not provided. The File namespace is implied.");
 			System.err.println("You will be asked to provide the name of the local file containing the data to upload, then an upload comment.");
+			System.err.println("If the local file already exists on the wiki, under this name or another, you will be told before anything is sent.");
+			System.err.println(String.format("Files larger than %,d bytes are sent in parts. If a part cannot be sent, retrying the command resumes the upload.", UPLOAD_CHUNK_SIZE));
 		}
 	}
 
@@ -6385,6 +6413,176 @@ public class WikiShell {
 		}
 	}
 
+	public static class BulkAction extends ForPages {
+		/**
+		 * The maximum number of pages whose action is submitted ahead of the
+		 * outcome being reported.
+		 */
+		protected static final int MAX_IN_FLIGHT = 8;
+
+		protected static final List<String> ACTIONS = Arrays.asList("delete", "protect", "move");
+
+		@Override
+		public void parseArguments(final CommandContext context) {
+			final String arguments = context.arguments.trim();
+			if (arguments.length() > 0) {
+				final String[] tokens = arguments.split(" +", 2);
+
+				if (ACTIONS.contains(tokens[0].toLowerCase())) {
+					context.auxiliaryInput = new Object[] { tokens[0].toLowerCase(), null };
+					context.arguments = tokens.length >= 2 ? tokens[1] : "";
+					super.parseArguments(context);
+				} else {
+					System.err.println(tokens[0] + ": No such bulk action");
+				}
+			}
+		}
+
+		@Override
+		public void getToken(final CommandContext context) throws IOException, MediaWiki.MediaWikiException, ParseException, InterruptedException {
+			checkLogin(context.wiki);
+		}
+
+		@Override
+		public void getAuxiliaryInput(final CommandContext context) throws IOException, NullPointerException, CancellationException {
+			if ((context.auxiliaryInput != null) && (((Object[]) context.auxiliaryInput)[1] != null))
+				return;
+			String action = context.auxiliaryInput != null ? (String) ((Object[]) context.auxiliaryInput)[0] : null;
+			while (action == null) {
+				final String line = inputMandatory("action to perform on every page [delete/protect/move]: ").trim().toLowerCase();
+				if (ACTIONS.contains(line)) {
+					action = line;
+				} else {
+					System.err.println(line + ": No such bulk action");
+				}
+			}
+
+			// The settings are those of the single-page command, asked once.
+			final Command command = action.equals("delete") ? new Delete() : action.equals("protect") ? new Protect() : new MovePage();
+			final CommandContext settings = new CommandContext();
+			if (action.equals("move")) {
+				System.err.println("The target page name may contain {{PAGENAME}}, {{FULLPAGENAME}} and the like, which are expanded for each page.");
+			}
+			command.getEssentialInput(settings);
+			command.getAuxiliaryInput(settings);
+
+			context.auxiliaryInput = new Object[] { action, settings };
+		}
+
+		@Override
+		public void confirm(final CommandContext context) throws IOException, NullPointerException, CancellationException {
+			final String action = (String) ((Object[]) context.auxiliaryInput)[0];
+			context.confirmation = inputBoolean(String.format("Are you sure you want to %s every page listed by '%s'? [y/N] ", action, context.essentialInput), false);
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public void perform(final CommandContext context) throws IOException, MediaWiki.MediaWikiException, ParseException {
+			if (!(context.confirmation instanceof Boolean) || !((Boolean) context.confirmation))
+				return;
+			MediaWiki wiki = context.wiki;
+			// 1. Gather the list of pages output by the command.
+			final List<String> pageNames = new ArrayList<String>();
+			final IterableCommand command = (IterableCommand) getCommand((String) context.essentialInput);
+			final CommandContext iteratingCommandContext = getCommandContext((String) context.essentialInput);
+
+			iteratingCommandContext.arguments = context.arguments;
+			iteratingCommandContext.wiki = wiki;
+			command.parseArguments(iteratingCommandContext);
+			try {
+				command.getPageName(iteratingCommandContext);
+				if (!getTokenWithRetry(command, iteratingCommandContext))
+					return;
+				command.getEssentialInput(iteratingCommandContext);
+				command.getAuxiliaryInput(iteratingCommandContext);
+				command.confirm(iteratingCommandContext);
+				final Iterator<String> i = command.iterator(iteratingCommandContext);
+				long lastUpdateTime = System.currentTimeMillis();
+
+				try {
+					String element;
+					while ((element = next(i)) != null) {
+						pageNames.add(element);
+						if ((lastUpdateTime + SCREEN_UPDATE_TIME_MILLISECS) < System.currentTimeMillis()) {
+							lastUpdateTime = System.currentTimeMillis();
+							work(String.format("Getting page names... %9d", pageNames.size()));
+						}
+					}
+				} finally {
+					workEnd();
+				}
+
+				wiki = iteratingCommandContext.wiki;
+			} catch (final CancellationException ce) {
+				return;
+			} catch (final InterruptedException ie) {
+				return;
+			}
+
+			// 2. Build the action from the settings given once.
+			final Object[] auxiliaryInput = (Object[]) context.auxiliaryInput;
+			final String actionName = (String) auxiliaryInput[0];
+			final CommandContext settings = (CommandContext) auxiliaryInput[1];
+			final Object[] settingsAuxiliaryInput = (Object[]) settings.auxiliaryInput;
+			final MediaWiki.BulkAction action;
+
+			if (actionName.equals("delete")) {
+				action = new MediaWiki.BulkDeletion((String) settingsAuxiliaryInput[0]);
+			} else if (actionName.equals("protect")) {
+				final Map<String, MediaWiki.Protection> protections = new TreeMap<String, MediaWiki.Protection>((Map<String, MediaWiki.Protection>) settings.essentialInput);
+				for (Map.Entry<String, MediaWiki.Protection> protection : protections.entrySet()) {
+					if ((protection.getValue() != null) && (protection.getValue().getExpiry() != null) && (protection.getValue().getExpiry().getTime() < 0)) {
+						protection.setValue(new MediaWiki.Protection(protection.getValue().getLevel(), new Date(System.currentTimeMillis() - protection.getValue().getExpiry().getTime()), protection.getValue().isCascading(), null));
+					}
+				}
+				action = new MediaWiki.BulkProtection(protections, (String) settingsAuxiliaryInput[0], (Boolean) settingsAuxiliaryInput[1]);
+			} else {
+				final Map<String, String> newFullNames = new HashMap<String, String>();
+				final CommandContext pageContext = new CommandContext();
+				pageContext.wiki = wiki;
+				for (final String pageName : pageNames) {
+					pageContext.pageName = pageName;
+					newFullNames.put(pageName, expandInput(pageContext, (String) settings.essentialInput));
+				}
+				workEnd();
+				action = new MediaWiki.BulkMove(newFullNames, (String) settingsAuxiliaryInput[0], (Boolean) settingsAuxiliaryInput[1], (Boolean) settingsAuxiliaryInput[2], (Boolean) settingsAuxiliaryInput[3]);
+			}
+
+			// 3. Act on every page, reporting each outcome.
+			final Iterator<MediaWiki.BulkActionOutcome> outcomes = wiki.performBulkAction(action, pageNames.iterator(), MAX_IN_FLIGHT);
+			long done = 0, failed = 0;
+			try {
+				MediaWiki.BulkActionOutcome outcome;
+				work(String.format("Performing %s... %d/%d", actionName, 0, pageNames.size()));
+				while ((outcome = next(outcomes)) != null) {
+					if (outcome.isSuccessful()) {
+						done++;
+						context.output.println(outcome.getFullPageName() + "\tdone");
+					} else {
+						failed++;
+						context.output.println(outcome.getFullPageName() + "\t" + outcome.getFailure().getClass().getName() + ": " + outcome.getFailure().getLocalizedMessage());
+					}
+					work(String.format("Performing %s... %d/%d", actionName, done + failed, pageNames.size()));
+				}
+			} catch (final InterruptedException ie) {
+				return;
+			} finally {
+				workEnd();
+			}
+			System.err.println(String.format("%d done, %d failed", done, failed));
+		}
+
+		@Override
+		public void help() throws IOException {
+			System.err.println("Deletes, protects or moves every page returned by a command, without asking for each page.");
+			System.err.println();
+			System.err.println("bulk [delete | protect | move] <command yielding list of pages>");
+			System.err.println();
+			System.err.println("You will be asked once for the settings of the action, as for the delete, protect and move commands, then to confirm. Tokens are obtained for many pages at a time, and several pages are acted on while earlier outcomes are reported.");
+			System.err.println("The outcome for each page is output as its name, a tab, then 'done' or the reason for the failure. For moves, the target page name may contain {{PAGENAME}}, {{FULLPAGENAME}} and the like.");
+		}
+	}
+
 	protected static Date handleDateSpecification(String specification) throws NumberFormatException, ParseException {
 		if (specification == null)
 			return null;
@@ -6464,6 +6662,50 @@ public class WikiShell {
 		}
 	}
 
+	/**
+	 * Writes the content of the given revision to the output of the given
+	 * command context, reading it from the wiki's reply as it is written so
+	 * that the content of very large pages is not buffered entirely.
+	 * 
+	 * @param context
+	 *            The command context whose output is to receive the content.
+	 * @param r
+	 *            The revision whose content is to be written.
+	 * @param name
+	 *            The name under which to report hidden content.
+	 * @return <code>false</code> if an error occurred while writing to the
+	 *         output; <code>true</code> otherwise
+	 * @throws IOException
+	 *             if <tt>IOException</tt> is thrown while reading the content
+	 *             from the wiki
+	 * @throws MediaWiki.MediaWikiException
+	 *             if the API returns an error while requesting the content
+	 */
+	protected static boolean printContent(final CommandContext context, final MediaWiki.Revision r, final String name) throws IOException, MediaWiki.MediaWikiException {
+		final Reader content = r.getContentReader();
+		try {
+			// Known from the same reply; no request is made.
+			if (r.isContentHidden()) {
+				System.err.println(name + ": Hidden content");
+				return true;
+			}
+			final char[] buf = new char[4096];
+			int read;
+			while ((read = content.read(buf)) != -1) {
+				context.output.write(buf, 0, read);
+				if (context.output.checkError())
+					return false;
+			}
+		} finally {
+			content.close();
+		}
+		context.output.println();
+		if (context.output.checkError())
+			return false;
+		context.output.println();
+		return true;
+	}
+
 	protected static <T> T next(final Iterator<T> i, final String workLong) throws ParseException, MediaWiki.MediaWikiException, IOException, InterruptedException {
 		work(workLong);
 		try {